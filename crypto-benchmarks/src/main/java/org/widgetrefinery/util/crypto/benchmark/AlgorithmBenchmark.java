@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.widgetrefinery.util.crypto.HashSession;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Raw throughput of each algorithm from 16 bytes up to 1GB. Each operation
+ * hashes one input of the given size through a reused session.
+ *
+ * @since 10/17/26 8:30 PM
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AlgorithmBenchmark {
+    @Param({"c", "k", "a", "m", "s", "S", "L", "K", "x", "h", "u"})
+    public String encoding;
+
+    @Param({"16", "1024", "65536", "1048576", "67108864", "1073741824"})
+    public long size;
+
+    private HashSession session;
+    private byte[]      data;
+    private byte[]      digest;
+
+    @Setup
+    public void setUp() {
+        this.session = BenchmarkSupport.createHash(this.encoding).createSession();
+        this.data = BenchmarkSupport.createData((int) Math.min(this.size, BenchmarkSupport.MAX_DATA));
+        this.digest = new byte[this.session.getDigestLength()];
+    }
+
+    @Benchmark
+    public byte[] hash(final BenchmarkSupport.ByteCounter counter) {
+        BenchmarkSupport.feed(this.session, this.data, this.size);
+        this.session.digestInto(this.digest, 0);
+        counter.bytes += this.size;
+        return this.digest;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.widgetrefinery.util.crypto.CryptoHash;
+import org.widgetrefinery.util.crypto.CryptoHashFactory;
+import org.widgetrefinery.util.crypto.CryptoHashRegistry;
+import org.widgetrefinery.util.crypto.HashSession;
+
+import java.util.Random;
+
+/**
+ * Helpers shared by the benchmarks.
+ *
+ * @since 10/17/26 8:20 PM
+ */
+public class BenchmarkSupport {
+    /**
+     * Largest buffer the benchmarks keep in memory. Bigger inputs are made by
+     * feeding the same buffer repeatedly.
+     */
+    public static final int MAX_DATA = 1024 * 1024;
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Creates random but repeatable data.
+     *
+     * @param size number of bytes
+     * @return data
+     */
+    public static byte[] createData(final int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Builds a CryptoHash from an encoding of short codes, as on the
+     * command line.
+     *
+     * @param encoding short codes
+     * @return CryptoHash
+     */
+    public static CryptoHash createHash(final String encoding) {
+        CryptoHash cryptoHash = null;
+        for (char code : encoding.toCharArray()) {
+            CryptoHashFactory factory = CryptoHashRegistry.getDefault().get(code);
+            if (null == factory) {
+                throw new IllegalArgumentException("unknown encoding (" + code + ')');
+            }
+            cryptoHash = factory.create(cryptoHash);
+        }
+        return cryptoHash;
+    }
+
+    /**
+     * Feeds size bytes to the session, repeating data as needed.
+     *
+     * @param session session to feed
+     * @param data    data to repeat
+     * @param size    total number of bytes
+     */
+    public static void feed(final HashSession session, final byte[] data, final long size) {
+        for (long remaining = size; 0 < remaining; ) {
+            int length = (int) Math.min(data.length, remaining);
+            session.update(data, 0, length);
+            remaining -= length;
+        }
+    }
+
+    /**
+     * Counts the bytes hashed so JMH reports bytes/s next to ops/s.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class ByteCounter {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.bytes = 0;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.widgetrefinery.util.crypto.CryptoHash;
+import org.widgetrefinery.util.crypto.HashSession;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Effect of the update size on throughput. Each operation hashes 16MB,
+ * either through a session in chunks of the given size or through
+ * {@link CryptoHash#getHash(java.io.InputStream)}, which picks its own read
+ * size.
+ *
+ * @since 10/17/26 8:40 PM
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BufferSizeBenchmark {
+    private static final int SIZE = 16 * 1024 * 1024;
+
+    @Param({"c", "m", "x"})
+    public String encoding;
+
+    @Param({"64", "512", "4096", "65536", "1048576"})
+    public int chunkSize;
+
+    private CryptoHash  cryptoHash;
+    private HashSession session;
+    private byte[]      data;
+    private byte[]      digest;
+
+    @Setup
+    public void setUp() {
+        this.cryptoHash = BenchmarkSupport.createHash(this.encoding);
+        this.session = this.cryptoHash.createSession();
+        this.data = BenchmarkSupport.createData(SIZE);
+        this.digest = new byte[this.session.getDigestLength()];
+    }
+
+    @Benchmark
+    public byte[] session(final BenchmarkSupport.ByteCounter counter) {
+        for (int offset = 0; offset < SIZE; offset += this.chunkSize) {
+            this.session.update(this.data, offset, Math.min(this.chunkSize, SIZE - offset));
+        }
+        this.session.digestInto(this.digest, 0);
+        counter.bytes += SIZE;
+        return this.digest;
+    }
+
+    @Benchmark
+    public byte[] stream(final BenchmarkSupport.ByteCounter counter) throws IOException {
+        counter.bytes += SIZE;
+        return this.cryptoHash.getHash(new ByteArrayInputStream(this.data));
+    }
+}
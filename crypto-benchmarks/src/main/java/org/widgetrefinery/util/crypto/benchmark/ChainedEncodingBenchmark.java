@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.widgetrefinery.util.crypto.CryptoHash;
+import org.widgetrefinery.util.crypto.MultiCryptoHash;
+import org.widgetrefinery.util.crypto.PlannedMultiCryptoHash;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of chained encodings, and of a set of encodings sharing a prefix
+ * with and without {@link PlannedMultiCryptoHash} merging them.
+ *
+ * @since 10/17/26 9:00 PM
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChainedEncodingBenchmark {
+    private static final String[] SHARED_PREFIX = {"m", "ms", "mc", "msc"};
+
+    @Param({"m", "ms", "msc", "mss"})
+    public String encoding;
+
+    @Param({"1048576"})
+    public int size;
+
+    private CryptoHash      chain;
+    private MultiCryptoHash planned;
+    private MultiCryptoHash unplanned;
+    private byte[]          data;
+
+    @Setup
+    public void setUp() {
+        this.chain = BenchmarkSupport.createHash(this.encoding);
+        this.planned = new PlannedMultiCryptoHash(new PlannedMultiCryptoHash.StageFactory() {
+            @Override
+            public CryptoHash create(final char key) {
+                return BenchmarkSupport.createHash(String.valueOf(key));
+            }
+        }, SHARED_PREFIX);
+        CryptoHash[] chains = new CryptoHash[SHARED_PREFIX.length];
+        for (int ndx = 0; ndx < chains.length; ndx++) {
+            chains[ndx] = BenchmarkSupport.createHash(SHARED_PREFIX[ndx]);
+        }
+        this.unplanned = new MultiCryptoHash(chains);
+        this.data = BenchmarkSupport.createData(this.size);
+    }
+
+    @Benchmark
+    public byte[] chain() throws IOException {
+        return this.chain.getHash(new ByteArrayInputStream(this.data));
+    }
+
+    @Benchmark
+    public byte[][] plannedPrefixes() throws IOException {
+        return this.planned.getHashes(new ByteArrayInputStream(this.data));
+    }
+
+    @Benchmark
+    public byte[][] unplannedPrefixes() throws IOException {
+        return this.unplanned.getHashes(new ByteArrayInputStream(this.data));
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.widgetrefinery.util.crypto.ContentChunker;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Content-defined chunking of 16MB of random data. "boundaries" only looks
+ * for chunk boundaries, which is the cost chunking adds on top of hashing;
+ * the other modes also hash each chunk with the given encoding.
+ *
+ * @since 10/17/26 1:40 PM
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ChunkerBenchmark {
+    private static final int SIZE = 16 * 1024 * 1024;
+
+    @Param({"boundaries", "c", "x", "m"})
+    public String encoding;
+
+    @Param({"8", "64"})
+    public int averageKb;
+
+    private ContentChunker chunker;
+    private byte[]         data;
+    private long           chunks;
+
+    @Setup
+    public void setUp() {
+        int averageSize = this.averageKb * 1024;
+        this.chunker = new ContentChunker(averageSize / 4, averageSize, averageSize * 4,
+                                          BenchmarkSupport.createHash("boundaries".equals(this.encoding) ? "c" : this.encoding));
+        this.data = BenchmarkSupport.createData(SIZE);
+    }
+
+    @Benchmark
+    public long chunk(final BenchmarkSupport.ByteCounter counter) throws IOException {
+        if ("boundaries".equals(this.encoding)) {
+            this.chunks = 0;
+            for (int offset = 0; offset < this.data.length; this.chunks++) {
+                offset += this.chunker.findBoundary(this.data, offset, this.data.length - offset);
+            }
+        } else {
+            this.chunks = this.chunker.chunk(new ByteArrayInputStream(this.data), new ContentChunker.ChunkHandler() {
+                @Override
+                public void onChunk(final long offset, final int length, final byte[][] digests) {
+                }
+            });
+        }
+        counter.bytes += SIZE;
+        return this.chunks;
+    }
+}
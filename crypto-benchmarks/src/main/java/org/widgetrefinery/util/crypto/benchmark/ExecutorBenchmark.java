@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.widgetrefinery.util.crypto.CryptoHash;
+import org.widgetrefinery.util.crypto.MultiCryptoHash;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call cost of {@link MultiCryptoHash} with three hashes on small files,
+ * comparing a new thread per hash, as it used to start, against the shared
+ * worker pool and virtual threads. The virtual executor fails to set up
+ * before Java 21.
+ *
+ * @since 10/17/26 9:40 AM
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExecutorBenchmark {
+    @Param({"thread", "pool", "virtual"})
+    public String executor;
+
+    @Param({"1024", "262144"})
+    public int size;
+
+    private MultiCryptoHash multiCryptoHash;
+    private ExecutorService executorService;
+    private Path            file;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.multiCryptoHash = new MultiCryptoHash(new CryptoHash[]{BenchmarkSupport.createHash("c"),
+                                                                    BenchmarkSupport.createHash("m"),
+                                                                    BenchmarkSupport.createHash("s")});
+        if ("thread".equals(this.executor)) {
+            this.multiCryptoHash.setExecutor(new Executor() {
+                @Override
+                public void execute(final Runnable command) {
+                    new Thread(command).start();
+                }
+            });
+        } else if ("virtual".equals(this.executor)) {
+            this.executorService = MultiCryptoHash.createVirtualThreadExecutor();
+            this.multiCryptoHash.setExecutor(this.executorService);
+        }
+        this.file = Files.createTempFile("benchmark", ".bin");
+        Files.write(this.file, BenchmarkSupport.createData(this.size));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (null != this.executorService) {
+            this.executorService.shutdown();
+        }
+        Files.delete(this.file);
+    }
+
+    @Benchmark
+    public byte[][] path() throws IOException {
+        return this.multiCryptoHash.getHashes(this.file);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.widgetrefinery.util.crypto.CryptoHash;
+import org.widgetrefinery.util.crypto.HashCostModel;
+import org.widgetrefinery.util.crypto.MultiCryptoHash;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fused against threaded hashing of a file with three hashes, along with
+ * whatever the default cost model picks, to check where the model puts the
+ * crossover.
+ *
+ * @since 10/17/26 11:20 AM
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FusedBenchmark {
+    @Param({"fused", "threaded", "auto"})
+    public String strategy;
+
+    @Param({"65536", "1048576", "4194304", "16777216"})
+    public int size;
+
+    private MultiCryptoHash multiCryptoHash;
+    private Path            file;
+
+    @Setup
+    public void setUp() throws IOException {
+        CryptoHash[] cryptoHashes = new CryptoHash[]{BenchmarkSupport.createHash("c"),
+                                                     BenchmarkSupport.createHash("m"),
+                                                     BenchmarkSupport.createHash("s")};
+        this.multiCryptoHash = new MultiCryptoHash(cryptoHashes);
+        if ("fused".equals(this.strategy)) {
+            this.multiCryptoHash.setCostModel(new HashCostModel(cryptoHashes, 1, HashCostModel.DEFAULT_TASK_NANOS));
+        } else if ("threaded".equals(this.strategy)) {
+            this.multiCryptoHash.setCostModel(new HashCostModel(cryptoHashes, cryptoHashes.length, 0));
+        }
+        this.file = Files.createTempFile("benchmark", ".bin");
+        Files.write(this.file, BenchmarkSupport.createData(this.size));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(this.file);
+    }
+
+    @Benchmark
+    public byte[][] path() throws IOException {
+        return this.multiCryptoHash.getHashes(this.file);
+    }
+}
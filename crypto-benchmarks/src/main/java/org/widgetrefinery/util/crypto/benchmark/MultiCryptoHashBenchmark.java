@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.widgetrefinery.util.crypto.CryptoHash;
+import org.widgetrefinery.util.crypto.MultiCryptoHash;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MultiCryptoHash} against hashing the same input once per hash, for
+ * 1 to 8 hashes, from both a stream and a file.
+ *
+ * @since 10/17/26 8:50 PM
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MultiCryptoHashBenchmark {
+    private static final String ENCODINGS = "cmskxuSh";
+
+    @Param({"1", "2", "4", "8"})
+    public int hashes;
+
+    @Param({"65536", "16777216"})
+    public int size;
+
+    private CryptoHash[]    cryptoHashes;
+    private MultiCryptoHash multiCryptoHash;
+    private byte[]          data;
+    private Path            file;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.cryptoHashes = new CryptoHash[this.hashes];
+        for (int ndx = 0; ndx < this.hashes; ndx++) {
+            this.cryptoHashes[ndx] = BenchmarkSupport.createHash(ENCODINGS.substring(ndx, ndx + 1));
+        }
+        this.multiCryptoHash = new MultiCryptoHash(this.cryptoHashes);
+        this.data = BenchmarkSupport.createData(this.size);
+        this.file = Files.createTempFile("benchmark", ".bin");
+        Files.write(this.file, this.data);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(this.file);
+    }
+
+    @Benchmark
+    public byte[][] multiStream() throws IOException {
+        return this.multiCryptoHash.getHashes(new ByteArrayInputStream(this.data));
+    }
+
+    @Benchmark
+    public byte[][] sequentialStream() throws IOException {
+        byte[][] results = new byte[this.cryptoHashes.length][];
+        for (int ndx = 0; ndx < results.length; ndx++) {
+            results[ndx] = this.cryptoHashes[ndx].getHash(new ByteArrayInputStream(this.data));
+        }
+        return results;
+    }
+
+    @Benchmark
+    public byte[][] multiPath() throws IOException {
+        return this.multiCryptoHash.getHashes(this.file);
+    }
+
+    @Benchmark
+    public byte[][] sequentialPath() throws IOException {
+        byte[][] results = new byte[this.cryptoHashes.length][];
+        for (int ndx = 0; ndx < results.length; ndx++) {
+            results[ndx] = this.cryptoHashes[ndx].getHash(this.file);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.widgetrefinery.util.crypto.MultiCryptoHash;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MultiCryptoHash#getHashes(CharSequence[], Charset, byte[], int)}
+ * against calling {@link MultiCryptoHash#getHashes(String)} for each
+ * identifier in a batch.
+ *
+ * @since 10/17/26 4:20 PM
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StringBatchBenchmark {
+    @Param({"c", "m", "x"})
+    public String encoding;
+
+    @Param({"16", "64"})
+    public int length;
+
+    @Param({"100000"})
+    public int count;
+
+    private MultiCryptoHash multiCryptoHash;
+    private String[]        inputs;
+    private byte[]          output;
+    private Charset         charset;
+
+    @Setup
+    public void setUp() {
+        this.multiCryptoHash = new MultiCryptoHash(BenchmarkSupport.createHash(this.encoding));
+        this.inputs = new String[this.count];
+        for (int ndx = 0; ndx < this.count; ndx++) {
+            StringBuilder sb = new StringBuilder(this.length);
+            for (int pos = 0; pos < this.length; pos++) {
+                sb.append((char) ('a' + (ndx + pos) % 26));
+            }
+            this.inputs[ndx] = sb.toString();
+        }
+        this.output = new byte[this.count * this.multiCryptoHash.getStride()];
+        this.charset = Charset.forName("UTF-8");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100000)
+    public byte[] batch() {
+        this.multiCryptoHash.getHashes(this.inputs, this.charset, this.output, 0);
+        return this.output;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100000)
+    public byte[][] single() {
+        byte[][] last = null;
+        for (String input : this.inputs) {
+            last = this.multiCryptoHash.getHashes(input);
+        }
+        return last;
+    }
+}
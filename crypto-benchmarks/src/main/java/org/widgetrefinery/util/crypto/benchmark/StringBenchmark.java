@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.widgetrefinery.util.crypto.CryptoHash;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CryptoHash#getHash(String)} against wrapping the same string's
+ * bytes in a stream, which is where short inputs pay for per-call setup.
+ *
+ * @since 10/17/26 9:10 PM
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StringBenchmark {
+    @Param({"c", "m", "s", "x"})
+    public String encoding;
+
+    @Param({"8", "64", "1024", "16384"})
+    public int length;
+
+    private CryptoHash cryptoHash;
+    private String     input;
+
+    @Setup
+    public void setUp() {
+        this.cryptoHash = BenchmarkSupport.createHash(this.encoding);
+        StringBuilder sb = new StringBuilder(this.length);
+        for (int ndx = 0; ndx < this.length; ndx++) {
+            sb.append((char) ('a' + ndx % 26));
+        }
+        this.input = sb.toString();
+    }
+
+    @Benchmark
+    public byte[] string() {
+        return this.cryptoHash.getHash(this.input);
+    }
+
+    @Benchmark
+    public byte[] stream() throws IOException {
+        return this.cryptoHash.getHash(new ByteArrayInputStream(this.input.getBytes()));
+    }
+}
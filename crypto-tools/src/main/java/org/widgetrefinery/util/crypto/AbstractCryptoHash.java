@@ -19,19 +19,29 @@ package org.widgetrefinery.util.crypto;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * A base implementation of CryptoHash that other classes can build off of.
+ * Subclasses only need to provide a {@link HashSession} through
+ * {@link #newSession()}; the one-shot methods are built on top of it.
  *
  * @since 3/4/12 7:39 PM
  */
 public abstract class AbstractCryptoHash implements CryptoHash {
     /**
-     * Suggested read buffer size.
+     * Size of the scratch array {@link #updateFromArray(HashSession, ByteBuffer, byte[])}
+     * copies direct buffers through.
      */
-    protected static final int BUFFER_SIZE = 1024;
+    protected static final int COPY_SIZE = 8192;
 
-    private final CryptoHash chain;
+    private final    CryptoHash chain;
+    private volatile LongAdder  hashedBytes;
 
     /**
      * Creates an instance that will hash data given to it.
@@ -70,6 +80,27 @@ public abstract class AbstractCryptoHash implements CryptoHash {
         return result;
     }
 
+    /**
+     * If an upstream CryptoHash was provided to the constructor, the upstream
+     * CryptoHash will hash the file and the result will be hashed by this
+     * class. Otherwise this class will hash the given file.
+     *
+     * @param input file to hash
+     * @return hashed data as a byte array
+     * @throws IOException if an error occurred reading from input
+     */
+    @Override
+    public byte[] getHash(final Path input) throws IOException {
+        byte[] result;
+        if (null != this.chain) {
+            result = this.chain.getHash(input);
+            result = computeHash(result);
+        } else {
+            result = computeHash(input);
+        }
+        return result;
+    }
+
     /**
      * If an upstream CryptoHash was provided to the constructor, the upstream
      * CryptoHash will hash the data and the result will be hashed by this
@@ -91,19 +122,381 @@ public abstract class AbstractCryptoHash implements CryptoHash {
     }
 
     /**
-     * Hashes the given data.
+     * Creates a new session. If an upstream CryptoHash was provided to the
+     * constructor, data is fed to an upstream session and the upstream hash
+     * is hashed by this class when the session is digested.
+     *
+     * @return new session
+     */
+    @Override
+    public HashSession createSession() {
+        HashSession session = newSession();
+        if (null != this.chain) {
+            session = new ChainedHashSession(this.chain.createSession(), session);
+        }
+        return session;
+    }
+
+    /**
+     * Gives back a session from {@link #createSession()} once the caller is
+     * done with it, so whatever it holds on to can be recycled. The session
+     * must not be used afterwards. Callers that drop their sessions instead
+     * are still correct, they just miss out on the recycling.
+     *
+     * @param session session from {@link #createSession()}
+     */
+    public void releaseSession(final HashSession session) {
+        if (session instanceof ChainedHashSession) {
+            ChainedHashSession chained = (ChainedHashSession) session;
+            if (this.chain instanceof AbstractCryptoHash) {
+                ((AbstractCryptoHash) this.chain).releaseSession(chained.upstream);
+            }
+            recycle(chained.downstream);
+        } else {
+            recycle(session);
+        }
+    }
+
+    /**
+     * Creates a session whose state can be saved and restored, for picking
+     * up the hash of a file that has grown. Chained hashes cannot be resumed
+     * since their result depends on the upstream digest of the whole input.
+     *
+     * @return new session, or null if this hash cannot be resumed
+     */
+    public ResumableHashSession createResumableSession() {
+        return null == this.chain ? newResumableSession() : null;
+    }
+
+    /**
+     * Returns whether sessions from {@link #createResumableSession()} hash
+     * about as fast as those from {@link #createSession()}, so that their
+     * state can be captured on any pass over a file. The default returns
+     * true since {@link #newResumableSession()} defaults to
+     * {@link #newSession()}.
+     *
+     * @return true if resumable sessions are as fast as regular ones
+     */
+    public boolean isResumeCheap() {
+        return true;
+    }
+
+    /**
+     * Creates a resumable session that ignores any upstream CryptoHash. The
+     * default returns {@link #newSession()} if it is resumable.
+     *
+     * @return new session, or null if this hash cannot be resumed
+     */
+    protected ResumableHashSession newResumableSession() {
+        HashSession session = newSession();
+        return session instanceof ResumableHashSession ? (ResumableHashSession) session : null;
+    }
+
+    /**
+     * Returns the name {@link HashMetrics} counts the bytes hashed by this
+     * class under. The default is the class name without its CryptoHash
+     * suffix.
+     *
+     * @return algorithm name
+     */
+    protected String getAlgorithmName() {
+        Class<?> type = getClass();
+        while (type.getSimpleName().isEmpty()) {
+            type = type.getSuperclass();
+        }
+        String name = type.getSimpleName();
+        return name.endsWith("CryptoHash") && !"CryptoHash".equals(name) ? name.substring(0, name.length() - "CryptoHash".length()) : name;
+    }
+
+    /**
+     * Returns the {@link HashMetrics} counter for the bytes hashed by this
+     * class.
+     *
+     * @return byte counter
+     */
+    protected LongAdder getHashedBytes() {
+        LongAdder counter = this.hashedBytes;
+        if (null == counter) {
+            counter = HashMetrics.getDefault().getAlgorithmCounter(getAlgorithmName());
+            this.hashedBytes = counter;
+        }
+        return counter;
+    }
+
+    /**
+     * Creates a new session that hashes data given to it, ignoring any
+     * upstream CryptoHash.
+     *
+     * @return new session
+     */
+    protected abstract HashSession newSession();
+
+    /**
+     * Called once a session created internally by the one-shot methods, or
+     * given back through {@link #releaseSession(HashSession)}, is no longer
+     * needed. Subclasses can override this to recycle whatever the session
+     * holds on to.
+     *
+     * @param session session that is no longer needed
+     */
+    protected void recycle(final HashSession session) {
+    }
+
+    /**
+     * Hashes the given data. The stream is read in blocks of
+     * {@link IOStrategy#getStreamBlockSize()} bytes, ahead of the hash if the
+     * strategy has a read-ahead depth and the stream is known to be large
+     * (see {@link ReadAhead#isWorthReadingAhead(IOStrategy, InputStream)}).
      *
      * @param input input data to hash
      * @return hashed data as a byte array
      * @throws IOException if an error occurred reading from input
      */
-    protected abstract byte[] computeHash(final InputStream input) throws IOException;
+    protected byte[] computeHash(final InputStream input) throws IOException {
+        IOStrategy strategy = IOStrategy.getDefault();
+        if (ReadAhead.isWorthReadingAhead(strategy, input)) {
+            return computeHash(new ReadAhead(strategy, input, strategy.getReadAheadDepth()));
+        }
+        HashMetrics metrics = HashMetrics.getDefault();
+        LongAdder counter = getHashedBytes();
+        HashSession session = newSession();
+        byte[] data = strategy.getStreamBuffers().acquire();
+        try {
+            long before = System.nanoTime();
+            int bytesRead;
+            while (0 < (bytesRead = strategy.read(input, data, 0, data.length))) {
+                long read = System.nanoTime();
+                session.update(data, 0, bytesRead);
+                long hashed = System.nanoTime();
+                metrics.recordBlock(counter, bytesRead, read - before, hashed - read);
+                before = hashed;
+            }
+            return digest(session);
+        } finally {
+            strategy.getStreamBuffers().release(data);
+            recycle(session);
+        }
+    }
 
     /**
-     * Hashes the given data.
+     * Hashes the given data. The hash is only timed for {@link HashMetrics}
+     * once the metrics are registered.
      *
      * @param input input data to hash
      * @return hashed data as a byte array
      */
-    protected abstract byte[] computeHash(final byte[] input);
+    protected byte[] computeHash(final byte[] input) {
+        HashSession session = newSession();
+        try {
+            HashMetrics metrics = HashMetrics.getDefault();
+            if (metrics.isRegistered()) {
+                long before = System.nanoTime();
+                session.update(input, 0, input.length);
+                metrics.recordBlock(getHashedBytes(), input.length, 0, System.nanoTime() - before);
+            } else {
+                session.update(input, 0, input.length);
+            }
+            return digest(session);
+        } finally {
+            recycle(session);
+        }
+    }
+
+    /**
+     * Hashes the contents of the given file. Regular files are handed to
+     * {@link #computeHash(FileChannel, long)}. Pipes, devices, and files that
+     * report no size (such as those under /proc) fall back to
+     * {@link #computeHash(InputStream)}.
+     *
+     * @param input file to hash
+     * @return hashed data as a byte array
+     * @throws IOException if an error occurred reading from input
+     */
+    protected byte[] computeHash(final Path input) throws IOException {
+        if (Files.isRegularFile(input)) {
+            FileChannel channel = FileChannel.open(input, StandardOpenOption.READ);
+            try {
+                long size = channel.size();
+                if (0 < size) {
+                    return computeHash(channel, size);
+                }
+            } finally {
+                channel.close();
+            }
+        }
+        InputStream stream = Files.newInputStream(input);
+        try {
+            return computeHash(stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Hashes the first <code>size</code> bytes of the given file. The file is
+     * read into a direct buffer of {@link IOStrategy#getFileBlockSize()}
+     * bytes so the data never has to be copied onto the heap. Files larger
+     * than one block are read ahead of the hash if the strategy has a
+     * read-ahead depth.
+     *
+     * @param input file to hash
+     * @param size  number of bytes to hash
+     * @return hashed data as a byte array
+     * @throws IOException if an error occurred reading from input
+     */
+    protected byte[] computeHash(final FileChannel input, final long size) throws IOException {
+        IOStrategy strategy = IOStrategy.getDefault();
+        if (0 < strategy.getReadAheadDepth() && strategy.getFileBlockSize() < size) {
+            return computeHash(new ReadAhead(strategy, input, size, strategy.getReadAheadDepth()));
+        }
+        HashMetrics metrics = HashMetrics.getDefault();
+        LongAdder counter = getHashedBytes();
+        HashSession session = newSession();
+        ByteBuffer buffer = strategy.acquireFileBuffer();
+        try {
+            long remaining = size;
+            while (0 < remaining) {
+                buffer.clear();
+                if (buffer.capacity() > remaining) {
+                    buffer.limit((int) remaining);
+                }
+                long before = System.nanoTime();
+                int bytesRead = strategy.read(input, buffer);
+                if (0 > bytesRead) {
+                    break;
+                }
+                long read = System.nanoTime();
+                buffer.flip();
+                session.update(buffer);
+                metrics.recordBlock(counter, bytesRead, read - before, System.nanoTime() - read);
+                remaining -= bytesRead;
+            }
+            return digest(session);
+        } finally {
+            strategy.releaseFileBuffer(buffer);
+            recycle(session);
+        }
+    }
+
+    /**
+     * Hashes every block handed out by the given read-ahead and closes it.
+     *
+     * @param input blocks to hash
+     * @return hashed data as a byte array
+     * @throws IOException if an error occurred reading from input
+     */
+    protected byte[] computeHash(final ReadAhead input) throws IOException {
+        HashMetrics metrics = HashMetrics.getDefault();
+        LongAdder counter = getHashedBytes();
+        HashSession session = newSession();
+        try {
+            long before = System.nanoTime();
+            ByteBuffer block;
+            while (null != (block = input.next())) {
+                long read = System.nanoTime();
+                int length = block.remaining();
+                session.update(block);
+                long hashed = System.nanoTime();
+                metrics.recordBlock(counter, length, read - before, hashed - read);
+                before = hashed;
+            }
+            return digest(session);
+        } finally {
+            input.close();
+            recycle(session);
+        }
+    }
+
+    /**
+     * Digests the given session into a new array.
+     *
+     * @param session session to digest
+     * @return hashed data as a byte array
+     */
+    protected static byte[] digest(final HashSession session) {
+        byte[] result = new byte[session.getDigestLength()];
+        session.digestInto(result, 0);
+        return result;
+    }
+
+    /**
+     * Checks that the given array has room for a digest.
+     *
+     * @param output array to write the digest to
+     * @param offset offset within output to start writing at
+     * @param length digest length
+     * @throws IllegalArgumentException if there is not enough room
+     */
+    protected static void checkOutput(final byte[] output, final int offset, final int length) throws IllegalArgumentException {
+        if (0 > offset || output.length - offset < length) {
+            throw new IllegalArgumentException("no room for a " + length + " byte digest at offset " + offset);
+        }
+    }
+
+    /**
+     * Feeds a buffer to a session through its byte array update, for hashes
+     * whose ByteBuffer update is not available on Java 8. Heap buffers are
+     * passed through their backing array; other buffers are copied through
+     * the given scratch array, which the session should hold on to rather
+     * than allocate per call. The buffer's position is moved to its limit.
+     *
+     * @param session session to update
+     * @param input   data to hash
+     * @param scratch array to copy direct buffers through
+     */
+    protected static void updateFromArray(final HashSession session, final ByteBuffer input, final byte[] scratch) {
+        if (input.hasArray()) {
+            session.update(input.array(), input.arrayOffset() + input.position(), input.remaining());
+            input.position(input.limit());
+        } else {
+            while (input.hasRemaining()) {
+                int count = Math.min(scratch.length, input.remaining());
+                input.get(scratch, 0, count);
+                session.update(scratch, 0, count);
+            }
+        }
+    }
+
+    /**
+     * A session which hashes the output of an upstream session.
+     */
+    protected static class ChainedHashSession implements HashSession {
+        private final HashSession upstream;
+        private final HashSession downstream;
+        private final byte[]      scratch;
+
+        public ChainedHashSession(final HashSession upstream, final HashSession downstream) {
+            this.upstream = upstream;
+            this.downstream = downstream;
+            this.scratch = new byte[upstream.getDigestLength()];
+        }
+
+        @Override
+        public int getDigestLength() {
+            return this.downstream.getDigestLength();
+        }
+
+        @Override
+        public void update(final byte[] input, final int offset, final int length) {
+            this.upstream.update(input, offset, length);
+        }
+
+        @Override
+        public void update(final ByteBuffer input) {
+            this.upstream.update(input);
+        }
+
+        @Override
+        public int digestInto(final byte[] output, final int offset) {
+            int length = this.upstream.digestInto(this.scratch, 0);
+            this.downstream.update(this.scratch, 0, length);
+            return this.downstream.digestInto(output, offset);
+        }
+
+        @Override
+        public void reset() {
+            this.upstream.reset();
+            this.downstream.reset();
+        }
+    }
 }
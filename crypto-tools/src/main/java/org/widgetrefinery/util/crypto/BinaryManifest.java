@@ -0,0 +1,531 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import org.widgetrefinery.util.crypto.output.OutputWriter;
+import org.widgetrefinery.util.crypto.output.ResultFormat;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A manifest of file hashes stored in a compact binary file that is read
+ * through memory maps, so opening one is instant and lookups do not load it
+ * into the heap. The file is laid out as follows, with all numbers big
+ * endian:
+ * <pre>
+ *  0 magic "WRMF"
+ *  4 version
+ *  8 record count
+ * 12 record digest width (the sum of the result lengths)
+ * 16 offset of the records
+ * 24 offset of the digest index
+ * 32 offset of the string table
+ * 40 length of the string table
+ * 48 encoding count
+ * 52 per encoding: result length (int), name length (short), UTF-8 name
+ * </pre>
+ * Records are sorted by path and each holds the results back to back
+ * followed by the offset and length of the UTF-8 path in the string table.
+ * The digest index lists the record numbers sorted by the first result. Path
+ * and digest lookups are binary searches, O(log n) in the number of records.
+ * <p/>
+ * Each section must be smaller than 2GB, which is roughly 40 million files.
+ *
+ * @since 10/17/26 8:20 PM
+ */
+public class BinaryManifest {
+    public static final int MAGIC   = 0x57524D46;
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 52;
+
+    private final String[]         encodings;
+    private final int[]            resultLengths;
+    private final int              count;
+    private final int              stride;
+    private final int              recordSize;
+    private final MappedByteBuffer records;
+    private final MappedByteBuffer digestIndex;
+    private final MappedByteBuffer strings;
+
+    protected BinaryManifest(final String[] encodings, final int[] resultLengths, final int count,
+                             final MappedByteBuffer records, final MappedByteBuffer digestIndex, final MappedByteBuffer strings) {
+        this.encodings = encodings;
+        this.resultLengths = resultLengths;
+        this.count = count;
+        this.stride = sum(resultLengths);
+        this.recordSize = this.stride + 8;
+        this.records = records;
+        this.digestIndex = digestIndex;
+        this.strings = strings;
+    }
+
+    /**
+     * Returns true if the given file starts with the binary manifest magic
+     * number.
+     *
+     * @param path file to check
+     * @return true if the file looks like a binary manifest
+     * @throws IOException if the file could not be read
+     */
+    public static boolean isBinaryManifest(final Path path) throws IOException {
+        InputStream input = Files.newInputStream(path);
+        try {
+            byte[] magic = new byte[4];
+            int length = 0;
+            int bytesRead = 0;
+            while (length < magic.length && 0 <= (bytesRead = input.read(magic, length, magic.length - length))) {
+                length += bytesRead;
+            }
+            return magic.length == length && MAGIC == ByteBuffer.wrap(magic).getInt();
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Maps the given binary manifest. The file is not read beyond its header
+     * until records are looked up.
+     *
+     * @param path manifest to open
+     * @return opened manifest
+     * @throws IOException if the file could not be read or is not a binary manifest
+     */
+    public static BinaryManifest open(final Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (HEADER_SIZE > size) {
+                throw new IOException("not a binary manifest (" + path + ')');
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (MAGIC != header.getInt(0)) {
+                throw new IOException("not a binary manifest (" + path + ')');
+            }
+            if (VERSION != header.getInt(4)) {
+                throw new IOException("unsupported binary manifest version (" + header.getInt(4) + ')');
+            }
+            int count = header.getInt(8);
+            int stride = header.getInt(12);
+            long recordsOffset = header.getLong(16);
+            long indexOffset = header.getLong(24);
+            long stringsOffset = header.getLong(32);
+            long stringsLength = header.getLong(40);
+            int encodingCount = header.getInt(48);
+            if (0 > count || 0 >= encodingCount || size < stringsOffset + stringsLength || recordsOffset > size) {
+                throw new IOException("corrupt binary manifest (" + path + ')');
+            }
+
+            ByteBuffer names = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, recordsOffset - HEADER_SIZE);
+            String[] encodings = new String[encodingCount];
+            int[] resultLengths = new int[encodingCount];
+            for (int ndx = 0; ndx < encodingCount; ndx++) {
+                resultLengths[ndx] = names.getInt();
+                byte[] name = new byte[names.getShort()];
+                names.get(name);
+                encodings[ndx] = new String(name, StandardCharsets.UTF_8);
+            }
+            if (stride != sum(resultLengths)) {
+                throw new IOException("corrupt binary manifest (" + path + ')');
+            }
+
+            MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, recordsOffset, (long) count * (stride + 8));
+            MappedByteBuffer digestIndex = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, 4L * count);
+            MappedByteBuffer strings = channel.map(FileChannel.MapMode.READ_ONLY, stringsOffset, stringsLength);
+            return new BinaryManifest(encodings, resultLengths, count, records, digestIndex, strings);
+        } finally {
+            channel.close();
+        }
+    }
+
+    public String[] getEncodings() {
+        return this.encodings.clone();
+    }
+
+    public int[] getResultLengths() {
+        return this.resultLengths.clone();
+    }
+
+    /**
+     * Returns the number of records in the manifest.
+     *
+     * @return record count
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Returns the path of the given record.
+     *
+     * @param record record number, in path order
+     * @return path as it was written
+     */
+    public String getPath(final int record) {
+        ByteBuffer strings = this.strings.duplicate();
+        int position = this.recordSize * record + this.stride;
+        strings.position(this.records.getInt(position));
+        byte[] path = new byte[this.records.getInt(position + 4)];
+        strings.get(path);
+        return new String(path, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the results of the given record.
+     *
+     * @param record record number, in path order
+     * @return results, one per encoding
+     */
+    public byte[][] getResults(final int record) {
+        ByteBuffer records = this.records.duplicate();
+        records.position(this.recordSize * record);
+        byte[][] results = new byte[this.resultLengths.length][];
+        for (int ndx = 0; ndx < results.length; ndx++) {
+            results[ndx] = new byte[this.resultLengths[ndx]];
+            records.get(results[ndx]);
+        }
+        return results;
+    }
+
+    /**
+     * Finds the record for the given path.
+     *
+     * @param path path to look up, exactly as it was written
+     * @return record number, or -1 if the path is not listed
+     */
+    public int findPath(final String path) {
+        byte[] key = path.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = this.count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int position = this.recordSize * middle + this.stride;
+            int cmp = compare(this.strings, this.records.getInt(position), this.records.getInt(position + 4), key);
+            if (0 > cmp) {
+                low = middle + 1;
+            } else if (0 < cmp) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds every record whose first result matches the given digest.
+     *
+     * @param digest first result to look up
+     * @return matching record numbers, in path order
+     */
+    public int[] findDigest(final byte[] digest) {
+        if (digest.length != this.resultLengths[0]) {
+            return new int[0];
+        }
+        int low = 0;
+        int high = this.count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (0 > compare(this.records, this.recordSize * this.digestIndex.getInt(4 * middle), digest.length, digest)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        int end = low;
+        while (end < this.count && 0 == compare(this.records, this.recordSize * this.digestIndex.getInt(4 * end), digest.length, digest)) {
+            end++;
+        }
+        int[] matches = new int[end - low];
+        for (int ndx = low; ndx < end; ndx++) {
+            matches[ndx - low] = this.digestIndex.getInt(4 * ndx);
+        }
+        Arrays.sort(matches);
+        return matches;
+    }
+
+    /**
+     * Writes every record in path order using the given text format.
+     *
+     * @param output       where to write the records
+     * @param resultFormat format to write them in
+     * @throws IOException if the records could not be written
+     */
+    public void export(final OutputWriter output, final ResultFormat resultFormat) throws IOException {
+        for (int record = 0; record < this.count; record++) {
+            resultFormat.write(output, ResultFormat.SOURCE_FILE, getPath(record), getResults(record));
+        }
+    }
+
+    /**
+     * Compares length bytes of buffer starting at offset with key, as
+     * unsigned bytes.
+     */
+    private static int compare(final ByteBuffer buffer, final int offset, final int length, final byte[] key) {
+        int end = Math.min(length, key.length);
+        for (int ndx = 0; ndx < end; ndx++) {
+            int cmp = (0xFF & buffer.get(offset + ndx)) - (0xFF & key[ndx]);
+            if (0 != cmp) {
+                return cmp;
+            }
+        }
+        return length - key.length;
+    }
+
+    private static int sum(final int[] values) {
+        int sum = 0;
+        for (int value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    /**
+     * Collects records in memory and writes them out as a binary manifest.
+     * Records are kept as packed bytes rather than objects, so the heap used
+     * is close to the size of the resulting file.
+     */
+    public static class Writer {
+        private final String[] encodings;
+        private final int[]    resultLengths;
+        private final int      stride;
+        private       byte[]   digests;
+        private       byte[]   strings;
+        private       int[]    pathOffsets;
+        private       int[]    pathLengths;
+        private       int      count;
+        private       int      stringsLength;
+
+        /**
+         * @param encodings     names of the encoding chains, in result order
+         * @param resultLengths length of each result, in bytes
+         */
+        public Writer(final String[] encodings, final int[] resultLengths) {
+            if (0 == encodings.length || encodings.length != resultLengths.length) {
+                throw new IllegalArgumentException("encodings and result lengths do not match");
+            }
+            this.encodings = encodings.clone();
+            this.resultLengths = resultLengths.clone();
+            this.stride = sum(resultLengths);
+            this.digests = new byte[64 * this.stride];
+            this.strings = new byte[64 * 64];
+            this.pathOffsets = new int[64];
+            this.pathLengths = new int[64];
+        }
+
+        /**
+         * Returns the number of records added so far.
+         *
+         * @return record count
+         */
+        public int size() {
+            return this.count;
+        }
+
+        /**
+         * Adds a record.
+         *
+         * @param path    path of the file
+         * @param results results, one per encoding
+         * @throws IllegalArgumentException if the results do not match the encodings
+         */
+        public void add(final String path, final byte[][] results) throws IllegalArgumentException {
+            if (results.length != this.resultLengths.length) {
+                throw new IllegalArgumentException("expected " + this.resultLengths.length + " results but got " + results.length);
+            }
+            byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+            if (this.count == this.pathOffsets.length) {
+                int capacity = 2 * this.count;
+                this.digests = Arrays.copyOf(this.digests, capacity * this.stride);
+                this.pathOffsets = Arrays.copyOf(this.pathOffsets, capacity);
+                this.pathLengths = Arrays.copyOf(this.pathLengths, capacity);
+            }
+            if ((long) this.stringsLength + pathBytes.length > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("too many paths for a binary manifest");
+            }
+            if (this.strings.length < this.stringsLength + pathBytes.length) {
+                this.strings = Arrays.copyOf(this.strings, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(2L * this.strings.length, (long) this.stringsLength + pathBytes.length)));
+            }
+            int position = this.count * this.stride;
+            for (int ndx = 0; ndx < results.length; ndx++) {
+                if (results[ndx].length != this.resultLengths[ndx]) {
+                    throw new IllegalArgumentException("result " + ndx + " has the wrong length (" + results[ndx].length + ')');
+                }
+                System.arraycopy(results[ndx], 0, this.digests, position, results[ndx].length);
+                position += results[ndx].length;
+            }
+            System.arraycopy(pathBytes, 0, this.strings, this.stringsLength, pathBytes.length);
+            this.pathOffsets[this.count] = this.stringsLength;
+            this.pathLengths[this.count] = pathBytes.length;
+            this.stringsLength += pathBytes.length;
+            this.count++;
+        }
+
+        /**
+         * Sorts the records and writes the manifest to the given file.
+         *
+         * @param path file to write
+         * @throws IOException if the file could not be written
+         */
+        public void write(final Path path) throws IOException {
+            final int[] byPath = sequence(this.count);
+            sort(byPath, new IntComparator() {
+                @Override
+                public int compare(final int entry1, final int entry2) {
+                    return compareBytes(Writer.this.strings, Writer.this.pathOffsets[entry1], Writer.this.pathLengths[entry1],
+                                        Writer.this.strings, Writer.this.pathOffsets[entry2], Writer.this.pathLengths[entry2]);
+                }
+            });
+            int[] byDigest = sequence(this.count);
+            final int firstLength = this.resultLengths[0];
+            sort(byDigest, new IntComparator() {
+                @Override
+                public int compare(final int record1, final int record2) {
+                    return compareBytes(Writer.this.digests, byPath[record1] * Writer.this.stride, firstLength,
+                                        Writer.this.digests, byPath[record2] * Writer.this.stride, firstLength);
+                }
+            });
+
+            long namesLength = 0;
+            byte[][] names = new byte[this.encodings.length][];
+            for (int ndx = 0; ndx < names.length; ndx++) {
+                names[ndx] = this.encodings[ndx].getBytes(StandardCharsets.UTF_8);
+                namesLength += 6 + names[ndx].length;
+            }
+            long recordsOffset = align(HEADER_SIZE + namesLength);
+            long recordsLength = (long) this.count * (this.stride + 8);
+            long indexOffset = align(recordsOffset + recordsLength);
+            long stringsOffset = align(indexOffset + 4L * this.count);
+            if (Integer.MAX_VALUE < recordsLength) {
+                throw new IOException("too many records for a binary manifest (" + this.count + ')');
+            }
+
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 256 * 1024));
+            try {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeInt(this.count);
+                output.writeInt(this.stride);
+                output.writeLong(recordsOffset);
+                output.writeLong(indexOffset);
+                output.writeLong(stringsOffset);
+                output.writeLong(this.stringsLength);
+                output.writeInt(names.length);
+                for (int ndx = 0; ndx < names.length; ndx++) {
+                    output.writeInt(this.resultLengths[ndx]);
+                    output.writeShort(names[ndx].length);
+                    output.write(names[ndx]);
+                }
+                pad(output, recordsOffset - HEADER_SIZE - namesLength);
+
+                int stringOffset = 0;
+                for (int entry : byPath) {
+                    output.write(this.digests, entry * this.stride, this.stride);
+                    output.writeInt(stringOffset);
+                    output.writeInt(this.pathLengths[entry]);
+                    stringOffset += this.pathLengths[entry];
+                }
+                pad(output, indexOffset - recordsOffset - recordsLength);
+                for (int record : byDigest) {
+                    output.writeInt(record);
+                }
+                pad(output, stringsOffset - indexOffset - 4L * this.count);
+                for (int entry : byPath) {
+                    output.write(this.strings, this.pathOffsets[entry], this.pathLengths[entry]);
+                }
+            } finally {
+                output.close();
+            }
+        }
+
+        private static long align(final long offset) {
+            return (offset + 7) & ~7L;
+        }
+
+        private static void pad(final DataOutputStream output, final long length) throws IOException {
+            for (long ndx = 0; ndx < length; ndx++) {
+                output.write(0);
+            }
+        }
+
+        private static int[] sequence(final int count) {
+            int[] values = new int[count];
+            for (int ndx = 0; ndx < count; ndx++) {
+                values[ndx] = ndx;
+            }
+            return values;
+        }
+
+        private static int compareBytes(final byte[] array1, final int offset1, final int length1, final byte[] array2, final int offset2, final int length2) {
+            int end = Math.min(length1, length2);
+            for (int ndx = 0; ndx < end; ndx++) {
+                int cmp = (0xFF & array1[offset1 + ndx]) - (0xFF & array2[offset2 + ndx]);
+                if (0 != cmp) {
+                    return cmp;
+                }
+            }
+            return length1 - length2;
+        }
+
+        /**
+         * Merge sort over an int array, so millions of record numbers can be
+         * sorted without boxing them.
+         */
+        private static void sort(final int[] values, final IntComparator comparator) {
+            int[] scratch = new int[values.length];
+            int[] source = values;
+            int[] target = scratch;
+            for (int width = 1; width < values.length; width *= 2) {
+                for (int start = 0; start < values.length; start += 2 * width) {
+                    int middle = Math.min(start + width, values.length);
+                    int end = Math.min(start + 2 * width, values.length);
+                    int left = start;
+                    int right = middle;
+                    for (int ndx = start; ndx < end; ndx++) {
+                        if (left < middle && (right >= end || 0 >= comparator.compare(source[left], source[right]))) {
+                            target[ndx] = source[left++];
+                        } else {
+                            target[ndx] = source[right++];
+                        }
+                    }
+                }
+                int[] swap = source;
+                source = target;
+                target = swap;
+            }
+            if (source != values) {
+                System.arraycopy(source, 0, values, 0, values.length);
+            }
+        }
+
+        private interface IntComparator {
+            int compare(int value1, int value2);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Base session for hashes that consume their input in fixed-size blocks.
+ * Whole blocks are handed to {@link #processBlocks(ByteBuffer, int, int)}
+ * straight out of the caller's buffer; only partial blocks are copied into
+ * an internal buffer. The final block is always held back, even when it is
+ * full, so {@link #finish(ByteBuffer, int, long)} always sees the end of the
+ * input. Buffers passed to subclasses are little-endian so multi-byte words
+ * can be read with the absolute getters.
+ *
+ * @since 10/17/26 5:10 PM
+ */
+public abstract class BlockHashSession implements HashSession {
+    private final int        blockSize;
+    private final ByteBuffer buffer;
+    private       int        buffered;
+    private       long       length;
+
+    /**
+     * @param blockSize size of each block, in bytes
+     */
+    protected BlockHashSession(final int blockSize) {
+        this.blockSize = blockSize;
+        this.buffer = ByteBuffer.allocate(blockSize).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    public void update(final byte[] input, final int offset, final int length) {
+        update(ByteBuffer.wrap(input, offset, length));
+    }
+
+    @Override
+    public void update(final ByteBuffer input) {
+        ByteBuffer data = input.slice().order(ByteOrder.LITTLE_ENDIAN);
+        int remaining = data.remaining();
+        int position = 0;
+        this.length += remaining;
+
+        if (0 < this.buffered) {
+            int count = Math.min(this.blockSize - this.buffered, remaining);
+            copy(data, position, count);
+            position += count;
+            if (this.blockSize == this.buffered && position < remaining) {
+                processBlocks(this.buffer, 0, 1);
+                this.buffered = 0;
+            }
+        }
+        if (0 == this.buffered && position < remaining) {
+            int blocks = (remaining - position - 1) / this.blockSize;
+            if (0 < blocks) {
+                processBlocks(data, position, blocks);
+                position += blocks * this.blockSize;
+            }
+            copy(data, position, remaining - position);
+        }
+        input.position(input.position() + remaining);
+    }
+
+    private void copy(final ByteBuffer data, final int position, final int count) {
+        ByteBuffer source = data.duplicate();
+        source.limit(position + count);
+        source.position(position);
+        ByteBuffer target = this.buffer.duplicate();
+        target.position(this.buffered);
+        target.put(source);
+        this.buffered += count;
+    }
+
+    @Override
+    public int digestInto(final byte[] output, final int offset) throws IllegalArgumentException {
+        int digestLength = getDigestLength();
+        AbstractCryptoHash.checkOutput(output, offset, digestLength);
+        finish(this.buffer, this.buffered, this.length);
+        writeDigest(output, offset);
+        reset();
+        return digestLength;
+    }
+
+    @Override
+    public void reset() {
+        this.buffered = 0;
+        this.length = 0;
+        resetState();
+    }
+
+    /**
+     * Processes whole blocks of input.
+     *
+     * @param data   little-endian input
+     * @param offset index of the first block in data
+     * @param blocks number of blocks to process
+     */
+    protected abstract void processBlocks(ByteBuffer data, int offset, int blocks);
+
+    /**
+     * Processes the last bytes of the input.
+     *
+     * @param tail        little-endian buffer holding the last bytes at index 0
+     * @param tailLength  number of bytes in tail, between 0 and the block size
+     * @param totalLength total number of bytes given to this session
+     */
+    protected abstract void finish(ByteBuffer tail, int tailLength, long totalLength);
+
+    /**
+     * Writes the digest computed by {@link #finish(ByteBuffer, int, long)}.
+     *
+     * @param output buffer to write to
+     * @param offset position to start writing at
+     */
+    protected abstract void writeDigest(byte[] output, int offset);
+
+    /**
+     * Returns the hash state to its initial values.
+     */
+    protected abstract void resetState();
+
+    /**
+     * Writes the number of bytes hashed so far and the partial block, for
+     * sessions that can save their state.
+     *
+     * @param output stream to write to
+     * @throws IOException if the buffer could not be written
+     */
+    protected void saveBuffer(final DataOutput output) throws IOException {
+        output.writeLong(this.length);
+        output.writeShort(this.buffered);
+        output.write(this.buffer.array(), this.buffer.arrayOffset(), this.buffered);
+    }
+
+    /**
+     * Reads a buffer written by {@link #saveBuffer(DataOutput)}.
+     *
+     * @param input stream to read from
+     * @throws IOException              if the buffer is truncated
+     * @throws IllegalArgumentException if the buffer does not fit this session
+     */
+    protected void restoreBuffer(final DataInput input) throws IOException, IllegalArgumentException {
+        long savedLength = input.readLong();
+        int savedBuffered = input.readUnsignedShort();
+        if (0 > savedLength || savedBuffered > this.blockSize || savedBuffered > savedLength
+                || (0 < savedLength && 0 == savedBuffered) || 0 != (savedLength - savedBuffered) % this.blockSize) {
+            throw new IllegalArgumentException("invalid buffer state (" + savedLength + '/' + savedBuffered + ')');
+        }
+        input.readFully(this.buffer.array(), this.buffer.arrayOffset(), savedBuffered);
+        this.length = savedLength;
+        this.buffered = savedBuffered;
+    }
+
+    protected static void writeLong(final byte[] output, final int offset, final long value) {
+        for (int ndx = 0; ndx < 8; ndx++) {
+            output[offset + ndx] = (byte) (value >>> (56 - 8 * ndx));
+        }
+    }
+
+    protected static void writeLongLE(final byte[] output, final int offset, final long value) {
+        for (int ndx = 0; ndx < 8; ndx++) {
+            output[offset + ndx] = (byte) (value >>> (8 * ndx));
+        }
+    }
+}
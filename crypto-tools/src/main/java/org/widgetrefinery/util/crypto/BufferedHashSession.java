@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Session for {@link CryptoHash} implementations that only know how to hash
+ * a whole stream. Input is buffered in memory and handed to
+ * {@link CryptoHash#getHash(java.io.InputStream)} when the session is digested, so
+ * it suits small inputs rather than large files.
+ *
+ * @since 10/17/26 4:40 PM
+ */
+public class BufferedHashSession implements HashSession {
+    private final CryptoHash cryptoHash;
+    private       byte[]     buffer;
+    private       int        length;
+    private       int        digestLength;
+
+    /**
+     * @param cryptoHash hash to compute when the session is digested
+     */
+    public BufferedHashSession(final CryptoHash cryptoHash) {
+        this.cryptoHash = cryptoHash;
+        this.buffer = new byte[256];
+        this.digestLength = -1;
+    }
+
+    /**
+     * Returns the digest length, hashing an empty input the first time to
+     * find it out.
+     *
+     * @return digest length, in bytes
+     */
+    @Override
+    public int getDigestLength() {
+        if (0 > this.digestLength) {
+            this.digestLength = hash(new byte[0], 0).length;
+        }
+        return this.digestLength;
+    }
+
+    @Override
+    public void update(final byte[] input, final int offset, final int length) {
+        ensureCapacity(length);
+        System.arraycopy(input, offset, this.buffer, this.length, length);
+        this.length += length;
+    }
+
+    @Override
+    public void update(final ByteBuffer input) {
+        int count = input.remaining();
+        ensureCapacity(count);
+        input.get(this.buffer, this.length, count);
+        this.length += count;
+    }
+
+    @Override
+    public int digestInto(final byte[] output, final int offset) {
+        byte[] result = hash(this.buffer, this.length);
+        this.digestLength = result.length;
+        AbstractCryptoHash.checkOutput(output, offset, result.length);
+        System.arraycopy(result, 0, output, offset, result.length);
+        reset();
+        return result.length;
+    }
+
+    @Override
+    public void reset() {
+        this.length = 0;
+    }
+
+    private void ensureCapacity(final int count) {
+        if (this.buffer.length - this.length < count) {
+            long capacity = Math.max(2L * this.buffer.length, (long) this.length + count);
+            if (Integer.MAX_VALUE - 8 < capacity) {
+                if (Integer.MAX_VALUE - 8 < (long) this.length + count) {
+                    throw new IllegalStateException("too much input to buffer");
+                }
+                capacity = Integer.MAX_VALUE - 8;
+            }
+            this.buffer = Arrays.copyOf(this.buffer, (int) capacity);
+        }
+    }
+
+    private byte[] hash(final byte[] data, final int length) {
+        try {
+            return this.cryptoHash.getHash(new ByteArrayInputStream(data, 0, length));
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to hash buffered input", e);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+/**
+ * The algorithms that ship with this package.
+ *
+ * @since 10/17/26 3:50 PM
+ */
+public enum BuiltInCryptoHashFactory implements CryptoHashFactory {
+    CRC32('c', "crc32", "crc32") {
+        @Override
+        public CryptoHash create(final CryptoHash chain) {
+            return new CRC32CryptoHash(chain);
+        }
+    },
+    CRC32C('k', "crc32c", "crc32c (hardware accelerated where supported)") {
+        @Override
+        public boolean isAvailable() {
+            return ChecksumCryptoHash.isSupported(ChecksumCryptoHash.CRC32C);
+        }
+
+        @Override
+        public CryptoHash create(final CryptoHash chain) {
+            return ChecksumCryptoHash.createCRC32C(chain);
+        }
+    },
+    ADLER32('a', "adler32", "adler32") {
+        @Override
+        public CryptoHash create(final CryptoHash chain) {
+            return ChecksumCryptoHash.createAdler32(chain);
+        }
+    },
+    MD5('m', "md5", "md5", "MD5") {
+        @Override
+        public CryptoHash create(final CryptoHash chain) {
+            return DigestCryptoHash.createMD5(chain);
+        }
+    },
+    SHA1('s', "sha1", "sha1", "SHA-1") {
+        @Override
+        public CryptoHash create(final CryptoHash chain) {
+            return DigestCryptoHash.createSHA1(chain);
+        }
+    },
+    SHA1_TREE('t', "sha1-tree", "sha1 tree hash (1MB leaves, hashed in parallel)") {
+        @Override
+        public CryptoHash create(final CryptoHash chain) {
+            return TreeCryptoHash.createSHA1(chain);
+        }
+    },
+    SHA224('2', "sha224", "sha224", "SHA-224") {
+        @Override
+        public CryptoHash create(final CryptoHash chain) {
+            return DigestCryptoHash.createSHA224(chain);
+        }
+    },
+    SHA256('S', "sha256", "sha256", "SHA-256") {
+        @Override
+        public CryptoHash create(final CryptoHash chain) {
+            return DigestCryptoHash.createSHA256(chain);
+        }
+    },
+    SHA384('3', "sha384", "sha384", "SHA-384") {
+        @Override
+        public CryptoHash create(final CryptoHash chain) {
+            return DigestCryptoHash.createSHA384(chain);
+        }
+    },
+    SHA512('L', "sha512", "sha512", "SHA-512") {
+        @Override
+        public CryptoHash create(final CryptoHash chain) {
+            return DigestCryptoHash.createSHA512(chain);
+        }
+    },
+    SHA512_256('W', "sha512-256", "sha512/256", "SHA-512/256") {
+        @Override
+        public CryptoHash create(final CryptoHash chain) {
+            return DigestCryptoHash.createSHA512_256(chain);
+        }
+    },
+    SHA3_256('K', "sha3-256", "sha3-256", "SHA3-256") {
+        @Override
+        public CryptoHash create(final CryptoHash chain) {
+            return DigestCryptoHash.createSHA3_256(chain);
+        }
+    },
+    SHA3_512('J', "sha3-512", "sha3-512", "SHA3-512") {
+        @Override
+        public CryptoHash create(final CryptoHash chain) {
+            return DigestCryptoHash.createSHA3_512(chain);
+        }
+    },
+    XXH64('x', "xxh64", "xxHash64 (fast, non-cryptographic)") {
+        @Override
+        public CryptoHash create(final CryptoHash chain) {
+            return new XXHash64CryptoHash(chain);
+        }
+    },
+    XXH3('h', "xxh3", "XXH3 64 bit (fast, non-cryptographic)") {
+        @Override
+        public CryptoHash create(final CryptoHash chain) {
+            return new XXH3CryptoHash(chain);
+        }
+    },
+    MURMUR3('u', "murmur3-128", "MurmurHash3 x64 128 bit (fast, non-cryptographic)") {
+        @Override
+        public CryptoHash create(final CryptoHash chain) {
+            return new Murmur3CryptoHash(chain);
+        }
+    };
+
+    private final char   code;
+    private final String name;
+    private final String description;
+    private final String digest;
+
+    private BuiltInCryptoHashFactory(final char code, final String name, final String description) {
+        this(code, name, description, null);
+    }
+
+    private BuiltInCryptoHashFactory(final char code, final String name, final String description, final String digest) {
+        this.code = code;
+        this.name = name;
+        this.description = description;
+        this.digest = digest;
+    }
+
+    /**
+     * Returns the {@link java.security.MessageDigest} algorithm behind this
+     * hash, if any.
+     *
+     * @return digest algorithm or null
+     */
+    public String getDigest() {
+        return this.digest;
+    }
+
+    @Override
+    public char getCode() {
+        return this.code;
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public String getDescription() {
+        return this.description;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return null == this.digest || DigestCryptoHash.isSupported(this.digest);
+    }
+}
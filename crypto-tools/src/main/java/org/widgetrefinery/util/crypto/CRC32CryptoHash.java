@@ -17,8 +17,7 @@
 
 package org.widgetrefinery.util.crypto;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.zip.CRC32;
 
 /**
@@ -43,34 +42,142 @@ public class CRC32CryptoHash extends AbstractCryptoHash {
     }
 
     @Override
-    protected byte[] computeHash(final InputStream input) throws IOException {
-        CRC32 crc32 = new CRC32();
-        byte[] data = new byte[BUFFER_SIZE];
-        for (int bytesRead = input.read(data); 0 < bytesRead; bytesRead = input.read(data)) {
-            crc32.update(data, 0, bytesRead);
+    protected HashSession newSession() {
+        return new CRC32Session();
+    }
+
+    /**
+     * Works out the CRC32 of two messages joined together from the CRC32 of
+     * each and the length of the second, as zlib's crc32_combine() does. The
+     * first CRC is run through length zero bytes by repeatedly squaring the
+     * matrix that appends a single zero bit.
+     *
+     * @param crc1    CRC32 of the first message
+     * @param crc2    CRC32 of the second message
+     * @param length2 length of the second message
+     * @return CRC32 of both messages
+     */
+    protected static long combine(final long crc1, final long crc2, final long length2) {
+        if (0 >= length2) {
+            return crc1;
+        }
+        long[] even = new long[32];
+        long[] odd = new long[32];
+        odd[0] = 0xEDB88320L;
+        for (int ndx = 1; ndx < odd.length; ndx++) {
+            odd[ndx] = 1L << (ndx - 1);
         }
-        return toByteArray((int) crc32.getValue());
+        square(even, odd);
+        square(odd, even);
+        long crc = crc1;
+        long remaining = length2;
+        while (0 != remaining) {
+            square(even, odd);
+            if (0 != (remaining & 1)) {
+                crc = times(even, crc);
+            }
+            remaining >>>= 1;
+            if (0 == remaining) {
+                break;
+            }
+            square(odd, even);
+            if (0 != (remaining & 1)) {
+                crc = times(odd, crc);
+            }
+            remaining >>>= 1;
+        }
+        return crc ^ crc2;
     }
 
-    @Override
-    protected byte[] computeHash(final byte[] input) {
-        CRC32 crc32 = new CRC32();
-        crc32.update(input);
-        return toByteArray((int) crc32.getValue());
+    private static long times(final long[] matrix, final long vector) {
+        long sum = 0;
+        long remaining = vector;
+        for (int ndx = 0; 0 != remaining; ndx++, remaining >>>= 1) {
+            if (0 != (remaining & 1)) {
+                sum ^= matrix[ndx];
+            }
+        }
+        return sum;
+    }
+
+    private static void square(final long[] result, final long[] matrix) {
+        for (int ndx = 0; ndx < result.length; ndx++) {
+            result[ndx] = times(matrix, matrix[ndx]);
+        }
     }
 
     /**
-     * Converts the CRC32 result into a byte array.
-     *
-     * @param input CRC32 hash
-     * @return byte array representing the hash
+     * Session backed by {@link java.util.zip.CRC32}. The checksum is written
+     * out as 4 big-endian bytes.
+     * <p/>
+     * CRC32 cannot be seeded, so a restored session hashes the new data from
+     * scratch and combines it with the saved checksum when it is digested.
      */
-    protected byte[] toByteArray(final int input) {
-        return new byte[]{
-                (byte) ((input >> 24) & 0xFF),
-                (byte) ((input >> 16) & 0xFF),
-                (byte) ((input >> 8) & 0xFF),
-                (byte) (input & 0xFF)
-        };
+    protected static class CRC32Session implements ResumableHashSession {
+        private final CRC32   crc32;
+        private       long    base;
+        private       long    length;
+        private       boolean restored;
+
+        public CRC32Session() {
+            this.crc32 = new CRC32();
+        }
+
+        @Override
+        public int getDigestLength() {
+            return 4;
+        }
+
+        @Override
+        public void update(final byte[] input, final int offset, final int length) {
+            this.crc32.update(input, offset, length);
+            this.length += length;
+        }
+
+        @Override
+        public void update(final ByteBuffer input) {
+            this.length += input.remaining();
+            this.crc32.update(input);
+        }
+
+        @Override
+        public int digestInto(final byte[] output, final int offset) {
+            checkOutput(output, offset, 4);
+            int value = (int) getValue();
+            output[offset] = (byte) (value >> 24);
+            output[offset + 1] = (byte) (value >> 16);
+            output[offset + 2] = (byte) (value >> 8);
+            output[offset + 3] = (byte) value;
+            reset();
+            return 4;
+        }
+
+        @Override
+        public void reset() {
+            this.crc32.reset();
+            this.base = 0;
+            this.length = 0;
+            this.restored = false;
+        }
+
+        @Override
+        public byte[] saveState() {
+            int value = (int) getValue();
+            return new byte[]{(byte) (value >> 24), (byte) (value >> 16), (byte) (value >> 8), (byte) value};
+        }
+
+        @Override
+        public void restoreState(final byte[] state) throws IllegalArgumentException {
+            if (null == state || 4 != state.length) {
+                throw new IllegalArgumentException("invalid CRC32 state");
+            }
+            reset();
+            this.base = (0xFFL & state[0]) << 24 | (0xFFL & state[1]) << 16 | (0xFFL & state[2]) << 8 | (0xFFL & state[3]);
+            this.restored = true;
+        }
+
+        private long getValue() {
+            return this.restored ? combine(this.base, this.crc32.getValue(), this.length) : this.crc32.getValue();
+        }
     }
 }
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * Utility class for computing hashes with any {@link java.util.zip.Checksum}
+ * implementation. The checksum is written out as 4 big-endian bytes.
+ * Implementations are looked up by class so that checksums missing from
+ * older JVMs, such as {@code java.util.zip.CRC32C}, can be detected at
+ * runtime instead of failing to load.
+ *
+ * @see java.util.zip.Checksum
+ * @since 10/17/26 3:30 PM
+ */
+public class ChecksumCryptoHash extends AbstractCryptoHash {
+    /**
+     * Class name of the CRC32C checksum added in Java 9.
+     */
+    public static final String CRC32C = "java.util.zip.CRC32C";
+
+    /**
+     * Checksum.update(ByteBuffer), bound once if the JVM has it (Java 9 and
+     * later), or null.
+     */
+    private static final MethodHandle UPDATE_BUFFER = findUpdateBuffer();
+
+    private final Constructor<? extends Checksum> constructor;
+
+    /**
+     * Creates an instance that will hash the result from the given CryptoHash.
+     *
+     * @param chain upstream CryptoHash, may be null
+     * @param type  checksum implementation, must have a public no-arg constructor
+     * @throws IllegalArgumentException if the checksum cannot be instantiated
+     */
+    public ChecksumCryptoHash(final CryptoHash chain, final Class<? extends Checksum> type) throws IllegalArgumentException {
+        super(chain);
+        try {
+            this.constructor = type.getConstructor();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(type.getName() + " has no public no-arg constructor", e);
+        }
+    }
+
+    @Override
+    protected String getAlgorithmName() {
+        return this.constructor.getDeclaringClass().getSimpleName();
+    }
+
+    private static MethodHandle findUpdateBuffer() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(Checksum.class, "update", MethodType.methodType(void.class, ByteBuffer.class));
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether the given checksum class is available in this JVM.
+     *
+     * @param className fully qualified class name
+     * @return true if the class can be loaded and is a Checksum
+     */
+    public static boolean isSupported(final String className) {
+        try {
+            return Checksum.class.isAssignableFrom(Class.forName(className));
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Creates a new instance that computes CRC32C checksums. The JVM
+     * implements CRC32C with dedicated CPU instructions where available.
+     *
+     * @param chain upstream CryptoHash, may be null
+     * @return CRC32C instance
+     * @throws UnsupportedOperationException if the JVM has no CRC32C implementation
+     */
+    public static ChecksumCryptoHash createCRC32C(final CryptoHash chain) throws UnsupportedOperationException {
+        Class<?> type;
+        try {
+            type = Class.forName(CRC32C);
+        } catch (ClassNotFoundException e) {
+            throw new UnsupportedOperationException("CRC32C requires Java 9 or later", e);
+        }
+        return new ChecksumCryptoHash(chain, type.asSubclass(Checksum.class));
+    }
+
+    /**
+     * Creates a new instance that computes Adler32 checksums.
+     *
+     * @param chain upstream CryptoHash, may be null
+     * @return Adler32 instance
+     */
+    public static ChecksumCryptoHash createAdler32(final CryptoHash chain) {
+        return new ChecksumCryptoHash(chain, Adler32.class);
+    }
+
+    @Override
+    protected HashSession newSession() {
+        try {
+            return new ChecksumSession(this.constructor.newInstance());
+        } catch (Exception e) {
+            throw new RuntimeException("failed to create " + this.constructor.getDeclaringClass().getName(), e);
+        }
+    }
+
+    /**
+     * Session backed by a {@link java.util.zip.Checksum}.
+     */
+    protected static class ChecksumSession implements HashSession {
+        private final Checksum checksum;
+        private       byte[]   scratch;
+
+        public ChecksumSession(final Checksum checksum) {
+            this.checksum = checksum;
+        }
+
+        @Override
+        public int getDigestLength() {
+            return 4;
+        }
+
+        @Override
+        public void update(final byte[] input, final int offset, final int length) {
+            this.checksum.update(input, offset, length);
+        }
+
+        /**
+         * Feeds the buffer straight to the checksum, so direct and memory
+         * mapped buffers take its intrinsic path rather than being copied
+         * into a heap array first. CRC32 and Adler32 have taken ByteBuffers
+         * since Java 8. The Checksum interface only does from Java 9 on, so
+         * other checksums, such as CRC32C, go through a method handle bound
+         * at class load, or a scratch array on Java 8.
+         *
+         * @param input data to hash
+         */
+        @Override
+        public void update(final ByteBuffer input) {
+            if (this.checksum instanceof CRC32) {
+                ((CRC32) this.checksum).update(input);
+            } else if (this.checksum instanceof Adler32) {
+                ((Adler32) this.checksum).update(input);
+            } else if (null != UPDATE_BUFFER) {
+                try {
+                    UPDATE_BUFFER.invokeExact(this.checksum, input);
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new RuntimeException("failed to update " + this.checksum.getClass().getName(), e);
+                }
+            } else {
+                if (null == this.scratch) {
+                    this.scratch = new byte[COPY_SIZE];
+                }
+                updateFromArray(this, input, this.scratch);
+            }
+        }
+
+        @Override
+        public int digestInto(final byte[] output, final int offset) {
+            checkOutput(output, offset, 4);
+            int value = (int) this.checksum.getValue();
+            output[offset] = (byte) (value >> 24);
+            output[offset + 1] = (byte) (value >> 16);
+            output[offset + 2] = (byte) (value >> 8);
+            output[offset + 3] = (byte) value;
+            this.checksum.reset();
+            return 4;
+        }
+
+        @Override
+        public void reset() {
+            this.checksum.reset();
+        }
+    }
+}
@@ -20,12 +20,31 @@ package org.widgetrefinery.util.crypto;
 import org.widgetrefinery.util.BadUserInputException;
 import org.widgetrefinery.util.StringUtil;
 import org.widgetrefinery.util.cl.*;
+import org.widgetrefinery.util.crypto.output.*;
 import org.widgetrefinery.util.lang.UtilTranslationKey;
 
-import java.io.FileInputStream;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.Provider;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Provides a command-line interface to the hashing functions. This was built
@@ -34,19 +53,147 @@ import java.util.List;
  * @since 3/1/12 10:49 PM
  */
 public class Cli extends AbstractCli {
+    private final InputStream           stdin;
+    private final PrintStream           stdout;
+    private final PrintStream           stderr;
+    private final Path                  workingDirectory;
+    private final boolean               shared;
+    private final Map<Path, String>     rootNames;
+    private       OutputWriter          output;
+    private       ResultFormat          resultFormat;
+    private       BinaryManifest.Writer manifestWriter;
+
+    public Cli() {
+        this(System.in, System.out, System.err, null, false);
+    }
+
+    /**
+     * Creates a Cli that serves a single request inside a long-running
+     * process, such as {@link CliDaemon}.
+     *
+     * @param stdin            request input
+     * @param stdout           request output
+     * @param stderr           request errors
+     * @param workingDirectory directory that relative paths are resolved against, or null for the current directory
+     * @param shared           true if other requests share this process, in which case process-wide settings cannot be changed
+     */
+    public Cli(final InputStream stdin, final PrintStream stdout, final PrintStream stderr, final Path workingDirectory, final boolean shared) {
+        this.stdin = stdin;
+        this.stdout = stdout;
+        this.stderr = stderr;
+        this.workingDirectory = workingDirectory;
+        this.shared = shared;
+        this.rootNames = new HashMap<Path, String>();
+    }
+
     public static void main(String[] args) throws IOException {
         new Cli().start(args);
     }
 
+    /**
+     * Runs a single command line, returning the exit status instead of
+     * exiting.
+     *
+     * @param args command line arguments
+     * @return exit status, 0 on success
+     */
+    public int execute(final String[] args) {
+        return run(args, this.stderr);
+    }
+
     @Override
     protected void processCommandLine(final String[] args) throws IllegalArgumentException, IOException, BadUserInputException {
         CLParser clParser = new CLParser(args,
                                          new Argument("e|encoding",
-                                                      new ListArgumentType(new StringArgumentType("[cms]+")),
-                                                      "Provide a sequence of encodings to apply. Possible values are:\n\tc: crc32\n\tm: md5\n\ts: sha1"),
+                                                      new ListArgumentType(new StringArgumentType()),
+                                                      getEncodingHelp()),
                                          new Argument("s|string",
                                                       new ListArgumentType(new StringArgumentType()),
                                                       "Encodes the given string."),
+                                         new Argument("r|recursive",
+                                                      new BooleanArgumentType(),
+                                                      "Hashes every file under the directories given on the command line."),
+                                         new Argument("t|threads",
+                                                      new IntegerArgumentType(1, 1024),
+                                                      "Number of worker threads for recursive hashing, --duplicates, and --check. Defaults to the number of processors."),
+                                         new Argument("virtual-threads",
+                                                      new BooleanArgumentType(),
+                                                      "Computes each encoding on a virtual thread instead of a pooled worker thread, which suits files on slow or network storage. Requires Java 21 or later."),
+                                         new Argument("sort",
+                                                      new BooleanArgumentType(),
+                                                      "Outputs recursive results in sorted order instead of as they complete."),
+                                         new Argument("symlinks",
+                                                      new StringArgumentType("skip|files|follow"),
+                                                      "How to treat symbolic links found while recursing. Possible values are:\n\tskip: ignore them (default)\n\tfiles: hash links to files but not directories\n\tfollow: follow all links"),
+                                         new Argument("include",
+                                                      new ListArgumentType(new StringArgumentType()),
+                                                      "Only hash files matching the given glob while recursing. Globs with a '/' match the relative path, other globs match the file name."),
+                                         new Argument("exclude",
+                                                      new ListArgumentType(new StringArgumentType()),
+                                                      "Skip files and directories matching the given glob while recursing."),
+                                         new Argument("max-depth",
+                                                      new IntegerArgumentType(0, Integer.MAX_VALUE),
+                                                      "Max number of directory levels to recurse into."),
+                                         new Argument("duplicates",
+                                                      new BooleanArgumentType(),
+                                                      "Lists groups of identical files among the given files and directories instead of hashing each one. Files are grouped by size, then by a hash of their first and last 4KB, and only files that still match are fully hashed with the given encodings. Directories are searched recursively and the walk options apply."),
+                                         new Argument("check",
+                                                      new StringArgumentType(),
+                                                      "Rehashes the files listed in the given manifest, or standard in if -, and reports each one as OK, FAILED, or MISSING. Manifests in the default format and in the sum format are accepted; the encodings must be given with -e in the order they were written, and --base64 must match how they were written."),
+                                         new Argument("fail-fast",
+                                                      new BooleanArgumentType(),
+                                                      "Stops --check at the first file that is not OK."),
+                                         new Argument("check-budget",
+                                                      new IntegerArgumentType(1, 1048576),
+                                                      "Number of megabytes of files --check may be reading at once. Defaults to 256."),
+                                         new Argument("chunks",
+                                                      new StringArgumentType("[0-9]{1,7}(,[0-9]{1,7},[0-9]{1,7})?"),
+                                                      "Splits each file, or standard in, into content-defined chunks and hashes each chunk instead of the whole input, so inserting data only changes the hashes of the chunks around it. The value is the average chunk size in kilobytes, or min,average,max; min and max default to a quarter and four times the average. Each chunk is written as 'name@offset+length', and the chunk list is streamed so inputs of any size use the same memory."),
+                                         new Argument("manifest",
+                                                      new StringArgumentType(),
+                                                      "Writes the file results to the given binary manifest instead of standard out. Binary manifests are memory mapped when read, so --check, --export, and --lookup start instantly on them and use little memory however many files they list."),
+                                         new Argument("import",
+                                                      new StringArgumentType(),
+                                                      "Converts the given text manifest, or standard in if -, into the binary manifest given by --manifest instead of hashing inputs. The encodings must be given with -e as for --check."),
+                                         new Argument("export",
+                                                      new StringArgumentType(),
+                                                      "Writes the records of the given binary manifest to standard out in the selected format."),
+                                         new Argument("lookup",
+                                                      new StringArgumentType(),
+                                                      "Looks up the hashes or paths given on the command line in the given binary manifest. Hashes are matched against the first encoding of the manifest."),
+                                         new Argument("daemon",
+                                                      new BooleanArgumentType(),
+                                                      "Runs as a daemon that hashes command lines sent by DaemonClient on a warm JVM. It listens on the loopback interface and writes its port and an access token to ~/.widgetrefinery/crypto-daemon.properties, readable only by the current user. --calibrate, --block-size, and --read-ahead affect the whole process, so they are taken from the daemon's own command line, and its --threads sets how many requests are served at once."),
+                                         new Argument("port",
+                                                      new IntegerArgumentType(0, 65535),
+                                                      "Port for --daemon to listen on. Defaults to any free port."),
+                                         new Argument("cache",
+                                                      new StringArgumentType(),
+                                                      "Caches file hashes in the given file. Files whose size, modification time, and inode have not changed since the last run are not read again."),
+                                         new Argument("cache-size",
+                                                      new IntegerArgumentType(1, Integer.MAX_VALUE),
+                                                      "Max size of the hash cache in megabytes. Defaults to 64."),
+                                         new Argument("resume",
+                                                      new BooleanArgumentType(),
+                                                      "Saves where each hash left off in the --cache file, so files that have only been appended to since the last run, such as logs, are only hashed from that point on. A file counts as appended to if it is the same inode, is no shorter, and the 4KB before that point are unchanged. Only CRC32, MD5, SHA-1, and SHA-2 encodings can be resumed, and other encodings rehash in full."),
+                                         new Argument("block-size",
+                                                      new StringArgumentType("auto|[0-9]{1,7}"),
+                                                      "Number of kilobytes to request per read. Defaults to 1024 for regular files and 64 for pipes and stdin. A value of auto measures reads on this machine and uses the smallest block size for regular files that is within 5% of the fastest."),
+                                         new Argument("read-ahead",
+                                                      new IntegerArgumentType(0, 64),
+                                                      "Number of blocks to read ahead of the hash on a separate thread. 0 reads and hashes on the same thread. Defaults to 4."),
+                                         new Argument("calibrate",
+                                                      new BooleanArgumentType(),
+                                                      "Benchmarks every installed provider of each digest and uses the fastest. The results are saved to ~/.widgetrefinery/digest-providers.properties and reused by later runs until the JVM or its providers change."),
+                                         new Argument("format",
+                                                      new StringArgumentType("prefix|sum|jsonl|binary"),
+                                                      "How to write the results. Possible values are:\n\tprefix: one 'source|name: hash hash' line per input (default)\n\tsum: one 'hash  name' line per hash, which sha1sum -c can check\n\tjsonl: one JSON object per input\n\tbinary: length-prefixed records with raw hashes"),
+                                         new Argument("base64",
+                                                      new BooleanArgumentType(),
+                                                      "Writes hashes in base64 instead of hexadecimal."),
+                                         new Argument("list",
+                                                      new BooleanArgumentType(),
+                                                      "Lists the available encodings along with their measured throughput."),
                                          new Argument("h|help",
                                                       new BooleanArgumentType(),
                                                       "Displays this help message."),
@@ -55,56 +202,638 @@ public class Cli extends AbstractCli {
                                                       "Displays the GPLv3 license that this software is released under."));
 
         if (!clParser.hasArguments() || Boolean.TRUE == clParser.getValue("help")) {
-            System.err.println(clParser.getHelpMessage(Cli.class));
-            System.exit(0);
+            this.stderr.println(clParser.getHelpMessage(Cli.class));
+            return;
         }
         if (Boolean.TRUE == clParser.getValue("license")) {
-            clParser.getLicense(System.out);
-            System.exit(0);
+            clParser.getLicense(this.stdout);
+            return;
+        }
+        if (Boolean.TRUE == clParser.getValue("list")) {
+            listEncodings();
+            return;
         }
 
-        List<String> encodings = clParser.getValue("encoding");
+        if (this.shared) {
+            for (String name : new String[]{"calibrate", "block-size", "read-ahead", "daemon"}) {
+                if (null != clParser.getValue(name)) {
+                    throw new IOException("--" + name + " cannot be used in a daemon request");
+                }
+            }
+        } else {
+            configureDigestProviders(Boolean.TRUE == clParser.getValue("calibrate"));
+            configureIO(clParser.<String>getValue("block-size"), clParser.<Integer>getValue("read-ahead"));
+            if (isLongRunning(clParser)) {
+                HashMetrics.getDefault().register();
+            }
+        }
+        if (Boolean.TRUE == clParser.getValue("daemon")) {
+            Integer port = clParser.getValue("port");
+            new CliDaemon(null != port ? port : 0, getThreadCount(clParser), CliDaemon.getDefaultStateFile()).run();
+            return;
+        }
+        List<String> encodings = parseEncodings(clParser.<List<String>>getValue("encoding"));
         MultiCryptoHash multiCryptoHash = buildMultiCryptoHash(encodings);
-        if (null != multiCryptoHash) {
-            boolean processStdin = true;
-            if (!clParser.getLeftovers().isEmpty()) {
-                for (String filename : clParser.getLeftovers()) {
-                    byte[][] results = multiCryptoHash.getHashes(new FileInputStream(filename));
-                    outputResults("file|" + filename, results);
+        this.resultFormat = buildResultFormat(clParser, encodings);
+        this.output = System.out == this.stdout ? OutputWriter.forStdout() : new OutputWriter(Channels.newChannel(this.stdout));
+        ExecutorService virtualThreads = null;
+        if (null != multiCryptoHash && Boolean.TRUE == clParser.getValue("virtual-threads")) {
+            try {
+                virtualThreads = MultiCryptoHash.createVirtualThreadExecutor();
+            } catch (UnsupportedOperationException e) {
+                throw new IOException("--virtual-threads cannot be used: " + e.getMessage());
+            }
+            multiCryptoHash.setExecutor(virtualThreads);
+        }
+        HashCache hashCache = null;
+        try {
+            if (null != clParser.getValue("export") || null != clParser.getValue("lookup")) {
+                processBinaryManifest(clParser);
+            } else if (null != multiCryptoHash && null != clParser.getValue("chunks")) {
+                processChunks(clParser, encodings);
+            } else if (null != multiCryptoHash) {
+                hashCache = buildHashCache(clParser, multiCryptoHash, encodings);
+                String manifest = clParser.getValue("manifest");
+                if (StringUtil.isNotBlank(manifest)) {
+                    this.manifestWriter = new BinaryManifest.Writer(encodings.toArray(new String[encodings.size()]), multiCryptoHash.getResultLengths());
+                }
+                if (null != clParser.getValue("import")) {
+                    importManifest(clParser, multiCryptoHash);
+                } else {
+                    processInputs(clParser, multiCryptoHash);
+                }
+                if (null != this.manifestWriter) {
+                    this.manifestWriter.write(resolve(manifest));
                 }
-                processStdin = false;
             }
-            List<String> stringValues = clParser.getValue("string");
-            if (null != stringValues && !stringValues.isEmpty()) {
-                for (String stringValue : stringValues) {
-                    byte[][] results = multiCryptoHash.getHashes(stringValue);
-                    outputResults("input|" + stringValue, results);
+        } finally {
+            try {
+                this.output.flush();
+            } finally {
+                if (null != hashCache) {
+                    hashCache.close();
+                }
+                if (null != virtualThreads) {
+                    virtualThreads.shutdown();
                 }
-                processStdin = false;
+                IOStrategy.getDefault().logStats();
             }
-            if (processStdin) {
-                byte[][] results = multiCryptoHash.getHashes(System.in);
-                outputResults("stdin", results);
+        }
+    }
+
+    /**
+     * Registering the metrics bean costs a few hundred milliseconds, which is
+     * only worth paying for jobs that run long enough to be monitored.
+     */
+    protected boolean isLongRunning(final CLParser clParser) {
+        if (Boolean.TRUE == clParser.getValue("daemon") || null != clParser.getValue("check")) {
+            return true;
+        }
+        return !clParser.getLeftovers().isEmpty() && (Boolean.TRUE == clParser.getValue("recursive") || Boolean.TRUE == clParser.getValue("duplicates"));
+    }
+
+    protected void processInputs(final CLParser clParser, final MultiCryptoHash multiCryptoHash) throws IOException {
+        if (null != clParser.getValue("check")) {
+            processCheck(clParser, multiCryptoHash);
+            return;
+        }
+        boolean processStdin = true;
+        if (!clParser.getLeftovers().isEmpty() && Boolean.TRUE == clParser.getValue("duplicates")) {
+            processDuplicates(clParser, multiCryptoHash);
+            processStdin = false;
+        } else if (!clParser.getLeftovers().isEmpty() && Boolean.TRUE == clParser.getValue("recursive")) {
+            processRecursive(clParser, multiCryptoHash);
+            processStdin = false;
+        } else if (!clParser.getLeftovers().isEmpty()) {
+            for (String filename : clParser.getLeftovers()) {
+                byte[][] results = multiCryptoHash.getHashes(resolve(filename));
+                outputResults(ResultFormat.SOURCE_FILE, filename, results);
             }
+            processStdin = false;
+        }
+        List<String> stringValues = clParser.getValue("string");
+        if (null != stringValues && 1 == stringValues.size()) {
+            outputResults(ResultFormat.SOURCE_INPUT, stringValues.get(0), multiCryptoHash.getHashes(stringValues.get(0)));
+            processStdin = false;
+        } else if (null != stringValues && !stringValues.isEmpty()) {
+            processStrings(stringValues, multiCryptoHash);
+            processStdin = false;
+        }
+        if (processStdin) {
+            byte[][] results = multiCryptoHash.getHashes(this.stdin);
+            outputResults(ResultFormat.SOURCE_STDIN, null, results);
         }
     }
 
-    protected MultiCryptoHash buildMultiCryptoHash(final List<String> encodings) throws BadUserInputException {
-        List<CryptoHash> cryptoHashes = new ArrayList<CryptoHash>();
-        if (null != encodings && !encodings.isEmpty()) {
+    /**
+     * Splits each input into content-defined chunks and writes the hashes of
+     * each chunk as it is found.
+     *
+     * @param clParser  parsed command line
+     * @param encodings encodings to hash each chunk with
+     * @throws IOException if an input could not be read or the results could not be written
+     */
+    protected void processChunks(final CLParser clParser, final List<String> encodings) throws IOException {
+        ContentChunker chunker = buildContentChunker(clParser.<String>getValue("chunks"), encodings);
+        if (clParser.getLeftovers().isEmpty()) {
+            chunker.chunk(this.stdin, createChunkHandler("-"));
+        } else {
+            for (String filename : clParser.getLeftovers()) {
+                chunker.chunk(resolve(filename), createChunkHandler(filename));
+            }
+        }
+    }
+
+    protected ContentChunker buildContentChunker(final String sizes, final List<String> encodings) throws BadUserInputException {
+        String[] tokens = sizes.split(",");
+        long averageSize = Long.parseLong(tokens[tokens.length > 1 ? 1 : 0]) * 1024;
+        long minSize = tokens.length > 1 ? Long.parseLong(tokens[0]) * 1024 : averageSize / 4;
+        long maxSize = tokens.length > 1 ? Long.parseLong(tokens[2]) * 1024 : averageSize * 4;
+        if (0 >= minSize || minSize >= averageSize || averageSize >= maxSize || Integer.MAX_VALUE / 2 < maxSize) {
+            throw new BadUserInputException(UtilTranslationKey.CL_ERROR_BAD_SWITCH_VALUE, "chunks", sizes);
+        }
+        CryptoHash[] cryptoHashes = new CryptoHash[encodings.size()];
+        for (int ndx = 0; ndx < cryptoHashes.length; ndx++) {
+            cryptoHashes[ndx] = buildCryptoHash(encodings.get(ndx));
+        }
+        return new ContentChunker((int) minSize, (int) averageSize, (int) maxSize, cryptoHashes);
+    }
+
+    protected ContentChunker.ChunkHandler createChunkHandler(final String name) {
+        return new ContentChunker.ChunkHandler() {
+            @Override
+            public void onChunk(final long offset, final int length, final byte[][] digests) throws IOException {
+                outputResults(ResultFormat.SOURCE_CHUNK, name + '@' + offset + '+' + length, digests);
+            }
+        };
+    }
+
+    /**
+     * Hashes the given strings as one batch. They are encoded with the
+     * platform charset, like {@link CryptoHash#getHash(String)} does.
+     *
+     * @param stringValues    strings to hash
+     * @param multiCryptoHash hashes to compute
+     * @throws IOException if the results could not be written
+     */
+    protected void processStrings(final List<String> stringValues, final MultiCryptoHash multiCryptoHash) throws IOException {
+        int[] lengths = multiCryptoHash.getResultLengths();
+        int stride = multiCryptoHash.getStride();
+        byte[] hashes = multiCryptoHash.getHashes(stringValues.toArray(new CharSequence[stringValues.size()]), Charset.defaultCharset());
+        byte[][] results = new byte[lengths.length][];
+        for (int ndx = 0; ndx < stringValues.size(); ndx++) {
+            int position = ndx * stride;
+            for (int result = 0; result < lengths.length; result++) {
+                results[result] = Arrays.copyOfRange(hashes, position, position + lengths[result]);
+                position += lengths[result];
+            }
+            outputResults(ResultFormat.SOURCE_INPUT, stringValues.get(ndx), results);
+        }
+    }
+
+    protected HashCache buildHashCache(final CLParser clParser, final MultiCryptoHash multiCryptoHash, final List<String> encodings) throws IOException {
+        String cacheFile = clParser.getValue("cache");
+        if (StringUtil.isBlank(cacheFile)) {
+            if (Boolean.TRUE == clParser.getValue("resume")) {
+                throw new IOException("--resume requires --cache");
+            }
+            return null;
+        }
+        Integer cacheSize = clParser.getValue("cache-size");
+        HashCache hashCache = new HashCache(resolve(cacheFile), (null != cacheSize ? cacheSize : 64) * 1024L * 1024L);
+        List<String> cacheKeys = new ArrayList<String>();
+        for (String encoding : encodings) {
+            if (StringUtil.isNotBlank(encoding)) {
+                cacheKeys.add(encoding);
+            }
+        }
+        multiCryptoHash.setCache(hashCache, cacheKeys.toArray(new String[cacheKeys.size()]));
+        multiCryptoHash.setResumable(Boolean.TRUE == clParser.getValue("resume"));
+        return hashCache;
+    }
+
+    protected void processRecursive(final CLParser clParser, final MultiCryptoHash multiCryptoHash) throws IOException {
+        DirectoryHasher directoryHasher = new DirectoryHasher(multiCryptoHash, getThreadCount(clParser));
+        configureWalker(clParser, directoryHasher);
+
+        List<Path> roots = getRoots(clParser);
+        final AtomicInteger failures = new AtomicInteger();
+        final AtomicReference<IOException> outputError = new AtomicReference<IOException>();
+        directoryHasher.hash(roots, new DirectoryHasher.ResultHandler() {
+            @Override
+            public void onResult(final Path path, final byte[][] results) {
+                if (null == outputError.get()) {
+                    try {
+                        outputResults(ResultFormat.SOURCE_FILE, displayName(path), results);
+                    } catch (IOException e) {
+                        outputError.set(e);
+                    }
+                }
+            }
+
+            @Override
+            public void onError(final Path path, final Exception error) {
+                failures.incrementAndGet();
+                if (null == outputError.get()) {
+                    try {
+                        printError("file|" + displayName(path) + ": " + error);
+                    } catch (IOException e) {
+                        outputError.set(e);
+                    }
+                }
+            }
+        });
+        if (null != outputError.get()) {
+            throw outputError.get();
+        }
+        if (0 < failures.get()) {
+            throw new IOException(failures.get() + " file(s) could not be hashed");
+        }
+    }
+
+    /**
+     * Lists the groups of identical files under the given roots. The files
+     * of each group are written one after another in the selected result
+     * format, and a summary of the bytes read goes to stderr.
+     *
+     * @param clParser        parsed command line
+     * @param multiCryptoHash hashes used to confirm duplicates
+     * @throws IOException if some files could not be read or the results could not be written
+     */
+    protected void processDuplicates(final CLParser clParser, final MultiCryptoHash multiCryptoHash) throws IOException {
+        DuplicateFinder duplicateFinder = new DuplicateFinder(multiCryptoHash, getThreadCount(clParser));
+        configureWalker(clParser, duplicateFinder.getWalker());
+
+        final AtomicInteger failures = new AtomicInteger();
+        final AtomicReference<IOException> outputError = new AtomicReference<IOException>();
+        duplicateFinder.find(getRoots(clParser), new DuplicateFinder.DuplicateHandler() {
+            @Override
+            public void onGroup(final List<Path> paths, final byte[][] results) {
+                if (null == outputError.get()) {
+                    try {
+                        for (Path path : paths) {
+                            outputResults(ResultFormat.SOURCE_FILE, displayName(path), results);
+                        }
+                    } catch (IOException e) {
+                        outputError.set(e);
+                    }
+                }
+            }
+
+            @Override
+            public void onError(final Path path, final Exception error) {
+                failures.incrementAndGet();
+                if (null == outputError.get()) {
+                    try {
+                        printError("file|" + displayName(path) + ": " + error);
+                    } catch (IOException e) {
+                        outputError.set(e);
+                    }
+                }
+            }
+        });
+        if (null != outputError.get()) {
+            throw outputError.get();
+        }
+        printError(duplicateFinder.getDuplicateCount() + " duplicate file(s) in " + duplicateFinder.getGroupCount() + " group(s) out of " +
+                  duplicateFinder.getFileCount() + " file(s); read " + duplicateFinder.getBytesRead() + " of " + duplicateFinder.getTotalBytes() +
+                  " byte(s), skipped " + duplicateFinder.getBytesSkipped());
+        if (0 < failures.get()) {
+            throw new IOException(failures.get() + " file(s) could not be hashed");
+        }
+    }
+
+    /**
+     * Verifies the manifest given by --check. A line is written for each
+     * file as it finishes, in the style of sha1sum -c, and a summary goes to
+     * stderr.
+     *
+     * @param clParser        parsed command line
+     * @param multiCryptoHash hashes listed in the manifest
+     * @throws IOException if the manifest could not be read, the results could not be written, or any file did not check out
+     */
+    protected void processCheck(final CLParser clParser, final MultiCryptoHash multiCryptoHash) throws IOException {
+        Integer budget = clParser.getValue("check-budget");
+        ManifestVerifier manifestVerifier = new ManifestVerifier(multiCryptoHash,
+                                                                 getByteEncoder(clParser),
+                                                                 getThreadCount(clParser),
+                                                                 null != budget ? budget * 1024L * 1024L : ManifestVerifier.DEFAULT_BUDGET);
+        manifestVerifier.setFailFast(Boolean.TRUE == clParser.getValue("fail-fast"));
+        manifestVerifier.setBaseDirectory(this.workingDirectory);
+
+        String manifest = clParser.getValue("check");
+        final AtomicReference<IOException> outputError = new AtomicReference<IOException>();
+        ManifestVerifier.Handler handler = new ManifestVerifier.Handler() {
+            @Override
+            public void onResult(final String name, final ManifestVerifier.Status status) {
+                writeLine(name + ": " + status + '\n');
+            }
+
+            @Override
+            public void onError(final String name, final Exception error) {
+                synchronized (outputError) {
+                    if (null == outputError.get()) {
+                        try {
+                            printError("file|" + name + ": " + error);
+                        } catch (IOException e) {
+                            outputError.set(e);
+                        }
+                    }
+                }
+                writeLine(name + ": FAILED open or read\n");
+            }
+
+            private void writeLine(final String line) {
+                synchronized (outputError) {
+                    if (null == outputError.get()) {
+                        try {
+                            Cli.this.output.write(line);
+                        } catch (IOException e) {
+                            outputError.set(e);
+                        }
+                    }
+                }
+            }
+        };
+        if (!"-".equals(manifest) && BinaryManifest.isBinaryManifest(resolve(manifest))) {
+            manifestVerifier.verify(BinaryManifest.open(resolve(manifest)), handler);
+        } else {
+            BufferedReader reader = openManifest(manifest);
+            try {
+                manifestVerifier.verify(reader, handler);
+            } finally {
+                reader.close();
+            }
+        }
+        if (null != outputError.get()) {
+            throw outputError.get();
+        }
+        printError(manifestVerifier.getOkCount() + " OK, " + manifestVerifier.getFailedCount() + " FAILED, " +
+                  manifestVerifier.getMissingCount() + " MISSING, " + manifestVerifier.getErrorCount() + " unreadable" +
+                  (0 < manifestVerifier.getMalformedCount() ? ", " + manifestVerifier.getMalformedCount() + " improperly formatted line(s)" : "") +
+                  (manifestVerifier.isStopped() ? "; stopped early" : ""));
+        long failures = manifestVerifier.getFailedCount() + manifestVerifier.getMissingCount() + manifestVerifier.getErrorCount();
+        if (0 < failures) {
+            throw new IOException(failures + " file(s) did not match the manifest");
+        }
+    }
+
+    /**
+     * Converts the text manifest given by --import into the binary manifest
+     * being written. Entries missing some of the hashes are skipped.
+     *
+     * @param clParser        parsed command line
+     * @param multiCryptoHash hashes listed in the manifest
+     * @throws IOException if the manifest could not be read or --manifest was not given
+     */
+    protected void importManifest(final CLParser clParser, final MultiCryptoHash multiCryptoHash) throws IOException {
+        if (null == this.manifestWriter) {
+            throw new IOException("--import requires --manifest");
+        }
+        BufferedReader reader = openManifest(clParser.<String>getValue("import"));
+        long incomplete = 0;
+        try {
+            ManifestParser parser = new ManifestParser(reader, multiCryptoHash.getResultLengths(), getByteEncoder(clParser));
+            for (ManifestParser.Entry entry = parser.next(); null != entry; entry = parser.next()) {
+                if (entry.isComplete()) {
+                    this.manifestWriter.add(entry.getName(), entry.getResults());
+                } else {
+                    incomplete++;
+                }
+            }
+            if (0 < parser.getMalformedCount() || 0 < incomplete) {
+                printError("skipped " + parser.getMalformedCount() + " improperly formatted line(s) and " + incomplete + " incomplete entry(s)");
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Handles --export and --lookup, which read a binary manifest without
+     * hashing anything.
+     *
+     * @param clParser parsed command line
+     * @throws IOException if the manifest could not be read or the results could not be written
+     */
+    protected void processBinaryManifest(final CLParser clParser) throws IOException {
+        String export = clParser.getValue("export");
+        BinaryManifest manifest = BinaryManifest.open(resolve(null != export ? export : clParser.<String>getValue("lookup")));
+        this.resultFormat = buildResultFormat(clParser, Arrays.asList(manifest.getEncodings()));
+        if (null != export) {
+            manifest.export(this.output, this.resultFormat);
+            return;
+        }
+        ByteEncoder byteEncoder = getByteEncoder(clParser);
+        for (String key : clParser.getLeftovers()) {
+            int[] records;
+            try {
+                records = manifest.findDigest(byteEncoder.decode(key));
+            } catch (IllegalArgumentException e) {
+                records = new int[0];
+            }
+            if (0 == records.length) {
+                int record = manifest.findPath(key);
+                records = 0 <= record ? new int[]{record} : records;
+            }
+            if (0 == records.length) {
+                printError(key + ": not found");
+            }
+            for (int record : records) {
+                outputResults(ResultFormat.SOURCE_FILE, manifest.getPath(record), manifest.getResults(record));
+            }
+        }
+    }
+
+    protected BufferedReader openManifest(final String manifest) throws IOException {
+        Reader reader = "-".equals(manifest) ? new InputStreamReader(this.stdin) : Files.newBufferedReader(resolve(manifest), Charset.defaultCharset());
+        return new BufferedReader(reader, 64 * 1024);
+    }
+
+    protected int getThreadCount(final CLParser clParser) {
+        Integer threads = clParser.getValue("threads");
+        return null != threads ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    protected List<Path> getRoots(final CLParser clParser) {
+        List<Path> roots = new ArrayList<Path>();
+        for (String filename : clParser.getLeftovers()) {
+            Path root = resolve(filename);
+            if (null != this.workingDirectory && !Paths.get(filename).isAbsolute()) {
+                this.rootNames.put(root, filename);
+            }
+            roots.add(root);
+        }
+        return roots;
+    }
+
+    /**
+     * Resolves a path given on the command line or in a manifest against
+     * the working directory.
+     *
+     * @param name path as given
+     * @return resolved path
+     */
+    protected Path resolve(final String name) {
+        return null != this.workingDirectory ? this.workingDirectory.resolve(name) : Paths.get(name);
+    }
+
+    /**
+     * Returns the name to print for a path found under one of the roots, so
+     * paths under relative roots stay relative when resolved against a
+     * working directory.
+     *
+     * @param path path found while walking
+     * @return printable name
+     */
+    protected String displayName(final Path path) {
+        for (Map.Entry<Path, String> root : this.rootNames.entrySet()) {
+            if (path.startsWith(root.getKey())) {
+                return Paths.get(root.getValue()).resolve(root.getKey().relativize(path)).toString();
+            }
+        }
+        return path.toString();
+    }
+
+    /**
+     * Applies the walk options on the command line to the given walker.
+     *
+     * @param clParser        parsed command line
+     * @param directoryHasher walker to configure
+     */
+    protected void configureWalker(final CLParser clParser, final DirectoryHasher directoryHasher) {
+        directoryHasher.setSorted(Boolean.TRUE == clParser.getValue("sort"));
+        String symlinks = clParser.getValue("symlinks");
+        if (null != symlinks) {
+            directoryHasher.setSymlinkPolicy(DirectoryHasher.SymlinkPolicy.valueOf(symlinks.toUpperCase()));
+        }
+        Integer maxDepth = clParser.getValue("max-depth");
+        if (null != maxDepth) {
+            directoryHasher.setMaxDepth(maxDepth);
+        }
+        List<String> includes = clParser.getValue("include");
+        if (null != includes) {
+            for (String include : includes) {
+                directoryHasher.addInclude(include);
+            }
+        }
+        List<String> excludes = clParser.getValue("exclude");
+        if (null != excludes) {
+            for (String exclude : excludes) {
+                directoryHasher.addExclude(exclude);
+            }
+        }
+    }
+
+    protected CryptoHashRegistry getRegistry() {
+        return CryptoHashRegistry.getDefault();
+    }
+
+    /**
+     * Pins the digest providers listed in the calibration profile, running
+     * the calibration first if requested.
+     *
+     * @param calibrate true to measure the providers and rewrite the profile
+     * @throws IOException if the profile could not be read or written
+     */
+    protected void configureDigestProviders(final boolean calibrate) throws IOException {
+        Path profile = DigestCalibrator.getDefaultProfile();
+        Map<String, Provider> providers;
+        if (calibrate) {
+            List<String> algorithms = new ArrayList<String>();
+            for (BuiltInCryptoHashFactory factory : BuiltInCryptoHashFactory.values()) {
+                if (null != factory.getDigest()) {
+                    algorithms.add(factory.getDigest());
+                }
+            }
+            providers = new DigestCalibrator().calibrate(algorithms.toArray(new String[algorithms.size()]));
+            DigestCalibrator.save(profile, providers);
+        } else {
+            providers = DigestCalibrator.load(profile);
+        }
+        if (null != providers) {
+            DigestCalibrator.apply(providers);
+        }
+    }
+
+    /**
+     * Sets up the default {@link IOStrategy} from the block size and
+     * read-ahead depth given on the command line.
+     *
+     * @param blockSize block size in kilobytes, "auto", or null for the defaults
+     * @param readAhead read-ahead depth or null for the default
+     * @throws BadUserInputException if the block size is out of range
+     * @throws IOException           if the block size could not be probed
+     */
+    protected void configureIO(final String blockSize, final Integer readAhead) throws BadUserInputException, IOException {
+        int fileBlockSize = IOStrategy.DEFAULT_FILE_BLOCK_SIZE;
+        int streamBlockSize = IOStrategy.DEFAULT_STREAM_BLOCK_SIZE;
+        if ("auto".equals(blockSize)) {
+            fileBlockSize = IOStrategy.probeFileBlockSize(32 * 1024 * 1024);
+        } else if (StringUtil.isNotBlank(blockSize)) {
+            long bytes = Long.parseLong(blockSize) * 1024;
+            if (IOStrategy.MIN_BLOCK_SIZE > bytes || IOStrategy.MAX_BLOCK_SIZE < bytes) {
+                throw new BadUserInputException(UtilTranslationKey.CL_ERROR_BAD_SWITCH_VALUE, "block-size", blockSize);
+            }
+            fileBlockSize = (int) bytes;
+            streamBlockSize = (int) bytes;
+        }
+        IOStrategy.setDefault(new IOStrategy(fileBlockSize, streamBlockSize, null != readAhead ? readAhead : IOStrategy.DEFAULT_READ_AHEAD_DEPTH));
+    }
+
+    protected String getEncodingHelp() {
+        StringBuilder sb = new StringBuilder("Provide a sequence of encodings to apply. Possible values are:");
+        for (CryptoHashFactory factory : getRegistry().getFactories()) {
+            sb.append("\n\t").append(factory.getCode()).append(": ").append(factory.getDescription());
+        }
+        sb.append("\nLong names, such as md5 or crc32c, can be used instead and are joined with '+'.");
+        return sb.toString();
+    }
+
+    /**
+     * Converts each encoding into a sequence of short codes. An encoding is
+     * made of '+' separated tokens, where each token is either the long name
+     * of an algorithm or a sequence of short codes.
+     *
+     * @param encodings encodings given on the command line, may be null
+     * @return non-blank encodings as short codes
+     * @throws BadUserInputException if an encoding names an unknown algorithm
+     */
+    protected List<String> parseEncodings(final List<String> encodings) throws BadUserInputException {
+        List<String> results = new ArrayList<String>();
+        if (null != encodings) {
             for (String encoding : encodings) {
-                CryptoHash cryptoHash = buildCryptoHash(encoding);
-                if (null != cryptoHash) {
-                    cryptoHashes.add(cryptoHash);
+                StringBuilder codes = new StringBuilder();
+                for (String token : encoding.split("\\+")) {
+                    CryptoHashFactory factory = getRegistry().get(token);
+                    if (null != factory) {
+                        codes.append(factory.getCode());
+                    } else {
+                        for (char code : token.toCharArray()) {
+                            if (null == getRegistry().get(code)) {
+                                throw new BadUserInputException(UtilTranslationKey.CL_ERROR_BAD_SWITCH_VALUE, "encoding", code);
+                            }
+                            codes.append(code);
+                        }
+                    }
+                }
+                if (StringUtil.isNotBlank(codes.toString())) {
+                    results.add(codes.toString());
                 }
             }
         }
+        return results;
+    }
 
+    protected MultiCryptoHash buildMultiCryptoHash(final List<String> encodings) throws BadUserInputException {
         MultiCryptoHash result = null;
-        if (!cryptoHashes.isEmpty()) {
-            CryptoHash[] args = new CryptoHash[cryptoHashes.size()];
-            cryptoHashes.toArray(args);
-            result = new MultiCryptoHash(args);
+        if (null != encodings && !encodings.isEmpty()) {
+            result = new PlannedMultiCryptoHash(new PlannedMultiCryptoHash.StageFactory() {
+                @Override
+                public CryptoHash create(final char key) {
+                    return buildCryptoHash(String.valueOf(key));
+                }
+            }, encodings.toArray(new String[encodings.size()]));
         }
         return result;
     }
@@ -113,29 +842,109 @@ public class Cli extends AbstractCli {
         CryptoHash cryptoHash = null;
         if (StringUtil.isNotBlank(encoding)) {
             for (char encodingKey : encoding.toCharArray()) {
-                switch (encodingKey) {
-                    case 'c':
-                        cryptoHash = new CRC32CryptoHash(cryptoHash);
-                        break;
-                    case 'm':
-                        cryptoHash = DigestCryptoHash.createMD5(cryptoHash);
-                        break;
-                    case 's':
-                        cryptoHash = DigestCryptoHash.createSHA1(cryptoHash);
-                        break;
-                    default:
-                        throw new BadUserInputException(UtilTranslationKey.CL_ERROR_BAD_SWITCH_VALUE, "encoding", encodingKey);
+                CryptoHashFactory factory = getRegistry().get(encodingKey);
+                if (null == factory) {
+                    throw new BadUserInputException(UtilTranslationKey.CL_ERROR_BAD_SWITCH_VALUE, "encoding", encodingKey);
                 }
+                cryptoHash = factory.create(cryptoHash);
             }
         }
         return cryptoHash;
     }
 
-    protected void outputResults(final String prefix, final byte[][] results) {
-        StringBuilder sb = new StringBuilder(prefix).append(':');
-        for (byte[] result : results) {
-            sb.append(' ').append(StringUtil.toHexString(result));
+    protected void listEncodings() {
+        ByteBuffer data = ByteBuffer.allocateDirect(4 * 1024 * 1024);
+        Random random = new Random(0);
+        while (data.hasRemaining()) {
+            data.put((byte) random.nextInt());
+        }
+        for (CryptoHashFactory factory : getRegistry().getFactories()) {
+            double throughput = measureThroughput(factory.create(null), data);
+            this.stdout.println(String.format("%c  %-12s %9.1f MB/s  %s", factory.getCode(), factory.getName(), throughput, factory.getDescription()));
+        }
+    }
+
+    /**
+     * Feeds the given data to a session of the given hash repeatedly for a
+     * fraction of a second. The same amount of time is spent beforehand
+     * warming up the hash so the JIT has compiled it by the time it is
+     * measured.
+     *
+     * @param cryptoHash hash to measure
+     * @param data       data to hash
+     * @return throughput in megabytes per second
+     */
+    protected double measureThroughput(final CryptoHash cryptoHash, final ByteBuffer data) {
+        HashSession session = cryptoHash.createSession();
+        byte[] digest = new byte[session.getDigestLength()];
+        ByteBuffer block = data.duplicate();
+        long duration = 250L * 1000 * 1000;
+        long start = System.nanoTime();
+        do {
+            block.clear();
+            session.update(block);
+        } while (System.nanoTime() - start < duration);
+        session.digestInto(digest, 0);
+
+        long bytes = 0;
+        long elapsed;
+        start = System.nanoTime();
+        do {
+            block.clear();
+            session.update(block);
+            bytes += block.capacity();
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < duration);
+        session.digestInto(digest, 0);
+        return bytes * 1000.0 * 1000 * 1000 / elapsed / (1024 * 1024);
+    }
+
+    protected ByteEncoder getByteEncoder(final CLParser clParser) {
+        return Boolean.TRUE == clParser.getValue("base64") ? ByteEncoder.BASE64 : ByteEncoder.HEX;
+    }
+
+    protected ResultFormat buildResultFormat(final CLParser clParser, final List<String> encodings) {
+        ByteEncoder byteEncoder = getByteEncoder(clParser);
+        String format = clParser.getValue("format");
+        if ("sum".equals(format)) {
+            return new SumFormat(byteEncoder);
+        } else if ("jsonl".equals(format)) {
+            return new JsonLinesFormat(byteEncoder, encodings.toArray(new String[encodings.size()]));
+        } else if ("binary".equals(format)) {
+            return new BinaryFormat();
+        }
+        return new PrefixFormat(byteEncoder);
+    }
+
+    /**
+     * Prints a message to stderr once the results written so far have been
+     * flushed, since the output writer buffers separately from stderr and
+     * the two usually share a terminal.
+     *
+     * @param message message to print
+     * @throws IOException if the results could not be written
+     */
+    protected void printError(final String message) throws IOException {
+        if (null != this.output) {
+            this.output.flush();
+        }
+        this.stderr.println(message);
+    }
+
+    /**
+     * Writes the results for one input. Output is buffered and only flushed
+     * once every input has been processed.
+     *
+     * @param source  kind of input, such as {@link ResultFormat#SOURCE_FILE}
+     * @param name    file name or string that was hashed, or null for stdin
+     * @param results hashes of the input
+     * @throws IOException if the results could not be written
+     */
+    protected void outputResults(final String source, final String name, final byte[][] results) throws IOException {
+        if (null != this.manifestWriter && ResultFormat.SOURCE_FILE.equals(source)) {
+            this.manifestWriter.add(name, results);
+        } else {
+            this.resultFormat.write(this.output, source, name, results);
         }
-        System.out.println(sb.toString());
     }
 }
@@ -0,0 +1,451 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import org.widgetrefinery.util.StringUtil;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Serves {@link Cli} command lines over a loopback socket so that callers
+ * that run many small requests only pay for JVM startup, resource bundle
+ * loading, and JIT warmup once. Each connection carries one command line,
+ * sent by {@link DaemonClient} using the protocol described there, and is
+ * run by a fresh {@link Cli} on a fixed pool of request threads. The
+ * hashing itself shares the daemon's digest providers, buffer pools, and
+ * compiled code.
+ * <p/>
+ * Only connections from the local machine are accepted, and each must
+ * present a random token that is written, along with the port, to a state
+ * file readable only by the user running the daemon. The request header,
+ * token included, must arrive within a few seconds and is read on a small
+ * pool of its own before the request takes one of the request threads.
+ * Requests that then go quiet for several minutes are dropped.
+ *
+ * @since 10/17/26 9:40 PM
+ */
+public class CliDaemon {
+    /**
+     * Default number of milliseconds a client has to send its request
+     * header.
+     */
+    public static final int DEFAULT_HANDSHAKE_TIMEOUT = 5000;
+    /**
+     * Default number of milliseconds a request may go without sending any
+     * data, such as standard in, before it is dropped.
+     */
+    public static final int DEFAULT_IDLE_TIMEOUT      = 5 * 60 * 1000;
+
+    private static final Logger logger            = Logger.getLogger(CliDaemon.class.getName());
+    private static final int    MAX_ARGUMENTS     = 64 * 1024;
+    private static final int    FLUSH_THRESHOLD   = 8 * 1024;
+    private static final int    HANDSHAKE_THREADS = 4;
+
+    private final    int             port;
+    private final    int             threads;
+    private final    Path            stateFile;
+    private final    String          token;
+    private          int             handshakeTimeout;
+    private          int             idleTimeout;
+    private          ServerSocket    serverSocket;
+    private          ExecutorService handshakePool;
+    private          ExecutorService requestPool;
+    private          Thread          acceptor;
+    private volatile boolean         stopped;
+
+    /**
+     * @param port      port to listen on, or 0 for any free port
+     * @param threads   number of requests to serve at once
+     * @param stateFile where to write the port and token for clients
+     */
+    public CliDaemon(final int port, final int threads, final Path stateFile) {
+        if (0 >= threads) {
+            throw new IllegalArgumentException("invalid thread count (" + threads + ')');
+        }
+        this.port = port;
+        this.threads = threads;
+        this.stateFile = stateFile;
+        this.handshakeTimeout = DEFAULT_HANDSHAKE_TIMEOUT;
+        this.idleTimeout = DEFAULT_IDLE_TIMEOUT;
+        byte[] token = new byte[16];
+        new SecureRandom().nextBytes(token);
+        this.token = StringUtil.toHexString(token);
+    }
+
+    public static Path getDefaultStateFile() {
+        return DaemonClient.getDefaultStateFile();
+    }
+
+    /**
+     * Sets how long a client has to send its request header. Must be called
+     * before {@link #start()}.
+     *
+     * @param handshakeTimeout timeout in milliseconds
+     */
+    public void setHandshakeTimeout(final int handshakeTimeout) {
+        if (0 >= handshakeTimeout) {
+            throw new IllegalArgumentException("invalid handshake timeout (" + handshakeTimeout + ')');
+        }
+        this.handshakeTimeout = handshakeTimeout;
+    }
+
+    /**
+     * Sets how long a running request may go without sending any data before
+     * it is dropped. Must be called before {@link #start()}.
+     *
+     * @param idleTimeout timeout in milliseconds
+     */
+    public void setIdleTimeout(final int idleTimeout) {
+        if (0 >= idleTimeout) {
+            throw new IllegalArgumentException("invalid idle timeout (" + idleTimeout + ')');
+        }
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Returns the port being listened on.
+     *
+     * @return port, or -1 if not started
+     */
+    public int getPort() {
+        return null != this.serverSocket ? this.serverSocket.getLocalPort() : -1;
+    }
+
+    /**
+     * Starts listening and serving requests in the background.
+     *
+     * @throws IOException if the socket could not be opened or the state file could not be written
+     */
+    public void start() throws IOException {
+        this.serverSocket = new ServerSocket(this.port, 64, InetAddress.getLoopbackAddress());
+        writeStateFile();
+        final AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(runnable, "crypto-daemon-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        this.handshakePool = new ThreadPoolExecutor(0, HANDSHAKE_THREADS, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), threadFactory);
+        this.requestPool = Executors.newFixedThreadPool(this.threads, threadFactory);
+        this.acceptor = new Thread("crypto-daemon-acceptor") {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        };
+        this.acceptor.start();
+        logger.info("listening on port " + getPort());
+    }
+
+    /**
+     * Starts the daemon and serves requests until the JVM is shut down.
+     *
+     * @throws IOException if the daemon could not be started
+     */
+    public void run() throws IOException {
+        start();
+        Runtime.getRuntime().addShutdownHook(new Thread("crypto-daemon-shutdown") {
+            @Override
+            public void run() {
+                CliDaemon.this.stop();
+            }
+        });
+        try {
+            this.acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while serving requests");
+        }
+    }
+
+    /**
+     * Stops accepting connections, waits briefly for running requests, and
+     * removes the state file.
+     */
+    public void stop() {
+        this.stopped = true;
+        try {
+            if (null != this.serverSocket) {
+                this.serverSocket.close();
+            }
+            if (null != this.handshakePool) {
+                this.handshakePool.shutdownNow();
+            }
+            if (null != this.requestPool) {
+                this.requestPool.shutdown();
+                this.requestPool.awaitTermination(5, TimeUnit.SECONDS);
+            }
+        } catch (IOException e) {
+            logger.log(Level.FINE, "failed to close server socket", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                Files.deleteIfExists(this.stateFile);
+            } catch (IOException e) {
+                logger.log(Level.FINE, "failed to delete " + this.stateFile, e);
+            }
+        }
+    }
+
+    private void acceptConnections() {
+        while (!this.stopped) {
+            try {
+                final Socket socket = this.serverSocket.accept();
+                try {
+                    this.handshakePool.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            handshake(socket);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    logger.fine("dropping connection, too many clients are still sending their requests");
+                    close(socket);
+                }
+            } catch (SocketException e) {
+                if (!this.stopped) {
+                    logger.log(Level.WARNING, "server socket failed", e);
+                    return;
+                }
+            } catch (IOException e) {
+                logger.log(Level.FINE, "failed to accept connection", e);
+            }
+        }
+    }
+
+    /**
+     * Reads and checks the request header within the handshake timeout, then
+     * queues the request to run. Connections only take a request thread once
+     * they have presented the token and sent their whole command line, so
+     * clients that connect and stall cannot tie up the request threads.
+     *
+     * @param socket client connection
+     */
+    protected void handshake(final Socket socket) {
+        boolean queued = false;
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(this.handshakeTimeout);
+            final DataInputStream request = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            if (DaemonClient.MAGIC != request.readInt() || DaemonClient.VERSION != request.readInt()) {
+                logger.fine("rejecting connection with an unknown protocol");
+                return;
+            }
+            byte[] token = request.readUTF().getBytes(StandardCharsets.UTF_8);
+            if (!MessageDigest.isEqual(this.token.getBytes(StandardCharsets.UTF_8), token)) {
+                logger.warning("rejecting connection with a bad token");
+                return;
+            }
+            final Path workingDirectory = Paths.get(request.readUTF());
+            int argumentCount = request.readInt();
+            if (0 > argumentCount || MAX_ARGUMENTS < argumentCount) {
+                logger.fine("rejecting request with " + argumentCount + " arguments");
+                return;
+            }
+            final String[] args = new String[argumentCount];
+            for (int ndx = 0; ndx < args.length; ndx++) {
+                args[ndx] = request.readUTF();
+            }
+            socket.setSoTimeout(this.idleTimeout);
+            this.requestPool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    serve(socket, request, workingDirectory, args);
+                }
+            });
+            queued = true;
+        } catch (SocketTimeoutException e) {
+            logger.fine("dropping connection that did not send its request in time");
+        } catch (IOException e) {
+            logger.log(Level.FINE, "failed to read request", e);
+        } catch (RejectedExecutionException e) {
+            logger.fine("dropping request, the daemon is stopping");
+        } finally {
+            if (!queued) {
+                close(socket);
+            }
+        }
+    }
+
+    /**
+     * Runs a request whose header has been read, and streams back the output
+     * and exit status.
+     *
+     * @param socket           client connection
+     * @param request          rest of the request, which carries standard in
+     * @param workingDirectory client's working directory
+     * @param args             command line
+     */
+    protected void serve(final Socket socket, final DataInputStream request, final Path workingDirectory, final String[] args) {
+        try {
+            FrameWriter frameWriter = new FrameWriter(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+            PrintStream stdout = new PrintStream(frameWriter.stream(DaemonClient.FRAME_STDOUT));
+            PrintStream stderr = new PrintStream(frameWriter.stream(DaemonClient.FRAME_STDERR));
+            int status = new Cli(new FrameInputStream(request), stdout, stderr, workingDirectory, true).execute(args);
+            stdout.flush();
+            stderr.flush();
+            frameWriter.exit(status);
+        } catch (IOException e) {
+            logger.log(Level.FINE, "request failed", e);
+        } finally {
+            close(socket);
+        }
+    }
+
+    private static void close(final Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            logger.log(Level.FINE, "failed to close connection", e);
+        }
+    }
+
+    private void writeStateFile() throws IOException {
+        Properties state = new Properties();
+        state.setProperty("port", String.valueOf(getPort()));
+        state.setProperty("token", this.token);
+        Files.createDirectories(this.stateFile.toAbsolutePath().getParent());
+        Path tempFile = this.stateFile.resolveSibling(this.stateFile.getFileName() + ".tmp");
+        Files.deleteIfExists(tempFile);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(tempFile, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        }
+        OutputStream output = Files.newOutputStream(tempFile);
+        try {
+            state.store(output, "crypto-tools daemon");
+        } finally {
+            output.close();
+        }
+        Files.move(tempFile, this.stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Multiplexes standard out and standard err onto the connection.
+     */
+    protected static class FrameWriter {
+        private final DataOutputStream output;
+
+        public FrameWriter(final OutputStream output) {
+            this.output = new DataOutputStream(output);
+        }
+
+        public synchronized void write(final byte type, final byte[] data, final int offset, final int length) throws IOException {
+            this.output.writeByte(type);
+            this.output.writeInt(length);
+            this.output.write(data, offset, length);
+            if (FLUSH_THRESHOLD <= length) {
+                this.output.flush();
+            }
+        }
+
+        public synchronized void exit(final int status) throws IOException {
+            this.output.writeByte(DaemonClient.FRAME_EXIT);
+            this.output.writeInt(status);
+            this.output.flush();
+        }
+
+        /**
+         * Returns a stream whose writes become frames of the given type.
+         *
+         * @param type frame type
+         * @return frame stream
+         */
+        public OutputStream stream(final byte type) {
+            return new OutputStream() {
+                @Override
+                public void write(final int b) throws IOException {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(final byte[] data, final int offset, final int length) throws IOException {
+                    if (0 < length) {
+                        FrameWriter.this.write(type, data, offset, length);
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * Reads the standard in frames sent by the client.
+     */
+    protected static class FrameInputStream extends InputStream {
+        private final DataInputStream input;
+        private       int             remaining;
+        private       boolean         eof;
+
+        public FrameInputStream(final DataInputStream input) {
+            this.input = input;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return 0 > read(b, 0, 1) ? -1 : 0xFF & b[0];
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            if (0 == length) {
+                return 0;
+            }
+            while (0 == this.remaining) {
+                if (this.eof) {
+                    return -1;
+                }
+                this.remaining = this.input.readInt();
+                if (0 >= this.remaining) {
+                    this.remaining = 0;
+                    this.eof = true;
+                }
+            }
+            int bytesRead = this.input.read(buffer, offset, Math.min(length, this.remaining));
+            if (0 > bytesRead) {
+                throw new EOFException("client closed standard in mid-frame");
+            }
+            this.remaining -= bytesRead;
+            return bytesRead;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Splits data into content-defined chunks and hashes each chunk. A boundary
+ * is placed wherever a Gear rolling hash of the last 64 bytes matches a
+ * mask, so inserting or removing data only changes the chunks around the
+ * edit and every later chunk keeps its hash. This is what a deduplicating
+ * store needs; fixed-size blocks would all shift after an insertion.
+ * <p/>
+ * Boundaries are found with FastCDC: the first {@link #getMinSize()} bytes
+ * of a chunk are skipped, a stricter mask is used until the chunk reaches
+ * {@link #getAverageSize()} and a looser one after that, which keeps chunk
+ * sizes close to the average, and a chunk is cut at {@link #getMaxSize()}
+ * regardless. The Gear table is generated from a fixed seed, so the same
+ * sizes always produce the same boundaries.
+ * <p/>
+ * Data is read through a single buffer per call and the chunk list is
+ * handed to a {@link ChunkHandler} as it is found, so memory use does not
+ * depend on the size of the input. Instances are immutable and may be
+ * shared between threads.
+ *
+ * @since 10/17/26 1:10 PM
+ */
+public class ContentChunker {
+    /**
+     * Default min chunk size.
+     */
+    public static final int DEFAULT_MIN_SIZE     = 16 * 1024;
+    /**
+     * Default average chunk size.
+     */
+    public static final int DEFAULT_AVERAGE_SIZE = 64 * 1024;
+    /**
+     * Default max chunk size.
+     */
+    public static final int DEFAULT_MAX_SIZE     = 256 * 1024;
+
+    private static final long[] GEAR      = createGearTable(0x6A09E667F3BCC908L);
+    private static final int    READ_SIZE = 1024 * 1024;
+
+    private final int          minSize;
+    private final int          averageSize;
+    private final int          maxSize;
+    private final long         strictMask;
+    private final long         looseMask;
+    private final CryptoHash[] cryptoHashes;
+
+    /**
+     * Creates a chunker with the default sizes.
+     *
+     * @param cryptoHashes hashes to compute for each chunk
+     */
+    public ContentChunker(final CryptoHash... cryptoHashes) {
+        this(DEFAULT_MIN_SIZE, DEFAULT_AVERAGE_SIZE, DEFAULT_MAX_SIZE, cryptoHashes);
+    }
+
+    /**
+     * @param minSize      smallest chunk, other than the last one
+     * @param averageSize  chunk size to aim for; rounded down to a power of two when picking the masks
+     * @param maxSize      largest chunk
+     * @param cryptoHashes hashes to compute for each chunk
+     * @throws IllegalArgumentException if the sizes are not increasing or no hashes were given
+     */
+    public ContentChunker(final int minSize, final int averageSize, final int maxSize, final CryptoHash... cryptoHashes) throws IllegalArgumentException {
+        if (0 >= minSize || minSize >= averageSize || averageSize >= maxSize || maxSize > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("invalid chunk sizes (" + minSize + '/' + averageSize + '/' + maxSize + ')');
+        }
+        if (null == cryptoHashes || 0 == cryptoHashes.length) {
+            throw new IllegalArgumentException("no hashes given");
+        }
+        int bits = 31 - Integer.numberOfLeadingZeros(averageSize);
+        this.minSize = minSize;
+        this.averageSize = averageSize;
+        this.maxSize = maxSize;
+        this.strictMask = createMask(Math.min(bits + 2, 63));
+        this.looseMask = createMask(Math.max(bits - 2, 1));
+        this.cryptoHashes = cryptoHashes.clone();
+    }
+
+    /**
+     * Creates the table of random values the rolling hash adds for each byte
+     * value, using SplitMix64 so the table never changes.
+     *
+     * @param seed generator seed
+     * @return table of 256 values
+     */
+    private static long[] createGearTable(final long seed) {
+        long[] result = new long[256];
+        long state = seed;
+        for (int ndx = 0; ndx < result.length; ndx++) {
+            state += 0x9E3779B97F4A7C15L;
+            long value = state;
+            value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+            value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+            result[ndx] = value ^ (value >>> 31);
+        }
+        return result;
+    }
+
+    /**
+     * Builds a mask of the given number of high bits. The high bits of a Gear
+     * hash depend on the most bytes, so they make the best boundaries.
+     *
+     * @param bits number of bits to set
+     * @return mask
+     */
+    private static long createMask(final int bits) {
+        return -1L << (64 - bits);
+    }
+
+    public int getMinSize() {
+        return this.minSize;
+    }
+
+    public int getAverageSize() {
+        return this.averageSize;
+    }
+
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * Returns the number of bytes written by each hash, in the order the
+     * hashes were given.
+     *
+     * @return digest lengths
+     */
+    public int[] getResultLengths() {
+        int[] results = new int[this.cryptoHashes.length];
+        for (int ndx = 0; ndx < results.length; ndx++) {
+            results[ndx] = this.cryptoHashes[ndx].createSession().getDigestLength();
+        }
+        return results;
+    }
+
+    /**
+     * Finds the length of the chunk starting at the given offset. The data
+     * must run to the end of the input or be at least {@link #getMaxSize()}
+     * bytes long, otherwise the chunk may be cut short.
+     *
+     * @param data   input data
+     * @param offset start of the chunk
+     * @param length number of bytes available
+     * @return chunk length
+     */
+    public int findBoundary(final byte[] data, final int offset, final int length) {
+        if (length <= this.minSize) {
+            return length;
+        }
+        int end = offset + Math.min(length, this.maxSize);
+        int normal = offset + Math.min(length, this.averageSize);
+        long hash = 0;
+        int ndx = offset + this.minSize;
+        for (; ndx < normal; ndx++) {
+            hash = (hash << 1) + GEAR[0xFF & data[ndx]];
+            if (0 == (hash & this.strictMask)) {
+                return ndx + 1 - offset;
+            }
+        }
+        for (; ndx < end; ndx++) {
+            hash = (hash << 1) + GEAR[0xFF & data[ndx]];
+            if (0 == (hash & this.looseMask)) {
+                return ndx + 1 - offset;
+            }
+        }
+        return end - offset;
+    }
+
+    /**
+     * Chunks the contents of the given file. Regular files are read through
+     * a {@link FileChannel} into a pooled direct buffer of
+     * {@link IOStrategy#getFileBlockSize()} bytes, as the hashes read them;
+     * anything else is read as a stream.
+     *
+     * @param input   file to chunk
+     * @param handler receives each chunk in order
+     * @return number of chunks
+     * @throws IOException if an error occurred reading from input or the handler failed
+     */
+    public long chunk(final Path input, final ChunkHandler handler) throws IOException {
+        if (!Files.isRegularFile(input)) {
+            InputStream stream = Files.newInputStream(input);
+            try {
+                return chunk(stream, handler);
+            } finally {
+                stream.close();
+            }
+        }
+        final IOStrategy strategy = IOStrategy.getDefault();
+        final FileChannel channel = FileChannel.open(input, StandardOpenOption.READ);
+        final ByteBuffer block = strategy.acquireFileBuffer();
+        try {
+            block.flip();
+            return chunk(new Source() {
+                @Override
+                public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+                    if (!block.hasRemaining()) {
+                        block.clear();
+                        if (0 > strategy.read(channel, block)) {
+                            return -1;
+                        }
+                        block.flip();
+                    }
+                    int count = Math.min(length, block.remaining());
+                    block.get(buffer, offset, count);
+                    return count;
+                }
+            }, handler);
+        } finally {
+            strategy.releaseFileBuffer(block);
+            channel.close();
+        }
+    }
+
+    /**
+     * Chunks the given data. Empty input produces no chunks.
+     *
+     * @param input   data to chunk
+     * @param handler receives each chunk in order
+     * @return number of chunks
+     * @throws IOException if an error occurred reading from input or the handler failed
+     */
+    public long chunk(final InputStream input, final ChunkHandler handler) throws IOException {
+        final IOStrategy strategy = IOStrategy.getDefault();
+        return chunk(new Source() {
+            @Override
+            public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+                return strategy.read(input, buffer, offset, length);
+            }
+        }, handler);
+    }
+
+    private long chunk(final Source source, final ChunkHandler handler) throws IOException {
+        HashSession[] sessions = new HashSession[this.cryptoHashes.length];
+        byte[][] digests = new byte[this.cryptoHashes.length][];
+        for (int ndx = 0; ndx < sessions.length; ndx++) {
+            sessions[ndx] = this.cryptoHashes[ndx].createSession();
+            digests[ndx] = new byte[sessions[ndx].getDigestLength()];
+        }
+        byte[] buffer = new byte[Math.max(2 * this.maxSize, READ_SIZE)];
+        int start = 0;
+        int limit = 0;
+        boolean eof = false;
+        long offset = 0;
+        long chunks = 0;
+        while (true) {
+            while (!eof && limit - start < this.maxSize) {
+                if (buffer.length - limit < this.maxSize) {
+                    System.arraycopy(buffer, start, buffer, 0, limit - start);
+                    limit -= start;
+                    start = 0;
+                }
+                int bytesRead = source.read(buffer, limit, buffer.length - limit);
+                if (0 > bytesRead) {
+                    eof = true;
+                } else {
+                    limit += bytesRead;
+                }
+            }
+            if (start == limit) {
+                return chunks;
+            }
+            int length = findBoundary(buffer, start, limit - start);
+            for (int ndx = 0; ndx < sessions.length; ndx++) {
+                sessions[ndx].update(buffer, start, length);
+                sessions[ndx].digestInto(digests[ndx], 0);
+            }
+            handler.onChunk(offset, length, digests);
+            start += length;
+            offset += length;
+            chunks++;
+        }
+    }
+
+    /**
+     * Where the data being chunked is read from.
+     */
+    private interface Source {
+        /**
+         * @return number of bytes read or -1 at the end of the data
+         */
+        int read(byte[] buffer, int offset, int length) throws IOException;
+    }
+
+    /**
+     * Receives the chunks found by {@link ContentChunker}.
+     */
+    public interface ChunkHandler {
+        /**
+         * Called once per chunk, in order. The digest arrays are reused for
+         * the next chunk, so they must be copied if they are kept.
+         *
+         * @param offset  offset of the chunk within the input
+         * @param length  chunk length
+         * @param digests hashes of the chunk, in the order the hashes were given
+         * @throws IOException if the chunk could not be handled
+         */
+        void onChunk(long offset, int length, byte[][] digests) throws IOException;
+    }
+}
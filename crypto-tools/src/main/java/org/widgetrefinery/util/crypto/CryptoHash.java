@@ -19,6 +19,8 @@ package org.widgetrefinery.util.crypto;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 /**
  * Represents a utility class that knows how to compute hashes.
@@ -35,6 +37,25 @@ public interface CryptoHash {
      */
     byte[] getHash(InputStream input) throws IOException;
 
+    /**
+     * Hashes the contents of the given file. Regular files may be memory
+     * mapped rather than read through a stream. The default reads the file
+     * through {@link #getHash(InputStream)}, so existing implementations
+     * keep working.
+     *
+     * @param input file to hash
+     * @return hashed data as a byte array
+     * @throws IOException if an error occurred reading from input
+     */
+    default byte[] getHash(final Path input) throws IOException {
+        InputStream stream = Files.newInputStream(input);
+        try {
+            return getHash(stream);
+        } finally {
+            stream.close();
+        }
+    }
+
     /**
      * Hashes the given data.
      *
@@ -42,4 +63,18 @@ public interface CryptoHash {
      * @return hashed data as a byte array
      */
     byte[] getHash(String input);
+
+    /**
+     * Creates a new incremental hashing session. The session produces the
+     * same hashes as the other methods on this interface. The default
+     * buffers the input in a {@link BufferedHashSession} and hashes it with
+     * {@link #getHash(InputStream)} at the end, so existing implementations
+     * keep working; implementations that can hash incrementally should
+     * override it.
+     *
+     * @return new session
+     */
+    default HashSession createSession() {
+        return new BufferedHashSession(this);
+    }
 }
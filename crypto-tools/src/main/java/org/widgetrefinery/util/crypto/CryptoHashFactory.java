@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+/**
+ * Creates {@link CryptoHash} instances for a single algorithm. Third party
+ * algorithms are picked up by {@link CryptoHashRegistry} through
+ * {@link java.util.ServiceLoader}: list the implementing classes in
+ * {@code META-INF/services/org.widgetrefinery.util.crypto.CryptoHashFactory}.
+ *
+ * @since 10/17/26 3:45 PM
+ */
+public interface CryptoHashFactory {
+    /**
+     * Returns the single character used for this algorithm in encodings,
+     * such as 'm' for md5.
+     *
+     * @return short code
+     */
+    char getCode();
+
+    /**
+     * Returns the long name of this algorithm, such as "md5".
+     *
+     * @return long name
+     */
+    String getName();
+
+    /**
+     * Returns a one line description of this algorithm.
+     *
+     * @return description
+     */
+    String getDescription();
+
+    /**
+     * Checks whether this algorithm can be used in the running JVM.
+     *
+     * @return true if {@link #create(CryptoHash)} will succeed
+     */
+    boolean isAvailable();
+
+    /**
+     * Creates a new instance of this algorithm.
+     *
+     * @param chain upstream CryptoHash, may be null
+     * @return new instance
+     */
+    CryptoHash create(CryptoHash chain);
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Looks up {@link CryptoHashFactory} instances by short code or long name.
+ * The default registry holds the {@link BuiltInCryptoHashFactory} algorithms
+ * plus any factories found through {@link java.util.ServiceLoader}.
+ *
+ * @since 10/17/26 3:55 PM
+ */
+public class CryptoHashRegistry {
+    private static final Logger logger = Logger.getLogger(CryptoHashRegistry.class.getName());
+
+    private static CryptoHashRegistry defaultRegistry;
+
+    private final Map<Character, CryptoHashFactory> byCode;
+    private final Map<String, CryptoHashFactory>    byName;
+
+    /**
+     * Creates an empty registry.
+     */
+    public CryptoHashRegistry() {
+        this.byCode = new TreeMap<Character, CryptoHashFactory>();
+        this.byName = new TreeMap<String, CryptoHashFactory>();
+    }
+
+    /**
+     * Returns the registry of built in and service loaded algorithms. It is
+     * created the first time this is called.
+     *
+     * @return default registry
+     */
+    public static synchronized CryptoHashRegistry getDefault() {
+        if (null == defaultRegistry) {
+            defaultRegistry = load(Thread.currentThread().getContextClassLoader());
+        }
+        return defaultRegistry;
+    }
+
+    /**
+     * Creates a registry holding the built in algorithms plus any factories
+     * the given class loader provides. Factories that are unavailable in this
+     * JVM, fail to load, or clash with an earlier factory are skipped.
+     *
+     * @param classLoader class loader to search for factories
+     * @return new registry
+     */
+    public static CryptoHashRegistry load(final ClassLoader classLoader) {
+        CryptoHashRegistry registry = new CryptoHashRegistry();
+        for (CryptoHashFactory factory : BuiltInCryptoHashFactory.values()) {
+            registry.registerIfAvailable(factory);
+        }
+        Iterator<CryptoHashFactory> iterator = ServiceLoader.load(CryptoHashFactory.class, classLoader).iterator();
+        while (true) {
+            try {
+                if (!iterator.hasNext()) {
+                    break;
+                }
+                registry.registerIfAvailable(iterator.next());
+            } catch (ServiceConfigurationError e) {
+                logger.log(Level.WARNING, "failed to load hash factory", e);
+            } catch (IllegalArgumentException e) {
+                logger.warning(e.getMessage());
+            }
+        }
+        return registry;
+    }
+
+    private void registerIfAvailable(final CryptoHashFactory factory) {
+        if (factory.isAvailable()) {
+            register(factory);
+        } else {
+            logger.fine(factory.getName() + " is not available in this JVM");
+        }
+    }
+
+    /**
+     * Adds the given factory to this registry.
+     *
+     * @param factory factory to add
+     * @throws IllegalArgumentException if the code or name is already taken
+     */
+    public synchronized void register(final CryptoHashFactory factory) throws IllegalArgumentException {
+        String name = factory.getName().toLowerCase(Locale.ENGLISH);
+        CryptoHashFactory existing = this.byCode.get(factory.getCode());
+        if (null == existing) {
+            existing = this.byName.get(name);
+        }
+        if (null != existing) {
+            throw new IllegalArgumentException("hash " + factory.getCode() + '|' + factory.getName() + " clashes with " + existing.getCode() + '|' + existing.getName());
+        }
+        this.byCode.put(factory.getCode(), factory);
+        this.byName.put(name, factory);
+    }
+
+    /**
+     * Looks up a factory by its short code.
+     *
+     * @param code short code
+     * @return factory or null if not found
+     */
+    public synchronized CryptoHashFactory get(final char code) {
+        return this.byCode.get(code);
+    }
+
+    /**
+     * Looks up a factory by its long name, ignoring case.
+     *
+     * @param name long name
+     * @return factory or null if not found
+     */
+    public synchronized CryptoHashFactory get(final String name) {
+        return this.byName.get(name.toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * Returns every registered factory, ordered by short code.
+     *
+     * @return registered factories
+     */
+    public synchronized Collection<CryptoHashFactory> getFactories() {
+        return Collections.unmodifiableList(new ArrayList<CryptoHashFactory>(this.byCode.values()));
+    }
+}
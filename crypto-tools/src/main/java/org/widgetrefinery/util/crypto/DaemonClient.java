@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import java.io.*;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Thin client for {@link CliDaemon}. It forwards its command line, working
+ * directory, and standard in to a running daemon and copies the responses to
+ * standard out and standard err, exiting with the status of the request. If
+ * no daemon is running the command line is run in this JVM instead, so
+ * scripts can always call the client.
+ * <p/>
+ * This class avoids touching the rest of the library so the client JVM only
+ * loads what it needs to talk to the daemon. The protocol is:
+ * <pre>
+ * request:  int magic, int version, UTF token, UTF working directory,
+ *           int argument count, UTF arguments...,
+ *           then standard in as (int length, bytes) frames ending with length 0
+ * response: (byte type, int length, bytes) frames, where type is
+ *           {@link #FRAME_STDOUT} or {@link #FRAME_STDERR}, ending with a
+ *           {@link #FRAME_EXIT} frame whose length is the exit status
+ * </pre>
+ *
+ * @since 10/17/26 9:25 PM
+ */
+public class DaemonClient {
+    public static final int  MAGIC        = 0x57524344;
+    public static final int  VERSION      = 1;
+    public static final byte FRAME_STDOUT = 1;
+    public static final byte FRAME_STDERR = 2;
+    public static final byte FRAME_EXIT   = 3;
+
+    private final Path stateFile;
+
+    /**
+     * @param stateFile file the daemon wrote its port and token to
+     */
+    public DaemonClient(final Path stateFile) {
+        this.stateFile = stateFile;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int status;
+        try {
+            status = new DaemonClient(getDefaultStateFile()).forward(args, System.in, System.out, System.err);
+        } catch (NoSuchFileException e) {
+            Cli.main(args);
+            return;
+        } catch (ConnectException e) {
+            Cli.main(args);
+            return;
+        }
+        System.exit(status);
+    }
+
+    /**
+     * Returns the file a daemon writes its port and access token to.
+     *
+     * @return state file
+     */
+    public static Path getDefaultStateFile() {
+        return Paths.get(System.getProperty("user.home"), ".widgetrefinery", "crypto-daemon.properties");
+    }
+
+    /**
+     * Sends a command line to the daemon and copies back its output.
+     *
+     * @param args command line to run
+     * @param in   standard in to forward
+     * @param out  where to copy standard out
+     * @param err  where to copy standard err
+     * @return exit status of the request
+     * @throws IOException if the daemon could not be reached or the connection was lost
+     */
+    public int forward(final String[] args, final InputStream in, final OutputStream out, final OutputStream err) throws IOException {
+        Properties state = new Properties();
+        InputStream stateInput = Files.newInputStream(this.stateFile);
+        try {
+            state.load(stateInput);
+        } finally {
+            stateInput.close();
+        }
+
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(state.getProperty("port")));
+        try {
+            socket.setTcpNoDelay(true);
+            final DataOutputStream request = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            request.writeInt(MAGIC);
+            request.writeInt(VERSION);
+            request.writeUTF(state.getProperty("token"));
+            request.writeUTF(Paths.get("").toAbsolutePath().toString());
+            request.writeInt(args.length);
+            for (String arg : args) {
+                request.writeUTF(arg);
+            }
+            request.flush();
+
+            Thread stdinPump = new Thread("daemon-client-stdin") {
+                @Override
+                public void run() {
+                    byte[] buffer = new byte[64 * 1024];
+                    try {
+                        for (int bytesRead = in.read(buffer); 0 <= bytesRead; bytesRead = in.read(buffer)) {
+                            if (0 < bytesRead) {
+                                request.writeInt(bytesRead);
+                                request.write(buffer, 0, bytesRead);
+                                request.flush();
+                            }
+                        }
+                        request.writeInt(0);
+                        request.flush();
+                    } catch (IOException e) {
+                        // the daemon finished without reading all of standard in
+                    }
+                }
+            };
+            stdinPump.setDaemon(true);
+            stdinPump.start();
+
+            DataInputStream response = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+            byte[] buffer = new byte[64 * 1024];
+            while (true) {
+                byte type = response.readByte();
+                int length = response.readInt();
+                if (FRAME_EXIT == type) {
+                    return length;
+                }
+                OutputStream target = FRAME_STDERR == type ? err : out;
+                while (0 < length) {
+                    int chunk = Math.min(length, buffer.length);
+                    response.readFully(buffer, 0, chunk);
+                    target.write(buffer, 0, chunk);
+                    length -= chunk;
+                }
+            }
+        } finally {
+            out.flush();
+            err.flush();
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.Security;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * Picks the fastest installed provider for each digest algorithm. Providers
+ * can differ a lot in throughput for the same algorithm, depending on
+ * whether they hit the JVM's intrinsics, so each candidate hashes a short
+ * sample and the fastest one wins. The results are saved to a small
+ * profile file, tagged with the JVM and provider list they were measured
+ * on, so later runs can pin the same providers without measuring again.
+ *
+ * @since 10/17/26 7:20 PM
+ */
+public class DigestCalibrator {
+    private static final Logger logger          = Logger.getLogger(DigestCalibrator.class.getName());
+    private static final String FINGERPRINT_KEY = "jvm";
+
+    private final int  sampleSize;
+    private final long sampleNanos;
+
+    /**
+     * Creates a calibrator that spends about 20ms per provider.
+     */
+    public DigestCalibrator() {
+        this(256 * 1024, 20L * 1000 * 1000);
+    }
+
+    /**
+     * @param sampleSize  size of the sample to hash, in bytes
+     * @param sampleNanos how long to hash the sample for each provider, after
+     *                    an equally long warm up
+     */
+    public DigestCalibrator(final int sampleSize, final long sampleNanos) {
+        this.sampleSize = sampleSize;
+        this.sampleNanos = sampleNanos;
+    }
+
+    /**
+     * Returns where the profile is kept by default:
+     * ~/.widgetrefinery/digest-providers.properties.
+     *
+     * @return default profile location
+     */
+    public static Path getDefaultProfile() {
+        return Paths.get(System.getProperty("user.home"), ".widgetrefinery", "digest-providers.properties");
+    }
+
+    /**
+     * Describes the running JVM and its installed providers. A profile is
+     * only trusted if it was written under the same fingerprint. Provider
+     * versions come from {@link Provider#getVersion()}, which is deprecated
+     * from Java 9 on, since its replacement is not available on Java 8.
+     *
+     * @return fingerprint
+     */
+    @SuppressWarnings("deprecation")
+    public static String getFingerprint() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(System.getProperty("java.vendor")).append(' ').append(System.getProperty("java.vm.version"));
+        sb.append(' ').append(System.getProperty("os.arch"));
+        for (Provider provider : Security.getProviders()) {
+            sb.append(' ').append(provider.getName()).append('/').append(provider.getVersion());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Measures every provider of each given algorithm and returns the
+     * fastest. Algorithms with a single provider are not measured.
+     * Algorithms with no provider are left out.
+     *
+     * @param algorithms digest algorithms
+     * @return fastest provider by algorithm
+     */
+    public Map<String, Provider> calibrate(final String... algorithms) {
+        byte[] sample = new byte[this.sampleSize];
+        new Random(0).nextBytes(sample);
+
+        Map<String, Provider> results = new LinkedHashMap<String, Provider>();
+        for (String algorithm : algorithms) {
+            Provider[] candidates = Security.getProviders("MessageDigest." + algorithm);
+            if (null == candidates) {
+                continue;
+            }
+            Provider fastest = candidates[0];
+            if (1 < candidates.length) {
+                double best = -1;
+                for (Provider candidate : candidates) {
+                    try {
+                        double throughput = measure(MessageDigest.getInstance(algorithm, candidate), sample);
+                        logger.fine(algorithm + " from " + candidate.getName() + ": " + (long) throughput + " MB/s");
+                        if (throughput > best) {
+                            best = throughput;
+                            fastest = candidate;
+                        }
+                    } catch (NoSuchAlgorithmException e) {
+                        logger.fine(algorithm + " from " + candidate.getName() + " failed: " + e);
+                    }
+                }
+            }
+            results.put(algorithm, fastest);
+        }
+        return results;
+    }
+
+    /**
+     * Hashes the sample repeatedly for a while.
+     *
+     * @param md     digest to measure
+     * @param sample data to hash
+     * @return throughput in megabytes per second
+     */
+    protected double measure(final MessageDigest md, final byte[] sample) {
+        long start = System.nanoTime();
+        do {
+            md.update(sample);
+        } while (System.nanoTime() - start < this.sampleNanos);
+        md.reset();
+
+        long bytes = 0;
+        long elapsed;
+        start = System.nanoTime();
+        do {
+            md.update(sample);
+            bytes += sample.length;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < this.sampleNanos);
+        md.reset();
+        return bytes * 1000.0 * 1000 * 1000 / elapsed / (1024 * 1024);
+    }
+
+    /**
+     * Pins the given providers in {@link DigestPool}.
+     *
+     * @param providers provider by algorithm
+     */
+    public static void apply(final Map<String, Provider> providers) {
+        for (Map.Entry<String, Provider> entry : providers.entrySet()) {
+            try {
+                DigestPool.pin(entry.getKey(), entry.getValue());
+                logger.fine("pinned " + entry.getKey() + " to " + entry.getValue().getName());
+            } catch (NoSuchAlgorithmException e) {
+                logger.warning("failed to pin " + entry.getKey() + " to " + entry.getValue().getName() + ": " + e);
+            }
+        }
+    }
+
+    /**
+     * Reads a profile written by {@link #save(Path, Map)}.
+     *
+     * @param profile profile file
+     * @return provider by algorithm, or null if the profile does not exist,
+     *         was written by a different JVM, or names a missing provider
+     * @throws IOException if the profile could not be read
+     */
+    public static Map<String, Provider> load(final Path profile) throws IOException {
+        if (!Files.isRegularFile(profile)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        InputStream input = Files.newInputStream(profile);
+        try {
+            properties.load(input);
+        } finally {
+            input.close();
+        }
+        if (!getFingerprint().equals(properties.getProperty(FINGERPRINT_KEY))) {
+            logger.fine("ignoring stale digest profile " + profile);
+            return null;
+        }
+
+        Map<String, Provider> results = new LinkedHashMap<String, Provider>();
+        for (String algorithm : properties.stringPropertyNames()) {
+            if (FINGERPRINT_KEY.equals(algorithm)) {
+                continue;
+            }
+            Provider provider = Security.getProvider(properties.getProperty(algorithm));
+            if (null == provider) {
+                return null;
+            }
+            results.put(algorithm, provider);
+        }
+        return results;
+    }
+
+    /**
+     * Writes the given providers to a profile, replacing it atomically.
+     *
+     * @param profile   profile file
+     * @param providers provider by algorithm
+     * @throws IOException if the profile could not be written
+     */
+    public static void save(final Path profile, final Map<String, Provider> providers) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(FINGERPRINT_KEY, getFingerprint());
+        for (Map.Entry<String, Provider> entry : providers.entrySet()) {
+            properties.setProperty(entry.getKey(), entry.getValue().getName());
+        }
+
+        Path parent = profile.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, profile.getFileName().toString(), ".tmp");
+        try {
+            OutputStream output = Files.newOutputStream(temp);
+            try {
+                properties.store(output, "fastest MessageDigest provider by algorithm");
+            } finally {
+                output.close();
+            }
+            Files.move(temp, profile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -17,20 +17,21 @@
 
 package org.widgetrefinery.util.crypto;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.DigestException;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.security.Security;
 
 /**
  * Utility class for computing hashes supported by
- * {@link java.security.MessageDigest}.
+ * {@link java.security.MessageDigest}. Digests come from a shared
+ * {@link DigestPool} so the provider lookup is only done once per algorithm.
  *
  * @see java.security.MessageDigest
  * @since 3/4/12 7:51 PM
  */
 public class DigestCryptoHash extends AbstractCryptoHash {
-    private final String type;
+    private final DigestPool pool;
 
     /**
      * Creates an instance that will hash data given to it.
@@ -38,7 +39,7 @@ public class DigestCryptoHash extends AbstractCryptoHash {
      * @param type digest type
      */
     protected DigestCryptoHash(final String type) {
-        this.type = type;
+        this(null, type);
     }
 
     /**
@@ -48,32 +49,60 @@ public class DigestCryptoHash extends AbstractCryptoHash {
      * @param type  digest type
      */
     protected DigestCryptoHash(final CryptoHash chain, final String type) {
+        this(chain, DigestPool.get(type));
+    }
+
+    /**
+     * Creates an instance that draws its digests from the given pool.
+     *
+     * @param chain upstream CryptoHash
+     * @param pool  digest pool
+     */
+    protected DigestCryptoHash(final CryptoHash chain, final DigestPool pool) {
         super(chain);
-        this.type = type;
+        this.pool = pool;
+    }
+
+    public DigestPool getPool() {
+        return this.pool;
     }
 
     @Override
-    protected byte[] computeHash(final InputStream input) throws IOException {
-        try {
-            MessageDigest md = MessageDigest.getInstance(this.type);
-            byte[] data = new byte[BUFFER_SIZE];
-            for (int bytesRead = input.read(data); 0 < bytesRead; bytesRead = input.read(data)) {
-                md.update(data, 0, bytesRead);
-            }
-            return md.digest();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("no " + this.type + " provider found", e);
-        }
+    protected String getAlgorithmName() {
+        return this.pool.getAlgorithm();
     }
 
     @Override
-    protected byte[] computeHash(final byte[] input) {
-        try {
-            MessageDigest md = MessageDigest.getInstance(this.type);
-            return md.digest(input);
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("no " + this.type + " provider found", e);
-        }
+    protected HashSession newSession() {
+        return new DigestSession(this.pool.acquire());
+    }
+
+    @Override
+    protected void recycle(final HashSession session) {
+        this.pool.release(((DigestSession) session).md);
+    }
+
+    /**
+     * Resumable sessions are plain Java and lack the intrinsics that
+     * MessageDigest gets from the JIT.
+     *
+     * @return false
+     */
+    @Override
+    public boolean isResumeCheap() {
+        return false;
+    }
+
+    /**
+     * MessageDigest has no way to get at its state, so resumable sessions
+     * are {@link ResumableDigestSession}s, which support MD5, SHA-1, and
+     * SHA-2.
+     *
+     * @return new session, or null if the algorithm is not supported
+     */
+    @Override
+    protected ResumableHashSession newResumableSession() {
+        return ResumableDigestSession.create(this.pool.getAlgorithm());
     }
 
     /**
@@ -113,4 +142,128 @@ public class DigestCryptoHash extends AbstractCryptoHash {
     public static DigestCryptoHash createSHA1(final CryptoHash chain) {
         return new DigestCryptoHash(chain, "SHA-1");
     }
+
+    /**
+     * Creates a new instance that computes SHA-224 hashes.
+     *
+     * @param chain upstream CryptoHash, may be null
+     * @return SHA-224 instance
+     */
+    public static DigestCryptoHash createSHA224(final CryptoHash chain) {
+        return new DigestCryptoHash(chain, "SHA-224");
+    }
+
+    /**
+     * Creates a new instance that computes SHA-256 hashes.
+     *
+     * @param chain upstream CryptoHash, may be null
+     * @return SHA-256 instance
+     */
+    public static DigestCryptoHash createSHA256(final CryptoHash chain) {
+        return new DigestCryptoHash(chain, "SHA-256");
+    }
+
+    /**
+     * Creates a new instance that computes SHA-384 hashes.
+     *
+     * @param chain upstream CryptoHash, may be null
+     * @return SHA-384 instance
+     */
+    public static DigestCryptoHash createSHA384(final CryptoHash chain) {
+        return new DigestCryptoHash(chain, "SHA-384");
+    }
+
+    /**
+     * Creates a new instance that computes SHA-512 hashes.
+     *
+     * @param chain upstream CryptoHash, may be null
+     * @return SHA-512 instance
+     */
+    public static DigestCryptoHash createSHA512(final CryptoHash chain) {
+        return new DigestCryptoHash(chain, "SHA-512");
+    }
+
+    /**
+     * Creates a new instance that computes SHA-512/256 hashes. This runs
+     * SHA-512 internally, so it tends to be faster than SHA-256 on 64 bit
+     * machines without SHA instructions.
+     *
+     * @param chain upstream CryptoHash, may be null
+     * @return SHA-512/256 instance
+     */
+    public static DigestCryptoHash createSHA512_256(final CryptoHash chain) {
+        return new DigestCryptoHash(chain, "SHA-512/256");
+    }
+
+    /**
+     * Creates a new instance that computes SHA3-256 hashes.
+     *
+     * @param chain upstream CryptoHash, may be null
+     * @return SHA3-256 instance
+     */
+    public static DigestCryptoHash createSHA3_256(final CryptoHash chain) {
+        return new DigestCryptoHash(chain, "SHA3-256");
+    }
+
+    /**
+     * Creates a new instance that computes SHA3-512 hashes.
+     *
+     * @param chain upstream CryptoHash, may be null
+     * @return SHA3-512 instance
+     */
+    public static DigestCryptoHash createSHA3_512(final CryptoHash chain) {
+        return new DigestCryptoHash(chain, "SHA3-512");
+    }
+
+    /**
+     * Checks whether any installed provider supports the given digest.
+     *
+     * @param type digest type
+     * @return true if the digest is available
+     */
+    public static boolean isSupported(final String type) {
+        return null != Security.getProviders("MessageDigest." + type);
+    }
+
+    /**
+     * Session backed by a {@link java.security.MessageDigest}.
+     */
+    protected static class DigestSession implements HashSession {
+        private final MessageDigest md;
+
+        public DigestSession(final MessageDigest md) {
+            this.md = md;
+        }
+
+        @Override
+        public int getDigestLength() {
+            return this.md.getDigestLength();
+        }
+
+        @Override
+        public void update(final byte[] input, final int offset, final int length) {
+            this.md.update(input, offset, length);
+        }
+
+        @Override
+        public void update(final ByteBuffer input) {
+            this.md.update(input);
+        }
+
+        @Override
+        public int digestInto(final byte[] output, final int offset) {
+            int length = this.md.getDigestLength();
+            checkOutput(output, offset, length);
+            try {
+                return this.md.digest(output, offset, length);
+            } catch (DigestException e) {
+                throw new IllegalArgumentException("failed to write digest", e);
+            }
+        }
+
+        @Override
+        public void reset() {
+            this.md.reset();
+        }
+    }
 }
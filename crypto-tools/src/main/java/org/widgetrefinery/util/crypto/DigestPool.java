@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded pool of {@link java.security.MessageDigest} instances for a
+ * single algorithm. {@link java.security.MessageDigest#getInstance(String)}
+ * walks the installed providers under a lock on every call, which shows up
+ * when hashing lots of small inputs. The pool resolves the provider once,
+ * keeps an untouched prototype, and creates new instances by cloning it.
+ * Released instances are reset and handed out again.
+ *
+ * @since 10/17/26 1:40 PM
+ */
+public class DigestPool {
+    /**
+     * Default max number of idle digests per pool.
+     */
+    public static final int DEFAULT_MAX_IDLE = 4 * Runtime.getRuntime().availableProcessors();
+
+    private static final ConcurrentMap<String, DigestPool> POOLS = new ConcurrentHashMap<String, DigestPool>();
+
+    private final String               algorithm;
+    private final MessageDigest        prototype;
+    private final boolean              cloneable;
+    private final int                  maxIdle;
+    private final Queue<MessageDigest> idle;
+    private final AtomicInteger        idleCount;
+    private final LongAdder            hits;
+    private final LongAdder            misses;
+
+    /**
+     * Creates a pool using the first provider that supports the algorithm.
+     *
+     * @param algorithm digest algorithm
+     * @param maxIdle   max number of idle digests to hold on to
+     * @throws NoSuchAlgorithmException if no provider supports the algorithm
+     */
+    public DigestPool(final String algorithm, final int maxIdle) throws NoSuchAlgorithmException {
+        this(MessageDigest.getInstance(algorithm), maxIdle);
+    }
+
+    /**
+     * Creates a pool using the given provider.
+     *
+     * @param algorithm digest algorithm
+     * @param provider  provider to use
+     * @param maxIdle   max number of idle digests to hold on to
+     * @throws NoSuchAlgorithmException if the provider does not support the algorithm
+     */
+    public DigestPool(final String algorithm, final Provider provider, final int maxIdle) throws NoSuchAlgorithmException {
+        this(MessageDigest.getInstance(algorithm, provider), maxIdle);
+    }
+
+    protected DigestPool(final MessageDigest prototype, final int maxIdle) {
+        this.algorithm = prototype.getAlgorithm();
+        this.prototype = prototype;
+        this.cloneable = isCloneable(prototype);
+        this.maxIdle = maxIdle;
+        this.idle = new ConcurrentLinkedQueue<MessageDigest>();
+        this.idleCount = new AtomicInteger();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+    }
+
+    /**
+     * Returns the shared pool for the given algorithm, creating it if needed.
+     *
+     * @param algorithm digest algorithm
+     * @return shared pool
+     * @throws RuntimeException if no provider supports the algorithm
+     */
+    public static DigestPool get(final String algorithm) throws RuntimeException {
+        DigestPool pool = POOLS.get(algorithm);
+        if (null == pool) {
+            try {
+                pool = new DigestPool(algorithm, DEFAULT_MAX_IDLE);
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException("no " + algorithm + " provider found", e);
+            }
+            DigestPool existing = POOLS.putIfAbsent(algorithm, pool);
+            if (null != existing) {
+                pool = existing;
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Replaces the shared pool for the given algorithm with one that uses the
+     * given provider. Only CryptoHash instances created afterwards pick up
+     * the new pool.
+     *
+     * @param algorithm digest algorithm
+     * @param provider  provider to use
+     * @return new shared pool
+     * @throws NoSuchAlgorithmException if the provider does not support the algorithm
+     */
+    public static DigestPool pin(final String algorithm, final Provider provider) throws NoSuchAlgorithmException {
+        DigestPool pool = new DigestPool(algorithm, provider, DEFAULT_MAX_IDLE);
+        POOLS.put(algorithm, pool);
+        return pool;
+    }
+
+    public String getAlgorithm() {
+        return this.algorithm;
+    }
+
+    public Provider getProvider() {
+        return this.prototype.getProvider();
+    }
+
+    /**
+     * Returns a digest in its initial state. The digest should be given back
+     * through {@link #release(MessageDigest)} once the caller is done.
+     *
+     * @return digest
+     */
+    public MessageDigest acquire() {
+        MessageDigest md = this.idle.poll();
+        if (null != md) {
+            this.idleCount.decrementAndGet();
+            this.hits.increment();
+        } else {
+            this.misses.increment();
+            md = newInstance();
+        }
+        return md;
+    }
+
+    /**
+     * Resets the given digest and returns it to the pool. Digests in excess
+     * of the pool limit are dropped.
+     *
+     * @param md digest from {@link #acquire()}
+     */
+    public void release(final MessageDigest md) {
+        md.reset();
+        if (this.idleCount.incrementAndGet() <= this.maxIdle) {
+            this.idle.offer(md);
+        } else {
+            this.idleCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the number of times {@link #acquire()} reused an idle digest.
+     *
+     * @return hit count
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * Returns the number of times {@link #acquire()} had to create a digest.
+     *
+     * @return miss count
+     */
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * Returns the number of idle digests held by the pool.
+     *
+     * @return idle count
+     */
+    public int getIdle() {
+        return this.idleCount.get();
+    }
+
+    protected MessageDigest newInstance() {
+        try {
+            if (this.cloneable) {
+                return (MessageDigest) this.prototype.clone();
+            }
+            return MessageDigest.getInstance(this.algorithm, this.prototype.getProvider());
+        } catch (CloneNotSupportedException e) {
+            throw new RuntimeException("failed to clone " + this.algorithm + " digest", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("no " + this.algorithm + " provider found", e);
+        }
+    }
+
+    private static boolean isCloneable(final MessageDigest md) {
+        try {
+            md.clone();
+            return true;
+        } catch (CloneNotSupportedException e) {
+            return false;
+        }
+    }
+}
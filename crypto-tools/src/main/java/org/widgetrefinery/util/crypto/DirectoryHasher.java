@@ -0,0 +1,533 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Hashes directory trees in parallel. Directories are listed and files are
+ * hashed as tasks on a work-stealing pool, and results are handed to a
+ * {@link ResultHandler} as soon as they are ready. When sorting is enabled,
+ * results are held in a reorder buffer and released in the order of a
+ * sorted depth-first walk instead.
+ * <p/>
+ * Excluded directories and directories past the max depth are never listed
+ * so no time is spent on entries that would be thrown away.
+ *
+ * @since 10/17/26 10:15 AM
+ */
+public class DirectoryHasher {
+    /**
+     * How symbolic links found during the walk are treated. Paths given
+     * directly to {@link #hash(List, ResultHandler)} are always followed.
+     */
+    public enum SymlinkPolicy {
+        /**
+         * Ignore all symbolic links.
+         */
+        SKIP,
+        /**
+         * Hash symbolic links to regular files but do not descend into
+         * symbolic links to directories.
+         */
+        FILES,
+        /**
+         * Follow all symbolic links. Links back to a parent directory are
+         * skipped.
+         */
+        FOLLOW
+    }
+
+    /**
+     * Receives the results of the walk. Calls may come from multiple threads
+     * but are never concurrent.
+     */
+    public interface ResultHandler {
+        /**
+         * Called when a file was hashed.
+         *
+         * @param path    file that was hashed
+         * @param results hashes from {@link MultiCryptoHash#getHashes(Path)}
+         */
+        void onResult(Path path, byte[][] results);
+
+        /**
+         * Called when a file or directory could not be read.
+         *
+         * @param path  file or directory that failed
+         * @param error reason for the failure
+         */
+        void onError(Path path, Exception error);
+    }
+
+    /**
+     * Receives the files found by {@link #walk(List, FileHandler)}. Calls
+     * may come from multiple threads but are never concurrent.
+     */
+    public interface FileHandler {
+        /**
+         * Called for each file found.
+         *
+         * @param path       file that was found
+         * @param attributes attributes of the file, following symbolic links
+         */
+        void onFile(Path path, BasicFileAttributes attributes);
+
+        /**
+         * Called when a file or directory could not be read.
+         *
+         * @param path  file or directory that failed
+         * @param error reason for the failure
+         */
+        void onError(Path path, Exception error);
+    }
+
+    private static final Comparator<Path> NAME_ORDER = new Comparator<Path>() {
+        @Override
+        public int compare(final Path path1, final Path path2) {
+            return path1.getFileName().toString().compareTo(path2.getFileName().toString());
+        }
+    };
+
+    private final MultiCryptoHash   multiCryptoHash;
+    private final int               threads;
+    private final List<PathMatcher> nameIncludes;
+    private final List<PathMatcher> pathIncludes;
+    private final List<PathMatcher> nameExcludes;
+    private final List<PathMatcher> pathExcludes;
+    private       SymlinkPolicy     symlinkPolicy;
+    private       int               maxDepth;
+    private       boolean           sorted;
+
+    /**
+     * @param multiCryptoHash hashes to compute for each file
+     * @param threads         number of worker threads
+     */
+    public DirectoryHasher(final MultiCryptoHash multiCryptoHash, final int threads) {
+        if (0 >= threads) {
+            throw new IllegalArgumentException("invalid thread count (" + threads + ')');
+        }
+        this.multiCryptoHash = multiCryptoHash;
+        this.threads = threads;
+        this.nameIncludes = new ArrayList<PathMatcher>();
+        this.pathIncludes = new ArrayList<PathMatcher>();
+        this.nameExcludes = new ArrayList<PathMatcher>();
+        this.pathExcludes = new ArrayList<PathMatcher>();
+        this.symlinkPolicy = SymlinkPolicy.SKIP;
+        this.maxDepth = Integer.MAX_VALUE;
+    }
+
+    /**
+     * Only hash files matching the given glob. Globs containing a '/' are
+     * matched against the path relative to the starting directory, other
+     * globs are matched against the file name. If no includes are given then
+     * all files are hashed.
+     *
+     * @param glob glob pattern
+     */
+    public void addInclude(final String glob) {
+        addGlob(glob, this.nameIncludes, this.pathIncludes);
+    }
+
+    /**
+     * Skip files and directories matching the given glob. Globs are matched
+     * the same way as in {@link #addInclude(String)}.
+     *
+     * @param glob glob pattern
+     */
+    public void addExclude(final String glob) {
+        addGlob(glob, this.nameExcludes, this.pathExcludes);
+    }
+
+    public void setSymlinkPolicy(final SymlinkPolicy symlinkPolicy) {
+        this.symlinkPolicy = symlinkPolicy;
+    }
+
+    /**
+     * Limits how deep the walk goes. Entries directly under a starting
+     * directory are at depth 1.
+     *
+     * @param maxDepth max depth to walk
+     */
+    public void setMaxDepth(final int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Report results in sorted depth-first order instead of completion
+     * order.
+     *
+     * @param sorted true to sort results
+     */
+    public void setSorted(final boolean sorted) {
+        this.sorted = sorted;
+    }
+
+    /**
+     * Hashes the given files and directory trees, blocking until every file
+     * has been reported to the handler.
+     *
+     * @param roots   files and directories to hash
+     * @param handler receives the results
+     */
+    public void hash(final List<Path> roots, final ResultHandler handler) {
+        Node top = createTop(roots);
+        walk(top, new Emitter(top, handler));
+    }
+
+    /**
+     * Walks the given files and directory trees without hashing anything,
+     * blocking until every file has been reported to the handler. The same
+     * filters and ordering apply as for {@link #hash(List, ResultHandler)}.
+     *
+     * @param roots   files and directories to walk
+     * @param handler receives the files found
+     */
+    public void walk(final List<Path> roots, final FileHandler handler) {
+        Node top = createTop(roots);
+        walk(top, new Emitter(top, handler));
+    }
+
+    private Node createTop(final List<Path> roots) {
+        Node top = new Node(null, null, true, null);
+        List<Node> nodes = new ArrayList<Node>(roots.size());
+        for (Path root : roots) {
+            nodes.add(new Node(root, root, Files.isDirectory(root), null));
+        }
+        top.children = nodes;
+        return top;
+    }
+
+    private void walk(final Node top, final Emitter emitter) {
+        ForkJoinPool pool = new ForkJoinPool(this.threads);
+        try {
+            pool.invoke(new WalkTask(null, top, emitter));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Hashes a single file found by the walk. This is called from the worker
+     * threads.
+     *
+     * @param path file to hash
+     * @return results to pass to the handler
+     * @throws IOException if an error occurred reading the file
+     */
+    protected byte[][] hashFile(final Path path) throws IOException {
+        return this.multiCryptoHash.getHashes(path);
+    }
+
+    protected void addGlob(final String glob, final List<PathMatcher> nameMatchers, final List<PathMatcher> pathMatchers) {
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        if (glob.contains("/")) {
+            pathMatchers.add(matcher);
+        } else {
+            nameMatchers.add(matcher);
+        }
+    }
+
+    protected boolean isExcluded(final Node node) {
+        return matches(node, this.nameExcludes, this.pathExcludes);
+    }
+
+    protected boolean isIncluded(final Node node) {
+        return (this.nameIncludes.isEmpty() && this.pathIncludes.isEmpty()) || matches(node, this.nameIncludes, this.pathIncludes);
+    }
+
+    protected boolean matches(final Node node, final List<PathMatcher> nameMatchers, final List<PathMatcher> pathMatchers) {
+        Path name = node.path.getFileName();
+        for (PathMatcher matcher : nameMatchers) {
+            if (null != name && matcher.matches(name)) {
+                return true;
+            }
+        }
+        if (!pathMatchers.isEmpty()) {
+            Path relative = node.root.relativize(node.path);
+            for (PathMatcher matcher : pathMatchers) {
+                if (matcher.matches(relative)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lists the given directory, returning the entries that should be walked.
+     *
+     * @param parent directory to list
+     * @return entries to walk
+     * @throws IOException if the directory could not be read
+     */
+    protected List<Node> list(final Node parent) throws IOException {
+        List<Path> paths = new ArrayList<Path>();
+        DirectoryStream<Path> stream = Files.newDirectoryStream(parent.path);
+        try {
+            for (Path path : stream) {
+                paths.add(path);
+            }
+        } finally {
+            stream.close();
+        }
+        if (this.sorted) {
+            Collections.sort(paths, NAME_ORDER);
+        }
+
+        List<Node> children = new ArrayList<Node>(paths.size());
+        for (Path path : paths) {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (attributes.isSymbolicLink()) {
+                if (SymlinkPolicy.SKIP == this.symlinkPolicy) {
+                    continue;
+                }
+                try {
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    continue;
+                }
+                if (attributes.isDirectory() && SymlinkPolicy.FOLLOW != this.symlinkPolicy) {
+                    continue;
+                }
+            }
+
+            Node child = new Node(parent.root, path, attributes.isDirectory(), parent);
+            child.depth = parent.depth + 1;
+            child.fileKey = attributes.fileKey();
+            child.attributes = attributes;
+            if ((child.directory ? child.depth >= this.maxDepth : child.depth > this.maxDepth) || isExcluded(child)) {
+                continue;
+            }
+            if (child.directory) {
+                if (child.isCycle()) {
+                    continue;
+                }
+            } else if (!attributes.isRegularFile() || !isIncluded(child)) {
+                continue;
+            }
+            children.add(child);
+        }
+        return children;
+    }
+
+    /**
+     * An entry in the walk. In sorted mode, directory nodes hold their
+     * children until the reorder buffer has moved past them.
+     */
+    protected static class Node {
+        private final    Path                root;
+        private final    Path                path;
+        private final    boolean             directory;
+        private final    Node                parent;
+        private          int                 depth;
+        private          Object              fileKey;
+        private          BasicFileAttributes attributes;
+        private volatile List<Node>          children;
+        private volatile boolean             done;
+        private          byte[][]            result;
+        private          Exception           error;
+
+        public Node(final Path root, final Path path, final boolean directory, final Node parent) {
+            this.root = root;
+            this.path = path;
+            this.directory = directory;
+            this.parent = parent;
+        }
+
+        /**
+         * Checks if this directory is the same as one of its parents, which
+         * can happen when following symbolic links.
+         *
+         * @return true if this directory was already visited on this branch
+         */
+        public boolean isCycle() {
+            if (null != this.fileKey) {
+                for (Node node = this.parent; null != node; node = node.parent) {
+                    if (this.fileKey.equals(node.fileKey)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Lists a directory and forks tasks for its children, or hashes a file.
+     * When only walking, files are not hashed and just need their attributes.
+     */
+    protected class WalkTask extends CountedCompleter<Void> {
+        private static final long serialVersionUID = 1L;
+
+        private final Node    node;
+        private final Emitter emitter;
+
+        public WalkTask(final CountedCompleter<?> completer, final Node node, final Emitter emitter) {
+            super(completer);
+            this.node = node;
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void compute() {
+            if (this.node.directory) {
+                List<Node> children = this.node.children;
+                if (null == children) {
+                    try {
+                        if (null == this.node.fileKey) {
+                            this.node.fileKey = Files.readAttributes(this.node.path, BasicFileAttributes.class).fileKey();
+                        }
+                        children = list(this.node);
+                    } catch (IOException e) {
+                        this.node.error = e;
+                        children = Collections.emptyList();
+                    }
+                }
+                setPendingCount(children.size());
+                for (Node child : children) {
+                    new WalkTask(this, child, this.emitter).fork();
+                }
+                if (DirectoryHasher.this.sorted) {
+                    this.node.children = children;
+                }
+                if (null != this.node.error) {
+                    this.emitter.error(this.node);
+                }
+                this.emitter.advance();
+            } else {
+                try {
+                    if (this.emitter.isWalkOnly()) {
+                        if (null == this.node.attributes) {
+                            this.node.attributes = Files.readAttributes(this.node.path, BasicFileAttributes.class);
+                        }
+                    } else {
+                        this.node.result = hashFile(this.node.path);
+                    }
+                } catch (Exception e) {
+                    this.node.error = e;
+                }
+                this.emitter.finish(this.node);
+            }
+            tryComplete();
+        }
+    }
+
+    /**
+     * Passes results to the handler. In sorted mode this is the reorder
+     * buffer: it walks the tree in order and stops at the first entry that
+     * is not ready yet, releasing entries as it moves past them.
+     */
+    protected class Emitter {
+        private final ResultHandler resultHandler;
+        private final FileHandler   fileHandler;
+        private final List<Node>    stack;
+        private final List<Integer> positions;
+
+        public Emitter(final Node top, final ResultHandler handler) {
+            this(top, handler, null);
+        }
+
+        public Emitter(final Node top, final FileHandler handler) {
+            this(top, null, handler);
+        }
+
+        private Emitter(final Node top, final ResultHandler resultHandler, final FileHandler fileHandler) {
+            this.resultHandler = resultHandler;
+            this.fileHandler = fileHandler;
+            this.stack = new ArrayList<Node>();
+            this.positions = new ArrayList<Integer>();
+            this.stack.add(top);
+            this.positions.add(0);
+        }
+
+        /**
+         * @return true if files are only reported, not hashed
+         */
+        public boolean isWalkOnly() {
+            return null != this.fileHandler;
+        }
+
+        public synchronized void error(final Node node) {
+            if (null != this.fileHandler) {
+                this.fileHandler.onError(node.path, node.error);
+            } else {
+                this.resultHandler.onError(node.path, node.error);
+            }
+        }
+
+        public void finish(final Node node) {
+            if (DirectoryHasher.this.sorted) {
+                node.done = true;
+                advance();
+            } else {
+                report(node);
+            }
+        }
+
+        public synchronized void advance() {
+            if (!DirectoryHasher.this.sorted) {
+                return;
+            }
+            while (!this.stack.isEmpty()) {
+                int top = this.stack.size() - 1;
+                List<Node> children = this.stack.get(top).children;
+                if (null == children) {
+                    return;
+                }
+                int position = this.positions.get(top);
+                if (position >= children.size()) {
+                    this.stack.get(top).children = Collections.emptyList();
+                    this.stack.remove(top);
+                    this.positions.remove(top);
+                    continue;
+                }
+                Node child = children.get(position);
+                if (child.directory) {
+                    this.positions.set(top, position + 1);
+                    this.stack.add(child);
+                    this.positions.add(0);
+                } else if (child.done) {
+                    this.positions.set(top, position + 1);
+                    report(child);
+                    children.set(position, null);
+                } else {
+                    return;
+                }
+            }
+        }
+
+        protected synchronized void report(final Node node) {
+            if (null != node.error) {
+                error(node);
+            } else if (null != this.fileHandler) {
+                this.fileHandler.onFile(node.path, node.attributes);
+            } else {
+                this.resultHandler.onResult(node.path, node.result);
+            }
+        }
+    }
+}
@@ -0,0 +1,551 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Finds files with identical contents while reading as little as possible.
+ * The work is done in three stages, each one only looking at the files that
+ * survived the previous one:
+ * <ol>
+ * <li>files are grouped by size, and files with a unique size are dropped</li>
+ * <li>the first and last {@link #getSampleSize()} bytes of each remaining
+ * file are hashed with XXH3 and files with a unique sample hash are
+ * dropped</li>
+ * <li>the remaining files are hashed in full with the given
+ * {@link MultiCryptoHash} and grouped by the results</li>
+ * </ol>
+ * Files no bigger than two samples skip the second stage since sampling them
+ * would read them in full anyway.
+ * <p/>
+ * The walk is done by a {@link DirectoryHasher}, available through
+ * {@link #getWalker()}, so the usual include, exclude, depth, and symlink
+ * settings apply. Sizes are grouped with a {@link LongIntMap} and per-file
+ * state is kept in flat arrays to stay lean on millions of files.
+ *
+ * @since 10/17/26 6:20 PM
+ */
+public class DuplicateFinder {
+    /**
+     * Default number of bytes hashed from each end of a file in the second
+     * stage.
+     */
+    public static final int DEFAULT_SAMPLE_SIZE = 4096;
+
+    private static final Logger logger    = Logger.getLogger(DuplicateFinder.class.getName());
+    private static final int    LEAF_SIZE = 16;
+
+    private final MultiCryptoHash multiCryptoHash;
+    private final int             threads;
+    private final DirectoryHasher walker;
+    private final LongAdder       bytesRead;
+    private       int             sampleSize;
+    private       List<Path>      paths;
+    private       long[]          sizes;
+    private       long            totalBytes;
+    private       long            bytesSkipped;
+    private       int             groupCount;
+    private       int             duplicateCount;
+
+    /**
+     * @param multiCryptoHash hashes to compute for the final stage
+     * @param threads         number of worker threads
+     */
+    public DuplicateFinder(final MultiCryptoHash multiCryptoHash, final int threads) {
+        this.multiCryptoHash = multiCryptoHash;
+        this.threads = threads;
+        this.walker = new DirectoryHasher(multiCryptoHash, threads);
+        this.bytesRead = new LongAdder();
+        this.sampleSize = DEFAULT_SAMPLE_SIZE;
+    }
+
+    /**
+     * Returns the walker used to find files. Its filters can be configured
+     * before calling {@link #find(List, DuplicateHandler)}.
+     *
+     * @return walker
+     */
+    public DirectoryHasher getWalker() {
+        return this.walker;
+    }
+
+    public int getSampleSize() {
+        return this.sampleSize;
+    }
+
+    public void setSampleSize(final int sampleSize) {
+        if (0 >= sampleSize) {
+            throw new IllegalArgumentException("invalid sample size (" + sampleSize + ')');
+        }
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * Returns the number of files found by the last walk.
+     *
+     * @return file count
+     */
+    public int getFileCount() {
+        return null != this.paths ? this.paths.size() : 0;
+    }
+
+    /**
+     * Returns the combined size of the files found by the last walk.
+     *
+     * @return byte count
+     */
+    public long getTotalBytes() {
+        return this.totalBytes;
+    }
+
+    /**
+     * Returns the number of bytes read by the sample and full hashes.
+     *
+     * @return byte count
+     */
+    public long getBytesRead() {
+        return this.bytesRead.sum();
+    }
+
+    /**
+     * Returns the number of bytes that were never read.
+     *
+     * @return byte count
+     */
+    public long getBytesSkipped() {
+        return this.bytesSkipped;
+    }
+
+    /**
+     * Returns the number of groups of duplicates found.
+     *
+     * @return group count
+     */
+    public int getGroupCount() {
+        return this.groupCount;
+    }
+
+    /**
+     * Returns the number of files in all groups of duplicates.
+     *
+     * @return file count
+     */
+    public int getDuplicateCount() {
+        return this.duplicateCount;
+    }
+
+    /**
+     * Finds the duplicates among the given files and directory trees. Groups
+     * are reported largest file size first, with the paths in each group
+     * sorted.
+     *
+     * @param roots   files and directories to search
+     * @param handler receives the groups of duplicates
+     */
+    public void find(final List<Path> roots, final DuplicateHandler handler) {
+        this.bytesRead.reset();
+        this.groupCount = 0;
+        this.duplicateCount = 0;
+        List<int[]> bySize = groupBySize(roots, handler);
+
+        ForkJoinPool pool = new ForkJoinPool(this.threads);
+        try {
+            List<int[]> candidates = new ArrayList<int[]>();
+            List<int[]> sampled = new ArrayList<int[]>();
+            int sampledFiles = 0;
+            for (int[] group : bySize) {
+                if (2L * this.sampleSize >= this.sizes[group[0]]) {
+                    candidates.add(group);
+                } else {
+                    sampled.add(group);
+                    sampledFiles += group.length;
+                }
+            }
+            int[] sampledIndexes = flatten(sampled, sampledFiles);
+            long[] samples = new long[this.sizes.length];
+            Exception[] errors = new Exception[this.sizes.length];
+            pool.invoke(new SampleTask(sampledIndexes, 0, sampledIndexes.length, samples, errors));
+            for (int[] group : sampled) {
+                splitBySample(group, samples, errors, handler, candidates);
+            }
+            logger.fine(bySize.size() + " size group(s), " + candidates.size() + " candidate group(s) after sampling " + sampledFiles + " file(s)");
+
+            Collections.sort(candidates, new Comparator<int[]>() {
+                @Override
+                public int compare(final int[] group1, final int[] group2) {
+                    return Long.compare(DuplicateFinder.this.sizes[group2[0]], DuplicateFinder.this.sizes[group1[0]]);
+                }
+            });
+            int candidateFiles = 0;
+            for (int[] group : candidates) {
+                candidateFiles += group.length;
+            }
+            int[] files = flatten(candidates, candidateFiles);
+            byte[][][] results = new byte[this.sizes.length][][];
+            pool.invoke(new FullHashTask(files, 0, files.length, results, errors));
+
+            long skipped = this.totalBytes;
+            for (int file : files) {
+                skipped -= this.sizes[file];
+            }
+            for (int file : sampledIndexes) {
+                if (null == results[file]) {
+                    skipped -= 2L * this.sampleSize;
+                }
+            }
+            this.bytesSkipped = Math.max(0, skipped);
+
+            for (int[] group : candidates) {
+                reportDuplicates(group, results, errors, handler);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Walks the given roots and groups the files found by size, dropping
+     * files with a unique size.
+     *
+     * @param roots   files and directories to search
+     * @param handler receives walk errors
+     * @return groups of file indexes with the same size
+     */
+    protected List<int[]> groupBySize(final List<Path> roots, final DuplicateHandler handler) {
+        final List<Path> found = new ArrayList<Path>();
+        final long[][] foundSizes = {new long[1024]};
+        this.walker.walk(roots, new DirectoryHasher.FileHandler() {
+            @Override
+            public void onFile(final Path path, final BasicFileAttributes attributes) {
+                if (foundSizes[0].length == found.size()) {
+                    foundSizes[0] = Arrays.copyOf(foundSizes[0], 2 * found.size());
+                }
+                foundSizes[0][found.size()] = attributes.size();
+                found.add(path);
+            }
+
+            @Override
+            public void onError(final Path path, final Exception error) {
+                handler.onError(path, error);
+            }
+        });
+        this.paths = found;
+        this.sizes = Arrays.copyOf(foundSizes[0], found.size());
+
+        LongIntMap groupIds = new LongIntMap(this.sizes.length);
+        int[] counts = new int[Math.max(16, this.sizes.length / 4)];
+        int[] groupOf = new int[this.sizes.length];
+        this.totalBytes = 0;
+        for (int file = 0; file < this.sizes.length; file++) {
+            this.totalBytes += this.sizes[file];
+            int groupId = groupIds.get(this.sizes[file], -1);
+            if (0 > groupId) {
+                groupId = groupIds.size();
+                groupIds.put(this.sizes[file], groupId);
+                if (counts.length == groupId) {
+                    counts = Arrays.copyOf(counts, 2 * counts.length);
+                }
+            }
+            counts[groupId]++;
+            groupOf[file] = groupId;
+        }
+
+        int[][] members = new int[groupIds.size()][];
+        int[] filled = new int[groupIds.size()];
+        for (int file = 0; file < this.sizes.length; file++) {
+            int groupId = groupOf[file];
+            if (1 < counts[groupId]) {
+                if (null == members[groupId]) {
+                    members[groupId] = new int[counts[groupId]];
+                }
+                members[groupId][filled[groupId]++] = file;
+            }
+        }
+        List<int[]> groups = new ArrayList<int[]>();
+        for (int[] group : members) {
+            if (null != group) {
+                groups.add(group);
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Splits a group of files with the same size by their sample hashes,
+     * adding every subgroup with more than one file to the candidates.
+     */
+    private void splitBySample(final int[] group, final long[] samples, final Exception[] errors, final DuplicateHandler handler, final List<int[]> candidates) {
+        Integer[] order = new Integer[group.length];
+        int count = 0;
+        for (int file : group) {
+            if (null != errors[file]) {
+                handler.onError(this.paths.get(file), errors[file]);
+            } else {
+                order[count++] = file;
+            }
+        }
+        Arrays.sort(order, 0, count, new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer file1, final Integer file2) {
+                return Long.compare(samples[file1], samples[file2]);
+            }
+        });
+        for (int start = 0, end; start < count; start = end) {
+            long sample = samples[order[start]];
+            end = start + 1;
+            while (end < count && sample == samples[order[end]]) {
+                end++;
+            }
+            if (1 < end - start) {
+                int[] candidate = new int[end - start];
+                for (int ndx = start; ndx < end; ndx++) {
+                    candidate[ndx - start] = order[ndx];
+                }
+                candidates.add(candidate);
+            }
+        }
+    }
+
+    /**
+     * Groups a set of candidates by their full hashes and reports every
+     * group with more than one file.
+     */
+    private void reportDuplicates(final int[] group, final byte[][][] results, final Exception[] errors, final DuplicateHandler handler) {
+        Map<ByteBuffer, List<Path>> byHash = new HashMap<ByteBuffer, List<Path>>();
+        Map<ByteBuffer, byte[][]> resultsByHash = new HashMap<ByteBuffer, byte[][]>();
+        List<ByteBuffer> order = new ArrayList<ByteBuffer>();
+        for (int file : group) {
+            if (null != errors[file]) {
+                handler.onError(this.paths.get(file), errors[file]);
+                continue;
+            }
+            ByteBuffer key = ByteBuffer.allocate(this.multiCryptoHash.getStride());
+            for (byte[] result : results[file]) {
+                key.put(result);
+            }
+            key.flip();
+            List<Path> paths = byHash.get(key);
+            if (null == paths) {
+                paths = new ArrayList<Path>();
+                byHash.put(key, paths);
+                resultsByHash.put(key, results[file]);
+                order.add(key);
+            }
+            paths.add(this.paths.get(file));
+        }
+        for (ByteBuffer key : order) {
+            List<Path> paths = byHash.get(key);
+            if (1 < paths.size()) {
+                Collections.sort(paths);
+                this.groupCount++;
+                this.duplicateCount += paths.size();
+                handler.onGroup(paths, resultsByHash.get(key));
+            }
+        }
+    }
+
+    private static int[] flatten(final List<int[]> groups, final int count) {
+        int[] files = new int[count];
+        int position = 0;
+        for (int[] group : groups) {
+            System.arraycopy(group, 0, files, position, group.length);
+            position += group.length;
+        }
+        return files;
+    }
+
+    /**
+     * Hashes the first and last sample of a file with XXH3.
+     *
+     * @param path    file to sample
+     * @param size    size of the file
+     * @param session XXH3 session to hash with
+     * @param buffer  buffer of {@link #getSampleSize()} bytes
+     * @return sample hash
+     * @throws IOException if an error occurred reading the file
+     */
+    protected long hashSamples(final Path path, final long size, final HashSession session, final ByteBuffer buffer) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            readSample(channel, 0, buffer);
+            session.update(buffer);
+            readSample(channel, size - this.sampleSize, buffer);
+            session.update(buffer);
+        } finally {
+            channel.close();
+        }
+        byte[] digest = new byte[session.getDigestLength()];
+        session.digestInto(digest, 0);
+        return ByteBuffer.wrap(digest).getLong();
+    }
+
+    private void readSample(final FileChannel channel, final long position, final ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            int bytesRead = channel.read(buffer, position + buffer.position());
+            if (0 > bytesRead) {
+                break;
+            }
+            IOStrategy.getDefault().recordRead(bytesRead);
+            this.bytesRead.add(bytesRead);
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Receives the groups of duplicates found by
+     * {@link #find(List, DuplicateHandler)}. Calls come from the thread that
+     * called find().
+     */
+    public interface DuplicateHandler {
+        /**
+         * Called for each group of identical files.
+         *
+         * @param paths   identical files, sorted
+         * @param results hashes shared by the files
+         */
+        void onGroup(List<Path> paths, byte[][] results);
+
+        /**
+         * Called when a file could not be listed or read. The file is left
+         * out of the results.
+         *
+         * @param path  file that failed
+         * @param error reason for the failure
+         */
+        void onError(Path path, Exception error);
+    }
+
+    /**
+     * Splits a range of files across the pool.
+     */
+    protected abstract static class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        protected final int[] files;
+        protected final int   from;
+        protected final int   to;
+
+        protected RangeTask(final int[] files, final int from, final int to) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (LEAF_SIZE >= this.to - this.from) {
+                processRange();
+            } else {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(create(this.from, middle), create(middle, this.to));
+            }
+        }
+
+        protected abstract RangeTask create(int from, int to);
+
+        protected abstract void processRange();
+    }
+
+    /**
+     * Computes the sample hash of each file in the range.
+     */
+    protected class SampleTask extends RangeTask {
+        private static final long serialVersionUID = 1L;
+
+        private final long[]      samples;
+        private final Exception[] errors;
+
+        public SampleTask(final int[] files, final int from, final int to, final long[] samples, final Exception[] errors) {
+            super(files, from, to);
+            this.samples = samples;
+            this.errors = errors;
+        }
+
+        @Override
+        protected RangeTask create(final int from, final int to) {
+            return new SampleTask(this.files, from, to, this.samples, this.errors);
+        }
+
+        @Override
+        protected void processRange() {
+            HashSession session = new XXH3CryptoHash(null).createSession();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(DuplicateFinder.this.sampleSize);
+            for (int ndx = this.from; ndx < this.to; ndx++) {
+                int file = this.files[ndx];
+                try {
+                    this.samples[file] = hashSamples(DuplicateFinder.this.paths.get(file), DuplicateFinder.this.sizes[file], session, buffer);
+                } catch (Exception e) {
+                    session.reset();
+                    this.errors[file] = e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the full hashes of each file in the range.
+     */
+    protected class FullHashTask extends RangeTask {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[][][]  results;
+        private final Exception[] errors;
+
+        public FullHashTask(final int[] files, final int from, final int to, final byte[][][] results, final Exception[] errors) {
+            super(files, from, to);
+            this.results = results;
+            this.errors = errors;
+        }
+
+        @Override
+        protected RangeTask create(final int from, final int to) {
+            return new FullHashTask(this.files, from, to, this.results, this.errors);
+        }
+
+        @Override
+        protected void processRange() {
+            for (int ndx = this.from; ndx < this.to; ndx++) {
+                int file = this.files[ndx];
+                try {
+                    this.results[file] = DuplicateFinder.this.multiCryptoHash.getHashes(DuplicateFinder.this.paths.get(file));
+                    DuplicateFinder.this.bytesRead.add(DuplicateFinder.this.sizes[file]);
+                } catch (Exception e) {
+                    this.errors[file] = e;
+                }
+            }
+        }
+    }
+}
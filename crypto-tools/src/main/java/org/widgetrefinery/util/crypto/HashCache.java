@@ -0,0 +1,455 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A persistent cache of file hashes. Entries are keyed by real path and
+ * encoding, and are only used if the file size, modification time, and file
+ * key (inode on unix) still match. This lets a rerun over an unchanged tree
+ * get away with one stat per file.
+ * <p/>
+ * The cache is stored as an append-only log that is replayed on open. Once
+ * it grows past its size cap the least recently used entries are dropped and
+ * the log is compacted when the cache is closed.
+ * <p/>
+ * Only one instance at a time, in this process or any other, writes to a
+ * given cache. It holds a lock on a ".lock" file next to the cache from
+ * open to close. Instances opened while the lock is held only read the
+ * cache, so concurrent runs cannot interleave records or compact away each
+ * other's entries.
+ * <p/>
+ * The cache can also hold the saved state of a hash part way through a
+ * file, which lets a file that only grows be hashed from where the last run
+ * stopped. These are stored as ordinary entries under a key of their own and
+ * share the size cap.
+ *
+ * @since 10/17/26 11:05 AM
+ */
+public class HashCache implements Closeable {
+    private static final Logger logger         = Logger.getLogger(HashCache.class.getName());
+    private static final int    MAGIC          = 0x57524843;
+    private static final int    VERSION        = 1;
+    /**
+     * Files modified more recently than this may still be changing within
+     * the same timestamp tick so they are not cached.
+     */
+    private static final long   MIN_AGE_MILLIS = 2000;
+
+    private final Path               file;
+    private final long               maxBytes;
+    private final Map<String, Entry> entries;
+    private final FileChannel        lockChannel;
+    private final FileLock           lock;
+    private       DataOutputStream   log;
+    private       long               liveBytes;
+    private       long               logBytes;
+    private       long               hits;
+    private       long               misses;
+
+    /**
+     * Opens the cache, creating it if it does not exist yet. If another
+     * instance is writing to the cache, this one only reads it.
+     *
+     * @param file     cache file
+     * @param maxBytes max size of the cache, in bytes
+     * @throws IOException if the cache could not be read
+     */
+    public HashCache(final Path file, final long maxBytes) throws IOException {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.entries = new LinkedHashMap<String, Entry>(1024, 0.75f, true);
+        this.lockChannel = FileChannel.open(file.resolveSibling(file.getFileName() + ".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        boolean opened = false;
+        try {
+            this.lock = tryLock(this.lockChannel);
+            load();
+            if (null != this.lock) {
+                this.log = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND), 64 * 1024));
+                if (0 == this.logBytes) {
+                    this.log.writeInt(MAGIC);
+                    this.log.writeInt(VERSION);
+                    this.logBytes = 8;
+                }
+            } else {
+                logger.info("hash cache " + file + " is in use elsewhere, so it will only be read");
+            }
+            opened = true;
+        } finally {
+            if (!opened) {
+                this.lockChannel.close();
+            }
+        }
+    }
+
+    /**
+     * Takes the lock on the given channel if nobody else holds it.
+     *
+     * @return lock or null if it is held elsewhere
+     */
+    private static FileLock tryLock(final FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Looks up a cached hash.
+     *
+     * @param path       file that was hashed
+     * @param attributes current attributes of the file
+     * @param encoding   name of the encoding that produced the hash
+     * @return cached hash or null if there is no valid entry
+     */
+    public synchronized byte[] get(final Path path, final BasicFileAttributes attributes, final String encoding) {
+        Entry entry = this.entries.get(toKey(path, encoding));
+        if (null != entry && entry.matches(attributes)) {
+            this.hits++;
+            return entry.digest.clone();
+        }
+        this.misses++;
+        return null;
+    }
+
+    /**
+     * Adds a hash to the cache. Files that were modified within the last
+     * couple of seconds are skipped since they may still be changing.
+     *
+     * @param path       file that was hashed
+     * @param attributes attributes of the file at the time it was hashed
+     * @param encoding   name of the encoding that produced the hash
+     * @param digest     hash to store
+     * @throws IOException if the cache could not be written
+     */
+    public synchronized void put(final Path path, final BasicFileAttributes attributes, final String encoding, final byte[] digest) throws IOException {
+        if (null == this.log) {
+            return;
+        }
+        long modified = attributes.lastModifiedTime().to(TimeUnit.MILLISECONDS);
+        if (System.currentTimeMillis() - modified < MIN_AGE_MILLIS) {
+            return;
+        }
+        Entry entry = new Entry(toKey(path, encoding),
+                                attributes.size(),
+                                attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                                toFileKey(attributes),
+                                digest.clone());
+        add(entry);
+        this.logBytes += write(this.log, entry);
+        evict();
+    }
+
+    /**
+     * Looks up the saved state of a hash part way through the given file.
+     * The state is only returned if the file is still the same file, by its
+     * file key, and is no shorter than where the state was saved. Whether
+     * the data before that point changed is up to the caller to check.
+     *
+     * @param path       file that was hashed
+     * @param attributes current attributes of the file
+     * @param name       name of the hash
+     * @return saved state or null if there is no usable state
+     */
+    public synchronized State getState(final Path path, final BasicFileAttributes attributes, final String name) {
+        Entry entry = this.entries.get(toStateKey(path, name));
+        if (null == entry || entry.size > attributes.size() || !entry.fileKey.equals(toFileKey(attributes)) || 8 > entry.digest.length) {
+            return null;
+        }
+        long checksum = 0;
+        for (int ndx = 0; ndx < 8; ndx++) {
+            checksum = checksum << 8 | (0xFF & entry.digest[ndx]);
+        }
+        return new State(entry.size, checksum, Arrays.copyOfRange(entry.digest, 8, entry.digest.length));
+    }
+
+    /**
+     * Saves the state of a hash part way through the given file. Unlike
+     * {@link #put(Path, BasicFileAttributes, String, byte[])}, recently
+     * modified files are not skipped since a file that is being appended to
+     * is the point of saving the state.
+     *
+     * @param path       file that was hashed
+     * @param attributes attributes of the file at the time it was hashed
+     * @param name       name of the hash
+     * @param state      state to save
+     * @throws IOException if the cache could not be written
+     */
+    public synchronized void putState(final Path path, final BasicFileAttributes attributes, final String name, final State state) throws IOException {
+        if (null == this.log || 0xFFFF - 8 < state.state.length) {
+            return;
+        }
+        byte[] payload = new byte[8 + state.state.length];
+        for (int ndx = 0; ndx < 8; ndx++) {
+            payload[ndx] = (byte) (state.checksum >>> (56 - 8 * ndx));
+        }
+        System.arraycopy(state.state, 0, payload, 8, state.state.length);
+        Entry entry = new Entry(toStateKey(path, name),
+                                state.offset,
+                                attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                                toFileKey(attributes),
+                                payload);
+        add(entry);
+        this.logBytes += write(this.log, entry);
+        evict();
+    }
+
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Returns the number of entries in the cache.
+     *
+     * @return entry count
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Flushes pending writes. If more than half of the log is made up of
+     * replaced or evicted entries then it is rewritten with only the live
+     * entries. The lock on the cache is released last.
+     *
+     * @throws IOException if the cache could not be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!this.lockChannel.isOpen()) {
+            return;
+        }
+        try {
+            if (null != this.log) {
+                this.log.close();
+                this.log = null;
+                if (this.logBytes > 2 * this.liveBytes + 8) {
+                    compact();
+                }
+            }
+        } finally {
+            this.lockChannel.close();
+        }
+        logger.fine("hash cache " + this.file + ": " + this.hits + " hits, " + this.misses + " misses, " + this.entries.size() + " entries");
+    }
+
+    protected void load() throws IOException {
+        if (!Files.exists(this.file)) {
+            return;
+        }
+        DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.file), 64 * 1024));
+        long validBytes = 0;
+        try {
+            if (MAGIC != input.readInt() || VERSION != input.readInt()) {
+                throw new IOException("not a hash cache: " + this.file);
+            }
+            validBytes = 8;
+            while (true) {
+                Entry entry = read(input);
+                add(entry);
+                validBytes += entry.getRecordSize();
+            }
+        } catch (EOFException e) {
+            // end of log, possibly with a partial record from an interrupted run
+        } finally {
+            input.close();
+        }
+        this.logBytes = validBytes;
+        if (null != this.lock && validBytes < Files.size(this.file)) {
+            FileChannel channel = FileChannel.open(this.file, StandardOpenOption.WRITE);
+            try {
+                channel.truncate(validBytes);
+            } finally {
+                channel.close();
+            }
+        }
+        evict();
+    }
+
+    protected void compact() throws IOException {
+        Path temp = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024));
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            for (Entry entry : this.entries.values()) {
+                write(output, entry);
+            }
+        } finally {
+            output.close();
+        }
+        Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.logBytes = 8 + this.liveBytes;
+    }
+
+    private void add(final Entry entry) {
+        Entry old = this.entries.put(entry.key, entry);
+        if (null != old) {
+            this.liveBytes -= old.getRecordSize();
+        }
+        this.liveBytes += entry.getRecordSize();
+    }
+
+    private void evict() {
+        Iterator<Entry> itr = this.entries.values().iterator();
+        while (this.liveBytes > this.maxBytes && itr.hasNext()) {
+            this.liveBytes -= itr.next().getRecordSize();
+            itr.remove();
+        }
+    }
+
+    private static String toKey(final Path path, final String encoding) {
+        Path realPath;
+        try {
+            realPath = path.toRealPath();
+        } catch (IOException e) {
+            logger.log(Level.FINE, "cannot resolve " + path, e);
+            realPath = path.toAbsolutePath().normalize();
+        }
+        return realPath.toString() + '\u0000' + encoding;
+    }
+
+    private static String toStateKey(final Path path, final String name) {
+        return toKey(path, name) + "\u0000state";
+    }
+
+    private static String toFileKey(final BasicFileAttributes attributes) {
+        Object fileKey = attributes.fileKey();
+        return null != fileKey ? fileKey.toString() : "";
+    }
+
+    private static Entry read(final DataInputStream input) throws IOException {
+        String key = input.readUTF();
+        long size = input.readLong();
+        long modified = input.readLong();
+        String fileKey = input.readUTF();
+        byte[] digest = new byte[input.readUnsignedShort()];
+        input.readFully(digest);
+        return new Entry(key, size, modified, fileKey, digest);
+    }
+
+    private static int write(final DataOutputStream output, final Entry entry) throws IOException {
+        int before = output.size();
+        output.writeUTF(entry.key);
+        output.writeLong(entry.size);
+        output.writeLong(entry.modified);
+        output.writeUTF(entry.fileKey);
+        output.writeShort(entry.digest.length);
+        output.write(entry.digest);
+        return output.size() - before;
+    }
+
+    /**
+     * The saved state of a hash part way through a file.
+     */
+    public static class State {
+        private final long   offset;
+        private final long   checksum;
+        private final byte[] state;
+
+        /**
+         * @param offset   number of bytes of the file that were hashed
+         * @param checksum checksum of the data just before offset, used to check the file was only appended to
+         * @param state    state from {@link ResumableHashSession#saveState()}
+         */
+        public State(final long offset, final long checksum, final byte[] state) {
+            this.offset = offset;
+            this.checksum = checksum;
+            this.state = state;
+        }
+
+        public long getOffset() {
+            return this.offset;
+        }
+
+        public long getChecksum() {
+            return this.checksum;
+        }
+
+        public byte[] getState() {
+            return this.state;
+        }
+    }
+
+    /**
+     * A single cached hash along with the file attributes it is valid for.
+     */
+    protected static class Entry {
+        private final String key;
+        private final long   size;
+        private final long   modified;
+        private final String fileKey;
+        private final byte[] digest;
+
+        public Entry(final String key, final long size, final long modified, final String fileKey, final byte[] digest) {
+            this.key = key;
+            this.size = size;
+            this.modified = modified;
+            this.fileKey = fileKey;
+            this.digest = digest;
+        }
+
+        public boolean matches(final BasicFileAttributes attributes) {
+            return this.size == attributes.size() &&
+                   this.modified == attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS) &&
+                   this.fileKey.equals(toFileKey(attributes));
+        }
+
+        /**
+         * Returns the number of bytes this entry takes up in the log.
+         *
+         * @return record size, in bytes
+         */
+        public int getRecordSize() {
+            return utfLength(this.key) + 8 + 8 + utfLength(this.fileKey) + 2 + this.digest.length;
+        }
+
+        private static int utfLength(final String value) {
+            int length = 2;
+            for (int ndx = 0; ndx < value.length(); ndx++) {
+                char c = value.charAt(ndx);
+                if (0 < c && 0x80 > c) {
+                    length += 1;
+                } else if (0x800 > c) {
+                    length += 2;
+                } else {
+                    length += 3;
+                }
+            }
+            return length;
+        }
+    }
+}
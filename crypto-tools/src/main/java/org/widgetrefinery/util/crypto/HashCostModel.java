@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Decides how {@link MultiCryptoHash} runs its hashes over a file of known
+ * size. Each hash takes size * cost per byte on its own, and every task
+ * handed to another thread adds a fixed task cost. The options are:
+ * <ul>
+ * <li>{@link Strategy#FUSED}: one thread reads the file a block at a time and
+ * runs every hash over each block while it is still in cache. This costs the
+ * sum of the hashes.</li>
+ * <li>{@link Strategy#THREADED}: each hash reads the file on its own task.
+ * This costs the larger of the slowest hash and the sum of the hashes spread
+ * over min(hashes, cores), plus a task cost for every hash but the first.
+ * It needs at least two hashes.</li>
+ * <li>{@link Strategy#TREE}: the hashes run one after another on the calling
+ * thread and each {@link TreeCryptoHash} spreads its leaves over
+ * min(cores, leaves) tasks. A tree hash costs its time divided by that
+ * parallelism, plus a task cost for every task but the first; other hashes
+ * cost their full time. It needs a tree hash and more than one core.</li>
+ * </ul>
+ * The cheapest estimate wins. The cost per byte of each hash starts out as a
+ * guess and is replaced by measured runs of whichever strategy was picked,
+ * so the choice tracks the actual mix of hashes on this machine and can
+ * move away from a strategy that turns out slower than estimated.
+ *
+ * @since 10/17/26 10:30 AM
+ */
+public class HashCostModel {
+    /**
+     * Ways of running the hashes over a file.
+     */
+    public static enum Strategy {
+        FUSED, THREADED, TREE
+    }
+
+    /**
+     * Default cost of handing one hash to a worker, which has to be woken up
+     * and open and read the file on its own.
+     */
+    public static final    long DEFAULT_TASK_NANOS = 150L * 1000;
+    /**
+     * Cost per byte assumed for a hash until it has been measured, in
+     * picoseconds.
+     */
+    protected static final long DEFAULT_BYTE_PICOS = 1000;
+    /**
+     * Min number of bytes a measurement must cover to be used.
+     */
+    protected static final long MIN_SAMPLE_BYTES   = 64 * 1024;
+
+    /**
+     * Cost per byte of each hash. Guesses that have not been replaced by a
+     * measurement yet are stored negated.
+     */
+    private final AtomicLongArray bytePicos;
+    private final int[]           leafSizes;
+    private final int             cores;
+    private final long            taskNanos;
+
+    /**
+     * Creates a model for the given hashes on this machine.
+     *
+     * @param cryptoHashes hashes that will be run together
+     */
+    public HashCostModel(final CryptoHash... cryptoHashes) {
+        this(cryptoHashes, Runtime.getRuntime().availableProcessors(), DEFAULT_TASK_NANOS);
+    }
+
+    /**
+     * @param cryptoHashes hashes that will be run together
+     * @param cores        number of cores the hashes can run on
+     * @param taskNanos    cost of handing one hash to another thread, in nanoseconds
+     * @throws IllegalArgumentException if cores is less than 1 or taskNanos is negative
+     */
+    public HashCostModel(final CryptoHash[] cryptoHashes, final int cores, final long taskNanos) throws IllegalArgumentException {
+        if (0 >= cores) {
+            throw new IllegalArgumentException("invalid core count (" + cores + ')');
+        }
+        if (0 > taskNanos) {
+            throw new IllegalArgumentException("invalid task cost (" + taskNanos + ')');
+        }
+        this.bytePicos = new AtomicLongArray(cryptoHashes.length);
+        this.leafSizes = new int[cryptoHashes.length];
+        for (int ndx = 0; ndx < cryptoHashes.length; ndx++) {
+            this.bytePicos.set(ndx, -DEFAULT_BYTE_PICOS);
+            if (cryptoHashes[ndx] instanceof TreeCryptoHash) {
+                this.leafSizes[ndx] = ((TreeCryptoHash) cryptoHashes[ndx]).getLeafSize();
+            }
+        }
+        this.cores = cores;
+        this.taskNanos = taskNanos;
+    }
+
+    /**
+     * Picks the strategy with the lowest estimate for an input of the given
+     * size, skipping strategies that do not apply. Ties go to
+     * {@link Strategy#FUSED}, then {@link Strategy#THREADED}. Inputs of
+     * unknown size cannot be estimated, so they are threaded when there is
+     * more than one hash and fused otherwise.
+     *
+     * @param size input size in bytes, or -1 if not known
+     * @return strategy to use
+     */
+    public Strategy choose(final long size) {
+        if (0 > size) {
+            return 1 < this.leafSizes.length ? Strategy.THREADED : Strategy.FUSED;
+        }
+        Strategy result = Strategy.FUSED;
+        long best = estimate(Strategy.FUSED, size);
+        for (Strategy strategy : new Strategy[]{Strategy.THREADED, Strategy.TREE}) {
+            long cost = estimate(strategy, size);
+            if (0 <= cost && cost < best) {
+                result = strategy;
+                best = cost;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Estimates how long the given strategy takes on an input of the given
+     * size, using the formulas in the class description.
+     *
+     * @param strategy strategy to estimate
+     * @param size     input size in bytes
+     * @return estimated time in nanoseconds, or -1 if the strategy does not apply to these hashes
+     */
+    public long estimate(final Strategy strategy, final long size) {
+        int count = this.leafSizes.length;
+        double total = 0;
+        double slowest = 0;
+        double tree = 0;
+        int treeCount = 0;
+        for (int ndx = 0; ndx < count; ndx++) {
+            double nanos = size * (getBytePicos(ndx) / 1000.0);
+            total += nanos;
+            slowest = Math.max(slowest, nanos);
+            if (0 < this.leafSizes[ndx]) {
+                long leaves = Math.max(1, (size + this.leafSizes[ndx] - 1) / this.leafSizes[ndx]);
+                long parallelism = Math.min(this.cores, leaves);
+                tree += nanos / parallelism + (parallelism - 1) * this.taskNanos;
+                treeCount++;
+            } else {
+                tree += nanos;
+            }
+        }
+
+        switch (strategy) {
+            case FUSED:
+                return (long) total;
+            case THREADED:
+                if (1 >= count) {
+                    return -1;
+                }
+                return (long) Math.max(slowest, total / Math.min(count, this.cores)) + (count - 1) * this.taskNanos;
+            case TREE:
+                if (0 == treeCount || 1 == this.cores) {
+                    return -1;
+                }
+                return (long) tree;
+            default:
+                throw new IllegalArgumentException("unknown strategy (" + strategy + ')');
+        }
+    }
+
+    /**
+     * Describes the estimate for every strategy, for logging.
+     *
+     * @param size input size in bytes
+     * @return description
+     */
+    public String describe(final long size) {
+        StringBuilder sb = new StringBuilder();
+        for (Strategy strategy : Strategy.values()) {
+            long cost = estimate(strategy, size);
+            if (0 <= cost) {
+                if (0 < sb.length()) {
+                    sb.append(", ");
+                }
+                sb.append(strategy.name().toLowerCase()).append(' ').append(cost / 1000).append("us");
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Feeds a measurement of how long one hash took on its own, on one core,
+     * back into the model. Measurements of less than
+     * {@link #MIN_SAMPLE_BYTES} bytes are ignored as too noisy. The first one
+     * replaces the default cost, and later ones are blended in as
+     * (3 * current + measured) / 4. Concurrent measurements are all applied.
+     *
+     * @param hash  index of the hash
+     * @param bytes number of bytes hashed
+     * @param nanos time taken, in nanoseconds
+     */
+    public void record(final int hash, final long bytes, final long nanos) {
+        if (MIN_SAMPLE_BYTES <= bytes) {
+            long measured = Math.max(1, nanos * 1000 / bytes);
+            long current;
+            long next;
+            do {
+                current = this.bytePicos.get(hash);
+                next = 0 > current ? measured : (3 * current + measured) / 4;
+            } while (!this.bytePicos.compareAndSet(hash, current, next));
+        }
+    }
+
+    /**
+     * Feeds back how long one hash took while the given strategy ran. The
+     * time is turned back into the time the hash would take on its own,
+     * on one core, by undoing the sharing the estimate assumes, and then
+     * passed to {@link #record(int, long, long)}. Threaded hashes share
+     * min(hashes, cores) cores. A tree hash run as a tree was spread over
+     * min(cores, leaves) tasks.
+     *
+     * @param strategy strategy that ran
+     * @param hash     index of the hash
+     * @param bytes    number of bytes hashed
+     * @param nanos    time the hash took, in nanoseconds
+     */
+    public void record(final Strategy strategy, final int hash, final long bytes, final long nanos) {
+        long alone = nanos;
+        if (Strategy.THREADED == strategy) {
+            int count = this.leafSizes.length;
+            alone = nanos * Math.min(count, this.cores) / count;
+        } else if (Strategy.TREE == strategy && 0 < this.leafSizes[hash]) {
+            long leaves = Math.max(1, (bytes + this.leafSizes[hash] - 1) / this.leafSizes[hash]);
+            long parallelism = Math.min(this.cores, leaves);
+            alone = Math.max(0, nanos - (parallelism - 1) * this.taskNanos) * parallelism;
+        }
+        record(hash, bytes, alone);
+    }
+
+    /**
+     * Returns the current cost per byte of the given hash.
+     *
+     * @param hash index of the hash
+     * @return cost per byte, in picoseconds
+     */
+    public long getBytePicos(final int hash) {
+        return Math.abs(this.bytePicos.get(hash));
+    }
+}
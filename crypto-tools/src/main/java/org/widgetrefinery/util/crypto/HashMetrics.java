@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Live counters for the hashing classes, published over JMX once
+ * {@link #register()} is called. The hashing loops add to the counters once
+ * per block rather than once per byte, and every counter is a
+ * {@link LongAdder} so threads hashing at the same time do not contend on
+ * it. Byte arrays hashed in one go, such as strings, are only timed and
+ * counted once the metrics are registered, since for short inputs the
+ * bookkeeping costs about as much as the hash.
+ * <p/>
+ * The rates are worked out from snapshots of the counters taken when they
+ * are read, at most once a second, so nothing runs in the background.
+ *
+ * @since 10/17/26 11:45 AM
+ */
+public class HashMetrics implements HashMetricsMXBean {
+    /**
+     * Name the metrics are registered under.
+     */
+    public static final String OBJECT_NAME = "org.widgetrefinery.util.crypto:type=HashMetrics";
+    /**
+     * Number of seconds of snapshots the rates are averaged over.
+     */
+    public static final int    RATE_WINDOW = 10;
+
+    private static final Logger      logger         = Logger.getLogger(HashMetrics.class.getName());
+    private static final HashMetrics defaultMetrics = new HashMetrics();
+
+    private final    ConcurrentMap<String, LongAdder> bytesByAlgorithm;
+    private final    LongAdder                        files;
+    private final    LongAdder                        ioWaitNanos;
+    private final    LongAdder                        hashNanos;
+    private final    LongAdder                        activeWorkers;
+    private final    LongAdder                        queuedWorkers;
+    private final    long[][]                         snapshots;
+    private          int                              snapshotCount;
+    private volatile boolean                          registered;
+
+    public HashMetrics() {
+        this.bytesByAlgorithm = new ConcurrentHashMap<String, LongAdder>();
+        this.files = new LongAdder();
+        this.ioWaitNanos = new LongAdder();
+        this.hashNanos = new LongAdder();
+        this.activeWorkers = new LongAdder();
+        this.queuedWorkers = new LongAdder();
+        this.snapshots = new long[RATE_WINDOW + 1][];
+    }
+
+    /**
+     * Returns the metrics the hashing classes report to.
+     *
+     * @return default metrics
+     */
+    public static HashMetrics getDefault() {
+        return defaultMetrics;
+    }
+
+    /**
+     * Publishes these metrics on the platform MBean server under
+     * {@link #OBJECT_NAME}. Failures are logged rather than thrown since the
+     * metrics are not needed to hash anything.
+     */
+    public synchronized void register() {
+        if (!this.registered) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+                this.registered = true;
+            } catch (InstanceAlreadyExistsException e) {
+                logger.fine("hash metrics are already registered");
+            } catch (JMException e) {
+                logger.log(Level.WARNING, "failed to register hash metrics", e);
+            }
+        }
+    }
+
+    /**
+     * Returns whether {@link #register()} has published these metrics.
+     *
+     * @return true if registered
+     */
+    public boolean isRegistered() {
+        return this.registered;
+    }
+
+    /**
+     * Returns the counter of bytes hashed by the given algorithm. Callers
+     * should hold on to it rather than look it up for every block.
+     *
+     * @param algorithm algorithm name
+     * @return byte counter
+     */
+    public LongAdder getAlgorithmCounter(final String algorithm) {
+        LongAdder counter = this.bytesByAlgorithm.get(algorithm);
+        if (null == counter) {
+            LongAdder created = new LongAdder();
+            counter = this.bytesByAlgorithm.putIfAbsent(algorithm, created);
+            if (null == counter) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Counts a block of data hashed by one algorithm.
+     *
+     * @param counter    counter from {@link #getAlgorithmCounter(String)}
+     * @param bytes      size of the block
+     * @param ioNanos    time spent waiting for the block
+     * @param hashNanos  time spent hashing the block
+     */
+    public void recordBlock(final LongAdder counter, final long bytes, final long ioNanos, final long hashNanos) {
+        counter.add(bytes);
+        if (0 < ioNanos) {
+            this.ioWaitNanos.add(ioNanos);
+        }
+        this.hashNanos.add(hashNanos);
+    }
+
+    /**
+     * Counts a file whose hashes have all been computed.
+     */
+    public void recordFile() {
+        this.files.increment();
+    }
+
+    /**
+     * Counts a task handed to an executor.
+     */
+    public void taskQueued() {
+        this.queuedWorkers.increment();
+    }
+
+    /**
+     * Counts a task starting to run.
+     *
+     * @param queued true if the task was counted by {@link #taskQueued()}
+     */
+    public void taskStarted(final boolean queued) {
+        if (queued) {
+            this.queuedWorkers.decrement();
+        }
+        this.activeWorkers.increment();
+    }
+
+    /**
+     * Counts a task that is done running.
+     */
+    public void taskFinished() {
+        this.activeWorkers.decrement();
+    }
+
+    @Override
+    public Map<String, Long> getBytesHashedByAlgorithm() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<String, LongAdder> entry : this.bytesByAlgorithm.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().sum());
+        }
+        return result;
+    }
+
+    @Override
+    public long getBytesHashed() {
+        long result = 0;
+        for (LongAdder counter : this.bytesByAlgorithm.values()) {
+            result += counter.sum();
+        }
+        return result;
+    }
+
+    @Override
+    public long getFilesHashed() {
+        return this.files.sum();
+    }
+
+    @Override
+    public double getHashedMegabytesPerSecond() {
+        return getRate(1) / (1024 * 1024);
+    }
+
+    @Override
+    public double getReadMegabytesPerSecond() {
+        return getRate(2) / (1024 * 1024);
+    }
+
+    @Override
+    public double getFilesPerSecond() {
+        return getRate(3);
+    }
+
+    @Override
+    public long getActiveWorkers() {
+        return this.activeWorkers.sum();
+    }
+
+    @Override
+    public long getQueuedWorkers() {
+        return this.queuedWorkers.sum();
+    }
+
+    @Override
+    public int getPooledStreamBuffers() {
+        return IOStrategy.getDefault().getStreamBuffers().getPooled();
+    }
+
+    @Override
+    public int getPooledFileBuffers() {
+        return IOStrategy.getDefault().getPooledFileBuffers();
+    }
+
+    @Override
+    public int getBufferPoolLimit() {
+        return IOStrategy.getDefault().getMaxPooled();
+    }
+
+    @Override
+    public long getIoWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.ioWaitNanos.sum());
+    }
+
+    @Override
+    public long getHashMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.hashNanos.sum());
+    }
+
+    /**
+     * Takes a snapshot if the last one is at least a second old and works
+     * out the rate of one of the snapshot columns from the oldest snapshot
+     * still in the window.
+     *
+     * @param column 1 for bytes hashed, 2 for bytes read, 3 for files
+     * @return change per second
+     */
+    private synchronized double getRate(final int column) {
+        long now = System.nanoTime();
+        long[] latest = 0 < this.snapshotCount ? this.snapshots[(this.snapshotCount - 1) % this.snapshots.length] : null;
+        if (null == latest || now - latest[0] >= TimeUnit.SECONDS.toNanos(1)) {
+            latest = new long[]{now, getBytesHashed(), IOStrategy.getDefault().getBytesRead(), getFilesHashed()};
+            this.snapshots[this.snapshotCount++ % this.snapshots.length] = latest;
+        }
+        long[] oldest = this.snapshots[Math.max(0, this.snapshotCount - this.snapshots.length) % this.snapshots.length];
+        if (latest == oldest || latest[0] == oldest[0]) {
+            return 0;
+        }
+        return Math.max(0, latest[column] - oldest[column]) * (double) TimeUnit.SECONDS.toNanos(1) / (latest[0] - oldest[0]);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link HashMetrics}, readable from jconsole or any
+ * other JMX client under {@link HashMetrics#OBJECT_NAME}.
+ *
+ * @since 10/17/26 11:45 AM
+ */
+public interface HashMetricsMXBean {
+    /**
+     * @return bytes hashed so far by each algorithm
+     */
+    Map<String, Long> getBytesHashedByAlgorithm();
+
+    /**
+     * @return bytes hashed so far by all algorithms together
+     */
+    long getBytesHashed();
+
+    /**
+     * @return files hashed so far
+     */
+    long getFilesHashed();
+
+    /**
+     * @return megabytes hashed per second by all algorithms together, over the last few seconds
+     */
+    double getHashedMegabytesPerSecond();
+
+    /**
+     * @return megabytes read per second, over the last few seconds
+     */
+    double getReadMegabytesPerSecond();
+
+    /**
+     * @return files hashed per second, over the last few seconds
+     */
+    double getFilesPerSecond();
+
+    /**
+     * @return hash tasks currently running
+     */
+    long getActiveWorkers();
+
+    /**
+     * @return hash tasks handed to an executor that have not started yet
+     */
+    long getQueuedWorkers();
+
+    /**
+     * @return idle stream buffers held by the buffer pool
+     */
+    int getPooledStreamBuffers();
+
+    /**
+     * @return idle direct file buffers held by the buffer pool
+     */
+    int getPooledFileBuffers();
+
+    /**
+     * @return max number of idle buffers of each kind the pool holds on to
+     */
+    int getBufferPoolLimit();
+
+    /**
+     * @return total time hashes have spent waiting for data, in milliseconds
+     */
+    long getIoWaitMillis();
+
+    /**
+     * @return total time hashes have spent hashing data, in milliseconds
+     */
+    long getHashMillis();
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An incremental hashing session obtained from
+ * {@link CryptoHash#createSession()}. Data is fed in with the update methods
+ * and the hash is written out with {@link #digestInto(byte[], int)}, after
+ * which the session is ready to hash the next message. A session can be
+ * reused for any number of messages without allocating, which makes it a
+ * better fit than the one-shot methods on CryptoHash for data that arrives
+ * in chunks or for hashing many small messages.
+ * <p/>
+ * Sessions are not thread safe. Each thread should create its own.
+ *
+ * @since 10/17/26 1:05 PM
+ */
+public interface HashSession {
+    /**
+     * Returns the number of bytes written by {@link #digestInto(byte[], int)}.
+     *
+     * @return digest length, in bytes
+     */
+    int getDigestLength();
+
+    /**
+     * Adds the given data to the message being hashed.
+     *
+     * @param input  input data
+     * @param offset offset of the data within input
+     * @param length number of bytes to hash
+     */
+    void update(byte[] input, int offset, int length);
+
+    /**
+     * Adds the remaining bytes of the given buffer to the message being
+     * hashed. The buffer position is moved to its limit.
+     *
+     * @param input input data
+     */
+    void update(ByteBuffer input);
+
+    /**
+     * Finishes the message, writes the hash to the given array, and resets
+     * the session.
+     *
+     * @param output array to write the hash to
+     * @param offset offset within output to start writing at
+     * @return number of bytes written
+     * @throws IllegalArgumentException if output does not have room for the hash
+     */
+    int digestInto(byte[] output, int offset) throws IllegalArgumentException;
+
+    /**
+     * Discards the message being hashed.
+     */
+    void reset();
+}
@@ -0,0 +1,405 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Decides how much data to ask for on each read. Regular files are read
+ * through a {@link FileChannel} into large direct buffers, which keeps the
+ * number of read calls per gigabyte small and avoids copying the data onto
+ * the heap. Pipes, stdin, and other streams are read in blocks the size of a
+ * typical pipe buffer since asking for more than the pipe holds only results
+ * in short reads.
+ * <p/>
+ * Every read made through a strategy is counted so the number of read calls
+ * and the average bytes per read can be logged at the end of a run.
+ *
+ * @since 10/17/26 1:20 PM
+ */
+public class IOStrategy {
+    /**
+     * Default block size for regular files.
+     */
+    public static final int DEFAULT_FILE_BLOCK_SIZE   = 1024 * 1024;
+    /**
+     * Default block size for pipes and other streams. This matches the
+     * default pipe buffer size on Linux.
+     */
+    public static final int DEFAULT_STREAM_BLOCK_SIZE = 64 * 1024;
+    /**
+     * Smallest block size accepted.
+     */
+    public static final int MIN_BLOCK_SIZE            = 4 * 1024;
+    /**
+     * Largest block size accepted.
+     */
+    public static final int MAX_BLOCK_SIZE            = 64 * 1024 * 1024;
+    /**
+     * Default number of blocks to read ahead of the hash.
+     */
+    public static final int DEFAULT_READ_AHEAD_DEPTH  = 4;
+
+    private static final Logger logger = Logger.getLogger(IOStrategy.class.getName());
+
+    private static volatile IOStrategy defaultStrategy = new IOStrategy(DEFAULT_FILE_BLOCK_SIZE, DEFAULT_STREAM_BLOCK_SIZE, DEFAULT_READ_AHEAD_DEPTH);
+
+    private final int               fileBlockSize;
+    private final int               streamBlockSize;
+    private final int               readAheadDepth;
+    private final int               maxPooled;
+    private final BufferPool        streamBuffers;
+    private final Queue<ByteBuffer> fileBuffers;
+    private final AtomicInteger     pooledFileBuffers;
+    private final LongAdder         reads;
+    private final LongAdder         bytesRead;
+
+    /**
+     * @param fileBlockSize   bytes to request per read from regular files
+     * @param streamBlockSize bytes to request per read from streams
+     */
+    public IOStrategy(final int fileBlockSize, final int streamBlockSize) {
+        this(fileBlockSize, streamBlockSize, DEFAULT_READ_AHEAD_DEPTH);
+    }
+
+    /**
+     * @param fileBlockSize   bytes to request per read from regular files
+     * @param streamBlockSize bytes to request per read from streams
+     * @param readAheadDepth  number of blocks to read ahead of the hash on a
+     *                        separate thread, or 0 to read and hash on the
+     *                        same thread
+     */
+    public IOStrategy(final int fileBlockSize, final int streamBlockSize, final int readAheadDepth) {
+        checkBlockSize(fileBlockSize);
+        checkBlockSize(streamBlockSize);
+        if (0 > readAheadDepth) {
+            throw new IllegalArgumentException("invalid read-ahead depth (" + readAheadDepth + ')');
+        }
+        this.fileBlockSize = fileBlockSize;
+        this.streamBlockSize = streamBlockSize;
+        this.readAheadDepth = readAheadDepth;
+        this.maxPooled = Runtime.getRuntime().availableProcessors() * (2 + readAheadDepth);
+        this.streamBuffers = new BufferPool(streamBlockSize, 32 + this.maxPooled);
+        this.fileBuffers = new ConcurrentLinkedQueue<ByteBuffer>();
+        this.pooledFileBuffers = new AtomicInteger();
+        this.reads = new LongAdder();
+        this.bytesRead = new LongAdder();
+    }
+
+    private static void checkBlockSize(final int blockSize) {
+        if (MIN_BLOCK_SIZE > blockSize || MAX_BLOCK_SIZE < blockSize) {
+            throw new IllegalArgumentException("invalid block size (" + blockSize + ')');
+        }
+    }
+
+    /**
+     * Returns the strategy used by the hashing classes.
+     *
+     * @return default strategy
+     */
+    public static IOStrategy getDefault() {
+        return defaultStrategy;
+    }
+
+    /**
+     * Replaces the strategy used by the hashing classes.
+     *
+     * @param strategy new default strategy
+     */
+    public static void setDefault(final IOStrategy strategy) {
+        if (null == strategy) {
+            throw new IllegalArgumentException("null strategy");
+        }
+        defaultStrategy = strategy;
+    }
+
+    public int getFileBlockSize() {
+        return this.fileBlockSize;
+    }
+
+    public int getStreamBlockSize() {
+        return this.streamBlockSize;
+    }
+
+    public int getReadAheadDepth() {
+        return this.readAheadDepth;
+    }
+
+    /**
+     * Returns the pool of heap buffers used to read streams. Each buffer is
+     * {@link #getStreamBlockSize()} bytes.
+     *
+     * @return stream buffer pool
+     */
+    public BufferPool getStreamBuffers() {
+        return this.streamBuffers;
+    }
+
+    /**
+     * Returns a cleared direct buffer of {@link #getFileBlockSize()} bytes.
+     * Direct buffers are expensive to allocate so they should be handed back
+     * through {@link #releaseFileBuffer(ByteBuffer)} once the read is done.
+     *
+     * @return direct buffer
+     */
+    public ByteBuffer acquireFileBuffer() {
+        ByteBuffer buffer = this.fileBuffers.poll();
+        if (null != buffer) {
+            this.pooledFileBuffers.decrementAndGet();
+            buffer.clear();
+        } else {
+            buffer = ByteBuffer.allocateDirect(this.fileBlockSize);
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns a direct buffer to the pool. Buffers in excess of the pool
+     * limit are dropped.
+     *
+     * @param buffer buffer to recycle
+     */
+    public void releaseFileBuffer(final ByteBuffer buffer) {
+        if (null != buffer && this.fileBlockSize == buffer.capacity()) {
+            if (this.pooledFileBuffers.incrementAndGet() <= this.maxPooled) {
+                this.fileBuffers.offer(buffer);
+            } else {
+                this.pooledFileBuffers.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of idle direct buffers held by the pool.
+     *
+     * @return idle file buffer count
+     */
+    public int getPooledFileBuffers() {
+        return this.pooledFileBuffers.get();
+    }
+
+    /**
+     * Returns the max number of idle file buffers the pool holds on to.
+     *
+     * @return pool limit
+     */
+    public int getMaxPooled() {
+        return this.maxPooled;
+    }
+
+    /**
+     * Reads from the given stream and counts the call. Reads from a
+     * {@link RingBuffer.Consumer} are served out of memory the ring has
+     * already read, and counted, so they are not counted again.
+     *
+     * @param input  stream to read from
+     * @param buffer buffer to read into
+     * @param offset offset into the buffer
+     * @param length max number of bytes to read
+     * @return number of bytes read or -1 at the end of the stream
+     * @throws IOException if an error occurred reading from input
+     */
+    public int read(final InputStream input, final byte[] buffer, final int offset, final int length) throws IOException {
+        int result = input.read(buffer, offset, length);
+        if (!(input instanceof RingBuffer.Consumer)) {
+            recordRead(result);
+        }
+        return result;
+    }
+
+    /**
+     * Reads from the given channel and counts the call.
+     *
+     * @param input  channel to read from
+     * @param buffer buffer to read into
+     * @return number of bytes read or -1 at the end of the channel
+     * @throws IOException if an error occurred reading from input
+     */
+    public int read(final FileChannel input, final ByteBuffer buffer) throws IOException {
+        int result = input.read(buffer);
+        recordRead(result);
+        return result;
+    }
+
+    /**
+     * Counts a read made outside of this class.
+     *
+     * @param result value returned by the read
+     */
+    public void recordRead(final int result) {
+        this.reads.increment();
+        if (0 < result) {
+            this.bytesRead.add(result);
+        }
+    }
+
+    /**
+     * Returns the number of read calls made through this strategy.
+     *
+     * @return read call count
+     */
+    public long getReads() {
+        return this.reads.sum();
+    }
+
+    /**
+     * Returns the number of bytes read through this strategy.
+     *
+     * @return byte count
+     */
+    public long getBytesRead() {
+        return this.bytesRead.sum();
+    }
+
+    /**
+     * Logs the read counters at {@link Level#FINE}.
+     */
+    public void logStats() {
+        if (logger.isLoggable(Level.FINE)) {
+            long readCount = getReads();
+            long byteCount = getBytesRead();
+            logger.fine(readCount + " read(s), " + byteCount + " byte(s), " + (0 < readCount ? byteCount / readCount : 0) + " bytes/read"
+                        + " (file blocks " + this.fileBlockSize + ", stream blocks " + this.streamBlockSize + ", read-ahead " + this.readAheadDepth + ')');
+        }
+    }
+
+    /**
+     * Measures read throughput from the given file at every power of two
+     * block size between the given bounds. The file is read once to pull it
+     * into the page cache and then each block size reads it repeatedly for
+     * the given amount of time, so what is measured is the cost of the read
+     * calls rather than the disk.
+     *
+     * @param sample       file to read
+     * @param minBlockSize smallest block size to try
+     * @param maxBlockSize largest block size to try
+     * @param sampleNanos  time to spend on each block size
+     * @return throughput in megabytes per second, keyed by block size
+     * @throws IOException if an error occurred reading the sample
+     */
+    public static SortedMap<Integer, Double> probe(final Path sample, final int minBlockSize, final int maxBlockSize, final long sampleNanos) throws IOException {
+        checkBlockSize(minBlockSize);
+        checkBlockSize(maxBlockSize);
+        SortedMap<Integer, Double> results = new TreeMap<Integer, Double>();
+        FileChannel channel = FileChannel.open(sample, StandardOpenOption.READ);
+        try {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(maxBlockSize));
+            drain(channel, buffer);
+            for (int blockSize = Integer.highestOneBit(minBlockSize); blockSize <= maxBlockSize; blockSize <<= 1) {
+                buffer.limit(blockSize);
+                long bytes = 0;
+                long elapsed;
+                long start = System.nanoTime();
+                do {
+                    bytes += drain(channel, buffer);
+                    elapsed = System.nanoTime() - start;
+                } while (elapsed < sampleNanos);
+                double throughput = bytes * 1000.0 * 1000 * 1000 / elapsed / (1024 * 1024);
+                logger.fine("block size " + blockSize + ": " + (long) throughput + " MB/s");
+                results.put(blockSize, throughput);
+            }
+        } finally {
+            channel.close();
+        }
+        return results;
+    }
+
+    private static long drain(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        int limit = buffer.limit();
+        long bytes = 0;
+        channel.position(0);
+        for (int bytesRead = channel.read(buffer); 0 <= bytesRead; bytesRead = channel.read(buffer)) {
+            bytes += bytesRead;
+            buffer.clear().limit(limit);
+        }
+        buffer.clear().limit(limit);
+        return bytes;
+    }
+
+    /**
+     * Picks the smallest block size whose throughput is within the given
+     * fraction of the best one. Past this knee larger reads stop paying for
+     * the memory they take.
+     *
+     * @param results  throughput keyed by block size, as returned by
+     *                 {@link #probe(Path, int, int, long)}
+     * @param fraction fraction of the best throughput that is good enough
+     * @return chosen block size
+     */
+    public static int findKnee(final SortedMap<Integer, Double> results, final double fraction) {
+        if (results.isEmpty()) {
+            throw new IllegalArgumentException("no probe results");
+        }
+        double best = 0;
+        for (double throughput : results.values()) {
+            best = Math.max(best, throughput);
+        }
+        for (Map.Entry<Integer, Double> entry : results.entrySet()) {
+            if (entry.getValue() >= best * fraction) {
+                return entry.getKey();
+            }
+        }
+        return results.lastKey();
+    }
+
+    /**
+     * Runs {@link #probe(Path, int, int, long)} against a temporary file of
+     * random data and returns the knee within 5% of the best throughput.
+     *
+     * @param sampleSize size of the temporary file, in bytes
+     * @return chosen file block size
+     * @throws IOException if the temporary file could not be written or read
+     */
+    public static int probeFileBlockSize(final int sampleSize) throws IOException {
+        Path sample = Files.createTempFile("blocksize", ".probe");
+        try {
+            byte[] data = new byte[DEFAULT_FILE_BLOCK_SIZE];
+            new Random(0).nextBytes(data);
+            OutputStream out = Files.newOutputStream(sample);
+            try {
+                for (int written = 0; written < sampleSize; written += data.length) {
+                    out.write(data, 0, Math.min(data.length, sampleSize - written));
+                }
+            } finally {
+                out.close();
+            }
+            int result = findKnee(probe(sample, MIN_BLOCK_SIZE, Math.min(8 * 1024 * 1024, Math.max(MIN_BLOCK_SIZE, sampleSize)), 50L * 1000 * 1000), 0.95);
+            logger.fine("probed file block size: " + result);
+            return result;
+        } finally {
+            Files.deleteIfExists(sample);
+        }
+    }
+}
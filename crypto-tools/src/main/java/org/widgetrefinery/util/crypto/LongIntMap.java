@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing map from long keys to int values. It stores keys and
+ * values in two flat arrays, so a map with millions of entries costs 12
+ * bytes per slot rather than the ~60 bytes per entry of a boxed
+ * {@link java.util.HashMap}. Entries cannot be removed.
+ *
+ * @since 10/17/26 6:05 PM
+ */
+public class LongIntMap {
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[]  keys;
+    private int[]   values;
+    private int     size;
+    private boolean hasEmptyKey;
+    private int     emptyKeyValue;
+
+    /**
+     * @param expectedSize number of entries to size the map for
+     */
+    public LongIntMap(final int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize + expectedSize / 2) - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        Arrays.fill(this.keys, EMPTY);
+    }
+
+    /**
+     * Returns the number of entries in the map.
+     *
+     * @return entry count
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the value mapped to the given key.
+     *
+     * @param key          key to look up
+     * @param defaultValue value to return if the key is missing
+     * @return mapped value or defaultValue
+     */
+    public int get(final long key, final int defaultValue) {
+        if (EMPTY == key) {
+            return this.hasEmptyKey ? this.emptyKeyValue : defaultValue;
+        }
+        int mask = this.keys.length - 1;
+        for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+            long existing = this.keys[slot];
+            if (key == existing) {
+                return this.values[slot];
+            } else if (EMPTY == existing) {
+                return defaultValue;
+            }
+        }
+    }
+
+    /**
+     * Maps the given key to the given value, replacing any previous value.
+     *
+     * @param key   key to map
+     * @param value value to map it to
+     */
+    public void put(final long key, final int value) {
+        if (EMPTY == key) {
+            if (!this.hasEmptyKey) {
+                this.hasEmptyKey = true;
+                this.size++;
+            }
+            this.emptyKeyValue = value;
+            return;
+        }
+        if (2 * this.keys.length <= 3 * (this.size + 1)) {
+            grow();
+        }
+        int mask = this.keys.length - 1;
+        int slot = mix(key) & mask;
+        while (EMPTY != this.keys[slot] && key != this.keys[slot]) {
+            slot = (slot + 1) & mask;
+        }
+        if (EMPTY == this.keys[slot]) {
+            this.keys[slot] = key;
+            this.size++;
+        }
+        this.values[slot] = value;
+    }
+
+    private void grow() {
+        long[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        this.keys = new long[2 * oldKeys.length];
+        this.values = new int[2 * oldValues.length];
+        Arrays.fill(this.keys, EMPTY);
+        int mask = this.keys.length - 1;
+        for (int ndx = 0; ndx < oldKeys.length; ndx++) {
+            if (EMPTY != oldKeys[ndx]) {
+                int slot = mix(oldKeys[ndx]) & mask;
+                while (EMPTY != this.keys[slot]) {
+                    slot = (slot + 1) & mask;
+                }
+                this.keys[slot] = oldKeys[ndx];
+                this.values[slot] = oldValues[ndx];
+            }
+        }
+    }
+
+    private static int mix(final long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ hash >>> 32);
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import org.widgetrefinery.util.crypto.output.ByteEncoder;
+import org.widgetrefinery.util.crypto.output.ResultFormat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+/**
+ * Reads the text manifests written by {@link Cli}. Two formats are
+ * understood, and may be mixed:
+ * <ul>
+ * <li>the default format: <code>file|name: hash hash ...</code>, with one
+ * hash per encoding</li>
+ * <li>the sha1sum format: <code>hash  name</code>, with one hash per line;
+ * consecutive lines for the same name are merged into one entry</li>
+ * </ul>
+ * Lines for other sources, such as strings or standard in, cannot be
+ * checked against files and are counted as malformed along with lines that
+ * do not parse.
+ *
+ * @since 10/17/26 8:05 PM
+ */
+public class ManifestParser {
+    private static final Logger logger      = Logger.getLogger(ManifestParser.class.getName());
+    private static final String FILE_PREFIX = ResultFormat.SOURCE_FILE + '|';
+
+    private final BufferedReader reader;
+    private final int[]          resultLengths;
+    private final ByteEncoder    byteEncoder;
+    private       Entry          pending;
+    private       long           lineNumber;
+    private       long           malformedCount;
+
+    /**
+     * @param reader        manifest to read
+     * @param resultLengths length of each hash, in the order they are listed
+     * @param byteEncoder   encoding of the hashes
+     */
+    public ManifestParser(final BufferedReader reader, final int[] resultLengths, final ByteEncoder byteEncoder) {
+        this.reader = reader;
+        this.resultLengths = resultLengths;
+        this.byteEncoder = byteEncoder;
+    }
+
+    /**
+     * Returns the number of lines skipped so far because they could not be
+     * parsed.
+     *
+     * @return line count
+     */
+    public long getMalformedCount() {
+        return this.malformedCount;
+    }
+
+    /**
+     * Reads the next entry of the manifest.
+     *
+     * @return next entry, or null at the end of the manifest
+     * @throws IOException if the manifest could not be read
+     */
+    public Entry next() throws IOException {
+        for (String line = this.reader.readLine(); null != line; line = this.reader.readLine()) {
+            this.lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            Entry entry = parseLine(line);
+            if (null == entry) {
+                this.malformedCount++;
+                logger.fine("skipping malformed manifest line " + this.lineNumber);
+            } else if (entry != this.pending) {
+                Entry previous = this.pending;
+                this.pending = entry;
+                if (null != previous) {
+                    return previous;
+                }
+            }
+        }
+        Entry last = this.pending;
+        this.pending = null;
+        return last;
+    }
+
+    /**
+     * Parses a manifest line. A sha1sum line for the same file as the pending
+     * entry is merged into it, in which case the pending entry is returned.
+     *
+     * @param line line to parse
+     * @return parsed entry, or null if the line is malformed
+     */
+    protected Entry parseLine(final String line) {
+        try {
+            if (line.startsWith(FILE_PREFIX)) {
+                return parsePrefixLine(line);
+            }
+            return parseSumLine(line, this.pending);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private Entry parsePrefixLine(final String line) throws IllegalArgumentException {
+        byte[][] results = new byte[this.resultLengths.length][];
+        int end = line.length();
+        for (int ndx = results.length - 1; 0 <= ndx; ndx--) {
+            int start = line.lastIndexOf(' ', end - 1);
+            if (0 > start) {
+                return null;
+            }
+            results[ndx] = decode(line.substring(start + 1, end), ndx);
+            end = start;
+        }
+        if (FILE_PREFIX.length() >= end || ':' != line.charAt(end - 1)) {
+            return null;
+        }
+        return new Entry(line.substring(FILE_PREFIX.length(), end - 1), results);
+    }
+
+    private Entry parseSumLine(final String line, final Entry pending) throws IllegalArgumentException {
+        boolean escaped = line.startsWith("\\");
+        int start = escaped ? 1 : 0;
+        int separator = line.indexOf(' ', start);
+        if (0 > separator || separator + 2 > line.length() || (' ' != line.charAt(separator + 1) && '*' != line.charAt(separator + 1))) {
+            return null;
+        }
+        byte[] hash = this.byteEncoder.decode(line.substring(start, separator));
+        String name = line.substring(separator + 2);
+        if (escaped) {
+            name = unescape(name);
+        }
+        Entry entry = null != pending && name.equals(pending.name) ? pending : null;
+        for (int ndx = 0; ndx < this.resultLengths.length; ndx++) {
+            if (hash.length == this.resultLengths[ndx] && (null == entry || null == entry.results[ndx])) {
+                if (null == entry) {
+                    entry = new Entry(name, new byte[this.resultLengths.length][]);
+                }
+                entry.results[ndx] = hash;
+                return entry;
+            }
+        }
+        if (null != entry) {
+            return parseSumLine(line, null);
+        }
+        return null;
+    }
+
+    private byte[] decode(final String token, final int ndx) throws IllegalArgumentException {
+        byte[] hash = this.byteEncoder.decode(token);
+        if (hash.length != this.resultLengths[ndx]) {
+            throw new IllegalArgumentException("hash " + ndx + " has the wrong length (" + hash.length + ')');
+        }
+        return hash;
+    }
+
+    private static String unescape(final String name) {
+        StringBuilder unescaped = new StringBuilder(name.length());
+        for (int ndx = 0; ndx < name.length(); ndx++) {
+            char c = name.charAt(ndx);
+            if ('\\' == c && ndx + 1 < name.length()) {
+                c = name.charAt(++ndx);
+                unescaped.append('n' == c ? '\n' : c);
+            } else {
+                unescaped.append(c);
+            }
+        }
+        return unescaped.toString();
+    }
+
+    /**
+     * A file listed in the manifest and its hashes. Hashes that are not
+     * listed are null.
+     */
+    public static class Entry {
+        private final String   name;
+        private final byte[][] results;
+
+        public Entry(final String name, final byte[][] results) {
+            this.name = name;
+            this.results = results;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public byte[][] getResults() {
+            return this.results;
+        }
+
+        /**
+         * Returns true if every hash is listed.
+         *
+         * @return true if complete
+         */
+        public boolean isComplete() {
+            for (byte[] result : this.results) {
+                if (null == result) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,405 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import org.widgetrefinery.util.crypto.output.ByteEncoder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Rehashes the files listed in a manifest and compares them against the
+ * listed hashes. Both the text manifests read by {@link ManifestParser} and
+ * {@link BinaryManifest} files can be verified.
+ * <p/>
+ * The manifest is read on the calling thread and handed to a fixed pool of
+ * workers through a bounded queue, so huge manifests are streamed rather than
+ * loaded. A byte budget caps how much file data the workers may be reading
+ * at once, keeping many small files in flight without letting a few large
+ * ones thrash the disk.
+ *
+ * @since 10/17/26 7:10 PM
+ */
+public class ManifestVerifier {
+    /**
+     * Default number of bytes the workers may have in flight.
+     */
+    public static final long DEFAULT_BUDGET = 256L * 1024 * 1024;
+
+    private static final Logger               logger = Logger.getLogger(ManifestVerifier.class.getName());
+    private static final ManifestParser.Entry END    = new ManifestParser.Entry(null, null);
+
+    private final    MultiCryptoHash multiCryptoHash;
+    private final    ByteEncoder     byteEncoder;
+    private final    int             threads;
+    private final    int             budget;
+    private final    int[]           resultLengths;
+    private final    LongAdder       okCount;
+    private final    LongAdder       failedCount;
+    private final    LongAdder       missingCount;
+    private final    LongAdder       errorCount;
+    private          long            malformedCount;
+    private          boolean         failFast;
+    private          Path            baseDirectory;
+    private volatile boolean         stopped;
+
+    /**
+     * @param multiCryptoHash hashes to compute, in the order they are listed in the manifest
+     * @param byteEncoder     encoding of the hashes in the manifest
+     * @param threads         number of worker threads
+     * @param budget          number of bytes the workers may be reading at once
+     */
+    public ManifestVerifier(final MultiCryptoHash multiCryptoHash, final ByteEncoder byteEncoder, final int threads, final long budget) {
+        if (0 >= threads) {
+            throw new IllegalArgumentException("invalid thread count (" + threads + ')');
+        }
+        if (1024 > budget) {
+            throw new IllegalArgumentException("invalid budget (" + budget + ')');
+        }
+        this.multiCryptoHash = multiCryptoHash;
+        this.byteEncoder = byteEncoder;
+        this.threads = threads;
+        this.budget = (int) Math.min(Integer.MAX_VALUE, budget / 1024);
+        this.resultLengths = multiCryptoHash.getResultLengths();
+        this.okCount = new LongAdder();
+        this.failedCount = new LongAdder();
+        this.missingCount = new LongAdder();
+        this.errorCount = new LongAdder();
+    }
+
+    /**
+     * Stop at the first file that is not OK. Files already being checked
+     * are still reported.
+     *
+     * @param failFast true to stop early
+     */
+    public void setFailFast(final boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    /**
+     * Resolve relative names in the manifest against the given directory
+     * instead of the current directory. Names are still reported as listed.
+     *
+     * @param baseDirectory directory to resolve against, or null for the current directory
+     */
+    public void setBaseDirectory(final Path baseDirectory) {
+        this.baseDirectory = baseDirectory;
+    }
+
+    public long getOkCount() {
+        return this.okCount.sum();
+    }
+
+    public long getFailedCount() {
+        return this.failedCount.sum();
+    }
+
+    public long getMissingCount() {
+        return this.missingCount.sum();
+    }
+
+    /**
+     * Returns the number of files that could not be read.
+     *
+     * @return error count
+     */
+    public long getErrorCount() {
+        return this.errorCount.sum();
+    }
+
+    /**
+     * Returns the number of manifest lines that could not be parsed.
+     *
+     * @return line count
+     */
+    public long getMalformedCount() {
+        return this.malformedCount;
+    }
+
+    /**
+     * Returns true if the last verification stopped early because of
+     * {@link #setFailFast(boolean)}.
+     *
+     * @return true if stopped early
+     */
+    public boolean isStopped() {
+        return this.stopped;
+    }
+
+    /**
+     * Checks every file listed in the given text manifest. Results are
+     * reported as each file finishes, so they do not follow the manifest
+     * order.
+     *
+     * @param manifest manifest to read
+     * @param handler  receives the results
+     * @throws IOException if the manifest could not be read
+     */
+    public void verify(final BufferedReader manifest, final Handler handler) throws IOException {
+        final ManifestParser parser = new ManifestParser(manifest, this.resultLengths, this.byteEncoder);
+        this.malformedCount = 0;
+        try {
+            verify(new EntrySource() {
+                @Override
+                public ManifestParser.Entry next() throws IOException {
+                    return parser.next();
+                }
+            }, handler);
+        } finally {
+            this.malformedCount = parser.getMalformedCount();
+        }
+    }
+
+    /**
+     * Checks every file listed in the given binary manifest, in path order.
+     * The manifest must have been written with the same encodings as this
+     * verifier computes.
+     *
+     * @param manifest manifest to read
+     * @param handler  receives the results
+     * @throws IOException if the manifest encodings do not match
+     */
+    public void verify(final BinaryManifest manifest, final Handler handler) throws IOException {
+        if (!Arrays.equals(this.resultLengths, manifest.getResultLengths())) {
+            throw new IOException("manifest encodings " + Arrays.toString(manifest.getEncodings()) + " do not match the requested encodings");
+        }
+        this.malformedCount = 0;
+        verify(new EntrySource() {
+            private int record;
+
+            @Override
+            public ManifestParser.Entry next() {
+                if (this.record >= manifest.size()) {
+                    return null;
+                }
+                ManifestParser.Entry entry = new ManifestParser.Entry(manifest.getPath(this.record), manifest.getResults(this.record));
+                this.record++;
+                return entry;
+            }
+        }, handler);
+    }
+
+    protected void verify(final EntrySource source, final Handler handler) throws IOException {
+        this.stopped = false;
+        BlockingQueue<ManifestParser.Entry> queue = new ArrayBlockingQueue<ManifestParser.Entry>(4 * this.threads);
+        Semaphore budget = new Semaphore(this.budget);
+        List<Worker> workers = new ArrayList<Worker>();
+        for (int ndx = 0; ndx < this.threads; ndx++) {
+            Worker worker = new Worker(queue, budget, handler);
+            worker.start();
+            workers.add(worker);
+        }
+        try {
+            for (ManifestParser.Entry entry = source.next(); null != entry && !this.stopped; entry = source.next()) {
+                queue.put(entry);
+            }
+            queue.put(END);
+            for (Worker worker : workers) {
+                worker.join();
+            }
+            for (Worker worker : workers) {
+                if (!worker.ended) {
+                    throw new IOException("a manifest verifier worker ended early, so some files were not checked");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while verifying manifest");
+        } finally {
+            for (Worker worker : workers) {
+                if (worker.isAlive()) {
+                    this.stopped = true;
+                    worker.interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Rehashes a single file and reports the outcome. Any exception thrown
+     * while hashing the file, including unchecked ones such as
+     * {@link MultiCryptoHash.CryptoHashException}, is reported to
+     * {@link Handler#onError(String, Exception)}.
+     *
+     * @param entry   file to check
+     * @param budget  byte budget, in kilobytes
+     * @param handler receives the result
+     * @throws InterruptedException if interrupted while waiting on the budget
+     */
+    protected void check(final ManifestParser.Entry entry, final Semaphore budget, final Handler handler) throws InterruptedException {
+        Path path = null != this.baseDirectory ? this.baseDirectory.resolve(entry.getName()) : Paths.get(entry.getName());
+        Status status;
+        try {
+            long size = Files.size(path);
+            int permits = (int) Math.max(1, Math.min(this.budget, (size + 1023) / 1024));
+            budget.acquire(permits);
+            byte[][] results;
+            try {
+                results = this.multiCryptoHash.getHashes(path);
+            } finally {
+                budget.release(permits);
+            }
+            status = Status.OK;
+            for (int ndx = 0; ndx < results.length; ndx++) {
+                if (null != entry.getResults()[ndx] && !Arrays.equals(entry.getResults()[ndx], results[ndx])) {
+                    status = Status.FAILED;
+                }
+            }
+        } catch (NoSuchFileException e) {
+            status = Status.MISSING;
+        } catch (IOException e) {
+            reportError(entry, handler, e);
+            return;
+        } catch (RuntimeException e) {
+            reportError(entry, handler, e);
+            return;
+        }
+        if (Status.OK == status) {
+            this.okCount.increment();
+        } else {
+            (Status.FAILED == status ? this.failedCount : this.missingCount).increment();
+            stopIfFailFast();
+        }
+        handler.onResult(entry.getName(), status);
+    }
+
+    private void reportError(final ManifestParser.Entry entry, final Handler handler, final Exception error) {
+        this.errorCount.increment();
+        stopIfFailFast();
+        handler.onError(entry.getName(), error);
+    }
+
+    private void stopIfFailFast() {
+        if (this.failFast) {
+            this.stopped = true;
+        }
+    }
+
+    /**
+     * Outcome of checking a file.
+     */
+    public enum Status {
+        /**
+         * All listed hashes matched.
+         */
+        OK,
+        /**
+         * At least one listed hash did not match.
+         */
+        FAILED,
+        /**
+         * The file does not exist.
+         */
+        MISSING
+    }
+
+    /**
+     * Receives the results of {@link #verify(BufferedReader, Handler)}. Calls
+     * come from the worker threads, so implementations must be thread safe.
+     */
+    public interface Handler {
+        /**
+         * Called once for each file in the manifest.
+         *
+         * @param name   file name as listed in the manifest
+         * @param status outcome of the check
+         */
+        void onResult(String name, Status status);
+
+        /**
+         * Called when a listed file exists but could not be read.
+         *
+         * @param name  file name as listed in the manifest
+         * @param error reason for the failure
+         */
+        void onError(String name, Exception error);
+    }
+
+    /**
+     * Supplies the entries to check.
+     */
+    protected interface EntrySource {
+        /**
+         * @return next entry, or null when there are no more
+         * @throws IOException if the manifest could not be read
+         */
+        ManifestParser.Entry next() throws IOException;
+    }
+
+    /**
+     * Takes entries off the queue until the end marker is reached. A worker
+     * survives a handler that throws. If it dies anyway, it stops the
+     * verifier and empties the queue on its way out so the reader is never
+     * left blocked on a full queue.
+     */
+    protected class Worker extends Thread {
+        private final    BlockingQueue<ManifestParser.Entry> queue;
+        private final    Semaphore                           budget;
+        private final    Handler                             handler;
+        private volatile boolean                             ended;
+
+        public Worker(final BlockingQueue<ManifestParser.Entry> queue, final Semaphore budget, final Handler handler) {
+            super("manifest-verifier");
+            setDaemon(true);
+            this.queue = queue;
+            this.budget = budget;
+            this.handler = handler;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (ManifestParser.Entry entry = this.queue.take(); END != entry; entry = this.queue.take()) {
+                    if (!ManifestVerifier.this.stopped) {
+                        try {
+                            check(entry, this.budget, this.handler);
+                        } catch (RuntimeException e) {
+                            ManifestVerifier.this.errorCount.increment();
+                            logger.log(Level.WARNING, "failed to report " + entry.getName(), e);
+                        }
+                    }
+                }
+                this.queue.put(END);
+                this.ended = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (!this.ended) {
+                    ManifestVerifier.this.stopped = true;
+                    this.queue.clear();
+                    this.queue.offer(END);
+                }
+            }
+        }
+    }
+}
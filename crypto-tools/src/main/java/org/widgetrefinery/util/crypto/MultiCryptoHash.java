@@ -19,80 +19,753 @@ package org.widgetrefinery.util.crypto;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
- * Utility class for computing multiple hashes simultaneously.
+ * Utility class for computing multiple hashes simultaneously. Stream input is
+ * read once into a {@link RingBuffer} and each hash runs as its own task,
+ * reading out of the shared ring. Regular files are read by each hash
+ * instead so they share the page cache rather than a ring. Batches of strings
+ * are split into shards and hashed into one flat array.
+ * <p/>
+ * Tasks run on the {@link Executor} given to {@link #setExecutor(Executor)},
+ * which defaults to a worker pool shared by every instance, so hashing many
+ * small files does not start a thread per hash per file. The calling thread
+ * always takes a share of the work itself. Files that are cheaper to hash
+ * than to hand out, as judged by a {@link HashCostModel}, are instead read
+ * once on the calling thread and every hash is run over each block in turn.
  *
  * @since 3/4/12 10:36 PM
  */
 public class MultiCryptoHash {
-    private static final int BUFFER_SIZE = 1024;
+    /**
+     * Min number of slots in the ring. Each slot holds
+     * {@link IOStrategy#getStreamBlockSize()} bytes.
+     */
+    protected static final int SLOT_COUNT        = 8;
+    /**
+     * Min number of strings given to each thread when hashing a batch.
+     */
+    protected static final int MIN_SHARD_SIZE    = 4096;
+    /**
+     * Number of bytes each hash is run over before moving on to the next
+     * hash when fused. This is small enough for the data to stay in the L1
+     * cache from one hash to the next.
+     */
+    protected static final int FUSED_WINDOW      = 16 * 1024;
+    /**
+     * Number of bytes before the point a saved hash state left off that are
+     * checked to see whether the file was only appended to.
+     */
+    protected static final int RESUME_CHECK_SIZE = 4096;
+    /**
+     * Max size of a file whose hash states are captured from scratch when
+     * some of the resumable sessions are slower than the regular ones.
+     */
+    protected static final int RESUME_SEED_SIZE  = 1024 * 1024;
+
+    private static final Logger      logger           = Logger.getLogger(MultiCryptoHash.class.getName());
+    private static final Set<String> ASCII_COMPATIBLE = new HashSet<String>(Arrays.asList("US-ASCII", "ISO-8859-1", "UTF-8", "windows-1252"));
+
+    private static volatile ExecutorService defaultExecutor;
 
-    private final CryptoHash[] cryptoHashes;
+    private final    CryptoHash[]  cryptoHashes;
+    private          HashCache     cache;
+    private          String[]      cacheKeys;
+    private          boolean       resumable;
+    private volatile int[]         resultLengths;
+    private volatile Executor      executor;
+    private volatile HashCostModel costModel;
 
     /**
      * @param cryptoHashes list of hashes to compute
      */
     public MultiCryptoHash(final CryptoHash... cryptoHashes) {
         this.cryptoHashes = cryptoHashes;
+        this.costModel = new HashCostModel(cryptoHashes);
     }
 
     /**
-     * Hashes the given data.
+     * Returns the worker pool used by instances that were not given an
+     * executor. The pool keeps up to 4 threads per processor alive between
+     * calls; tasks beyond that run on threads of their own rather than
+     * waiting, since the hashes reading a stream must all run at once.
+     *
+     * @return shared worker pool
+     */
+    public static ExecutorService getDefaultExecutor() {
+        ExecutorService result = defaultExecutor;
+        if (null == result) {
+            synchronized (MultiCryptoHash.class) {
+                result = defaultExecutor;
+                if (null == result) {
+                    result = createWorkerPool(4 * Runtime.getRuntime().availableProcessors());
+                    defaultExecutor = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a pool of daemon worker threads that are reused across calls.
+     * Idle workers exit after a minute. Tasks submitted while every worker
+     * is busy run on a new thread instead of waiting in a queue.
+     *
+     * @param maxThreads max number of threads kept in the pool
+     * @return new worker pool
+     * @throws IllegalArgumentException if maxThreads is less than 1
+     */
+    public static ExecutorService createWorkerPool(final int maxThreads) throws IllegalArgumentException {
+        if (0 >= maxThreads) {
+            throw new IllegalArgumentException("invalid thread count (" + maxThreads + ')');
+        }
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ThreadFactory threadFactory = new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(runnable, "crypto-hash-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        return new ThreadPoolExecutor(0, maxThreads, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), threadFactory, new RejectedExecutionHandler() {
+            @Override
+            public void rejectedExecution(final Runnable runnable, final ThreadPoolExecutor executor) {
+                if (executor.isShutdown()) {
+                    throw new RejectedExecutionException("worker pool has been shut down");
+                }
+                threadFactory.newThread(runnable).start();
+            }
+        });
+    }
+
+    /**
+     * Creates an executor that runs each task on a new virtual thread. This
+     * suits inputs where the hashes mostly wait on I/O, such as files on
+     * network storage. Virtual threads are looked up at runtime since this
+     * library still runs on older JVMs.
+     *
+     * @return new virtual thread executor
+     * @throws UnsupportedOperationException if the JVM does not support virtual threads
+     */
+    public static ExecutorService createVirtualThreadExecutor() throws UnsupportedOperationException {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new UnsupportedOperationException("virtual threads require Java 21 or later");
+        } catch (Exception e) {
+            throw new UnsupportedOperationException("virtual threads are not available", e);
+        }
+    }
+
+    /**
+     * Runs the hashes on the given executor instead of the shared worker
+     * pool. The executor must not queue tasks behind one another: every hash
+     * of a stream has to be running for the stream to be read.
+     *
+     * @param executor executor to use, or null for {@link #getDefaultExecutor()}
+     */
+    public void setExecutor(final Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the executor the hashes run on.
+     *
+     * @return executor
+     */
+    public Executor getExecutor() {
+        Executor result = this.executor;
+        return null != result ? result : getDefaultExecutor();
+    }
+
+    /**
+     * Replaces the model used to decide how files are hashed. The model must
+     * have been built for the hashes given to the constructor.
+     *
+     * @param costModel new model
+     */
+    public void setCostModel(final HashCostModel costModel) {
+        this.costModel = costModel;
+    }
+
+    public HashCostModel getCostModel() {
+        return this.costModel;
+    }
+
+    /**
+     * Has {@link #getHashes(Path)} consult the given cache before reading a
+     * file. Each hash is stored in the cache under its encoding name, such as
+     * "ms", so the names must uniquely describe the hashes.
+     *
+     * @param cache     cache to use, or null to disable caching
+     * @param encodings encoding name for each hash, in the same order as the hashes
+     * @throws IllegalArgumentException if the number of names does not match the number of hashes
+     */
+    public void setCache(final HashCache cache, final String... encodings) throws IllegalArgumentException {
+        if (null != cache && encodings.length != getResultCount()) {
+            throw new IllegalArgumentException("expected " + getResultCount() + " encoding names but got " + encodings.length);
+        }
+        this.cache = cache;
+        this.cacheKeys = encodings;
+    }
+
+    /**
+     * Has {@link #getHashes(Path)} save the state of each hash at the end of
+     * every file it reads into the cache, and pick up from there the next
+     * time if the file has only been appended to. This only has an effect
+     * with a cache and when every hash supports {@link ResumableHashSession}.
+     *
+     * @param resumable true to resume hashes of growing files
+     */
+    public void setResumable(final boolean resumable) {
+        this.resumable = resumable;
+    }
+
+    public boolean isResumable() {
+        return this.resumable;
+    }
+
+    /**
+     * Returns the number of results returned by the getHashes() methods.
+     *
+     * @return result count
+     */
+    public int getResultCount() {
+        return this.cryptoHashes.length;
+    }
+
+    /**
+     * Turns the results from the hashes given to the constructor into the
+     * results returned by the getHashes() methods. The default
+     * implementation returns them as is.
+     *
+     * @param results one result per hash given to the constructor
+     * @return array of {@link #getResultCount()} results
+     */
+    protected byte[][] expandResults(final byte[][] results) {
+        return results;
+    }
+
+    /**
+     * Hashes the given data. This waits for every hash to finish, however
+     * long that takes, so a result is only missing if its hash failed. If
+     * the calling thread is interrupted, the hashes still running are asked
+     * to stop and fail once they do.
      *
      * @param input input data to hash
      * @return array of hashed data as a byte array
      * @throws IOException if an error occurred reading from input
      */
     public byte[][] getHashes(InputStream input) throws IOException {
-        List<PipedOutputStream> sources = new ArrayList<PipedOutputStream>(this.cryptoHashes.length);
-        List<CryptoThread> threads = new ArrayList<CryptoThread>(this.cryptoHashes.length);
-        byte[][] results = new byte[this.cryptoHashes.length][];
-        int resultsNdx = 0;
-        CryptoHashException errors = new CryptoHashException();
+        return expandResults(hashStream(input));
+    }
+
+    private byte[][] hashStream(final InputStream input) throws IOException {
+        if (1 == this.cryptoHashes.length) {
+            return new byte[][]{this.cryptoHashes[0].getHash(input)};
+        }
+
+        IOStrategy strategy = IOStrategy.getDefault();
+        RingBuffer ring = new RingBuffer(strategy.getStreamBuffers(), Math.max(SLOT_COUNT, 2 * strategy.getReadAheadDepth()));
+        List<CryptoTask> tasks = new ArrayList<CryptoTask>(this.cryptoHashes.length);
+        boolean filled = false;
 
         try {
             for (CryptoHash cryptoHash : this.cryptoHashes) {
-                PipedOutputStream source = new PipedOutputStream();
-                CryptoThread thread = new CryptoThread(cryptoHash, source);
-                sources.add(source);
-                threads.add(thread);
-                thread.start();
+                tasks.add(new CryptoTask(cryptoHash, ring.createConsumer()));
             }
-            byte[] buffer = new byte[BUFFER_SIZE];
-            for (int bytesRead = input.read(buffer); 0 < bytesRead; bytesRead = input.read(buffer)) {
-                for (PipedOutputStream source : sources) {
-                    source.write(buffer, 0, bytesRead);
+            submit(tasks, 0);
+            ring.fill(input);
+            filled = true;
+        } finally {
+            if (!filled) {
+                ring.abort(new IOException("hashing aborted"));
+            }
+            await(tasks, ring);
+            ring.release();
+        }
+
+        return collectResults(tasks);
+    }
+
+    /**
+     * Hashes the contents of the given file. If a cache was configured and it
+     * holds every hash for the file, the file is not read at all. Otherwise
+     * the hashes are computed by {@link #computeHashes(Path)} and added to
+     * the cache.
+     *
+     * @param input file to hash
+     * @return array of hashed data as a byte array
+     * @throws IOException if an error occurred reading from input
+     */
+    public byte[][] getHashes(final Path input) throws IOException {
+        byte[][] results = lookupHashes(input);
+        HashMetrics.getDefault().recordFile();
+        return results;
+    }
+
+    private byte[][] lookupHashes(final Path input) throws IOException {
+        if (null == this.cache) {
+            return computeHashes(input);
+        }
+        BasicFileAttributes attributes = Files.readAttributes(input, BasicFileAttributes.class);
+        if (!attributes.isRegularFile()) {
+            return computeHashes(input);
+        }
+
+        byte[][] results = new byte[getResultCount()][];
+        boolean cached = true;
+        for (int ndx = 0; cached && ndx < results.length; ndx++) {
+            results[ndx] = this.cache.get(input, attributes, this.cacheKeys[ndx]);
+            cached = null != results[ndx];
+        }
+        if (cached) {
+            return results;
+        }
+
+        results = this.resumable ? resumeHashes(input, attributes) : null;
+        if (null == results) {
+            results = computeHashes(input);
+        }
+        BasicFileAttributes after = Files.readAttributes(input, BasicFileAttributes.class);
+        if (attributes.size() == after.size() && attributes.lastModifiedTime().equals(after.lastModifiedTime())) {
+            for (int ndx = 0; ndx < results.length; ndx++) {
+                this.cache.put(input, attributes, this.cacheKeys[ndx], results[ndx]);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Hashes the contents of the given file in the way the cost model picks
+     * for its size. A lone hash always reads the file itself on the calling
+     * thread. Fused files are handed to {@link #hashFused(Path)}.
+     * Otherwise each hash reads the file on its own through
+     * {@link CryptoHash#getHash(Path)}, either as tasks with the first run
+     * on the calling thread, or one after another on the calling thread when
+     * tree hashes are to spread out over the cores instead. Anything other
+     * than a regular file is streamed through the ring as in
+     * {@link #getHashes(InputStream)}. How long each hash took is fed back
+     * into the cost model whichever way the file was hashed.
+     *
+     * @param input file to hash
+     * @return array of hashed data as a byte array
+     * @throws IOException if an error occurred reading from input
+     */
+    protected byte[][] computeHashes(final Path input) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(input, BasicFileAttributes.class);
+        if (!attributes.isRegularFile()) {
+            InputStream stream = Files.newInputStream(input);
+            try {
+                return expandResults(hashStream(stream));
+            } finally {
+                stream.close();
+            }
+        }
+
+        HashCostModel.Strategy strategy = HashCostModel.Strategy.TREE;
+        if (1 < this.cryptoHashes.length) {
+            HashCostModel model = this.costModel;
+            strategy = model.choose(attributes.size());
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine(input + ": " + attributes.size() + " byte(s), " + model.describe(attributes.size()) + ", using " + strategy.name().toLowerCase());
+            }
+            if (HashCostModel.Strategy.FUSED == strategy) {
+                return expandResults(hashFused(input));
+            }
+        }
+
+        List<CryptoTask> tasks = new ArrayList<CryptoTask>(this.cryptoHashes.length);
+        for (CryptoHash cryptoHash : this.cryptoHashes) {
+            tasks.add(new CryptoTask(cryptoHash, input));
+        }
+        if (HashCostModel.Strategy.TREE == strategy) {
+            for (CryptoTask task : tasks) {
+                task.run();
+            }
+        } else {
+            try {
+                submit(tasks, 1);
+                tasks.get(0).run();
+            } finally {
+                await(tasks, null);
+            }
+        }
+
+        byte[][] results = collectResults(tasks);
+        if (1 < tasks.size()) {
+            HashCostModel model = this.costModel;
+            for (int ndx = 0; ndx < tasks.size(); ndx++) {
+                model.record(strategy, ndx, attributes.size(), tasks.get(ndx).getNanos());
+            }
+        }
+        return expandResults(results);
+    }
+
+    /**
+     * Hashes the given file on the calling thread with a single pass over
+     * the data. Each block read from the file is run through every hash
+     * {@link #FUSED_WINDOW} bytes at a time, so each window is read from
+     * memory once and then hashed out of cache. How long each hash takes is
+     * fed back into the cost model.
+     *
+     * @param input file to hash
+     * @return one result per hash given to the constructor
+     * @throws IOException if an error occurred reading from input
+     */
+    protected byte[][] hashFused(final Path input) throws IOException {
+        HashSession[] sessions = new HashSession[this.cryptoHashes.length];
+        for (int ndx = 0; ndx < sessions.length; ndx++) {
+            sessions[ndx] = this.cryptoHashes[ndx].createSession();
+        }
+        long[] nanos = new long[sessions.length];
+        long bytes;
+        FileChannel channel = FileChannel.open(input, StandardOpenOption.READ);
+        try {
+            bytes = hashBlocks(channel, sessions, nanos);
+        } finally {
+            channel.close();
+        }
+
+        HashCostModel model = this.costModel;
+        byte[][] results = new byte[sessions.length][];
+        for (int ndx = 0; ndx < results.length; ndx++) {
+            results[ndx] = AbstractCryptoHash.digest(sessions[ndx]);
+            model.record(HashCostModel.Strategy.FUSED, ndx, bytes, nanos[ndx]);
+        }
+        releaseSessions(this.cryptoHashes, sessions);
+        return results;
+    }
+
+    /**
+     * Feeds the given channel, from its current position to its end, to
+     * every session {@link #FUSED_WINDOW} bytes at a time.
+     *
+     * @param channel  channel to read
+     * @param sessions one session per hash given to the constructor
+     * @param nanos    time spent in each session is added to this
+     * @return number of bytes read
+     * @throws IOException if an error occurred reading from channel
+     */
+    private long hashBlocks(final FileChannel channel, final HashSession[] sessions, final long[] nanos) throws IOException {
+        long[] blockNanos = new long[sessions.length];
+        long bytes = 0;
+        HashMetrics metrics = HashMetrics.getDefault();
+        LongAdder[] counters = new LongAdder[sessions.length];
+        for (int ndx = 0; ndx < counters.length; ndx++) {
+            counters[ndx] = getHashedBytes(this.cryptoHashes[ndx]);
+        }
+
+        IOStrategy strategy = IOStrategy.getDefault();
+        ByteBuffer buffer = strategy.acquireFileBuffer();
+        try {
+            while (true) {
+                buffer.clear();
+                long before = System.nanoTime();
+                if (0 > strategy.read(channel, buffer)) {
+                    break;
+                }
+                long ioNanos = System.nanoTime() - before;
+                int limit = buffer.position();
+                bytes += limit;
+                Arrays.fill(blockNanos, 0);
+                for (int start = 0; start < limit; start += FUSED_WINDOW) {
+                    int end = Math.min(limit, start + FUSED_WINDOW);
+                    for (int ndx = 0; ndx < sessions.length; ndx++) {
+                        buffer.limit(end);
+                        buffer.position(start);
+                        long updated = System.nanoTime();
+                        sessions[ndx].update(buffer);
+                        blockNanos[ndx] += System.nanoTime() - updated;
+                    }
+                }
+                for (int ndx = 0; ndx < sessions.length; ndx++) {
+                    nanos[ndx] += blockNanos[ndx];
+                    metrics.recordBlock(counters[ndx], limit, 0 == ndx ? ioNanos : 0, blockNanos[ndx]);
                 }
             }
-            for (PipedOutputStream source : sources) {
-                source.flush();
-                source.close();
+        } finally {
+            strategy.releaseFileBuffer(buffer);
+        }
+        return bytes;
+    }
+
+    /**
+     * Hashes the given file, picking up from the states saved in the cache
+     * by the last run if the file has only been appended to since. The file
+     * is read once on the calling thread as in {@link #hashFused(Path)},
+     * starting where the saved states left off, and the states at the new
+     * end of the file are saved for the next run.
+     * <p/>
+     * If there is no state to pick up from, the file is only hashed this way
+     * when capturing the states is cheap: every resumable session is as fast
+     * as a regular one (see {@link AbstractCryptoHash#isResumeCheap()}), or
+     * the file is no larger than {@link #RESUME_SEED_SIZE} bytes. Otherwise
+     * null is returned so the file is hashed the regular way.
+     * <p/>
+     * The file counts as only appended to if it has the same file key, is
+     * no shorter, and the {@link #RESUME_CHECK_SIZE} bytes before the saved
+     * offset have the same checksum as when the states were saved.
+     *
+     * @param input      file to hash
+     * @param attributes attributes of the file
+     * @return array of hashed data as a byte array, or null if the hashes cannot be resumed
+     * @throws IOException if an error occurred reading from input
+     */
+    protected byte[][] resumeHashes(final Path input, final BasicFileAttributes attributes) throws IOException {
+        ResumableHashSession[] sessions = new ResumableHashSession[this.cryptoHashes.length];
+        for (int ndx = 0; ndx < sessions.length; ndx++) {
+            CryptoHash cryptoHash = this.cryptoHashes[ndx];
+            sessions[ndx] = cryptoHash instanceof AbstractCryptoHash ? ((AbstractCryptoHash) cryptoHash).createResumableSession() : null;
+            if (null == sessions[ndx]) {
+                return null;
+            }
+        }
+
+        FileChannel channel = FileChannel.open(input, StandardOpenOption.READ);
+        try {
+            long offset = restoreStates(input, attributes, channel, sessions);
+            if (0 == offset && !isSeedCheap(attributes.size())) {
+                return null;
+            }
+            channel.position(offset);
+            long bytes = hashBlocks(channel, sessions, new long[sessions.length]);
+            HashCache.State[] states = new HashCache.State[sessions.length];
+            long checksum = getResumeChecksum(channel, offset + bytes);
+            for (int ndx = 0; ndx < sessions.length; ndx++) {
+                byte[] state = sessions[ndx].saveState();
+                states[ndx] = null != state ? new HashCache.State(offset + bytes, checksum, state) : null;
+            }
+            byte[][] results = new byte[sessions.length][];
+            for (int ndx = 0; ndx < results.length; ndx++) {
+                results[ndx] = AbstractCryptoHash.digest(sessions[ndx]);
+                if (null != states[ndx]) {
+                    this.cache.putState(input, attributes, getResumeKey(ndx), states[ndx]);
+                }
+            }
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine(input + ": resumed at byte " + offset + ", hashed " + bytes + " new byte(s)");
             }
-            Thread.yield();
+            return expandResults(results);
         } finally {
-            for (CryptoThread thread : threads) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Returns whether hashing a file of the given size from scratch through
+     * resumable sessions costs about as much as hashing it the regular way.
+     */
+    private boolean isSeedCheap(final long size) {
+        if (RESUME_SEED_SIZE >= size) {
+            return true;
+        }
+        for (CryptoHash cryptoHash : this.cryptoHashes) {
+            if (!((AbstractCryptoHash) cryptoHash).isResumeCheap()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Restores the states saved in the cache into the given sessions if they
+     * are still valid for the file.
+     *
+     * @return offset to resume hashing from, 0 if the states were not restored
+     */
+    private long restoreStates(final Path input, final BasicFileAttributes attributes, final FileChannel channel, final ResumableHashSession[] sessions) throws IOException {
+        HashCache.State[] states = new HashCache.State[sessions.length];
+        for (int ndx = 0; ndx < states.length; ndx++) {
+            states[ndx] = this.cache.getState(input, attributes, getResumeKey(ndx));
+            if (null == states[ndx] || states[0].getOffset() != states[ndx].getOffset() || states[0].getChecksum() != states[ndx].getChecksum()) {
+                return 0;
+            }
+        }
+        long offset = states[0].getOffset();
+        if (0 == offset || states[0].getChecksum() != getResumeChecksum(channel, offset)) {
+            return 0;
+        }
+        try {
+            for (int ndx = 0; ndx < sessions.length; ndx++) {
+                sessions[ndx].restoreState(states[ndx].getState());
+            }
+        } catch (IllegalArgumentException e) {
+            logger.fine(input + ": cannot resume: " + e.getMessage());
+            for (HashSession session : sessions) {
+                session.reset();
+            }
+            return 0;
+        }
+        return offset;
+    }
+
+    /**
+     * Checksums the {@link #RESUME_CHECK_SIZE} bytes before the given offset.
+     */
+    private static long getResumeChecksum(final FileChannel channel, final long offset) throws IOException {
+        int length = (int) Math.min(offset, RESUME_CHECK_SIZE);
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (0 > channel.read(buffer, offset - length + buffer.position())) {
+                return -1;
+            }
+        }
+        buffer.flip();
+        HashSession session = new XXH3CryptoHash(null).createSession();
+        session.update(buffer);
+        byte[] digest = AbstractCryptoHash.digest(session);
+        return ByteBuffer.wrap(digest).getLong();
+    }
+
+    /**
+     * Returns the name the saved state of the given hash is stored under in
+     * the cache.
+     *
+     * @param ndx index of the hash given to the constructor
+     * @return name of the hash
+     */
+    protected String getResumeKey(final int ndx) {
+        CryptoHash cryptoHash = this.cryptoHashes[ndx];
+        return cryptoHash instanceof AbstractCryptoHash ? ((AbstractCryptoHash) cryptoHash).getAlgorithmName() : cryptoHash.getClass().getName();
+    }
+
+    /**
+     * Returns the {@link HashMetrics} counter for the bytes hashed by the
+     * given hash.
+     *
+     * @param cryptoHash hash to look up
+     * @return byte counter
+     */
+    private static LongAdder getHashedBytes(final CryptoHash cryptoHash) {
+        if (cryptoHash instanceof AbstractCryptoHash) {
+            return ((AbstractCryptoHash) cryptoHash).getHashedBytes();
+        }
+        return HashMetrics.getDefault().getAlgorithmCounter(cryptoHash.getClass().getName());
+    }
+
+    /**
+     * Gives the given sessions back to the hashes that created them, so
+     * pooled digests get reused by the next file.
+     *
+     * @param cryptoHashes hashes the sessions came from
+     * @param sessions     one session per hash
+     */
+    private static void releaseSessions(final CryptoHash[] cryptoHashes, final HashSession[] sessions) {
+        for (int ndx = 0; ndx < sessions.length; ndx++) {
+            if (cryptoHashes[ndx] instanceof AbstractCryptoHash) {
+                ((AbstractCryptoHash) cryptoHashes[ndx]).releaseSession(sessions[ndx]);
+            }
+        }
+    }
+
+    /**
+     * Hands the given tasks to the executor, skipping the first few, which
+     * the caller runs itself. Tasks the executor refuses run on a thread of
+     * their own.
+     *
+     * @param tasks tasks to run
+     * @param skip  number of tasks at the start of the list to leave to the caller
+     */
+    protected void submit(final List<? extends Task> tasks, final int skip) {
+        Executor executor = getExecutor();
+        for (int ndx = skip; ndx < tasks.size(); ndx++) {
+            Task task = tasks.get(ndx);
+            task.queued = true;
+            HashMetrics.getDefault().taskQueued();
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                Thread thread = new Thread(task, "crypto-hash");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+    }
+
+    /**
+     * Waits for the given tasks to finish. If interrupted, the tasks are
+     * cancelled and the ring is aborted so they can wind down, and the
+     * interrupt flag is restored once they have.
+     *
+     * @param tasks tasks to wait on
+     * @param ring  ring the tasks are reading from, may be null
+     */
+    protected void await(final List<? extends Task> tasks, final RingBuffer ring) {
+        boolean interrupted = false;
+        for (Task task : tasks) {
+            while (!task.isDone()) {
                 try {
-                    thread.join(1000);
+                    task.await();
                 } catch (InterruptedException e) {
-                    thread.stop();
-                }
-                if (null != thread.getError()) {
-                    errors.getErrors().add(thread.getError());
-                } else {
-                    results[resultsNdx++] = thread.getResult();
+                    if (!interrupted) {
+                        interrupted = true;
+                        if (null != ring) {
+                            ring.abort(new InterruptedIOException("interrupted while waiting for hashes"));
+                        }
+                        for (Task other : tasks) {
+                            other.cancel();
+                        }
+                    }
                 }
             }
         }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
+    /**
+     * Gathers the results from the given tasks, in order.
+     *
+     * @param tasks finished tasks
+     * @return array of hashed data as a byte array
+     * @throws CryptoHashException if any task failed
+     */
+    protected byte[][] collectResults(final List<CryptoTask> tasks) throws CryptoHashException {
+        byte[][] results = new byte[tasks.size()][];
+        CryptoHashException errors = new CryptoHashException();
+        for (int ndx = 0; ndx < results.length; ndx++) {
+            CryptoTask task = tasks.get(ndx);
+            if (null != task.getError()) {
+                errors.getErrors().add(task.getError());
+            } else {
+                results[ndx] = task.getResult();
+            }
+        }
         if (!errors.getErrors().isEmpty()) {
             throw errors;
         }
-
         return results;
     }
 
@@ -107,11 +780,212 @@ public class MultiCryptoHash {
         for (int ndx = 0; ndx < results.length; ndx++) {
             results[ndx] = this.cryptoHashes[ndx].getHash(input);
         }
-        return results;
+        return expandResults(results);
+    }
+
+    /**
+     * Returns the length of each result returned by the getHashes() methods.
+     *
+     * @return result lengths, in bytes
+     */
+    public int[] getResultLengths() {
+        int[] lengths = this.resultLengths;
+        if (null == lengths) {
+            byte[][] digests = new byte[this.cryptoHashes.length][];
+            for (int ndx = 0; ndx < digests.length; ndx++) {
+                digests[ndx] = new byte[this.cryptoHashes[ndx].createSession().getDigestLength()];
+            }
+            byte[][] results = expandResults(digests);
+            lengths = new int[results.length];
+            for (int ndx = 0; ndx < lengths.length; ndx++) {
+                lengths[ndx] = results[ndx].length;
+            }
+            this.resultLengths = lengths;
+        }
+        return lengths.clone();
+    }
+
+    /**
+     * Returns the number of bytes each input takes up in the arrays written
+     * by {@link #getHashes(CharSequence[], Charset, byte[], int)}.
+     *
+     * @return sum of the result lengths
+     */
+    public int getStride() {
+        int stride = 0;
+        for (int length : getResultLengths()) {
+            stride += length;
+        }
+        return stride;
+    }
+
+    /**
+     * Hashes a batch of strings into a new flat array. See
+     * {@link #getHashes(CharSequence[], Charset, byte[], int)} for the
+     * layout.
+     *
+     * @param inputs  strings to hash
+     * @param charset charset to encode the strings with
+     * @return hashes of every string, {@link #getStride()} bytes per string
+     * @throws IllegalArgumentException if the results do not fit in an array
+     */
+    public byte[] getHashes(final CharSequence[] inputs, final Charset charset) throws IllegalArgumentException {
+        long size = (long) inputs.length * getStride();
+        if (Integer.MAX_VALUE < size) {
+            throw new IllegalArgumentException("batch of " + inputs.length + " strings is too large");
+        }
+        byte[] output = new byte[(int) size];
+        getHashes(inputs, charset, output, 0);
+        return output;
+    }
+
+    /**
+     * Hashes a batch of strings. Each string is encoded once into a scratch
+     * buffer that is reused for the whole batch, and every hash is computed
+     * from that buffer with sessions that are also reused. Large batches are
+     * split into contiguous shards that are hashed as separate tasks.
+     * <p/>
+     * The results for <code>inputs[n]</code> start at
+     * <code>offset + n * getStride()</code> and are laid out one after the
+     * other in the order returned by {@link #getResultLengths()}.
+     *
+     * @param inputs  strings to hash
+     * @param charset charset to encode the strings with
+     * @param output  array to write the hashes to
+     * @param offset  offset within output to start writing at
+     * @throws IllegalArgumentException if output does not have room for the hashes
+     */
+    public void getHashes(final CharSequence[] inputs, final Charset charset, final byte[] output, final int offset) throws IllegalArgumentException {
+        int stride = getStride();
+        if (0 > offset || (long) inputs.length * stride > output.length - offset) {
+            throw new IllegalArgumentException("output does not have room for " + inputs.length + " hashes of " + stride + " bytes");
+        }
+
+        int shardCount = getShardCount(inputs.length);
+        List<BatchTask> tasks = new ArrayList<BatchTask>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            int from = (int) ((long) inputs.length * shard / shardCount);
+            int to = (int) ((long) inputs.length * (shard + 1) / shardCount);
+            tasks.add(new BatchTask(inputs, from, to, charset, output, offset));
+        }
+        if (!tasks.isEmpty()) {
+            try {
+                submit(tasks, 1);
+                tasks.get(0).run();
+            } finally {
+                await(tasks, null);
+            }
+        }
+
+        CryptoHashException errors = new CryptoHashException();
+        for (BatchTask task : tasks) {
+            if (null != task.getError()) {
+                errors.getErrors().add(task.getError());
+            }
+        }
+        if (!errors.getErrors().isEmpty()) {
+            throw errors;
+        }
     }
 
     /**
-     * Represents any errors thrown by the worker threads.
+     * Decides how many tasks to split a batch of strings across.
+     *
+     * @param inputCount number of strings in the batch
+     * @return number of shards, at least 1 unless the batch is empty
+     */
+    protected int getShardCount(final int inputCount) {
+        return Math.min(Runtime.getRuntime().availableProcessors(), (inputCount + MIN_SHARD_SIZE - 1) / MIN_SHARD_SIZE);
+    }
+
+    /**
+     * Hashes one shard of a batch of strings.
+     *
+     * @param inputs  strings to hash
+     * @param from    index of the first string to hash
+     * @param to      index after the last string to hash
+     * @param charset charset to encode the strings with
+     * @param output  array to write the hashes to
+     * @param offset  offset within output of the first string's hashes
+     */
+    protected void hashBatch(final CharSequence[] inputs, final int from, final int to, final Charset charset, final byte[] output, final int offset) {
+        int[] lengths = getResultLengths();
+        int stride = 0;
+        for (int length : lengths) {
+            stride += length;
+        }
+        HashSession[] sessions = new HashSession[this.cryptoHashes.length];
+        byte[][] digests = new byte[this.cryptoHashes.length][];
+        for (int ndx = 0; ndx < sessions.length; ndx++) {
+            sessions[ndx] = this.cryptoHashes[ndx].createSession();
+            digests[ndx] = new byte[sessions[ndx].getDigestLength()];
+        }
+        CharsetEncoder encoder = charset.newEncoder()
+                                        .onMalformedInput(CodingErrorAction.REPLACE)
+                                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        boolean asciiCompatible = ASCII_COMPATIBLE.contains(charset.name());
+        ByteBuffer scratch = ByteBuffer.allocate(256);
+        long bytes = 0;
+        long before = System.nanoTime();
+
+        for (int ndx = from; ndx < to; ndx++) {
+            CharSequence input = inputs[ndx];
+            int needed = (int) Math.ceil(input.length() * (double) encoder.maxBytesPerChar());
+            if (scratch.capacity() < needed) {
+                scratch = ByteBuffer.allocate(Math.max(needed, 2 * scratch.capacity()));
+            }
+            int size = asciiCompatible ? encodeAscii(input, scratch.array()) : -1;
+            if (0 > size) {
+                scratch.clear();
+                encoder.reset();
+                encoder.encode(CharBuffer.wrap(input), scratch, true);
+                encoder.flush(scratch);
+                size = scratch.position();
+            }
+            bytes += size;
+
+            for (int hash = 0; hash < sessions.length; hash++) {
+                sessions[hash].update(scratch.array(), 0, size);
+                sessions[hash].digestInto(digests[hash], 0);
+            }
+            byte[][] results = expandResults(digests);
+            int position = offset + ndx * stride;
+            for (int result = 0; result < results.length; result++) {
+                System.arraycopy(results[result], 0, output, position, lengths[result]);
+                position += lengths[result];
+            }
+        }
+
+        long nanos = (System.nanoTime() - before) / Math.max(1, sessions.length);
+        for (CryptoHash cryptoHash : this.cryptoHashes) {
+            HashMetrics.getDefault().recordBlock(getHashedBytes(cryptoHash), bytes, 0, nanos);
+        }
+        releaseSessions(this.cryptoHashes, sessions);
+    }
+
+    /**
+     * Copies the given string into the given array if every character in it
+     * is ASCII, which is most identifiers. This skips the overhead of the
+     * charset encoder for charsets that encode ASCII as is.
+     *
+     * @param input  string to encode
+     * @param output array to write to, at least as long as the string
+     * @return number of bytes written or -1 if the string is not ASCII
+     */
+    private static int encodeAscii(final CharSequence input, final byte[] output) {
+        int length = input.length();
+        for (int ndx = 0; ndx < length; ndx++) {
+            char c = input.charAt(ndx);
+            if (0x80 <= c) {
+                return -1;
+            }
+            output[ndx] = (byte) c;
+        }
+        return length;
+    }
+
+    /**
+     * Represents any errors thrown by the worker tasks.
      */
     public static class CryptoHashException extends RuntimeException {
         private final List<Exception> errors;
@@ -127,25 +1001,137 @@ public class MultiCryptoHash {
     }
 
     /**
-     * Worker thread for computing a single hash.
+     * A unit of work run either by the caller or on the executor. Cancelling
+     * a task keeps it from starting and interrupts it if it is running, which
+     * stops reads from file channels and waits on the ring; the task then
+     * finishes with an error as usual.
+     */
+    protected abstract static class Task implements Runnable {
+        private Thread    runner;
+        private boolean   queued;
+        private boolean   started;
+        private boolean   cancelled;
+        private boolean   interruptSent;
+        private boolean   done;
+        private Exception error;
+
+        @Override
+        public final void run() {
+            boolean cancelled;
+            synchronized (this) {
+                if (this.started) {
+                    return;
+                }
+                this.started = true;
+                this.runner = Thread.currentThread();
+                cancelled = this.cancelled;
+            }
+            HashMetrics.getDefault().taskStarted(this.queued);
+            try {
+                if (cancelled) {
+                    throw new InterruptedIOException("hashing cancelled");
+                }
+                execute();
+            } catch (Exception e) {
+                this.error = e;
+            } finally {
+                cleanUp();
+                HashMetrics.getDefault().taskFinished();
+                synchronized (this) {
+                    this.runner = null;
+                    if (this.interruptSent) {
+                        Thread.interrupted();
+                    }
+                    this.done = true;
+                    notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Does the work of the task.
+         *
+         * @throws Exception if the work failed
+         */
+        protected abstract void execute() throws Exception;
+
+        /**
+         * Called once the task is over, whether or not it ran.
+         */
+        protected void cleanUp() {
+        }
+
+        /**
+         * Asks the task to stop. A task that has not started yet fails as
+         * soon as it does, and a running task is interrupted.
+         */
+        public synchronized void cancel() {
+            if (!this.done) {
+                this.cancelled = true;
+                if (null != this.runner && Thread.currentThread() != this.runner) {
+                    this.interruptSent = true;
+                    this.runner.interrupt();
+                }
+            }
+        }
+
+        public synchronized boolean isDone() {
+            return this.done;
+        }
+
+        /**
+         * Waits for the task to finish.
+         *
+         * @throws InterruptedException if the caller was interrupted while waiting
+         */
+        public synchronized void await() throws InterruptedException {
+            while (!this.done) {
+                wait();
+            }
+        }
+
+        public Exception getError() {
+            return this.error;
+        }
+    }
+
+    /**
+     * Task for computing a single hash.
      */
-    protected static class CryptoThread extends Thread {
-        private final CryptoHash       cryptoHash;
-        private final PipedInputStream inputStream;
-        private       byte[]           result;
-        private       Exception        error;
+    protected static class CryptoTask extends Task {
+        private final CryptoHash          cryptoHash;
+        private final RingBuffer.Consumer inputStream;
+        private final Path                path;
+        private       byte[]              result;
+        private       long                nanos;
+
+        public CryptoTask(final CryptoHash cryptoHash, final RingBuffer.Consumer source) {
+            this.cryptoHash = cryptoHash;
+            this.inputStream = source;
+            this.path = null;
+        }
 
-        public CryptoThread(final CryptoHash cryptoHash, final PipedOutputStream source) throws IOException {
+        public CryptoTask(final CryptoHash cryptoHash, final Path source) {
             this.cryptoHash = cryptoHash;
-            this.inputStream = new PipedInputStream(source);
+            this.inputStream = null;
+            this.path = source;
         }
 
         @Override
-        public void run() {
-            try {
+        protected void execute() throws Exception {
+            if (null != this.path) {
+                long before = System.nanoTime();
+                this.result = this.cryptoHash.getHash(this.path);
+                this.nanos = System.nanoTime() - before;
+            } else {
                 this.result = this.cryptoHash.getHash(this.inputStream);
-            } catch (Exception e) {
-                this.error = e;
+            }
+        }
+
+        @Override
+        protected void cleanUp() {
+            if (null != this.inputStream) {
+                this.inputStream.close();
             }
         }
 
@@ -153,8 +1139,40 @@ public class MultiCryptoHash {
             return this.result;
         }
 
-        public Exception getError() {
-            return this.error;
+        /**
+         * Returns how long hashing the file took. Tasks hashing a stream
+         * are not timed.
+         *
+         * @return time taken, in nanoseconds
+         */
+        public long getNanos() {
+            return this.nanos;
+        }
+    }
+
+    /**
+     * Task for hashing one shard of a batch of strings.
+     */
+    protected class BatchTask extends Task {
+        private final CharSequence[] inputs;
+        private final int            from;
+        private final int            to;
+        private final Charset        charset;
+        private final byte[]         output;
+        private final int            offset;
+
+        public BatchTask(final CharSequence[] inputs, final int from, final int to, final Charset charset, final byte[] output, final int offset) {
+            this.inputs = inputs;
+            this.from = from;
+            this.to = to;
+            this.charset = charset;
+            this.output = output;
+            this.offset = offset;
+        }
+
+        @Override
+        protected void execute() {
+            hashBatch(this.inputs, this.from, this.to, this.charset, this.output, this.offset);
         }
     }
 }
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Utility class for computing 128 bit MurmurHash3 (x64 variant)
+ * fingerprints. Like xxHash, this is not a cryptographic hash. The digest is
+ * written out as h1 followed by h2, each as 8 little-endian bytes, matching
+ * the byte form produced by the reference implementation.
+ *
+ * @see <a href="https://github.com/aappleby/smhasher">SMHasher</a>
+ * @since 10/17/26 5:45 PM
+ */
+public class Murmur3CryptoHash extends AbstractCryptoHash {
+    private static final long C1 = 0x87C37B91114253D5L;
+    private static final long C2 = 0x4CF5AD432745937FL;
+
+    private final int seed;
+
+    /**
+     * Creates an instance that will hash the result from the given CryptoHash.
+     *
+     * @param chain upstream CryptoHash, may be null
+     * @param seed  hash seed
+     */
+    public Murmur3CryptoHash(final CryptoHash chain, final int seed) {
+        super(chain);
+        this.seed = seed;
+    }
+
+    /**
+     * Creates an instance that will hash the result from the given CryptoHash.
+     *
+     * @param chain upstream CryptoHash, may be null
+     */
+    public Murmur3CryptoHash(final CryptoHash chain) {
+        this(chain, 0);
+    }
+
+    @Override
+    protected HashSession newSession() {
+        return new Murmur3Session(this.seed);
+    }
+
+    private static long mixK1(final long k1) {
+        return Long.rotateLeft(k1 * C1, 31) * C2;
+    }
+
+    private static long mixK2(final long k2) {
+        return Long.rotateLeft(k2 * C2, 33) * C1;
+    }
+
+    private static long fmix64(final long k) {
+        long h = k;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Streaming MurmurHash3 over 16 byte blocks.
+     */
+    protected static class Murmur3Session extends BlockHashSession {
+        private final long seed;
+        private       long h1;
+        private       long h2;
+
+        public Murmur3Session(final int seed) {
+            super(16);
+            this.seed = seed & 0xFFFFFFFFL;
+            resetState();
+        }
+
+        @Override
+        public int getDigestLength() {
+            return 16;
+        }
+
+        @Override
+        protected void processBlocks(final ByteBuffer data, final int offset, final int blocks) {
+            long h1 = this.h1;
+            long h2 = this.h2;
+            int end = offset + blocks * 16;
+            for (int position = offset; position < end; position += 16) {
+                h1 ^= mixK1(data.getLong(position));
+                h1 = Long.rotateLeft(h1, 27) + h2;
+                h1 = h1 * 5 + 0x52DCE729;
+                h2 ^= mixK2(data.getLong(position + 8));
+                h2 = Long.rotateLeft(h2, 31) + h1;
+                h2 = h2 * 5 + 0x38495AB5;
+            }
+            this.h1 = h1;
+            this.h2 = h2;
+        }
+
+        @Override
+        protected void finish(final ByteBuffer tail, final int tailLength, final long totalLength) {
+            int length = tailLength;
+            if (16 == length) {
+                processBlocks(tail, 0, 1);
+                length = 0;
+            }
+            if (0 < length) {
+                long k1 = 0;
+                long k2 = 0;
+                for (int ndx = length - 1; 8 <= ndx; ndx--) {
+                    k2 = (k2 << 8) | (tail.get(ndx) & 0xFFL);
+                }
+                for (int ndx = Math.min(length, 8) - 1; 0 <= ndx; ndx--) {
+                    k1 = (k1 << 8) | (tail.get(ndx) & 0xFFL);
+                }
+                if (8 < length) {
+                    this.h2 ^= mixK2(k2);
+                }
+                this.h1 ^= mixK1(k1);
+            }
+
+            long h1 = this.h1 ^ totalLength;
+            long h2 = this.h2 ^ totalLength;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix64(h1);
+            h2 = fmix64(h2);
+            h1 += h2;
+            h2 += h1;
+            this.h1 = h1;
+            this.h2 = h2;
+        }
+
+        @Override
+        protected void writeDigest(final byte[] output, final int offset) {
+            writeLongLE(output, offset, this.h1);
+            writeLongLE(output, offset + 8, this.h2);
+        }
+
+        @Override
+        protected void resetState() {
+            this.h1 = this.seed;
+            this.h2 = this.seed;
+        }
+    }
+}
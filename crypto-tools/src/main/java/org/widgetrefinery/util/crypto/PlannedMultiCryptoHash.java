@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Logger;
+
+/**
+ * A {@link MultiCryptoHash} that merges encoding chains sharing a common
+ * prefix. Encodings are sequences of stage keys, such as "ms" for the SHA1
+ * of the MD5. Given "ms", "mc", and "m", the input is only read and MD5'd
+ * once; the SHA1 and CRC32 stages are applied to the shared MD5 digest
+ * afterwards. The work done on the input scales with the number of distinct
+ * first stages rather than the number of encodings.
+ *
+ * @since 10/17/26 2:40 PM
+ */
+public class PlannedMultiCryptoHash extends MultiCryptoHash {
+    private static final Logger logger = Logger.getLogger(PlannedMultiCryptoHash.class.getName());
+
+    private final Stage[] roots;
+    private final int     resultCount;
+
+    /**
+     * @param factory   creates the CryptoHash for each stage key
+     * @param encodings encodings to compute, results are returned in the same order
+     * @throws IllegalArgumentException if an encoding is blank
+     */
+    public PlannedMultiCryptoHash(final StageFactory factory, final String... encodings) throws IllegalArgumentException {
+        this(plan(factory, encodings), encodings.length);
+    }
+
+    private PlannedMultiCryptoHash(final Stage[] roots, final int resultCount) {
+        super(toCryptoHashes(roots));
+        this.roots = roots;
+        this.resultCount = resultCount;
+        logger.fine("planned " + resultCount + " encoding(s) into " + roots.length + " pass(es) over the input");
+    }
+
+    /**
+     * Builds a tree of stages out of the given encodings. Encodings sharing
+     * a prefix share the stages for that prefix.
+     *
+     * @param factory   creates the CryptoHash for each stage key
+     * @param encodings encodings to plan
+     * @return first stages
+     * @throws IllegalArgumentException if an encoding is blank
+     */
+    protected static Stage[] plan(final StageFactory factory, final String... encodings) throws IllegalArgumentException {
+        for (int ndx = 0; ndx < encodings.length; ndx++) {
+            if (null == encodings[ndx] || encodings[ndx].isEmpty()) {
+                throw new IllegalArgumentException("blank encoding at position " + ndx);
+            }
+        }
+
+        List<Stage> roots = new ArrayList<Stage>();
+        for (int ndx = 0; ndx < encodings.length; ndx++) {
+            List<Stage> stages = roots;
+            Stage stage = null;
+            for (char key : encodings[ndx].toCharArray()) {
+                stage = Stage.find(stages, key);
+                if (null == stage) {
+                    stage = new Stage(key, factory.create(key));
+                    stages.add(stage);
+                }
+                stages = stage.children;
+            }
+            stage.outputs.add(ndx);
+        }
+        return roots.toArray(new Stage[roots.size()]);
+    }
+
+    private static CryptoHash[] toCryptoHashes(final Stage[] roots) {
+        CryptoHash[] cryptoHashes = new CryptoHash[roots.length];
+        for (int ndx = 0; ndx < roots.length; ndx++) {
+            cryptoHashes[ndx] = roots[ndx].cryptoHash;
+        }
+        return cryptoHashes;
+    }
+
+    @Override
+    public int getResultCount() {
+        return this.resultCount;
+    }
+
+    /**
+     * Applies the remaining stages of each encoding to the digests from the
+     * first stages.
+     *
+     * @param results one result per distinct first stage
+     * @return one result per encoding
+     */
+    @Override
+    protected byte[][] expandResults(final byte[][] results) {
+        byte[][] expanded = new byte[this.resultCount][];
+        for (int ndx = 0; ndx < this.roots.length; ndx++) {
+            this.roots[ndx].expand(results[ndx], expanded);
+        }
+        return expanded;
+    }
+
+    /**
+     * Creates the CryptoHash for a single stage of an encoding.
+     */
+    public static interface StageFactory {
+        /**
+         * @param key stage key
+         * @return CryptoHash for the stage, without any upstream CryptoHash
+         */
+        CryptoHash create(char key);
+    }
+
+    /**
+     * A node in the plan. Its CryptoHash is applied either to the input, for
+     * first stages, or to the digest from its parent stage. Stages applied
+     * to a parent digest keep their idle sessions around, since they run
+     * once per input and the digests they hash are tiny.
+     */
+    protected static class Stage {
+        private final char               key;
+        private final CryptoHash         cryptoHash;
+        private final List<Stage>        children;
+        private final List<Integer>      outputs;
+        private final Queue<HashSession> sessions;
+
+        public Stage(final char key, final CryptoHash cryptoHash) {
+            this.key = key;
+            this.cryptoHash = cryptoHash;
+            this.children = new ArrayList<Stage>();
+            this.outputs = new ArrayList<Integer>();
+            this.sessions = new ConcurrentLinkedQueue<HashSession>();
+        }
+
+        public static Stage find(final List<Stage> stages, final char key) {
+            for (Stage stage : stages) {
+                if (key == stage.key) {
+                    return stage;
+                }
+            }
+            return null;
+        }
+
+        public char getKey() {
+            return this.key;
+        }
+
+        public List<Stage> getChildren() {
+            return this.children;
+        }
+
+        /**
+         * Stores the given digest for every encoding ending at this stage and
+         * feeds it to the child stages.
+         *
+         * @param digest  digest computed by this stage
+         * @param results results by encoding position
+         */
+        public void expand(final byte[] digest, final byte[][] results) {
+            for (int output : this.outputs) {
+                results[output] = digest;
+            }
+            for (Stage child : this.children) {
+                child.expand(child.hash(digest), results);
+            }
+        }
+
+        /**
+         * Hashes the given digest with an idle session of this stage, or a
+         * new one if every session is in use by another thread. Digesting
+         * resets the session, so it goes back to the idle queue as is.
+         *
+         * @param digest digest computed by the parent stage
+         * @return digest computed by this stage
+         */
+        private byte[] hash(final byte[] digest) {
+            HashSession session = this.sessions.poll();
+            if (null == session) {
+                session = this.cryptoHash.createSession();
+            }
+            session.update(digest, 0, digest.length);
+            byte[] result = AbstractCryptoHash.digest(session);
+            this.sessions.offer(session);
+            return result;
+        }
+    }
+}
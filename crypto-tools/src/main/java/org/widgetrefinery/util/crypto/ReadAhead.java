@@ -0,0 +1,337 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads blocks of input on a reader thread so the next blocks are already
+ * in memory while the current one is hashed. The reader works from a fixed
+ * set of buffers; once every buffer is filled it waits for the consumer to
+ * hand one back, so at most <code>depth</code> blocks are read ahead.
+ * <p/>
+ * Readers run on a shared pool of at most 2 threads per processor. When
+ * every reader is busy, the input is read on the consumer's thread as it
+ * asks for each block instead, as if there were no read-ahead.
+ * <p/>
+ * Files are read into direct buffers borrowed from
+ * {@link IOStrategy#acquireFileBuffer()}; streams are read into heap buffers
+ * from {@link IOStrategy#getStreamBuffers()}. {@link #close()} waits for the
+ * reader to finish the block it is on, then returns every buffer to its
+ * pool. The reader is never interrupted, since that would close a file
+ * channel the caller owns.
+ *
+ * @since 10/17/26 3:10 PM
+ */
+public class ReadAhead implements Closeable {
+    private static final ByteBuffer EOF = ByteBuffer.allocate(0);
+
+    private static volatile ExecutorService readerPool;
+
+    private final    IOStrategy                strategy;
+    private final    FileChannel               channel;
+    private final    InputStream               stream;
+    private final    BlockingQueue<ByteBuffer> filled;
+    private final    BlockingQueue<ByteBuffer> empty;
+    private final    CountDownLatch            done;
+    private final    boolean                   inline;
+    private          long                      remaining;
+    private          ByteBuffer                current;
+    private          boolean                   finished;
+    private volatile IOException               error;
+    private volatile boolean                   closed;
+
+    /**
+     * Reads the first <code>size</code> bytes of the given file.
+     *
+     * @param strategy strategy to read with
+     * @param input    file to read
+     * @param size     number of bytes to read
+     * @param depth    max number of blocks to read ahead
+     */
+    public ReadAhead(final IOStrategy strategy, final FileChannel input, final long size, final int depth) {
+        this(strategy, input, null, size, depth);
+    }
+
+    /**
+     * Reads the given stream until it is exhausted.
+     *
+     * @param strategy strategy to read with
+     * @param input    stream to read
+     * @param depth    max number of blocks to read ahead
+     */
+    public ReadAhead(final IOStrategy strategy, final InputStream input, final int depth) {
+        this(strategy, null, input, Long.MAX_VALUE, depth);
+    }
+
+    private ReadAhead(final IOStrategy strategy, final FileChannel channel, final InputStream stream, final long size, final int depth) {
+        if (0 >= depth) {
+            throw new IllegalArgumentException("invalid read-ahead depth (" + depth + ')');
+        }
+        this.strategy = strategy;
+        this.channel = channel;
+        this.stream = stream;
+        this.remaining = size;
+        this.filled = new LinkedBlockingQueue<ByteBuffer>();
+        this.empty = new LinkedBlockingQueue<ByteBuffer>();
+        this.done = new CountDownLatch(1);
+        this.empty.add(acquire());
+        boolean started = false;
+        try {
+            getReaderPool().execute(new Runnable() {
+                @Override
+                public void run() {
+                    readBlocks();
+                }
+            });
+            started = true;
+            for (int ndx = 0; ndx < depth; ndx++) {
+                this.empty.add(acquire());
+            }
+        } catch (RejectedExecutionException e) {
+            this.done.countDown();
+        }
+        this.inline = !started;
+    }
+
+    /**
+     * Returns whether the given stream is worth reading ahead: it must hold
+     * more than one block, and it must not already be in memory.
+     *
+     * @param strategy strategy to read with
+     * @param input    stream to read
+     * @return true to read the stream ahead of the hash
+     * @throws IOException if the stream could not be queried
+     */
+    public static boolean isWorthReadingAhead(final IOStrategy strategy, final InputStream input) throws IOException {
+        return 0 < strategy.getReadAheadDepth()
+               && !(input instanceof ByteArrayInputStream)
+               && !(input instanceof RingBuffer.Consumer)
+               && strategy.getStreamBlockSize() < input.available();
+    }
+
+    private static ExecutorService getReaderPool() {
+        ExecutorService result = readerPool;
+        if (null == result) {
+            synchronized (ReadAhead.class) {
+                result = readerPool;
+                if (null == result) {
+                    final AtomicInteger threadCount = new AtomicInteger();
+                    result = new ThreadPoolExecutor(0, 2 * Runtime.getRuntime().availableProcessors(), 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                        @Override
+                        public Thread newThread(final Runnable runnable) {
+                            Thread thread = new Thread(runnable, "read-ahead-" + threadCount.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                    readerPool = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return true if the input is read on the consumer's thread because every reader was busy
+     */
+    boolean isInline() {
+        return this.inline;
+    }
+
+    private ByteBuffer acquire() {
+        return null != this.channel ? this.strategy.acquireFileBuffer() : ByteBuffer.wrap(this.strategy.getStreamBuffers().acquire());
+    }
+
+    private void readBlocks() {
+        ByteBuffer buffer = null;
+        try {
+            while (0 < this.remaining && !this.closed) {
+                buffer = this.empty.take();
+                if (this.closed) {
+                    break;
+                }
+                int bytesRead = readBlock(buffer);
+                if (0 > bytesRead) {
+                    break;
+                }
+                this.filled.add(buffer);
+                buffer = null;
+            }
+        } catch (InterruptedException e) {
+            this.error = new InterruptedIOException("interrupted while reading ahead");
+        } catch (IOException e) {
+            this.error = e;
+        } catch (RuntimeException e) {
+            this.error = new IOException("unexpected error reading input", e);
+        } finally {
+            if (null != buffer) {
+                this.empty.add(buffer);
+            }
+            this.filled.add(EOF);
+            this.done.countDown();
+        }
+    }
+
+    /**
+     * Reads the next block into the given buffer and flips it.
+     *
+     * @return number of bytes read, or -1 at the end of the input
+     */
+    private int readBlock(final ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        int bytesRead;
+        if (null != this.channel) {
+            if (buffer.capacity() > this.remaining) {
+                buffer.limit((int) this.remaining);
+            }
+            bytesRead = this.strategy.read(this.channel, buffer);
+        } else {
+            bytesRead = this.strategy.read(this.stream, buffer.array(), 0, buffer.capacity());
+            if (0 < bytesRead) {
+                buffer.position(bytesRead);
+            }
+        }
+        buffer.flip();
+        if (0 < bytesRead) {
+            this.remaining -= bytesRead;
+        }
+        return bytesRead;
+    }
+
+    /**
+     * Returns the next block of input. The previous block is handed back to
+     * the reader, so it must not be used after this is called.
+     *
+     * @return next block or null at the end of the input
+     * @throws IOException if an error occurred reading from input
+     */
+    public ByteBuffer next() throws IOException {
+        if (null != this.current) {
+            this.empty.add(this.current);
+            this.current = null;
+        }
+        if (this.finished) {
+            return null;
+        }
+        if (this.inline) {
+            return nextInline();
+        }
+        try {
+            ByteBuffer buffer = this.filled.take();
+            if (EOF == buffer) {
+                this.finished = true;
+                if (null != this.error) {
+                    throw this.error;
+                }
+                return null;
+            }
+            this.current = buffer;
+            return buffer;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for input");
+        }
+    }
+
+    private ByteBuffer nextInline() throws IOException {
+        if (0 >= this.remaining) {
+            this.finished = true;
+            return null;
+        }
+        ByteBuffer buffer = this.empty.poll();
+        boolean ok = false;
+        try {
+            if (0 > readBlock(buffer)) {
+                this.finished = true;
+                return null;
+            }
+            this.current = buffer;
+            ok = true;
+            return buffer;
+        } finally {
+            if (!ok) {
+                this.finished = true;
+                this.empty.add(buffer);
+            }
+        }
+    }
+
+    /**
+     * Stops the reader, waits for it to finish the block it is reading, and
+     * returns the buffers to their pools.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        if (null != this.current) {
+            this.empty.add(this.current);
+            this.current = null;
+        }
+        ByteBuffer buffer;
+        while (null != (buffer = this.filled.poll())) {
+            if (EOF != buffer) {
+                this.empty.add(buffer);
+            }
+        }
+        boolean interrupted = false;
+        while (0 < this.done.getCount()) {
+            try {
+                this.done.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        while (null != (buffer = this.filled.poll())) {
+            release(buffer);
+        }
+        while (null != (buffer = this.empty.poll())) {
+            release(buffer);
+        }
+    }
+
+    private void release(final ByteBuffer buffer) {
+        if (EOF == buffer) {
+            return;
+        }
+        if (null != this.channel) {
+            this.strategy.releaseFileBuffer(buffer);
+        } else {
+            this.strategy.getStreamBuffers().release(buffer.array());
+        }
+    }
+}
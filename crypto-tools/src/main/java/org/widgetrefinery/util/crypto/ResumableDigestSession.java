@@ -0,0 +1,671 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Plain Java MD5, SHA-1, and SHA-2 sessions whose state can be saved and
+ * restored. {@link java.security.MessageDigest} has no way to get at its
+ * state, so digests are resumed with these instead. The state format
+ * belongs to this class rather than to the JDK, so it does not change with
+ * the JVM; it carries the algorithm name and a version number, and a state
+ * that does not match is rejected.
+ * <p/>
+ * The round constants are worked out from their definitions in FIPS 180-4
+ * and RFC 1321 when the class is loaded rather than copied in as tables.
+ *
+ * @since 10/17/26 3:30 PM
+ */
+public abstract class ResumableDigestSession extends BlockHashSession implements ResumableHashSession {
+    private static final int STATE_VERSION = 1;
+
+    private final String algorithm;
+    private final int    blockSize;
+    private final int    digestLength;
+
+    /**
+     * @param algorithm    MessageDigest name of the algorithm
+     * @param blockSize    size of each block, in bytes
+     * @param digestLength digest length, in bytes
+     */
+    protected ResumableDigestSession(final String algorithm, final int blockSize, final int digestLength) {
+        super(blockSize);
+        this.algorithm = algorithm;
+        this.blockSize = blockSize;
+        this.digestLength = digestLength;
+    }
+
+    /**
+     * Creates a session for the given algorithm.
+     *
+     * @param algorithm MessageDigest name of the algorithm, such as SHA-256
+     * @return new session, or null if the algorithm is not supported
+     */
+    public static ResumableDigestSession create(final String algorithm) {
+        if ("MD5".equals(algorithm)) {
+            return new MD5Session();
+        } else if ("SHA-1".equals(algorithm)) {
+            return new SHA1Session();
+        } else if ("SHA-224".equals(algorithm)) {
+            return new SHA256Session(algorithm, Constants.SHA224_IV, 28);
+        } else if ("SHA-256".equals(algorithm)) {
+            return new SHA256Session(algorithm, Constants.SHA256_IV, 32);
+        } else if ("SHA-384".equals(algorithm)) {
+            return new SHA512Session(algorithm, Constants.SHA384_IV, 48);
+        } else if ("SHA-512".equals(algorithm)) {
+            return new SHA512Session(algorithm, Constants.SHA512_IV, 64);
+        } else if ("SHA-512/224".equals(algorithm)) {
+            return new SHA512Session(algorithm, Constants.SHA512_224_IV, 28);
+        } else if ("SHA-512/256".equals(algorithm)) {
+            return new SHA512Session(algorithm, Constants.SHA512_256_IV, 32);
+        }
+        return null;
+    }
+
+    public String getAlgorithm() {
+        return this.algorithm;
+    }
+
+    @Override
+    public int getDigestLength() {
+        return this.digestLength;
+    }
+
+    @Override
+    public byte[] saveState() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeUTF(this.algorithm);
+            output.writeByte(STATE_VERSION);
+            saveBuffer(output);
+            saveWords(output);
+            output.close();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to write digest state", e);
+        }
+    }
+
+    /**
+     * Restores a state saved by {@link #saveState()}. The session is reset
+     * if the state is rejected.
+     *
+     * @param state saved state
+     * @throws IllegalArgumentException if the state was saved for another algorithm or by another version of this class
+     */
+    @Override
+    public void restoreState(final byte[] state) throws IllegalArgumentException {
+        try {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(state));
+            String savedAlgorithm = input.readUTF();
+            if (!this.algorithm.equals(savedAlgorithm)) {
+                throw new IllegalArgumentException("digest state is for " + savedAlgorithm + " rather than " + this.algorithm);
+            }
+            int version = input.readUnsignedByte();
+            if (STATE_VERSION != version) {
+                throw new IllegalArgumentException("unsupported digest state version (" + version + ')');
+            }
+            restoreBuffer(input);
+            restoreWords(input);
+            if (0 != input.available()) {
+                throw new IllegalArgumentException("digest state has trailing data");
+            }
+        } catch (IOException e) {
+            reset();
+            throw new IllegalArgumentException("truncated digest state", e);
+        } catch (IllegalArgumentException e) {
+            reset();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the chaining state.
+     *
+     * @param output stream to write to
+     * @throws IOException if the state could not be written
+     */
+    protected abstract void saveWords(DataOutputStream output) throws IOException;
+
+    /**
+     * Reads the chaining state written by {@link #saveWords(DataOutputStream)}.
+     *
+     * @param input stream to read from
+     * @throws IOException if the state is truncated
+     */
+    protected abstract void restoreWords(DataInputStream input) throws IOException;
+
+    /**
+     * Pads the last bytes of the message with a 1 bit, zeros, and the message
+     * length in bits, then processes the padded blocks.
+     *
+     * @param tail        buffer holding the last bytes at index 0
+     * @param tailLength  number of bytes in tail
+     * @param totalLength total number of bytes hashed
+     * @param lengthSize  number of bytes the length is written in
+     * @param bigEndian   true to write the length big-endian
+     */
+    protected void pad(final ByteBuffer tail, final int tailLength, final long totalLength, final int lengthSize, final boolean bigEndian) {
+        byte[] padded = new byte[tailLength + 1 + lengthSize <= this.blockSize ? this.blockSize : 2 * this.blockSize];
+        for (int ndx = 0; ndx < tailLength; ndx++) {
+            padded[ndx] = tail.get(ndx);
+        }
+        padded[tailLength] = (byte) 0x80;
+        long bits = totalLength << 3;
+        if (bigEndian) {
+            writeLong(padded, padded.length - 8, bits);
+            if (16 == lengthSize) {
+                writeLong(padded, padded.length - 16, totalLength >>> 61);
+            }
+        } else {
+            writeLongLE(padded, padded.length - 8, bits);
+        }
+        processBlocks(ByteBuffer.wrap(padded).order(ByteOrder.LITTLE_ENDIAN), 0, padded.length / this.blockSize);
+    }
+
+    protected static void saveInts(final DataOutputStream output, final int[] words) throws IOException {
+        output.writeByte(words.length);
+        for (int word : words) {
+            output.writeInt(word);
+        }
+    }
+
+    protected static void restoreInts(final DataInputStream input, final int[] words) throws IOException {
+        if (words.length != input.readUnsignedByte()) {
+            throw new IllegalArgumentException("invalid digest state");
+        }
+        for (int ndx = 0; ndx < words.length; ndx++) {
+            words[ndx] = input.readInt();
+        }
+    }
+
+    protected static void saveLongs(final DataOutputStream output, final long[] words) throws IOException {
+        output.writeByte(words.length);
+        for (long word : words) {
+            output.writeLong(word);
+        }
+    }
+
+    protected static void restoreLongs(final DataInputStream input, final long[] words) throws IOException {
+        if (words.length != input.readUnsignedByte()) {
+            throw new IllegalArgumentException("invalid digest state");
+        }
+        for (int ndx = 0; ndx < words.length; ndx++) {
+            words[ndx] = input.readLong();
+        }
+    }
+
+    /**
+     * MD5 as defined by RFC 1321.
+     */
+    protected static class MD5Session extends ResumableDigestSession {
+        private static final int[] SHIFTS = {7, 12, 17, 22, 5, 9, 14, 20, 4, 11, 16, 23, 6, 10, 15, 21};
+        private static final int[] K      = new int[64];
+
+        static {
+            for (int ndx = 0; ndx < K.length; ndx++) {
+                K[ndx] = (int) (long) (Math.abs(StrictMath.sin(ndx + 1)) * 4294967296.0);
+            }
+        }
+
+        private final int[] state;
+
+        public MD5Session() {
+            super("MD5", 64, 16);
+            this.state = new int[4];
+            resetState();
+        }
+
+        @Override
+        protected void processBlocks(final ByteBuffer data, final int offset, final int blocks) {
+            for (int block = 0; block < blocks; block++) {
+                int base = offset + 64 * block;
+                int a = this.state[0];
+                int b = this.state[1];
+                int c = this.state[2];
+                int d = this.state[3];
+                for (int round = 0; round < 64; round++) {
+                    int f;
+                    int word;
+                    if (16 > round) {
+                        f = (b & c) | (~b & d);
+                        word = round;
+                    } else if (32 > round) {
+                        f = (d & b) | (~d & c);
+                        word = (5 * round + 1) & 15;
+                    } else if (48 > round) {
+                        f = b ^ c ^ d;
+                        word = (3 * round + 5) & 15;
+                    } else {
+                        f = c ^ (b | ~d);
+                        word = (7 * round) & 15;
+                    }
+                    int temp = d;
+                    d = c;
+                    c = b;
+                    b += Integer.rotateLeft(a + f + K[round] + data.getInt(base + 4 * word), SHIFTS[((round >> 4) << 2) | (round & 3)]);
+                    a = temp;
+                }
+                this.state[0] += a;
+                this.state[1] += b;
+                this.state[2] += c;
+                this.state[3] += d;
+            }
+        }
+
+        @Override
+        protected void finish(final ByteBuffer tail, final int tailLength, final long totalLength) {
+            pad(tail, tailLength, totalLength, 8, false);
+        }
+
+        @Override
+        protected void writeDigest(final byte[] output, final int offset) {
+            for (int ndx = 0; ndx < 16; ndx++) {
+                output[offset + ndx] = (byte) (this.state[ndx >> 2] >>> (8 * (ndx & 3)));
+            }
+        }
+
+        @Override
+        protected void resetState() {
+            this.state[0] = 0x67452301;
+            this.state[1] = 0xEFCDAB89;
+            this.state[2] = 0x98BADCFE;
+            this.state[3] = 0x10325476;
+        }
+
+        @Override
+        protected void saveWords(final DataOutputStream output) throws IOException {
+            saveInts(output, this.state);
+        }
+
+        @Override
+        protected void restoreWords(final DataInputStream input) throws IOException {
+            restoreInts(input, this.state);
+        }
+    }
+
+    /**
+     * SHA-1 as defined by FIPS 180-4.
+     */
+    protected static class SHA1Session extends ResumableDigestSession {
+        private final int[] state;
+        private final int[] schedule;
+
+        public SHA1Session() {
+            super("SHA-1", 64, 20);
+            this.state = new int[5];
+            this.schedule = new int[80];
+            resetState();
+        }
+
+        @Override
+        protected void processBlocks(final ByteBuffer data, final int offset, final int blocks) {
+            int[] w = this.schedule;
+            for (int block = 0; block < blocks; block++) {
+                int base = offset + 64 * block;
+                for (int ndx = 0; ndx < 16; ndx++) {
+                    w[ndx] = Integer.reverseBytes(data.getInt(base + 4 * ndx));
+                }
+                for (int ndx = 16; ndx < 80; ndx++) {
+                    w[ndx] = Integer.rotateLeft(w[ndx - 3] ^ w[ndx - 8] ^ w[ndx - 14] ^ w[ndx - 16], 1);
+                }
+                int a = this.state[0];
+                int b = this.state[1];
+                int c = this.state[2];
+                int d = this.state[3];
+                int e = this.state[4];
+                for (int round = 0; round < 80; round++) {
+                    int f;
+                    if (20 > round) {
+                        f = ((b & c) | (~b & d)) + 0x5A827999;
+                    } else if (40 > round) {
+                        f = (b ^ c ^ d) + 0x6ED9EBA1;
+                    } else if (60 > round) {
+                        f = ((b & c) | (b & d) | (c & d)) + 0x8F1BBCDC;
+                    } else {
+                        f = (b ^ c ^ d) + 0xCA62C1D6;
+                    }
+                    int temp = Integer.rotateLeft(a, 5) + f + e + w[round];
+                    e = d;
+                    d = c;
+                    c = Integer.rotateLeft(b, 30);
+                    b = a;
+                    a = temp;
+                }
+                this.state[0] += a;
+                this.state[1] += b;
+                this.state[2] += c;
+                this.state[3] += d;
+                this.state[4] += e;
+            }
+        }
+
+        @Override
+        protected void finish(final ByteBuffer tail, final int tailLength, final long totalLength) {
+            pad(tail, tailLength, totalLength, 8, true);
+        }
+
+        @Override
+        protected void writeDigest(final byte[] output, final int offset) {
+            for (int ndx = 0; ndx < 20; ndx++) {
+                output[offset + ndx] = (byte) (this.state[ndx >> 2] >>> (24 - 8 * (ndx & 3)));
+            }
+        }
+
+        @Override
+        protected void resetState() {
+            this.state[0] = 0x67452301;
+            this.state[1] = 0xEFCDAB89;
+            this.state[2] = 0x98BADCFE;
+            this.state[3] = 0x10325476;
+            this.state[4] = 0xC3D2E1F0;
+        }
+
+        @Override
+        protected void saveWords(final DataOutputStream output) throws IOException {
+            saveInts(output, this.state);
+        }
+
+        @Override
+        protected void restoreWords(final DataInputStream input) throws IOException {
+            restoreInts(input, this.state);
+        }
+    }
+
+    /**
+     * SHA-224 and SHA-256 as defined by FIPS 180-4.
+     */
+    protected static class SHA256Session extends ResumableDigestSession {
+        private final int[] initial;
+        private final int[] state;
+        private final int[] schedule;
+
+        public SHA256Session(final String algorithm, final int[] initial, final int digestLength) {
+            super(algorithm, 64, digestLength);
+            this.initial = initial;
+            this.state = new int[8];
+            this.schedule = new int[64];
+            resetState();
+        }
+
+        @Override
+        protected void processBlocks(final ByteBuffer data, final int offset, final int blocks) {
+            int[] w = this.schedule;
+            int[] k = Constants.SHA256_K;
+            for (int block = 0; block < blocks; block++) {
+                int base = offset + 64 * block;
+                for (int ndx = 0; ndx < 16; ndx++) {
+                    w[ndx] = Integer.reverseBytes(data.getInt(base + 4 * ndx));
+                }
+                for (int ndx = 16; ndx < 64; ndx++) {
+                    int s0 = Integer.rotateRight(w[ndx - 15], 7) ^ Integer.rotateRight(w[ndx - 15], 18) ^ (w[ndx - 15] >>> 3);
+                    int s1 = Integer.rotateRight(w[ndx - 2], 17) ^ Integer.rotateRight(w[ndx - 2], 19) ^ (w[ndx - 2] >>> 10);
+                    w[ndx] = w[ndx - 16] + s0 + w[ndx - 7] + s1;
+                }
+                int a = this.state[0];
+                int b = this.state[1];
+                int c = this.state[2];
+                int d = this.state[3];
+                int e = this.state[4];
+                int f = this.state[5];
+                int g = this.state[6];
+                int h = this.state[7];
+                for (int round = 0; round < 64; round++) {
+                    int t1 = h + (Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25)) + ((e & f) ^ (~e & g)) + k[round] + w[round];
+                    int t2 = (Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22)) + ((a & b) ^ (a & c) ^ (b & c));
+                    h = g;
+                    g = f;
+                    f = e;
+                    e = d + t1;
+                    d = c;
+                    c = b;
+                    b = a;
+                    a = t1 + t2;
+                }
+                this.state[0] += a;
+                this.state[1] += b;
+                this.state[2] += c;
+                this.state[3] += d;
+                this.state[4] += e;
+                this.state[5] += f;
+                this.state[6] += g;
+                this.state[7] += h;
+            }
+        }
+
+        @Override
+        protected void finish(final ByteBuffer tail, final int tailLength, final long totalLength) {
+            pad(tail, tailLength, totalLength, 8, true);
+        }
+
+        @Override
+        protected void writeDigest(final byte[] output, final int offset) {
+            for (int ndx = 0; ndx < getDigestLength(); ndx++) {
+                output[offset + ndx] = (byte) (this.state[ndx >> 2] >>> (24 - 8 * (ndx & 3)));
+            }
+        }
+
+        @Override
+        protected void resetState() {
+            System.arraycopy(this.initial, 0, this.state, 0, 8);
+        }
+
+        @Override
+        protected void saveWords(final DataOutputStream output) throws IOException {
+            saveInts(output, this.state);
+        }
+
+        @Override
+        protected void restoreWords(final DataInputStream input) throws IOException {
+            restoreInts(input, this.state);
+        }
+    }
+
+    /**
+     * SHA-384, SHA-512, SHA-512/224, and SHA-512/256 as defined by FIPS
+     * 180-4.
+     */
+    protected static class SHA512Session extends ResumableDigestSession {
+        private final long[] initial;
+        private final long[] state;
+        private final long[] schedule;
+
+        public SHA512Session(final String algorithm, final long[] initial, final int digestLength) {
+            super(algorithm, 128, digestLength);
+            this.initial = initial;
+            this.state = new long[8];
+            this.schedule = new long[80];
+            resetState();
+        }
+
+        @Override
+        protected void processBlocks(final ByteBuffer data, final int offset, final int blocks) {
+            long[] w = this.schedule;
+            long[] k = Constants.SHA512_K;
+            for (int block = 0; block < blocks; block++) {
+                int base = offset + 128 * block;
+                for (int ndx = 0; ndx < 16; ndx++) {
+                    w[ndx] = Long.reverseBytes(data.getLong(base + 8 * ndx));
+                }
+                for (int ndx = 16; ndx < 80; ndx++) {
+                    long s0 = Long.rotateRight(w[ndx - 15], 1) ^ Long.rotateRight(w[ndx - 15], 8) ^ (w[ndx - 15] >>> 7);
+                    long s1 = Long.rotateRight(w[ndx - 2], 19) ^ Long.rotateRight(w[ndx - 2], 61) ^ (w[ndx - 2] >>> 6);
+                    w[ndx] = w[ndx - 16] + s0 + w[ndx - 7] + s1;
+                }
+                long a = this.state[0];
+                long b = this.state[1];
+                long c = this.state[2];
+                long d = this.state[3];
+                long e = this.state[4];
+                long f = this.state[5];
+                long g = this.state[6];
+                long h = this.state[7];
+                for (int round = 0; round < 80; round++) {
+                    long t1 = h + (Long.rotateRight(e, 14) ^ Long.rotateRight(e, 18) ^ Long.rotateRight(e, 41)) + ((e & f) ^ (~e & g)) + k[round] + w[round];
+                    long t2 = (Long.rotateRight(a, 28) ^ Long.rotateRight(a, 34) ^ Long.rotateRight(a, 39)) + ((a & b) ^ (a & c) ^ (b & c));
+                    h = g;
+                    g = f;
+                    f = e;
+                    e = d + t1;
+                    d = c;
+                    c = b;
+                    b = a;
+                    a = t1 + t2;
+                }
+                this.state[0] += a;
+                this.state[1] += b;
+                this.state[2] += c;
+                this.state[3] += d;
+                this.state[4] += e;
+                this.state[5] += f;
+                this.state[6] += g;
+                this.state[7] += h;
+            }
+        }
+
+        @Override
+        protected void finish(final ByteBuffer tail, final int tailLength, final long totalLength) {
+            pad(tail, tailLength, totalLength, 16, true);
+        }
+
+        @Override
+        protected void writeDigest(final byte[] output, final int offset) {
+            for (int ndx = 0; ndx < getDigestLength(); ndx++) {
+                output[offset + ndx] = (byte) (this.state[ndx >> 3] >>> (56 - 8 * (ndx & 7)));
+            }
+        }
+
+        @Override
+        protected void resetState() {
+            System.arraycopy(this.initial, 0, this.state, 0, 8);
+        }
+
+        @Override
+        protected void saveWords(final DataOutputStream output) throws IOException {
+            saveLongs(output, this.state);
+        }
+
+        @Override
+        protected void restoreWords(final DataInputStream input) throws IOException {
+            restoreLongs(input, this.state);
+        }
+
+        /**
+         * Returns the chaining state, for deriving the SHA-512/t initial
+         * values.
+         *
+         * @return current state
+         */
+        protected long[] getState() {
+            return this.state.clone();
+        }
+    }
+
+    /**
+     * The SHA-2 constants. Round constants are the first bits of the
+     * fractional parts of the cube roots of the first primes, and initial
+     * values are the first bits of the fractional parts of the square roots
+     * of the first primes. The SHA-512/t initial values are the SHA-512
+     * state after hashing "SHA-512/t" from the SHA-512 initial values xor'd
+     * with 0xa5 bytes.
+     */
+    private static class Constants {
+        static final int[]  SHA256_K      = new int[64];
+        static final long[] SHA512_K      = new long[80];
+        static final int[]  SHA224_IV     = new int[8];
+        static final int[]  SHA256_IV     = new int[8];
+        static final long[] SHA384_IV     = new long[8];
+        static final long[] SHA512_IV     = new long[8];
+        static final long[] SHA512_224_IV;
+        static final long[] SHA512_256_IV;
+
+        static {
+            int[] primes = new int[80];
+            for (int count = 0, candidate = 2; count < primes.length; candidate++) {
+                boolean prime = true;
+                for (int ndx = 0; prime && ndx < count && primes[ndx] * primes[ndx] <= candidate; ndx++) {
+                    prime = 0 != candidate % primes[ndx];
+                }
+                if (prime) {
+                    primes[count++] = candidate;
+                }
+            }
+            for (int ndx = 0; ndx < SHA512_K.length; ndx++) {
+                SHA512_K[ndx] = rootFraction(primes[ndx], 3, 64);
+                if (ndx < SHA256_K.length) {
+                    SHA256_K[ndx] = (int) (SHA512_K[ndx] >>> 32);
+                }
+            }
+            for (int ndx = 0; ndx < 8; ndx++) {
+                SHA512_IV[ndx] = rootFraction(primes[ndx], 2, 64);
+                SHA256_IV[ndx] = (int) (SHA512_IV[ndx] >>> 32);
+                SHA384_IV[ndx] = rootFraction(primes[ndx + 8], 2, 64);
+                SHA224_IV[ndx] = (int) SHA384_IV[ndx];
+            }
+            SHA512_224_IV = deriveIV("SHA-512/224");
+            SHA512_256_IV = deriveIV("SHA-512/256");
+        }
+
+        /**
+         * Returns the first bits of the fractional part of the given root of
+         * the given number.
+         */
+        private static long rootFraction(final int value, final int root, final int bits) {
+            BigInteger scaled = BigInteger.valueOf(value).shiftLeft(root * bits);
+            return root(scaled, root).longValue();
+        }
+
+        /**
+         * Returns the integer root of the given number, rounded down, using
+         * Newton's method.
+         */
+        private static BigInteger root(final BigInteger value, final int root) {
+            BigInteger n = BigInteger.valueOf(root);
+            BigInteger nMinus1 = BigInteger.valueOf(root - 1);
+            BigInteger x = BigInteger.ONE.shiftLeft((value.bitLength() + root - 1) / root);
+            while (true) {
+                BigInteger y = nMinus1.multiply(x).add(value.divide(x.pow(root - 1))).divide(n);
+                if (0 <= y.compareTo(x)) {
+                    return x;
+                }
+                x = y;
+            }
+        }
+
+        private static long[] deriveIV(final String name) {
+            long[] initial = new long[8];
+            for (int ndx = 0; ndx < initial.length; ndx++) {
+                initial[ndx] = SHA512_IV[ndx] ^ 0xA5A5A5A5A5A5A5A5L;
+            }
+            SHA512Session session = new SHA512Session(name, initial, 64);
+            byte[] data = name.getBytes(StandardCharsets.US_ASCII);
+            session.pad(ByteBuffer.wrap(data), data.length, data.length, 16, true);
+            return session.getState();
+        }
+    }
+}
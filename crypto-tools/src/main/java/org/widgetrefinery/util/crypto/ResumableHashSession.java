@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+/**
+ * A {@link HashSession} whose state can be saved and restored later, in
+ * another process if need be, so a hash of a file that only grows can be
+ * picked up where it left off instead of starting over from the first
+ * byte. The state does not include how many bytes were hashed; callers
+ * track that themselves.
+ *
+ * @since 10/17/26 2:05 PM
+ */
+public interface ResumableHashSession extends HashSession {
+    /**
+     * Captures the state of the message being hashed without disturbing it.
+     *
+     * @return saved state, or null if the state cannot be captured in this JVM
+     */
+    byte[] saveState();
+
+    /**
+     * Replaces the message being hashed with one saved by
+     * {@link #saveState()}, so hashing continues as if the saved data had
+     * been fed to this session.
+     *
+     * @param state saved state
+     * @throws IllegalArgumentException if the state was not saved by this kind of session
+     */
+    void restoreState(byte[] state) throws IllegalArgumentException;
+}
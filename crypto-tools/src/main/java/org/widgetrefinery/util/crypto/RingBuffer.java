@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fans a single input stream out to multiple readers without copying the
+ * data per reader. One producer fills a fixed ring of buffers and every
+ * consumer reads out of the same buffers. A buffer is only refilled once
+ * every consumer has moved past it.
+ * <p/>
+ * All consumers must be created before the producer starts. A consumer that
+ * stops early must be closed so the producer does not wait on it.
+ *
+ * @since 10/17/26 9:20 AM
+ */
+public class RingBuffer {
+    private final BufferPool    pool;
+    private final byte[][]      slots;
+    private final int[]         lengths;
+    private final int[]         pending;
+    private final ReentrantLock lock;
+    private final Condition     slotFreed;
+    private final Condition     slotPublished;
+    private       int           activeConsumers;
+    private       long          published;
+    private       boolean       eof;
+    private       boolean       started;
+    private       IOException   error;
+
+    /**
+     * @param pool      pool to borrow slot buffers from
+     * @param slotCount number of buffers in the ring
+     */
+    public RingBuffer(final BufferPool pool, final int slotCount) {
+        if (0 >= slotCount) {
+            throw new IllegalArgumentException("invalid slot count (" + slotCount + ')');
+        }
+        this.pool = pool;
+        this.slots = new byte[slotCount][];
+        this.lengths = new int[slotCount];
+        this.pending = new int[slotCount];
+        this.lock = new ReentrantLock();
+        this.slotFreed = this.lock.newCondition();
+        this.slotPublished = this.lock.newCondition();
+    }
+
+    /**
+     * Creates a new reader of the ring. Each consumer sees the entire input.
+     *
+     * @return new consumer
+     * @throws IllegalStateException if the producer already started
+     */
+    public Consumer createConsumer() throws IllegalStateException {
+        this.lock.lock();
+        try {
+            if (this.started) {
+                throw new IllegalStateException("cannot add consumers after the producer has started");
+            }
+            this.activeConsumers++;
+            return new Consumer();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Reads the given input into the ring until the input is exhausted or
+     * every consumer has been closed. Any error reading the input is passed
+     * on to the consumers before being rethrown.
+     *
+     * @param input input data to distribute
+     * @throws IOException if an error occurred reading from input
+     */
+    public void fill(final InputStream input) throws IOException {
+        IOStrategy strategy = IOStrategy.getDefault();
+        try {
+            for (int slot = acquireSlot(); 0 <= slot; slot = acquireSlot()) {
+                byte[] buffer = this.slots[slot];
+                int length = 0;
+                int bytesRead = 0;
+                while (length < buffer.length && 0 <= (bytesRead = strategy.read(input, buffer, length, buffer.length - length))) {
+                    length += bytesRead;
+                }
+                publish(slot, length, 0 > bytesRead);
+                if (0 > bytesRead) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            abort(e);
+            throw e;
+        } catch (RuntimeException e) {
+            abort(new IOException("unexpected error reading input", e));
+            throw e;
+        }
+    }
+
+    /**
+     * Stops the ring. Consumers waiting on data will receive the given error.
+     *
+     * @param cause reason for stopping
+     */
+    public void abort(final IOException cause) {
+        this.lock.lock();
+        try {
+            if (null == this.error) {
+                this.error = cause;
+            }
+            this.slotFreed.signalAll();
+            this.slotPublished.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the slot buffers to the pool. This must only be called once the
+     * producer and all consumers are done.
+     */
+    public void release() {
+        for (int ndx = 0; ndx < this.slots.length; ndx++) {
+            if (null != this.slots[ndx]) {
+                this.pool.release(this.slots[ndx]);
+                this.slots[ndx] = null;
+            }
+        }
+    }
+
+    private int acquireSlot() throws IOException {
+        this.lock.lock();
+        try {
+            this.started = true;
+            int slot = (int) (this.published % this.slots.length);
+            while (0 < this.activeConsumers && 0 < this.pending[slot] && null == this.error) {
+                this.slotFreed.await();
+            }
+            if (null != this.error) {
+                throw this.error;
+            }
+            if (0 == this.activeConsumers) {
+                return -1;
+            }
+            if (null == this.slots[slot]) {
+                this.slots[slot] = this.pool.acquire();
+            }
+            return slot;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for consumers");
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void publish(final int slot, final int length, final boolean eof) {
+        this.lock.lock();
+        try {
+            if (0 < length) {
+                this.lengths[slot] = length;
+                this.pending[slot] = this.activeConsumers;
+                this.published++;
+            }
+            this.eof = eof;
+            this.slotPublished.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * A single reader of the ring. Reads are served directly out of the
+     * shared slot buffers.
+     */
+    public class Consumer extends InputStream {
+        private long    next;
+        private int     slot;
+        private int     position;
+        private int     limit;
+        private boolean holding;
+        private boolean closed;
+
+        protected Consumer() {
+            this.slot = -1;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!ensureData()) {
+                return -1;
+            }
+            return 0xFF & RingBuffer.this.slots[this.slot][this.position++];
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            if (0 == length) {
+                return 0;
+            }
+            if (!ensureData()) {
+                return -1;
+            }
+            int bytesRead = Math.min(length, this.limit - this.position);
+            System.arraycopy(RingBuffer.this.slots[this.slot], this.position, buffer, offset, bytesRead);
+            this.position += bytesRead;
+            return bytesRead;
+        }
+
+        @Override
+        public int available() {
+            return this.holding ? this.limit - this.position : 0;
+        }
+
+        /**
+         * Detaches this consumer from the ring, releasing any slots it has
+         * not yet read.
+         */
+        @Override
+        public void close() {
+            RingBuffer.this.lock.lock();
+            try {
+                if (!this.closed) {
+                    if (this.holding) {
+                        releaseSlot(this.slot);
+                        this.holding = false;
+                    }
+                    for (; this.next < RingBuffer.this.published; this.next++) {
+                        releaseSlot((int) (this.next % RingBuffer.this.slots.length));
+                    }
+                    RingBuffer.this.activeConsumers--;
+                    RingBuffer.this.slotFreed.signalAll();
+                    this.closed = true;
+                }
+            } finally {
+                RingBuffer.this.lock.unlock();
+            }
+        }
+
+        private boolean ensureData() throws IOException {
+            if (this.holding && this.position < this.limit) {
+                return true;
+            }
+            if (this.closed) {
+                throw new IOException("stream closed");
+            }
+            RingBuffer.this.lock.lock();
+            try {
+                if (this.holding) {
+                    releaseSlot(this.slot);
+                    this.holding = false;
+                }
+                while (this.next >= RingBuffer.this.published && !RingBuffer.this.eof && null == RingBuffer.this.error) {
+                    RingBuffer.this.slotPublished.await();
+                }
+                if (null != RingBuffer.this.error) {
+                    throw new IOException("input aborted", RingBuffer.this.error);
+                }
+                if (this.next >= RingBuffer.this.published) {
+                    return false;
+                }
+                this.slot = (int) (this.next++ % RingBuffer.this.slots.length);
+                this.position = 0;
+                this.limit = RingBuffer.this.lengths[this.slot];
+                this.holding = true;
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for input");
+            } finally {
+                RingBuffer.this.lock.unlock();
+            }
+        }
+
+        private void releaseSlot(final int slot) {
+            if (0 == --RingBuffer.this.pending[slot]) {
+                RingBuffer.this.slotFreed.signalAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,517 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Computes a tree hash so that a single large input can be hashed on
+ * multiple cores. The input is split into fixed-size leaves which are hashed
+ * in parallel with a {@link java.security.MessageDigest}. Adjacent digests
+ * are then concatenated and hashed pairwise, level by level, until a single
+ * root remains. An odd digest at the end of a level is carried up as is.
+ * <p/>
+ * Leaves are hashed with a 0x00 byte in front and interior nodes with a
+ * 0x01 byte in front, so a leaf can never be passed off as a node, and no
+ * two inputs of different shape share a root. As a result even an input no
+ * larger than one leaf does not hash to the plain digest of that input.
+ * <p/>
+ * The leaf boundaries only depend on the leaf size, so the root is the same
+ * no matter how many threads were used.
+ *
+ * @since 10/17/26 12:10 PM
+ */
+public class TreeCryptoHash extends AbstractCryptoHash {
+    /**
+     * Default leaf size.
+     */
+    public static final int DEFAULT_LEAF_SIZE = 1024 * 1024;
+    /**
+     * Number of leaves each task hashes from a file. Grouping leaves keeps
+     * the number of memory mapped windows down.
+     */
+    protected static final int LEAVES_PER_TASK = 16;
+    /**
+     * Byte hashed ahead of each leaf.
+     */
+    protected static final byte LEAF_PREFIX = 0x00;
+    /**
+     * Byte hashed ahead of each pair of child digests.
+     */
+    protected static final byte NODE_PREFIX = 0x01;
+
+    private final DigestPool   digestPool;
+    private final int          leafSize;
+    private final ForkJoinPool pool;
+    private final BufferPool   bufferPool;
+
+    /**
+     * Creates an instance that will hash data given to it.
+     *
+     * @param type     digest type
+     * @param leafSize leaf size, in bytes
+     * @param pool     pool to hash leaves on
+     */
+    protected TreeCryptoHash(final String type, final int leafSize, final ForkJoinPool pool) {
+        this(null, type, leafSize, pool);
+    }
+
+    /**
+     * Creates an instance that will hash the result from the given CryptoHash.
+     *
+     * @param chain    upstream CryptoHash
+     * @param type     digest type
+     * @param leafSize leaf size, in bytes
+     * @param pool     pool to hash leaves on
+     */
+    protected TreeCryptoHash(final CryptoHash chain, final String type, final int leafSize, final ForkJoinPool pool) {
+        super(chain);
+        if (0 >= leafSize || Integer.MAX_VALUE / LEAVES_PER_TASK < leafSize) {
+            throw new IllegalArgumentException("invalid leaf size (" + leafSize + ')');
+        }
+        this.digestPool = DigestPool.get(type);
+        this.leafSize = leafSize;
+        this.pool = pool;
+        this.bufferPool = new BufferPool(leafSize, 2 * pool.getParallelism());
+    }
+
+    public int getLeafSize() {
+        return this.leafSize;
+    }
+
+    @Override
+    protected String getAlgorithmName() {
+        return "Tree" + this.digestPool.getAlgorithm();
+    }
+
+    @Override
+    protected HashSession newSession() {
+        return new TreeSession();
+    }
+
+    @Override
+    protected byte[] computeHash(final InputStream input) throws IOException {
+        final Semaphore inFlight = new Semaphore(2 * this.pool.getParallelism());
+        List<Future<byte[]>> leaves = new ArrayList<Future<byte[]>>();
+        try {
+            for (int length = this.leafSize; this.leafSize == length; ) {
+                final byte[] buffer = this.bufferPool.acquire();
+                boolean submitted = false;
+                try {
+                    length = readLeaf(input, buffer);
+                    if (0 == length && !leaves.isEmpty()) {
+                        break;
+                    }
+                    inFlight.acquire();
+                    final int leafLength = length;
+                    leaves.add(this.pool.submit(new Callable<byte[]>() {
+                        @Override
+                        public byte[] call() {
+                            MessageDigest md = TreeCryptoHash.this.digestPool.acquire();
+                            try {
+                                long before = System.nanoTime();
+                                md.update(LEAF_PREFIX);
+                                md.update(buffer, 0, leafLength);
+                                HashMetrics.getDefault().recordBlock(getHashedBytes(), leafLength, 0, System.nanoTime() - before);
+                                return md.digest();
+                            } finally {
+                                TreeCryptoHash.this.digestPool.release(md);
+                                TreeCryptoHash.this.bufferPool.release(buffer);
+                                inFlight.release();
+                            }
+                        }
+                    }));
+                    submitted = true;
+                } finally {
+                    if (!submitted) {
+                        this.bufferPool.release(buffer);
+                    }
+                }
+            }
+
+            byte[][] digests = new byte[leaves.size()][];
+            for (int ndx = 0; ndx < digests.length; ndx++) {
+                digests[ndx] = leaves.get(ndx).get();
+            }
+            return combine(digests);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while hashing leaves");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("failed to hash leaf", e.getCause());
+        } finally {
+            for (Future<byte[]> leaf : leaves) {
+                leaf.cancel(false);
+            }
+        }
+    }
+
+    @Override
+    protected byte[] computeHash(final byte[] input) {
+        if (input.length <= this.leafSize) {
+            MessageDigest md = this.digestPool.acquire();
+            try {
+                HashMetrics metrics = HashMetrics.getDefault();
+                if (!metrics.isRegistered()) {
+                    md.update(LEAF_PREFIX);
+                    return md.digest(input);
+                }
+                long before = System.nanoTime();
+                md.update(LEAF_PREFIX);
+                byte[] result = md.digest(input);
+                metrics.recordBlock(getHashedBytes(), input.length, 0, System.nanoTime() - before);
+                return result;
+            } finally {
+                this.digestPool.release(md);
+            }
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(input);
+        byte[][] digests = new byte[leafCount(input.length)][];
+        this.pool.invoke(new LeafTask(new LeafSource() {
+            @Override
+            public ByteBuffer map(final long position, final int length) {
+                ByteBuffer view = buffer.duplicate();
+                view.limit((int) position + length).position((int) position);
+                return view.slice();
+            }
+        }, input.length, digests, 0, digests.length));
+        return combine(digests);
+    }
+
+    @Override
+    protected byte[] computeHash(final FileChannel input, final long size) throws IOException {
+        byte[][] digests = new byte[leafCount(size)][];
+        try {
+            this.pool.invoke(new LeafTask(new LeafSource() {
+                @Override
+                public ByteBuffer map(final long position, final int length) throws IOException {
+                    return input.map(FileChannel.MapMode.READ_ONLY, position, length);
+                }
+            }, size, digests, 0, digests.length));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return combine(digests);
+    }
+
+    /**
+     * Reduces the leaf digests down to the root digest.
+     *
+     * @param digests leaf digests, in order
+     * @return root digest
+     */
+    protected byte[] combine(final byte[][] digests) {
+        MessageDigest md = this.digestPool.acquire();
+        try {
+            return combine(md, digests);
+        } finally {
+            this.digestPool.release(md);
+        }
+    }
+
+    private byte[] combine(final MessageDigest md, final byte[][] digests) {
+        byte[][] level = digests;
+        while (1 < level.length) {
+            byte[][] next = new byte[(level.length + 1) / 2][];
+            for (int ndx = 0; ndx < next.length; ndx++) {
+                if (2 * ndx + 1 < level.length) {
+                    md.update(NODE_PREFIX);
+                    md.update(level[2 * ndx]);
+                    md.update(level[2 * ndx + 1]);
+                    next[ndx] = md.digest();
+                } else {
+                    next[ndx] = level[2 * ndx];
+                }
+            }
+            level = next;
+        }
+        return level[0];
+    }
+
+    protected int leafCount(final long size) {
+        return (int) Math.max(1, (size + this.leafSize - 1) / this.leafSize);
+    }
+
+    /**
+     * Reads a full leaf unless the input runs out first.
+     *
+     * @param input  input data to read
+     * @param buffer leaf buffer to fill
+     * @return number of bytes read
+     * @throws IOException if an error occurred reading from input
+     */
+    protected int readLeaf(final InputStream input, final byte[] buffer) throws IOException {
+        IOStrategy strategy = IOStrategy.getDefault();
+        int length = 0;
+        while (length < buffer.length) {
+            int bytesRead = strategy.read(input, buffer, length, buffer.length - length);
+            if (0 > bytesRead) {
+                break;
+            }
+            length += bytesRead;
+        }
+        return length;
+    }
+
+    /**
+     * Computes the tree hash incrementally on the calling thread. Finished
+     * subtrees are merged as soon as they have a sibling of the same height,
+     * so the session only holds one digest per tree level.
+     */
+    protected class TreeSession implements HashSession {
+        private final int           digestLength;
+        private final byte[][]      levels;
+        private       MessageDigest md;
+        private       long          leafBytes;
+        private       boolean       hasLeaves;
+
+        public TreeSession() {
+            this.levels = new byte[64][];
+            this.digestLength = acquire().getDigestLength();
+        }
+
+        @Override
+        public int getDigestLength() {
+            return this.digestLength;
+        }
+
+        @Override
+        public void update(final byte[] input, int offset, int length) {
+            while (0 < length) {
+                int chunk = (int) Math.min(length, TreeCryptoHash.this.leafSize - this.leafBytes);
+                acquire().update(input, offset, chunk);
+                offset += chunk;
+                length -= chunk;
+                addLeafBytes(chunk);
+            }
+        }
+
+        @Override
+        public void update(final ByteBuffer input) {
+            int limit = input.limit();
+            while (input.hasRemaining()) {
+                int chunk = (int) Math.min(input.remaining(), TreeCryptoHash.this.leafSize - this.leafBytes);
+                input.limit(input.position() + chunk);
+                acquire().update(input);
+                input.limit(limit);
+                addLeafBytes(chunk);
+            }
+        }
+
+        /**
+         * Writes out the root and gives the digest back to the pool until
+         * the session is next updated.
+         */
+        @Override
+        public int digestInto(final byte[] output, final int offset) {
+            int length = this.digestLength;
+            checkOutput(output, offset, length);
+            acquire();
+            if (0 < this.leafBytes || !this.hasLeaves) {
+                push(this.md.digest());
+            } else {
+                this.md.reset();
+            }
+            byte[] root = null;
+            for (int height = 0; height < this.levels.length; height++) {
+                if (null != this.levels[height]) {
+                    if (null == root) {
+                        root = this.levels[height];
+                    } else {
+                        this.md.update(NODE_PREFIX);
+                        this.md.update(this.levels[height]);
+                        this.md.update(root);
+                        root = this.md.digest();
+                    }
+                }
+            }
+            System.arraycopy(root, 0, output, offset, length);
+            reset();
+            return length;
+        }
+
+        /**
+         * Discards the message and gives the digest back to the pool until
+         * the session is next updated.
+         */
+        @Override
+        public void reset() {
+            if (null != this.md) {
+                TreeCryptoHash.this.digestPool.release(this.md);
+                this.md = null;
+            }
+            for (int height = 0; height < this.levels.length; height++) {
+                this.levels[height] = null;
+            }
+            this.leafBytes = 0;
+            this.hasLeaves = false;
+        }
+
+        /**
+         * Returns the digest of the current leaf, taking one from the pool
+         * if the session does not hold one.
+         */
+        private MessageDigest acquire() {
+            if (null == this.md) {
+                this.md = TreeCryptoHash.this.digestPool.acquire();
+                this.md.update(LEAF_PREFIX);
+            }
+            return this.md;
+        }
+
+        private void addLeafBytes(final int count) {
+            this.leafBytes += count;
+            if (TreeCryptoHash.this.leafSize == this.leafBytes) {
+                push(this.md.digest());
+                this.md.update(LEAF_PREFIX);
+                this.leafBytes = 0;
+            }
+        }
+
+        private void push(final byte[] leaf) {
+            byte[] carry = leaf;
+            int height = 0;
+            for (; null != this.levels[height]; height++) {
+                this.md.update(NODE_PREFIX);
+                this.md.update(this.levels[height]);
+                this.md.update(carry);
+                carry = this.md.digest();
+                this.levels[height] = null;
+            }
+            this.levels[height] = carry;
+            this.hasLeaves = true;
+        }
+    }
+
+    /**
+     * Provides access to ranges of the input.
+     */
+    protected interface LeafSource {
+        /**
+         * Returns the given range of the input.
+         *
+         * @param position offset of the range
+         * @param length   length of the range
+         * @return buffer holding just the given range
+         * @throws IOException if the input could not be read
+         */
+        ByteBuffer map(long position, int length) throws IOException;
+    }
+
+    /**
+     * Hashes a range of leaves, splitting the range in half until it is
+     * small enough to hash directly.
+     */
+    protected class LeafTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final LeafSource source;
+        private final long       size;
+        private final byte[][]   digests;
+        private final int        start;
+        private final int        end;
+
+        public LeafTask(final LeafSource source, final long size, final byte[][] digests, final int start, final int end) {
+            this.source = source;
+            this.size = size;
+            this.digests = digests;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.end - this.start > LEAVES_PER_TASK) {
+                int middle = (this.start + this.end) >>> 1;
+                invokeAll(new LeafTask(this.source, this.size, this.digests, this.start, middle),
+                          new LeafTask(this.source, this.size, this.digests, middle, this.end));
+                return;
+            }
+
+            long leafSize = TreeCryptoHash.this.leafSize;
+            long position = this.start * leafSize;
+            int length = (int) (Math.min(this.end * leafSize, this.size) - position);
+            MessageDigest md = TreeCryptoHash.this.digestPool.acquire();
+            try {
+                ByteBuffer window = this.source.map(position, length);
+                long before = System.nanoTime();
+                for (int ndx = this.start; ndx < this.end; ndx++) {
+                    int leafStart = (int) ((ndx - this.start) * leafSize);
+                    window.limit((int) Math.min(leafStart + leafSize, length)).position(leafStart);
+                    md.update(LEAF_PREFIX);
+                    md.update(window);
+                    this.digests[ndx] = md.digest();
+                }
+                HashMetrics.getDefault().recordBlock(getHashedBytes(), length, 0, System.nanoTime() - before);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                TreeCryptoHash.this.digestPool.release(md);
+            }
+        }
+    }
+
+    /**
+     * Creates a new instance that computes MD5 tree hashes using the default
+     * leaf size and the common fork/join pool.
+     *
+     * @param chain upstream CryptoHash
+     * @return MD5 tree hash instance
+     */
+    public static TreeCryptoHash createMD5(final CryptoHash chain) {
+        return new TreeCryptoHash(chain, "MD5", DEFAULT_LEAF_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a new instance that computes SHA1 tree hashes using the default
+     * leaf size and the common fork/join pool.
+     *
+     * @param chain upstream CryptoHash
+     * @return SHA1 tree hash instance
+     */
+    public static TreeCryptoHash createSHA1(final CryptoHash chain) {
+        return new TreeCryptoHash(chain, "SHA-1", DEFAULT_LEAF_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a new instance that computes tree hashes.
+     *
+     * @param chain    upstream CryptoHash
+     * @param type     digest type
+     * @param leafSize leaf size, in bytes
+     * @param pool     pool to hash leaves on
+     * @return tree hash instance
+     */
+    public static TreeCryptoHash create(final CryptoHash chain, final String type, final int leafSize, final ForkJoinPool pool) {
+        return new TreeCryptoHash(chain, type, leafSize, pool);
+    }
+}
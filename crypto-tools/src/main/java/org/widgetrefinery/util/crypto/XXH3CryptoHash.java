@@ -0,0 +1,364 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Utility class for computing XXH3 64 bit fingerprints using the default
+ * secret and a seed of 0. XXH3 is the successor to xxHash64 and is faster
+ * on both short and long inputs. The digest is written out as 8 big-endian
+ * bytes, matching the canonical form used by the reference implementation.
+ *
+ * @see <a href="https://github.com/Cyan4973/xxHash">xxHash</a>
+ * @since 10/17/26 6:05 PM
+ */
+public class XXH3CryptoHash extends AbstractCryptoHash {
+    private static final long PRIME32_1  = 0x9E3779B1L;
+    private static final long PRIME32_2  = 0x85EBCA77L;
+    private static final long PRIME32_3  = 0xC2B2AE3DL;
+    private static final long PRIME_MX1  = 0x165667919E3779F9L;
+    private static final long PRIME_MX2  = 0x9FB21C651E98DF25L;
+
+    private static final int STRIPE_LENGTH     = 64;
+    private static final int STRIPES_PER_BLOCK = 16;
+    private static final int BLOCK_LENGTH      = STRIPE_LENGTH * STRIPES_PER_BLOCK;
+    private static final int MIDSIZE_MAX       = 240;
+
+    private static final ByteBuffer SECRET = ByteBuffer.wrap(new byte[]{
+            (byte) 0xb8, (byte) 0xfe, (byte) 0x6c, (byte) 0x39, (byte) 0x23, (byte) 0xa4, (byte) 0x4b, (byte) 0xbe,
+            (byte) 0x7c, (byte) 0x01, (byte) 0x81, (byte) 0x2c, (byte) 0xf7, (byte) 0x21, (byte) 0xad, (byte) 0x1c,
+            (byte) 0xde, (byte) 0xd4, (byte) 0x6d, (byte) 0xe9, (byte) 0x83, (byte) 0x90, (byte) 0x97, (byte) 0xdb,
+            (byte) 0x72, (byte) 0x40, (byte) 0xa4, (byte) 0xa4, (byte) 0xb7, (byte) 0xb3, (byte) 0x67, (byte) 0x1f,
+            (byte) 0xcb, (byte) 0x79, (byte) 0xe6, (byte) 0x4e, (byte) 0xcc, (byte) 0xc0, (byte) 0xe5, (byte) 0x78,
+            (byte) 0x82, (byte) 0x5a, (byte) 0xd0, (byte) 0x7d, (byte) 0xcc, (byte) 0xff, (byte) 0x72, (byte) 0x21,
+            (byte) 0xb8, (byte) 0x08, (byte) 0x46, (byte) 0x74, (byte) 0xf7, (byte) 0x43, (byte) 0x24, (byte) 0x8e,
+            (byte) 0xe0, (byte) 0x35, (byte) 0x90, (byte) 0xe6, (byte) 0x81, (byte) 0x3a, (byte) 0x26, (byte) 0x4c,
+            (byte) 0x3c, (byte) 0x28, (byte) 0x52, (byte) 0xbb, (byte) 0x91, (byte) 0xc3, (byte) 0x00, (byte) 0xcb,
+            (byte) 0x88, (byte) 0xd0, (byte) 0x65, (byte) 0x8b, (byte) 0x1b, (byte) 0x53, (byte) 0x2e, (byte) 0xa3,
+            (byte) 0x71, (byte) 0x64, (byte) 0x48, (byte) 0x97, (byte) 0xa2, (byte) 0x0d, (byte) 0xf9, (byte) 0x4e,
+            (byte) 0x38, (byte) 0x19, (byte) 0xef, (byte) 0x46, (byte) 0xa9, (byte) 0xde, (byte) 0xac, (byte) 0xd8,
+            (byte) 0xa8, (byte) 0xfa, (byte) 0x76, (byte) 0x3f, (byte) 0xe3, (byte) 0x9c, (byte) 0x34, (byte) 0x3f,
+            (byte) 0xf9, (byte) 0xdc, (byte) 0xbb, (byte) 0xc7, (byte) 0xc7, (byte) 0x0b, (byte) 0x4f, (byte) 0x1d,
+            (byte) 0x8a, (byte) 0x51, (byte) 0xe0, (byte) 0x4b, (byte) 0xcd, (byte) 0xb4, (byte) 0x59, (byte) 0x31,
+            (byte) 0xc8, (byte) 0x9f, (byte) 0x7e, (byte) 0xc9, (byte) 0xd9, (byte) 0x78, (byte) 0x73, (byte) 0x64,
+            (byte) 0xea, (byte) 0xc5, (byte) 0xac, (byte) 0x83, (byte) 0x34, (byte) 0xd3, (byte) 0xeb, (byte) 0xc3,
+            (byte) 0xc5, (byte) 0x81, (byte) 0xa0, (byte) 0xff, (byte) 0xfa, (byte) 0x13, (byte) 0x63, (byte) 0xeb,
+            (byte) 0x17, (byte) 0x0d, (byte) 0xdd, (byte) 0x51, (byte) 0xb7, (byte) 0xf0, (byte) 0xda, (byte) 0x49,
+            (byte) 0xd3, (byte) 0x16, (byte) 0x55, (byte) 0x26, (byte) 0x29, (byte) 0xd4, (byte) 0x68, (byte) 0x9e,
+            (byte) 0x2b, (byte) 0x16, (byte) 0xbe, (byte) 0x58, (byte) 0x7d, (byte) 0x47, (byte) 0xa1, (byte) 0xfc,
+            (byte) 0x8f, (byte) 0xf8, (byte) 0xb8, (byte) 0xd1, (byte) 0x7a, (byte) 0xd0, (byte) 0x31, (byte) 0xce,
+            (byte) 0x45, (byte) 0xcb, (byte) 0x3a, (byte) 0x8f, (byte) 0x95, (byte) 0x16, (byte) 0x04, (byte) 0x28,
+            (byte) 0xaf, (byte) 0xd7, (byte) 0xfb, (byte) 0xca, (byte) 0xbb, (byte) 0x4b, (byte) 0x40, (byte) 0x7e
+    }).order(ByteOrder.LITTLE_ENDIAN);
+
+    private static final int SECRET_LENGTH = SECRET.capacity();
+
+    /**
+     * Secret words used by the stripe loop, pre-read since stripes always
+     * start on an 8 byte boundary of the secret.
+     */
+    private static final long[] STRIPE_KEYS      = readKeys(0, SECRET_LENGTH / 8);
+    private static final long[] SCRAMBLE_KEYS    = readKeys(SECRET_LENGTH - STRIPE_LENGTH, 8);
+    private static final long[] LAST_STRIPE_KEYS = readKeys(SECRET_LENGTH - STRIPE_LENGTH - 7, 8);
+    private static final long[] MERGE_KEYS       = readKeys(11, 8);
+
+    /**
+     * Creates an instance that will hash the result from the given CryptoHash.
+     *
+     * @param chain upstream CryptoHash, may be null
+     */
+    public XXH3CryptoHash(final CryptoHash chain) {
+        super(chain);
+    }
+
+    @Override
+    protected HashSession newSession() {
+        return new XXH3Session();
+    }
+
+    private static long[] readKeys(final int offset, final int count) {
+        long[] keys = new long[count];
+        for (int ndx = 0; ndx < count; ndx++) {
+            keys[ndx] = SECRET.getLong(offset + 8 * ndx);
+        }
+        return keys;
+    }
+
+    private static long secret64(final int offset) {
+        return SECRET.getLong(offset);
+    }
+
+    private static long secret32(final int offset) {
+        return SECRET.getInt(offset) & 0xFFFFFFFFL;
+    }
+
+    private static long avalanche(final long hash) {
+        long h = hash;
+        h ^= h >>> 37;
+        h *= PRIME_MX1;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    private static long rrmxmx(final long hash, final long length) {
+        long h = hash;
+        h ^= Long.rotateLeft(h, 49) ^ Long.rotateLeft(h, 24);
+        h *= PRIME_MX2;
+        h ^= (h >>> 35) + length;
+        h *= PRIME_MX2;
+        h ^= h >>> 28;
+        return h;
+    }
+
+    /**
+     * Multiplies two unsigned 64 bit values and folds the 128 bit product by
+     * xor'ing its halves together.
+     */
+    private static long mul128Fold64(final long lhs, final long rhs) {
+        long lo = lhs * rhs;
+        long lhsLo = lhs & 0xFFFFFFFFL;
+        long lhsHi = lhs >>> 32;
+        long rhsLo = rhs & 0xFFFFFFFFL;
+        long rhsHi = rhs >>> 32;
+        long cross = (lhsLo * rhsLo >>> 32) + (lhsHi * rhsLo & 0xFFFFFFFFL) + lhsLo * rhsHi;
+        long hi = lhsHi * rhsHi + (lhsHi * rhsLo >>> 32) + (cross >>> 32);
+        return lo ^ hi;
+    }
+
+    private static long mix16B(final ByteBuffer input, final int offset, final int secretOffset) {
+        return mul128Fold64(input.getLong(offset) ^ secret64(secretOffset), input.getLong(offset + 8) ^ secret64(secretOffset + 8));
+    }
+
+    /**
+     * Hashes inputs of up to 240 bytes, which are handled without the stripe
+     * loop.
+     */
+    static long hashShort(final ByteBuffer input, final int length) {
+        if (16 >= length) {
+            if (8 < length) {
+                long lo = input.getLong(0) ^ (secret64(24) ^ secret64(32));
+                long hi = input.getLong(length - 8) ^ (secret64(40) ^ secret64(48));
+                return avalanche(length + Long.reverseBytes(lo) + hi + mul128Fold64(lo, hi));
+            }
+            if (4 <= length) {
+                long input1 = input.getInt(0) & 0xFFFFFFFFL;
+                long input2 = input.getInt(length - 4) & 0xFFFFFFFFL;
+                long keyed = (input2 + (input1 << 32)) ^ (secret64(8) ^ secret64(16));
+                return rrmxmx(keyed, length);
+            }
+            if (0 < length) {
+                long c1 = input.get(0) & 0xFFL;
+                long c2 = input.get(length >> 1) & 0xFFL;
+                long c3 = input.get(length - 1) & 0xFFL;
+                long combined = (c1 << 16) | (c2 << 24) | c3 | ((long) length << 8);
+                return XXHash64CryptoHash.avalanche(combined ^ (secret32(0) ^ secret32(4)));
+            }
+            return XXHash64CryptoHash.avalanche(secret64(56) ^ secret64(64));
+        }
+
+        long acc = length * XXHash64CryptoHash.PRIME64_1;
+        if (128 >= length) {
+            if (32 < length) {
+                if (64 < length) {
+                    if (96 < length) {
+                        acc += mix16B(input, 48, 96);
+                        acc += mix16B(input, length - 64, 112);
+                    }
+                    acc += mix16B(input, 32, 64);
+                    acc += mix16B(input, length - 48, 80);
+                }
+                acc += mix16B(input, 16, 32);
+                acc += mix16B(input, length - 32, 48);
+            }
+            acc += mix16B(input, 0, 0);
+            acc += mix16B(input, length - 16, 16);
+            return avalanche(acc);
+        }
+
+        int rounds = length / 16;
+        for (int ndx = 0; ndx < 8; ndx++) {
+            acc += mix16B(input, 16 * ndx, 16 * ndx);
+        }
+        acc = avalanche(acc);
+        for (int ndx = 8; ndx < rounds; ndx++) {
+            acc += mix16B(input, 16 * ndx, 16 * (ndx - 8) + 3);
+        }
+        acc += mix16B(input, length - 16, 136 - 17);
+        return avalanche(acc);
+    }
+
+    /**
+     * Streaming XXH3 over 1KB blocks of 16 stripes each.
+     */
+    protected static class XXH3Session extends BlockHashSession {
+        private final long[] acc;
+        private final byte[] lastStripe;
+        private       long   hash;
+
+        public XXH3Session() {
+            super(BLOCK_LENGTH);
+            this.acc = new long[8];
+            this.lastStripe = new byte[STRIPE_LENGTH];
+            resetState();
+        }
+
+        @Override
+        public int getDigestLength() {
+            return 8;
+        }
+
+        @Override
+        protected void processBlocks(final ByteBuffer data, final int offset, final int blocks) {
+            accumulate(data, offset, blocks, 0);
+            int lastStripeOffset = offset + blocks * BLOCK_LENGTH - STRIPE_LENGTH;
+            for (int ndx = 0; ndx < STRIPE_LENGTH; ndx += 8) {
+                BlockHashSession.writeLongLE(this.lastStripe, ndx, data.getLong(lastStripeOffset + ndx));
+            }
+        }
+
+        /**
+         * Runs whole blocks, each followed by a scramble, and then the given
+         * number of extra stripes. Everything is done in one loop with the
+         * accumulators held in locals so the JIT has a single hot loop to
+         * compile.
+         *
+         * @param data    little-endian input
+         * @param offset  index of the first stripe
+         * @param blocks  number of whole blocks
+         * @param stripes number of stripes after the blocks
+         */
+        private void accumulate(final ByteBuffer data, final int offset, final int blocks, final int stripes) {
+            long[] acc = this.acc;
+            long acc0 = acc[0];
+            long acc1 = acc[1];
+            long acc2 = acc[2];
+            long acc3 = acc[3];
+            long acc4 = acc[4];
+            long acc5 = acc[5];
+            long acc6 = acc[6];
+            long acc7 = acc[7];
+            for (int block = 0; block <= blocks; block++) {
+                int blockOffset = offset + block * BLOCK_LENGTH;
+                int blockStripes = block < blocks ? STRIPES_PER_BLOCK : stripes;
+                for (int stripe = 0; stripe < blockStripes; stripe++) {
+                    int position = blockOffset + stripe * STRIPE_LENGTH;
+                    long d0 = data.getLong(position);
+                    long d1 = data.getLong(position + 8);
+                    long d2 = data.getLong(position + 16);
+                    long d3 = data.getLong(position + 24);
+                    long d4 = data.getLong(position + 32);
+                    long d5 = data.getLong(position + 40);
+                    long d6 = data.getLong(position + 48);
+                    long d7 = data.getLong(position + 56);
+                    long k0 = d0 ^ STRIPE_KEYS[stripe];
+                    long k1 = d1 ^ STRIPE_KEYS[stripe + 1];
+                    long k2 = d2 ^ STRIPE_KEYS[stripe + 2];
+                    long k3 = d3 ^ STRIPE_KEYS[stripe + 3];
+                    long k4 = d4 ^ STRIPE_KEYS[stripe + 4];
+                    long k5 = d5 ^ STRIPE_KEYS[stripe + 5];
+                    long k6 = d6 ^ STRIPE_KEYS[stripe + 6];
+                    long k7 = d7 ^ STRIPE_KEYS[stripe + 7];
+                    acc0 += d1 + (k0 & 0xFFFFFFFFL) * (k0 >>> 32);
+                    acc1 += d0 + (k1 & 0xFFFFFFFFL) * (k1 >>> 32);
+                    acc2 += d3 + (k2 & 0xFFFFFFFFL) * (k2 >>> 32);
+                    acc3 += d2 + (k3 & 0xFFFFFFFFL) * (k3 >>> 32);
+                    acc4 += d5 + (k4 & 0xFFFFFFFFL) * (k4 >>> 32);
+                    acc5 += d4 + (k5 & 0xFFFFFFFFL) * (k5 >>> 32);
+                    acc6 += d7 + (k6 & 0xFFFFFFFFL) * (k6 >>> 32);
+                    acc7 += d6 + (k7 & 0xFFFFFFFFL) * (k7 >>> 32);
+                }
+                if (block < blocks) {
+                    acc0 = scramble(acc0, SCRAMBLE_KEYS[0]);
+                    acc1 = scramble(acc1, SCRAMBLE_KEYS[1]);
+                    acc2 = scramble(acc2, SCRAMBLE_KEYS[2]);
+                    acc3 = scramble(acc3, SCRAMBLE_KEYS[3]);
+                    acc4 = scramble(acc4, SCRAMBLE_KEYS[4]);
+                    acc5 = scramble(acc5, SCRAMBLE_KEYS[5]);
+                    acc6 = scramble(acc6, SCRAMBLE_KEYS[6]);
+                    acc7 = scramble(acc7, SCRAMBLE_KEYS[7]);
+                }
+            }
+            acc[0] = acc0;
+            acc[1] = acc1;
+            acc[2] = acc2;
+            acc[3] = acc3;
+            acc[4] = acc4;
+            acc[5] = acc5;
+            acc[6] = acc6;
+            acc[7] = acc7;
+        }
+
+        private void accumulateLast(final ByteBuffer data, final int offset) {
+            for (int ndx = 0; ndx < 8; ndx++) {
+                long value = data.getLong(offset + 8 * ndx);
+                long key = value ^ LAST_STRIPE_KEYS[ndx];
+                this.acc[ndx ^ 1] += value;
+                this.acc[ndx] += (key & 0xFFFFFFFFL) * (key >>> 32);
+            }
+        }
+
+        private static long scramble(final long acc, final long key) {
+            return (acc ^ (acc >>> 47) ^ key) * PRIME32_1;
+        }
+
+        @Override
+        protected void finish(final ByteBuffer tail, final int tailLength, final long totalLength) {
+            if (MIDSIZE_MAX >= totalLength) {
+                this.hash = hashShort(tail, tailLength);
+                return;
+            }
+
+            accumulate(tail, 0, 0, (tailLength - 1) / STRIPE_LENGTH);
+            if (STRIPE_LENGTH <= tailLength) {
+                accumulateLast(tail, tailLength - STRIPE_LENGTH);
+            } else {
+                ByteBuffer stripe = ByteBuffer.allocate(STRIPE_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+                stripe.put(this.lastStripe, tailLength, STRIPE_LENGTH - tailLength);
+                for (int ndx = 0; ndx < tailLength; ndx++) {
+                    stripe.put(tail.get(ndx));
+                }
+                accumulateLast(stripe, 0);
+            }
+
+            long result = totalLength * XXHash64CryptoHash.PRIME64_1;
+            for (int ndx = 0; ndx < 8; ndx += 2) {
+                result += mul128Fold64(this.acc[ndx] ^ MERGE_KEYS[ndx], this.acc[ndx + 1] ^ MERGE_KEYS[ndx + 1]);
+            }
+            this.hash = avalanche(result);
+        }
+
+        @Override
+        protected void writeDigest(final byte[] output, final int offset) {
+            writeLong(output, offset, this.hash);
+        }
+
+        @Override
+        protected void resetState() {
+            this.acc[0] = PRIME32_3;
+            this.acc[1] = XXHash64CryptoHash.PRIME64_1;
+            this.acc[2] = XXHash64CryptoHash.PRIME64_2;
+            this.acc[3] = XXHash64CryptoHash.PRIME64_3;
+            this.acc[4] = XXHash64CryptoHash.PRIME64_4;
+            this.acc[5] = PRIME32_2;
+            this.acc[6] = XXHash64CryptoHash.PRIME64_5;
+            this.acc[7] = PRIME32_1;
+        }
+    }
+}
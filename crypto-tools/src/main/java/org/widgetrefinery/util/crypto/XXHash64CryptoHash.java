@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Utility class for computing xxHash64 fingerprints. xxHash64 is not a
+ * cryptographic hash but runs at close to memory bandwidth, which makes it a
+ * good fit for change detection and dedupe. The digest is written out as 8
+ * big-endian bytes, matching the canonical form used by the reference
+ * implementation.
+ *
+ * @see <a href="https://github.com/Cyan4973/xxHash">xxHash</a>
+ * @since 10/17/26 5:30 PM
+ */
+public class XXHash64CryptoHash extends AbstractCryptoHash {
+    static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+    static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+    static final long PRIME64_3 = 0x165667B19E3779F9L;
+    static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+    static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+
+    private final long seed;
+
+    /**
+     * Creates an instance that will hash the result from the given CryptoHash.
+     *
+     * @param chain upstream CryptoHash, may be null
+     * @param seed  hash seed
+     */
+    public XXHash64CryptoHash(final CryptoHash chain, final long seed) {
+        super(chain);
+        this.seed = seed;
+    }
+
+    /**
+     * Creates an instance that will hash the result from the given CryptoHash.
+     *
+     * @param chain upstream CryptoHash, may be null
+     */
+    public XXHash64CryptoHash(final CryptoHash chain) {
+        this(chain, 0);
+    }
+
+    @Override
+    protected HashSession newSession() {
+        return new XXHash64Session(this.seed);
+    }
+
+    static long avalanche(final long hash) {
+        long h = hash;
+        h ^= h >>> 33;
+        h *= PRIME64_2;
+        h ^= h >>> 29;
+        h *= PRIME64_3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    private static long round(final long acc, final long input) {
+        return Long.rotateLeft(acc + input * PRIME64_2, 31) * PRIME64_1;
+    }
+
+    private static long mergeRound(final long acc, final long value) {
+        return (acc ^ round(0, value)) * PRIME64_1 + PRIME64_4;
+    }
+
+    /**
+     * Streaming xxHash64 over 32 byte stripes.
+     */
+    protected static class XXHash64Session extends BlockHashSession {
+        private final long seed;
+        private       long v1;
+        private       long v2;
+        private       long v3;
+        private       long v4;
+        private       long hash;
+
+        public XXHash64Session(final long seed) {
+            super(32);
+            this.seed = seed;
+            resetState();
+        }
+
+        @Override
+        public int getDigestLength() {
+            return 8;
+        }
+
+        @Override
+        protected void processBlocks(final ByteBuffer data, final int offset, final int blocks) {
+            long v1 = this.v1;
+            long v2 = this.v2;
+            long v3 = this.v3;
+            long v4 = this.v4;
+            int end = offset + blocks * 32;
+            for (int position = offset; position < end; position += 32) {
+                v1 = round(v1, data.getLong(position));
+                v2 = round(v2, data.getLong(position + 8));
+                v3 = round(v3, data.getLong(position + 16));
+                v4 = round(v4, data.getLong(position + 24));
+            }
+            this.v1 = v1;
+            this.v2 = v2;
+            this.v3 = v3;
+            this.v4 = v4;
+        }
+
+        @Override
+        protected void finish(final ByteBuffer tail, final int tailLength, final long totalLength) {
+            int length = tailLength;
+            if (32 == length) {
+                processBlocks(tail, 0, 1);
+                length = 0;
+            }
+
+            long h;
+            if (32 <= totalLength) {
+                h = Long.rotateLeft(this.v1, 1) + Long.rotateLeft(this.v2, 7) + Long.rotateLeft(this.v3, 12) + Long.rotateLeft(this.v4, 18);
+                h = mergeRound(h, this.v1);
+                h = mergeRound(h, this.v2);
+                h = mergeRound(h, this.v3);
+                h = mergeRound(h, this.v4);
+            } else {
+                h = this.seed + PRIME64_5;
+            }
+            h += totalLength;
+
+            int position = 0;
+            for (; position + 8 <= length; position += 8) {
+                h ^= round(0, tail.getLong(position));
+                h = Long.rotateLeft(h, 27) * PRIME64_1 + PRIME64_4;
+            }
+            if (position + 4 <= length) {
+                h ^= (tail.getInt(position) & 0xFFFFFFFFL) * PRIME64_1;
+                h = Long.rotateLeft(h, 23) * PRIME64_2 + PRIME64_3;
+                position += 4;
+            }
+            for (; position < length; position++) {
+                h ^= (tail.get(position) & 0xFFL) * PRIME64_5;
+                h = Long.rotateLeft(h, 11) * PRIME64_1;
+            }
+            this.hash = avalanche(h);
+        }
+
+        @Override
+        protected void writeDigest(final byte[] output, final int offset) {
+            writeLong(output, offset, this.hash);
+        }
+
+        @Override
+        protected void resetState() {
+            this.v1 = this.seed + PRIME64_1 + PRIME64_2;
+            this.v2 = this.seed + PRIME64_2;
+            this.v3 = this.seed;
+            this.v4 = this.seed - PRIME64_1;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto.output;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A compact length-prefixed format for other programs to read. Each record
+ * is laid out as follows, with all ints big-endian:
+ * <ul>
+ * <li>1 byte: first letter of the source ('f', 'i', 's', or 'c')</li>
+ * <li>4 bytes: length of the UTF-8 encoded name, or -1 for no name</li>
+ * <li>the name</li>
+ * <li>4 bytes: number of hashes</li>
+ * <li>for each hash, 4 bytes holding its length followed by the raw hash</li>
+ * </ul>
+ *
+ * @since 10/17/26 5:25 PM
+ */
+public class BinaryFormat implements ResultFormat {
+    @Override
+    public void write(final OutputWriter output, final String source, final String name, final byte[][] results) throws IOException {
+        output.write((byte) source.charAt(0));
+        if (null != name) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length).write(bytes, 0, bytes.length);
+        } else {
+            output.writeInt(-1);
+        }
+        output.writeInt(results.length);
+        for (byte[] result : results) {
+            output.writeInt(result.length).write(ByteEncoder.RAW, result);
+        }
+    }
+}
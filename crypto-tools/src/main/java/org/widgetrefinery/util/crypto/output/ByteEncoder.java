@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto.output;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Turns digests into bytes ready to be written out. The text encodings are
+ * table driven and write ASCII straight into the output buffer, so no
+ * intermediate strings are created.
+ *
+ * @since 10/17/26 4:45 PM
+ */
+public enum ByteEncoder {
+    /**
+     * Lowercase hexadecimal, 2 characters per byte.
+     */
+    HEX {
+        @Override
+        public int getEncodedLength(final int length) {
+            return 2 * length;
+        }
+
+        @Override
+        public void encode(final byte[] input, final int offset, final int length, final ByteBuffer output) {
+            for (int ndx = offset, end = offset + length; ndx < end; ndx++) {
+                int value = 0xFF & input[ndx];
+                output.put(HEX_DIGITS[value >>> 4]).put(HEX_DIGITS[value & 0x0F]);
+            }
+        }
+
+        @Override
+        public byte[] decode(final CharSequence input) throws IllegalArgumentException {
+            if (0 != input.length() % 2) {
+                throw new IllegalArgumentException("invalid hex length (" + input.length() + ')');
+            }
+            byte[] output = new byte[input.length() / 2];
+            for (int ndx = 0; ndx < output.length; ndx++) {
+                output[ndx] = (byte) (digitValue(input, 2 * ndx, 16) << 4 | digitValue(input, 2 * ndx + 1, 16));
+            }
+            return output;
+        }
+    },
+    /**
+     * Standard base64 with padding, as described in RFC 4648.
+     */
+    BASE64 {
+        @Override
+        public int getEncodedLength(final int length) {
+            return 4 * ((length + 2) / 3);
+        }
+
+        @Override
+        public void encode(final byte[] input, final int offset, final int length, final ByteBuffer output) {
+            int ndx = offset;
+            int end = offset + length;
+            for (; ndx + 3 <= end; ndx += 3) {
+                int bits = (0xFF & input[ndx]) << 16 | (0xFF & input[ndx + 1]) << 8 | (0xFF & input[ndx + 2]);
+                output.put(BASE64_DIGITS[bits >>> 18])
+                      .put(BASE64_DIGITS[bits >>> 12 & 0x3F])
+                      .put(BASE64_DIGITS[bits >>> 6 & 0x3F])
+                      .put(BASE64_DIGITS[bits & 0x3F]);
+            }
+            if (ndx + 1 == end) {
+                int bits = (0xFF & input[ndx]) << 16;
+                output.put(BASE64_DIGITS[bits >>> 18]).put(BASE64_DIGITS[bits >>> 12 & 0x3F]).put((byte) '=').put((byte) '=');
+            } else if (ndx + 2 == end) {
+                int bits = (0xFF & input[ndx]) << 16 | (0xFF & input[ndx + 1]) << 8;
+                output.put(BASE64_DIGITS[bits >>> 18]).put(BASE64_DIGITS[bits >>> 12 & 0x3F]).put(BASE64_DIGITS[bits >>> 6 & 0x3F]).put((byte) '=');
+            }
+        }
+
+        @Override
+        public byte[] decode(final CharSequence input) throws IllegalArgumentException {
+            if (0 != input.length() % 4) {
+                throw new IllegalArgumentException("invalid base64 length (" + input.length() + ')');
+            }
+            int padding = 0;
+            while (padding < 2 && padding < input.length() && '=' == input.charAt(input.length() - 1 - padding)) {
+                padding++;
+            }
+            byte[] output = new byte[3 * input.length() / 4 - padding];
+            int position = 0;
+            for (int ndx = 0; ndx < input.length(); ndx += 4) {
+                int bits = 0;
+                for (int digit = 0; digit < 4; digit++) {
+                    bits <<= 6;
+                    if (ndx + digit < input.length() - padding) {
+                        bits |= digitValue(input, ndx + digit, 64);
+                    }
+                }
+                for (int shift = 16; 0 <= shift && position < output.length; shift -= 8) {
+                    output[position++] = (byte) (bits >>> shift);
+                }
+            }
+            return output;
+        }
+    },
+    /**
+     * The digest bytes as is.
+     */
+    RAW {
+        @Override
+        public int getEncodedLength(final int length) {
+            return length;
+        }
+
+        @Override
+        public void encode(final byte[] input, final int offset, final int length, final ByteBuffer output) {
+            output.put(input, offset, length);
+        }
+
+        @Override
+        public byte[] decode(final CharSequence input) throws IllegalArgumentException {
+            throw new IllegalArgumentException("raw digests cannot be decoded from text");
+        }
+    };
+
+    private static final byte[] HEX_DIGITS    = "0123456789abcdef".getBytes();
+    private static final byte[] BASE64_DIGITS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes();
+    private static final byte[] HEX_VALUES    = buildValues(HEX_DIGITS, "ABCDEF".getBytes(), 10);
+    private static final byte[] BASE64_VALUES = buildValues(BASE64_DIGITS, new byte[0], 0);
+
+    /**
+     * Returns the number of bytes {@link #encode(byte[], int, int, ByteBuffer)}
+     * writes for the given input length.
+     *
+     * @param length input length, in bytes
+     * @return encoded length, in bytes
+     */
+    public abstract int getEncodedLength(int length);
+
+    /**
+     * Encodes the given bytes into the output buffer, which must have room
+     * for {@link #getEncodedLength(int)} bytes.
+     *
+     * @param input  data to encode
+     * @param offset offset of the data within input
+     * @param length number of bytes to encode
+     * @param output buffer to write to
+     */
+    public abstract void encode(byte[] input, int offset, int length, ByteBuffer output);
+
+    /**
+     * Reverses {@link #encode(byte[], int, int, ByteBuffer)}. Uppercase hex
+     * digits are accepted.
+     *
+     * @param input encoded data
+     * @return decoded data
+     * @throws IllegalArgumentException if input is not valid for this encoding
+     */
+    public abstract byte[] decode(CharSequence input) throws IllegalArgumentException;
+
+    /**
+     * Convenience method for encoding a whole array into a string.
+     *
+     * @param input data to encode
+     * @return encoded data
+     */
+    public String encodeToString(final byte[] input) {
+        ByteBuffer output = ByteBuffer.allocate(getEncodedLength(input.length));
+        encode(input, 0, input.length, output);
+        return new String(output.array(), 0, output.position(), StandardCharsets.ISO_8859_1);
+    }
+
+    private static int digitValue(final CharSequence input, final int ndx, final int radix) throws IllegalArgumentException {
+        char digit = input.charAt(ndx);
+        int value = 128 > digit ? (16 == radix ? HEX_VALUES : BASE64_VALUES)[digit] : -1;
+        if (0 > value) {
+            throw new IllegalArgumentException("invalid digit (" + digit + ") at offset " + ndx);
+        }
+        return value;
+    }
+
+    private static byte[] buildValues(final byte[] digits, final byte[] extraDigits, final int extraOffset) {
+        byte[] values = new byte[128];
+        Arrays.fill(values, (byte) -1);
+        for (int ndx = 0; ndx < digits.length; ndx++) {
+            values[digits[ndx]] = (byte) ndx;
+        }
+        for (int ndx = 0; ndx < extraDigits.length; ndx++) {
+            values[extraDigits[ndx]] = (byte) (extraOffset + ndx);
+        }
+        return values;
+    }
+}
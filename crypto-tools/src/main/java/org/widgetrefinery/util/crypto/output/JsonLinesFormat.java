@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto.output;
+
+import java.io.IOException;
+
+/**
+ * One JSON object per line:
+ * <pre>
+ * {"source":"file","name":"a.txt","hashes":[{"encoding":"m","value":"..."}]}
+ * </pre>
+ * The name is left out for standard in.
+ *
+ * @since 10/17/26 5:20 PM
+ */
+public class JsonLinesFormat implements ResultFormat {
+    private final ByteEncoder byteEncoder;
+    private final String[]    encodings;
+
+    /**
+     * @param byteEncoder encoder for the hashes
+     * @param encodings   encoding name for each hash, in the same order as the results
+     */
+    public JsonLinesFormat(final ByteEncoder byteEncoder, final String... encodings) {
+        this.byteEncoder = byteEncoder;
+        this.encodings = encodings;
+    }
+
+    @Override
+    public void write(final OutputWriter output, final String source, final String name, final byte[][] results) throws IOException {
+        output.write("{\"source\":");
+        writeString(output, source);
+        if (null != name) {
+            output.write(",\"name\":");
+            writeString(output, name);
+        }
+        output.write(",\"hashes\":[");
+        for (int ndx = 0; ndx < results.length; ndx++) {
+            if (0 < ndx) {
+                output.write((byte) ',');
+            }
+            output.write("{\"encoding\":");
+            writeString(output, ndx < this.encodings.length ? this.encodings[ndx] : String.valueOf(ndx));
+            output.write(",\"value\":\"").write(this.byteEncoder, results[ndx]).write("\"}");
+        }
+        output.write("]}\n");
+    }
+
+    /**
+     * Writes the given value as a quoted JSON string.
+     *
+     * @param output writer to write to
+     * @param value  string to write
+     * @throws IOException if an error occurred writing the string
+     */
+    protected static void writeString(final OutputWriter output, final String value) throws IOException {
+        StringBuilder sb = null;
+        for (int ndx = 0; ndx < value.length(); ndx++) {
+            char c = value.charAt(ndx);
+            if ('"' == c || '\\' == c || 0x20 > c) {
+                if (null == sb) {
+                    sb = new StringBuilder(value.length() + 16).append(value, 0, ndx);
+                }
+                switch (c) {
+                    case '"':
+                        sb.append("\\\"");
+                        break;
+                    case '\\':
+                        sb.append("\\\\");
+                        break;
+                    case '\n':
+                        sb.append("\\n");
+                        break;
+                    case '\r':
+                        sb.append("\\r");
+                        break;
+                    case '\t':
+                        sb.append("\\t");
+                        break;
+                    default:
+                        sb.append(String.format("\\u%04x", (int) c));
+                }
+            } else if (null != sb) {
+                sb.append(c);
+            }
+        }
+        output.write((byte) '"').write(null != sb ? sb : value).write((byte) '"');
+    }
+}
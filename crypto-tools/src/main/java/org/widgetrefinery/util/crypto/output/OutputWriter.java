@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto.output;
+
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A large write buffer in front of a channel. Unlike
+ * {@link java.io.PrintStream}, nothing is flushed until the buffer fills up
+ * or {@link #flush()} is called, and nothing is synchronized, so callers
+ * writing from several threads must take turns.
+ *
+ * @since 10/17/26 4:55 PM
+ */
+public class OutputWriter implements Closeable, Flushable {
+    /**
+     * Default buffer size.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer          buffer;
+    private final CharsetEncoder      encoder;
+    private final boolean             asciiCompatible;
+
+    /**
+     * @param channel channel to write to
+     */
+    public OutputWriter(final WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE, Charset.defaultCharset());
+    }
+
+    /**
+     * @param channel    channel to write to
+     * @param bufferSize size of the write buffer, in bytes
+     * @param charset    charset to encode text with
+     */
+    public OutputWriter(final WritableByteChannel channel, final int bufferSize, final Charset charset) {
+        if (16 > bufferSize) {
+            throw new IllegalArgumentException("invalid buffer size (" + bufferSize + ')');
+        }
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.encoder = charset.newEncoder()
+                              .onMalformedInput(CodingErrorAction.REPLACE)
+                              .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.asciiCompatible = isAsciiCompatible(charset);
+    }
+
+    private static boolean isAsciiCompatible(final Charset charset) {
+        byte[] ascii = new byte[128];
+        for (int ndx = 0; ndx < ascii.length; ndx++) {
+            ascii[ndx] = (byte) ndx;
+        }
+        return Arrays.equals(ascii, new String(ascii, StandardCharsets.US_ASCII).getBytes(charset));
+    }
+
+    /**
+     * Creates a writer for standard out. Closing the writer closes standard
+     * out.
+     *
+     * @return new writer
+     */
+    public static OutputWriter forStdout() {
+        return new OutputWriter(new FileOutputStream(FileDescriptor.out).getChannel());
+    }
+
+    /**
+     * Makes sure the buffer has room for the given number of bytes, flushing
+     * it if needed.
+     *
+     * @param length number of bytes about to be written, no more than the
+     *               buffer size
+     * @return buffer to write to
+     * @throws IOException if the buffer could not be flushed
+     */
+    public ByteBuffer reserve(final int length) throws IOException {
+        if (this.buffer.remaining() < length) {
+            flush();
+            if (this.buffer.capacity() < length) {
+                throw new IllegalArgumentException("cannot reserve " + length + " bytes in a " + this.buffer.capacity() + " byte buffer");
+            }
+        }
+        return this.buffer;
+    }
+
+    public OutputWriter write(final byte value) throws IOException {
+        reserve(1).put(value);
+        return this;
+    }
+
+    public OutputWriter write(final byte[] data, final int offset, final int length) throws IOException {
+        int written = 0;
+        while (written < length) {
+            if (!this.buffer.hasRemaining()) {
+                flush();
+            }
+            int chunk = Math.min(length - written, this.buffer.remaining());
+            this.buffer.put(data, offset + written, chunk);
+            written += chunk;
+        }
+        return this;
+    }
+
+    /**
+     * Writes a big-endian int.
+     *
+     * @param value value to write
+     * @return this writer
+     * @throws IOException if the buffer could not be flushed
+     */
+    public OutputWriter writeInt(final int value) throws IOException {
+        reserve(4).putInt(value);
+        return this;
+    }
+
+    /**
+     * Writes the given data through the given encoder.
+     *
+     * @param byteEncoder encoder to use
+     * @param data        data to encode
+     * @return this writer
+     * @throws IOException if the buffer could not be flushed
+     */
+    public OutputWriter write(final ByteEncoder byteEncoder, final byte[] data) throws IOException {
+        int step = 3 * (this.buffer.capacity() / 8);
+        for (int offset = 0; offset < data.length; offset += step) {
+            int length = Math.min(step, data.length - offset);
+            byteEncoder.encode(data, offset, length, reserve(byteEncoder.getEncodedLength(length)));
+        }
+        return this;
+    }
+
+    /**
+     * Writes the given text in the writer's charset. Plain ASCII text is
+     * copied straight into the buffer.
+     *
+     * @param text text to write
+     * @return this writer
+     * @throws IOException if the buffer could not be flushed
+     */
+    public OutputWriter write(final CharSequence text) throws IOException {
+        int length = text.length();
+        if (this.asciiCompatible && length <= this.buffer.capacity()) {
+            ByteBuffer output = reserve(length);
+            int start = output.position();
+            int ndx = 0;
+            for (; ndx < length; ndx++) {
+                char c = text.charAt(ndx);
+                if (0x80 <= c) {
+                    break;
+                }
+                output.put((byte) c);
+            }
+            if (ndx == length) {
+                return this;
+            }
+            output.position(start);
+        }
+
+        CharBuffer chars = CharBuffer.wrap(text);
+        this.encoder.reset();
+        for (CoderResult result = this.encoder.encode(chars, this.buffer, true); result.isOverflow(); result = this.encoder.encode(chars, this.buffer, true)) {
+            flush();
+        }
+        while (this.encoder.flush(this.buffer).isOverflow()) {
+            flush();
+        }
+        return this;
+    }
+
+    /**
+     * Writes out everything in the buffer.
+     *
+     * @throws IOException if an error occurred writing to the channel
+     */
+    @Override
+    public void flush() throws IOException {
+        this.buffer.flip();
+        try {
+            while (this.buffer.hasRemaining()) {
+                this.channel.write(this.buffer);
+            }
+        } finally {
+            this.buffer.compact();
+        }
+    }
+
+    /**
+     * Flushes the buffer and closes the channel.
+     *
+     * @throws IOException if an error occurred writing to the channel
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            this.channel.close();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto.output;
+
+import java.io.IOException;
+
+/**
+ * The original output format: <code>source|name: hash hash ...</code>, one
+ * line per input.
+ *
+ * @since 10/17/26 5:10 PM
+ */
+public class PrefixFormat implements ResultFormat {
+    private final ByteEncoder byteEncoder;
+
+    /**
+     * @param byteEncoder encoder for the hashes
+     */
+    public PrefixFormat(final ByteEncoder byteEncoder) {
+        this.byteEncoder = byteEncoder;
+    }
+
+    @Override
+    public void write(final OutputWriter output, final String source, final String name, final byte[][] results) throws IOException {
+        output.write(source);
+        if (null != name) {
+            output.write((byte) '|').write(name);
+        }
+        output.write((byte) ':');
+        for (byte[] result : results) {
+            output.write((byte) ' ').write(this.byteEncoder, result);
+        }
+        output.write((byte) '\n');
+    }
+}
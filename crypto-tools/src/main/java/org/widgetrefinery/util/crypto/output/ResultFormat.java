@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto.output;
+
+import java.io.IOException;
+
+/**
+ * Writes the hashes of one input to an {@link OutputWriter}.
+ *
+ * @since 10/17/26 5:05 PM
+ */
+public interface ResultFormat {
+    /**
+     * Source type for files.
+     */
+    String SOURCE_FILE  = "file";
+    /**
+     * Source type for strings given on the command line.
+     */
+    String SOURCE_INPUT = "input";
+    /**
+     * Source type for standard in.
+     */
+    String SOURCE_STDIN = "stdin";
+    /**
+     * Source type for content-defined chunks, named
+     * <code>name@offset+length</code>.
+     */
+    String SOURCE_CHUNK = "chunk";
+
+    /**
+     * Writes one record.
+     *
+     * @param output  writer to write to
+     * @param source  kind of input that was hashed, such as {@link #SOURCE_FILE}
+     * @param name    file name or string that was hashed, or null for standard in
+     * @param results hashes of the input, in encoding order
+     * @throws IOException if an error occurred writing the record
+     */
+    void write(OutputWriter output, String source, String name, byte[][] results) throws IOException;
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto.output;
+
+import java.io.IOException;
+
+/**
+ * The format written by sha1sum and friends: <code>hash  name</code>, one
+ * line per hash, so the output of a single encoding can be checked with
+ * <code>sha1sum -c</code>. Standard in is named "-". Names containing a
+ * backslash or newline are escaped and the line is marked with a leading
+ * backslash, as sha1sum does.
+ *
+ * @since 10/17/26 5:15 PM
+ */
+public class SumFormat implements ResultFormat {
+    private final ByteEncoder byteEncoder;
+
+    /**
+     * @param byteEncoder encoder for the hashes
+     */
+    public SumFormat(final ByteEncoder byteEncoder) {
+        this.byteEncoder = byteEncoder;
+    }
+
+    @Override
+    public void write(final OutputWriter output, final String source, final String name, final byte[][] results) throws IOException {
+        String line = null != name ? name : "-";
+        boolean escaped = 0 <= line.indexOf('\\') || 0 <= line.indexOf('\n');
+        if (escaped) {
+            line = line.replace("\\", "\\\\").replace("\n", "\\n");
+        }
+        for (byte[] result : results) {
+            if (escaped) {
+                output.write((byte) '\\');
+            }
+            output.write(this.byteEncoder, result).write((byte) ' ').write((byte) ' ').write(line).write((byte) '\n');
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import junit.framework.TestCase;
+import org.widgetrefinery.util.crypto.output.ByteEncoder;
+import org.widgetrefinery.util.crypto.output.OutputWriter;
+import org.widgetrefinery.util.crypto.output.SumFormat;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * @since 10/17/26 8:55 PM
+ */
+public class TestBinaryManifest extends TestCase {
+    private Path file;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        this.file = Files.createTempFile("manifest", ".bin");
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(this.file);
+        super.tearDown();
+    }
+
+    public void testWriteAndLookup() throws IOException {
+        BinaryManifest.Writer writer = new BinaryManifest.Writer(new String[]{"c", "x"}, new int[]{4, 8});
+        int count = 1000;
+        for (int ndx = count - 1; 0 <= ndx; ndx--) {
+            writer.add("dir/file-" + ndx + "-é", results(ndx % 100, ndx));
+        }
+        writer.write(this.file);
+        assertTrue(BinaryManifest.isBinaryManifest(this.file));
+
+        BinaryManifest manifest = BinaryManifest.open(this.file);
+        assertEquals(count, manifest.size());
+        assertEquals(Arrays.asList("c", "x"), Arrays.asList(manifest.getEncodings()));
+        assertTrue(Arrays.equals(new int[]{4, 8}, manifest.getResultLengths()));
+        for (int record = 1; record < count; record++) {
+            assertTrue(0 > manifest.getPath(record - 1).compareTo(manifest.getPath(record)));
+        }
+
+        int record = manifest.findPath("dir/file-123-é");
+        assertEquals("dir/file-123-é", manifest.getPath(record));
+        byte[][] results = manifest.getResults(record);
+        assertTrue(Arrays.equals(results(23, 123)[0], results[0]));
+        assertTrue(Arrays.equals(results(23, 123)[1], results[1]));
+        assertEquals(-1, manifest.findPath("dir/file-1000-é"));
+        assertEquals(-1, manifest.findPath(""));
+
+        int[] matches = manifest.findDigest(results(23, 0)[0]);
+        assertEquals(10, matches.length);
+        for (int match : matches) {
+            assertTrue(manifest.getPath(match).matches("dir/file-[0-9]*23-é"));
+        }
+        assertEquals(0, manifest.findDigest(results(100, 0)[0]).length);
+        assertEquals(0, manifest.findDigest(new byte[3]).length);
+    }
+
+    public void testTextRoundTrip() throws IOException {
+        String text = "0000000a0000000000000001  b\n" +
+                      "\\0000000b0000000000000002  a\\\\c\\nd\n" +
+                      "0000000c0000000000000003  with space\n";
+        ManifestParser parser = new ManifestParser(new BufferedReader(new StringReader(text)), new int[]{12}, ByteEncoder.HEX);
+        BinaryManifest.Writer writer = new BinaryManifest.Writer(new String[]{"cx"}, new int[]{12});
+        for (ManifestParser.Entry entry = parser.next(); null != entry; entry = parser.next()) {
+            writer.add(entry.getName(), entry.getResults());
+        }
+        writer.write(this.file);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputWriter output = new OutputWriter(Channels.newChannel(bytes));
+        BinaryManifest.open(this.file).export(output, new SumFormat(ByteEncoder.HEX));
+        output.flush();
+        assertEquals("\\0000000b0000000000000002  a\\\\c\\nd\n" +
+                     "0000000a0000000000000001  b\n" +
+                     "0000000c0000000000000003  with space\n", bytes.toString());
+    }
+
+    public void testBadFile() throws IOException {
+        Files.write(this.file, "not a manifest, just some text".getBytes());
+        assertFalse(BinaryManifest.isBinaryManifest(this.file));
+        try {
+            BinaryManifest.open(this.file);
+            assertTrue("open() did not throw an exception", false);
+        } catch (IOException e) {
+            assertEquals("not a binary manifest (" + this.file + ')', e.getMessage());
+        }
+    }
+
+    private static byte[][] results(final int first, final long second) {
+        return new byte[][]{ByteBuffer.allocate(4).putInt(first).array(), ByteBuffer.allocate(8).putLong(second).array()};
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import junit.framework.TestCase;
+import org.widgetrefinery.util.StringUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * @since 10/17/26 4:55 PM
+ */
+public class TestBufferedHashSession extends TestCase {
+    private static final String MD5_FOOBAR = "3858f62230ac3c915f300c664312c63f";
+
+    public void testDefaults() throws Exception {
+        CryptoHash cryptoHash = new StreamOnlyCryptoHash();
+        HashSession session = cryptoHash.createSession();
+        assertTrue(session instanceof BufferedHashSession);
+        assertEquals(16, session.getDigestLength());
+        session.update("foo".getBytes(), 0, 3);
+        session.update(ByteBuffer.wrap("bar".getBytes()));
+        assertEquals(MD5_FOOBAR, StringUtil.toHexString(AbstractCryptoHash.digest(session)));
+        session.update(new byte[1000], 0, 1000);
+        assertEquals(StringUtil.toHexString(MessageDigest.getInstance("MD5").digest(new byte[1000])), StringUtil.toHexString(AbstractCryptoHash.digest(session)));
+
+        Path file = Files.createTempFile("buffered", ".txt");
+        try {
+            Files.write(file, "foobar".getBytes());
+            assertEquals(MD5_FOOBAR, StringUtil.toHexString(cryptoHash.getHash(file)));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    public void testChained() throws Exception {
+        CryptoHash cryptoHash = DigestCryptoHash.createSHA1(new StreamOnlyCryptoHash());
+        String expected = StringUtil.toHexString(MessageDigest.getInstance("SHA-1").digest(MessageDigest.getInstance("MD5").digest("foobar".getBytes())));
+        assertEquals(expected, StringUtil.toHexString(cryptoHash.getHash("foobar")));
+        HashSession session = cryptoHash.createSession();
+        session.update("foobar".getBytes(), 0, 6);
+        assertEquals(expected, StringUtil.toHexString(AbstractCryptoHash.digest(session)));
+    }
+
+    /**
+     * Implements only the methods CryptoHash had before sessions and file
+     * hashing were added.
+     */
+    private static class StreamOnlyCryptoHash implements CryptoHash {
+        @Override
+        public byte[] getHash(final InputStream input) throws IOException {
+            try {
+                DigestInputStream stream = new DigestInputStream(input, MessageDigest.getInstance("MD5"));
+                byte[] buffer = new byte[64];
+                while (0 <= stream.read(buffer)) {
+                    // digest as we go
+                }
+                return stream.getMessageDigest().digest();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public byte[] getHash(final String input) {
+            try {
+                return getHash(new ByteArrayInputStream(input.getBytes()));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -24,6 +24,10 @@ import org.widgetrefinery.util.StringUtil;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
 
 /**
  * @since 3/4/12 7:56 PM
@@ -42,6 +46,29 @@ public class TestCRC32CryptoHash extends TestCase {
         assertEquals("9ef61f95", StringUtil.toHexString(result));
     }
 
+    public void testPathHash() throws Exception {
+        Path input = Files.createTempFile("crc32", ".txt");
+        try {
+            Files.write(input, "foobar".getBytes());
+            CryptoHash cryptoHash = new CRC32CryptoHash();
+            byte[] result = cryptoHash.getHash(input);
+            assertEquals("9ef61f95", StringUtil.toHexString(result));
+        } finally {
+            Files.delete(input);
+        }
+    }
+
+    public void testEmptyPathHash() throws Exception {
+        Path input = Files.createTempFile("crc32", ".txt");
+        try {
+            CryptoHash cryptoHash = new CRC32CryptoHash();
+            byte[] result = cryptoHash.getHash(input);
+            assertEquals("00000000", StringUtil.toHexString(result));
+        } finally {
+            Files.delete(input);
+        }
+    }
+
     public void testChainedInputStreamHash() throws Exception {
         final InputStream input = new ByteArrayInputStream("hello world".getBytes());
 
@@ -75,4 +102,88 @@ public class TestCRC32CryptoHash extends TestCase {
 
         context.assertIsSatisfied();
     }
+
+    public void testChainedPathHash() throws Exception {
+        final Path input = Files.createTempFile("crc32", ".txt");
+        try {
+            Mockery context = new Mockery();
+            final CryptoHash mockedCryptoHash = context.mock(CryptoHash.class);
+            context.checking(new Expectations() {{
+                oneOf(mockedCryptoHash).getHash(input);
+                will(returnValue("foobar".getBytes()));
+            }});
+
+            CryptoHash cryptoHash = new CRC32CryptoHash(mockedCryptoHash);
+            byte[] result = cryptoHash.getHash(input);
+            assertEquals("9ef61f95", StringUtil.toHexString(result));
+
+            context.assertIsSatisfied();
+        } finally {
+            Files.delete(input);
+        }
+    }
+
+    public void testSession() throws Exception {
+        HashSession session = new CRC32CryptoHash().createSession();
+        assertEquals(4, session.getDigestLength());
+        byte[] output = new byte[6];
+        session.update("foo".getBytes(), 0, 3);
+        session.update(ByteBuffer.wrap("xbarx".getBytes(), 1, 3));
+        assertEquals(4, session.digestInto(output, 2));
+        assertEquals("00009ef61f95", StringUtil.toHexString(output));
+
+        session.update("hello".getBytes(), 0, 5);
+        session.reset();
+        session.update("foobar".getBytes(), 0, 6);
+        session.digestInto(output, 0);
+        assertEquals("9ef61f951f95", StringUtil.toHexString(output));
+
+        try {
+            session.digestInto(output, 3);
+            assertTrue("digestInto() did not throw exception", false);
+        } catch (IllegalArgumentException e) {
+            assertEquals("no room for a 4 byte digest at offset 3", e.getMessage());
+        }
+    }
+
+    public void testChainedSession() throws Exception {
+        HashSession session = new CRC32CryptoHash(DigestCryptoHash.createMD5()).createSession();
+        byte[] output = new byte[4];
+        for (int ndx = 0; ndx < 2; ndx++) {
+            session.update("hello ".getBytes(), 0, 6);
+            session.update("world".getBytes(), 0, 5);
+            session.digestInto(output, 0);
+            assertEquals(StringUtil.toHexString(new CRC32CryptoHash(DigestCryptoHash.createMD5()).getHash("hello world")),
+                         StringUtil.toHexString(output));
+        }
+    }
+
+    public void testResume() throws Exception {
+        byte[] data = new byte[100000];
+        new Random(0).nextBytes(data);
+        byte[] expected = new CRC32CryptoHash().getHash(new ByteArrayInputStream(data));
+        ResumableHashSession first = (ResumableHashSession) new CRC32CryptoHash().createSession();
+        first.update(data, 0, 12345);
+        byte[] state = first.saveState();
+        first.update(data, 12345, data.length - 12345);
+        assertEquals(StringUtil.toHexString(expected), StringUtil.toHexString(AbstractCryptoHash.digest(first)));
+
+        ResumableHashSession second = (ResumableHashSession) new CRC32CryptoHash().createSession();
+        second.restoreState(state);
+        second.update(ByteBuffer.wrap(data, 12345, data.length - 12345));
+        assertEquals(StringUtil.toHexString(expected), StringUtil.toHexString(second.saveState()));
+        assertEquals(StringUtil.toHexString(expected), StringUtil.toHexString(AbstractCryptoHash.digest(second)));
+
+        second.restoreState(state);
+        assertEquals(StringUtil.toHexString(state), StringUtil.toHexString(AbstractCryptoHash.digest(second)));
+        second.update("foobar".getBytes(), 0, 6);
+        assertEquals("9ef61f95", StringUtil.toHexString(AbstractCryptoHash.digest(second)));
+
+        try {
+            second.restoreState(new byte[3]);
+            assertTrue("restoreState() did not throw exception", false);
+        } catch (IllegalArgumentException e) {
+            assertEquals("invalid CRC32 state", e.getMessage());
+        }
+    }
 }
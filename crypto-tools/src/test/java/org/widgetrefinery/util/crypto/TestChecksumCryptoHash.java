@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import junit.framework.TestCase;
+import org.widgetrefinery.util.StringUtil;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.Checksum;
+
+/**
+ * @since 10/17/26 4:20 PM
+ */
+public class TestChecksumCryptoHash extends TestCase {
+    public void testCRC32C() throws Exception {
+        assertTrue(ChecksumCryptoHash.isSupported(ChecksumCryptoHash.CRC32C));
+        CryptoHash cryptoHash = ChecksumCryptoHash.createCRC32C(null);
+        assertEquals("e3069283", StringUtil.toHexString(cryptoHash.getHash("123456789")));
+        assertEquals("e3069283", StringUtil.toHexString(cryptoHash.getHash(new ByteArrayInputStream("123456789".getBytes()))));
+    }
+
+    public void testAdler32() throws Exception {
+        CryptoHash cryptoHash = ChecksumCryptoHash.createAdler32(null);
+        assertEquals("091e01de", StringUtil.toHexString(cryptoHash.getHash("123456789")));
+        assertEquals("00000001", StringUtil.toHexString(cryptoHash.getHash("")));
+    }
+
+    public void testPathHash() throws Exception {
+        Path input = Files.createTempFile("checksum", ".txt");
+        try {
+            Files.write(input, "123456789".getBytes());
+            assertEquals("e3069283", StringUtil.toHexString(ChecksumCryptoHash.createCRC32C(null).getHash(input)));
+            assertEquals("091e01de", StringUtil.toHexString(ChecksumCryptoHash.createAdler32(null).getHash(input)));
+        } finally {
+            Files.delete(input);
+        }
+    }
+
+    public void testDirectBufferSession() throws Exception {
+        ByteBuffer input = ByteBuffer.allocateDirect(9);
+        input.put("123456789".getBytes()).flip();
+        HashSession session = ChecksumCryptoHash.createCRC32C(null).createSession();
+        session.update(input);
+        assertFalse(input.hasRemaining());
+        byte[] output = new byte[6];
+        assertEquals(4, session.digestInto(output, 1));
+        assertEquals("00e306928300", StringUtil.toHexString(output));
+
+        byte[] data = new byte[3 * 8192 + 5];
+        new Random(0).nextBytes(data);
+        input = ByteBuffer.allocateDirect(data.length);
+        input.put(data).flip();
+        session.update(input);
+        assertEquals(StringUtil.toHexString(ChecksumCryptoHash.createCRC32C(null).getHash(new ByteArrayInputStream(data))),
+                     StringUtil.toHexString(AbstractCryptoHash.digest(session)));
+    }
+
+    public void testChainedHash() throws Exception {
+        CryptoHash cryptoHash = ChecksumCryptoHash.createAdler32(DigestCryptoHash.createMD5());
+        byte[] md5 = DigestCryptoHash.createMD5().getHash("foobar");
+        assertEquals(StringUtil.toHexString(ChecksumCryptoHash.createAdler32(null).computeHash(md5)), StringUtil.toHexString(cryptoHash.getHash("foobar")));
+    }
+
+    public void testBadChecksum() throws Exception {
+        try {
+            new ChecksumCryptoHash(null, NoDefaultConstructor.class);
+            assertTrue("constructor did not throw exception", false);
+        } catch (IllegalArgumentException e) {
+            assertEquals(NoDefaultConstructor.class.getName() + " has no public no-arg constructor", e.getMessage());
+        }
+    }
+
+    public static class NoDefaultConstructor implements Checksum {
+        public NoDefaultConstructor(final int seed) {
+        }
+
+        @Override
+        public void update(final int b) {
+        }
+
+        @Override
+        public void update(final byte[] b, final int off, final int len) {
+        }
+
+        @Override
+        public long getValue() {
+            return 0;
+        }
+
+        @Override
+        public void reset() {
+        }
+    }
+}
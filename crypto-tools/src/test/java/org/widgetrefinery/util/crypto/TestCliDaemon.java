@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * @since 10/17/26 10:05 PM
+ */
+public class TestCliDaemon extends TestCase {
+    private Path      directory;
+    private Path      stateFile;
+    private CliDaemon cliDaemon;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        this.directory = Files.createTempDirectory("daemon");
+        this.stateFile = this.directory.resolve("state.properties");
+        this.cliDaemon = new CliDaemon(0, 2, this.stateFile);
+        this.cliDaemon.start();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        this.cliDaemon.stop();
+        assertFalse(Files.exists(this.stateFile));
+        Files.deleteIfExists(this.directory);
+        super.tearDown();
+    }
+
+    public void testStateFile() throws IOException {
+        Properties state = new Properties();
+        InputStream input = Files.newInputStream(this.stateFile);
+        try {
+            state.load(input);
+        } finally {
+            input.close();
+        }
+        assertEquals(String.valueOf(this.cliDaemon.getPort()), state.getProperty("port"));
+        assertTrue(state.getProperty("token").matches("[0-9a-f]{32}"));
+    }
+
+    public void testRequests() throws IOException {
+        DaemonClient client = new DaemonClient(this.stateFile);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        assertEquals(0, client.forward(new String[]{"-e", "c", "-s", "foobar"}, new ByteArrayInputStream(new byte[0]), out, err));
+        assertEquals("input|foobar: 9ef61f95\n", out.toString());
+        assertEquals("", err.toString());
+
+        out.reset();
+        assertEquals(0, client.forward(new String[]{"-e", "c"}, new ByteArrayInputStream("foobar".getBytes()), out, err));
+        assertEquals("stdin: 9ef61f95\n", out.toString());
+
+        out.reset();
+        Path file = this.directory.resolve("foo.txt");
+        Files.write(file, "foobar".getBytes());
+        try {
+            assertEquals(0, client.forward(new String[]{"-e", "c", file.toString()}, new ByteArrayInputStream(new byte[0]), out, err));
+            assertEquals("file|" + file + ": 9ef61f95\n", out.toString());
+        } finally {
+            Files.delete(file);
+        }
+
+        out.reset();
+        assertEquals(-1, client.forward(new String[]{"-e", "c", "--read-ahead=2", "-s", "foobar"}, new ByteArrayInputStream(new byte[0]), out, err));
+        assertEquals("", out.toString());
+        assertEquals("--read-ahead cannot be used in a daemon request\n", err.toString());
+    }
+
+    public void testStalledClients() throws IOException {
+        this.cliDaemon.stop();
+        this.cliDaemon = new CliDaemon(0, 1, this.stateFile);
+        this.cliDaemon.setHandshakeTimeout(500);
+        this.cliDaemon.start();
+
+        Socket[] stalled = new Socket[3];
+        try {
+            for (int ndx = 0; ndx < stalled.length; ndx++) {
+                stalled[ndx] = new Socket(InetAddress.getLoopbackAddress(), this.cliDaemon.getPort());
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(0, new DaemonClient(this.stateFile).forward(new String[]{"-e", "c", "-s", "foobar"}, new ByteArrayInputStream(new byte[0]),
+                                                                     out, new ByteArrayOutputStream()));
+            assertEquals("input|foobar: 9ef61f95\n", out.toString());
+
+            for (Socket socket : stalled) {
+                socket.setSoTimeout(10000);
+                assertEquals(-1, socket.getInputStream().read());
+            }
+        } finally {
+            for (Socket socket : stalled) {
+                if (null != socket) {
+                    socket.close();
+                }
+            }
+        }
+    }
+
+    public void testBadToken() throws IOException {
+        Properties state = new Properties();
+        state.setProperty("port", String.valueOf(this.cliDaemon.getPort()));
+        state.setProperty("token", "0123456789abcdef0123456789abcdef");
+        Path badStateFile = this.directory.resolve("bad.properties");
+        OutputStream output = Files.newOutputStream(badStateFile);
+        try {
+            state.store(output, null);
+        } finally {
+            output.close();
+        }
+        try {
+            new DaemonClient(badStateFile).forward(new String[]{"-e", "c", "-s", "foobar"}, new ByteArrayInputStream(new byte[0]),
+                                                   new ByteArrayOutputStream(), new ByteArrayOutputStream());
+            assertTrue("forward() did not throw an exception", false);
+        } catch (IOException e) {
+            // the daemon hangs up without a response
+        } finally {
+            Files.delete(badStateFile);
+        }
+    }
+}
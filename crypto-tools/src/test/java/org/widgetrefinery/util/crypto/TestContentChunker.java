@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * @since 10/17/26 1:50 PM
+ */
+public class TestContentChunker extends TestCase {
+    public void testChunks() throws Exception {
+        byte[] data = new byte[1024 * 1024];
+        new Random(0).nextBytes(data);
+        ContentChunker chunker = new ContentChunker(2048, 8192, 32768, DigestCryptoHash.createMD5(), new CRC32CryptoHash());
+        List<long[]> chunks = new ArrayList<long[]>();
+        List<byte[]> digests = new ArrayList<byte[]>();
+        long count = chunker.chunk(new ByteArrayInputStream(data), collect(chunks, digests));
+
+        assertEquals(chunks.size(), count);
+        assertTrue(64 < count && 256 > count);
+        long offset = 0;
+        for (int ndx = 0; ndx < chunks.size(); ndx++) {
+            long[] chunk = chunks.get(ndx);
+            assertEquals(offset, chunk[0]);
+            assertTrue(32768 >= chunk[1]);
+            assertTrue(ndx == chunks.size() - 1 || 2048 < chunk[1]);
+            byte[] slice = Arrays.copyOfRange(data, (int) chunk[0], (int) (chunk[0] + chunk[1]));
+            assertTrue(Arrays.equals(DigestCryptoHash.createMD5().getHash(new ByteArrayInputStream(slice)), digests.get(2 * ndx)));
+            assertTrue(Arrays.equals(new CRC32CryptoHash().getHash(new ByteArrayInputStream(slice)), digests.get(2 * ndx + 1)));
+            offset += chunk[1];
+        }
+        assertEquals(data.length, offset);
+
+        Path file = Files.createTempFile("chunks", ".bin");
+        try {
+            Files.write(file, data);
+            List<long[]> fileChunks = new ArrayList<long[]>();
+            List<byte[]> fileDigests = new ArrayList<byte[]>();
+            long before = IOStrategy.getDefault().getBytesRead();
+            chunker.chunk(file, collect(fileChunks, fileDigests));
+            assertEquals(data.length, IOStrategy.getDefault().getBytesRead() - before);
+            assertEquals(chunks.size(), fileChunks.size());
+            for (int ndx = 0; ndx < digests.size(); ndx++) {
+                assertTrue(Arrays.equals(digests.get(ndx), fileDigests.get(ndx)));
+            }
+        } finally {
+            Files.delete(file);
+        }
+
+        assertEquals(0, chunker.chunk(new ByteArrayInputStream(new byte[0]), collect(chunks, digests)));
+    }
+
+    public void testInsertion() throws Exception {
+        byte[] data = new byte[1024 * 1024];
+        new Random(1).nextBytes(data);
+        byte[] edited = new byte[data.length + 100];
+        System.arraycopy(data, 0, edited, 0, 300000);
+        System.arraycopy(data, 300000, edited, 300100, data.length - 300000);
+        ContentChunker chunker = new ContentChunker(2048, 8192, 32768, DigestCryptoHash.createSHA1());
+
+        List<byte[]> digests = new ArrayList<byte[]>();
+        chunker.chunk(new ByteArrayInputStream(data), collect(new ArrayList<long[]>(), digests));
+        Set<String> original = new HashSet<String>();
+        for (byte[] digest : digests) {
+            original.add(Arrays.toString(digest));
+        }
+        digests.clear();
+        chunker.chunk(new ByteArrayInputStream(edited), collect(new ArrayList<long[]>(), digests));
+        int changed = 0;
+        for (byte[] digest : digests) {
+            if (!original.contains(Arrays.toString(digest))) {
+                changed++;
+            }
+        }
+        assertTrue("changed " + changed + " of " + digests.size(), 0 < changed && 3 >= changed);
+    }
+
+    public void testInvalidSizes() {
+        try {
+            new ContentChunker(8192, 8192, 32768, new CRC32CryptoHash());
+            assertTrue("constructor did not throw an exception", false);
+        } catch (IllegalArgumentException e) {
+            assertEquals("invalid chunk sizes (8192/8192/32768)", e.getMessage());
+        }
+        try {
+            new ContentChunker(2048, 8192, 32768);
+            assertTrue("constructor did not throw an exception", false);
+        } catch (IllegalArgumentException e) {
+            assertEquals("no hashes given", e.getMessage());
+        }
+    }
+
+    private static ContentChunker.ChunkHandler collect(final List<long[]> chunks, final List<byte[]> digests) {
+        return new ContentChunker.ChunkHandler() {
+            @Override
+            public void onChunk(final long offset, final int length, final byte[][] results) {
+                chunks.add(new long[]{offset, length});
+                for (byte[] result : results) {
+                    digests.add(result.clone());
+                }
+            }
+        };
+    }
+}
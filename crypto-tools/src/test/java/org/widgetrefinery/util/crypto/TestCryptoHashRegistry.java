@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * @since 10/17/26 4:35 PM
+ */
+public class TestCryptoHashRegistry extends TestCase {
+    public void testBuiltIns() throws Exception {
+        CryptoHashRegistry registry = CryptoHashRegistry.getDefault();
+        assertSame(registry, CryptoHashRegistry.getDefault());
+        for (BuiltInCryptoHashFactory factory : BuiltInCryptoHashFactory.values()) {
+            assertSame(factory, registry.get(factory.getCode()));
+            assertSame(factory, registry.get(factory.getName().toUpperCase()));
+            assertNotNull(factory.create(null));
+        }
+        assertNull(registry.get('?'));
+        assertNull(registry.get("nope"));
+    }
+
+    public void testServiceLoader() throws Exception {
+        CryptoHashRegistry registry = CryptoHashRegistry.load(getClass().getClassLoader());
+        CryptoHashFactory factory = registry.get('i');
+        assertTrue(factory instanceof IdentityFactory);
+        assertSame(factory, registry.get("identity"));
+        assertEquals("foobar", new String(factory.create(null).getHash("foobar")));
+
+        Iterator<CryptoHashFactory> iterator = registry.getFactories().iterator();
+        char previous = iterator.next().getCode();
+        while (iterator.hasNext()) {
+            char code = iterator.next().getCode();
+            assertTrue(previous < code);
+            previous = code;
+        }
+    }
+
+    public void testDuplicates() throws Exception {
+        CryptoHashRegistry registry = new CryptoHashRegistry();
+        registry.register(BuiltInCryptoHashFactory.MD5);
+        try {
+            registry.register(BuiltInCryptoHashFactory.MD5);
+            assertTrue("register() did not throw exception", false);
+        } catch (IllegalArgumentException e) {
+            assertEquals("hash m|md5 clashes with m|md5", e.getMessage());
+        }
+        try {
+            registry.register(new IdentityFactory() {
+                @Override
+                public String getName() {
+                    return "MD5";
+                }
+            });
+            assertTrue("register() did not throw exception", false);
+        } catch (IllegalArgumentException e) {
+            assertEquals("hash i|MD5 clashes with m|md5", e.getMessage());
+        }
+        assertEquals(1, registry.getFactories().size());
+    }
+
+    /**
+     * Loaded through META-INF/services in the test resources.
+     */
+    public static class IdentityFactory implements CryptoHashFactory {
+        @Override
+        public char getCode() {
+            return 'i';
+        }
+
+        @Override
+        public String getName() {
+            return "identity";
+        }
+
+        @Override
+        public String getDescription() {
+            return "returns the input as is";
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        public CryptoHash create(final CryptoHash chain) {
+            return new CryptoHash() {
+                @Override
+                public byte[] getHash(final InputStream input) throws IOException {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public byte[] getHash(final Path input) throws IOException {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public byte[] getHash(final String input) {
+                    return input.getBytes();
+                }
+
+                @Override
+                public HashSession createSession() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import junit.framework.TestCase;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.Provider;
+import java.security.Security;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * @since 10/17/26 7:50 PM
+ */
+public class TestDigestCalibrator extends TestCase {
+    private Path dir;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        this.dir = Files.createTempDirectory("calibrator");
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        Security.removeProvider(SlowProvider.NAME);
+        Files.deleteIfExists(this.dir.resolve("profile.properties"));
+        Files.delete(this.dir);
+        super.tearDown();
+    }
+
+    public void testPicksFastestProvider() throws Exception {
+        Security.insertProviderAt(new SlowProvider(), 1);
+        assertEquals(SlowProvider.NAME, MessageDigest.getInstance("SHA-256").getProvider().getName());
+
+        Map<String, Provider> providers = new DigestCalibrator(64 * 1024, 5L * 1000 * 1000).calibrate("SHA-256", "MD5", "NO-SUCH-DIGEST");
+        assertEquals(2, providers.size());
+        assertEquals("SUN", providers.get("SHA-256").getName());
+        assertEquals("SUN", providers.get("MD5").getName());
+
+        DigestCalibrator.apply(providers);
+        assertEquals("SUN", DigestPool.get("SHA-256").getProvider().getName());
+    }
+
+    public void testProfile() throws Exception {
+        Path profile = this.dir.resolve("profile.properties");
+        assertNull(DigestCalibrator.load(profile));
+
+        DigestCalibrator.save(profile, Collections.singletonMap("SHA-256", Security.getProvider("SUN")));
+        Map<String, Provider> providers = DigestCalibrator.load(profile);
+        assertEquals(1, providers.size());
+        assertEquals("SUN", providers.get("SHA-256").getName());
+
+        String content = new String(Files.readAllBytes(profile), "ISO-8859-1");
+        Files.write(profile, content.replace("jvm=", "jvm=other ").getBytes("ISO-8859-1"));
+        assertNull(DigestCalibrator.load(profile));
+    }
+
+    public static class SlowProvider extends Provider {
+        public static final String NAME = "TestSlowProvider";
+
+        private static final long serialVersionUID = 1L;
+
+        public SlowProvider() {
+            super(NAME, 1.0, "slow SHA-256 for testing");
+            put("MessageDigest.SHA-256", SlowDigest.class.getName());
+        }
+    }
+
+    public static class SlowDigest extends MessageDigest {
+        private final MessageDigest md;
+
+        public SlowDigest() throws Exception {
+            super("SHA-256");
+            this.md = MessageDigest.getInstance("SHA-256", "SUN");
+        }
+
+        @Override
+        protected void engineUpdate(final byte input) {
+            this.md.update(input);
+        }
+
+        @Override
+        protected void engineUpdate(final byte[] input, final int offset, final int len) {
+            for (int ndx = 0; ndx < len; ndx++) {
+                this.md.update(input[offset + ndx]);
+            }
+        }
+
+        @Override
+        protected byte[] engineDigest() {
+            return this.md.digest();
+        }
+
+        @Override
+        protected void engineReset() {
+            this.md.reset();
+        }
+    }
+}
@@ -24,6 +24,10 @@ import org.widgetrefinery.util.StringUtil;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
 
 /**
  * @since 3/4/12 8:10 PM
@@ -42,6 +46,18 @@ public class TestDigestCryptoHash extends TestCase {
         assertEquals("3858f62230ac3c915f300c664312c63f", StringUtil.toHexString(result));
     }
 
+    public void testMD5PathHash() throws Exception {
+        Path input = Files.createTempFile("md5", ".txt");
+        try {
+            Files.write(input, "foobar".getBytes());
+            CryptoHash cryptoHash = DigestCryptoHash.createMD5();
+            byte[] result = cryptoHash.getHash(input);
+            assertEquals("3858f62230ac3c915f300c664312c63f", StringUtil.toHexString(result));
+        } finally {
+            Files.delete(input);
+        }
+    }
+
     public void testMD5ChainedInputStreamHash() throws Exception {
         final InputStream input = new ByteArrayInputStream("hello world".getBytes());
 
@@ -89,6 +105,18 @@ public class TestDigestCryptoHash extends TestCase {
         assertEquals("8843d7f92416211de9ebb963ff4ce28125932878", StringUtil.toHexString(result));
     }
 
+    public void testSHA1PathHash() throws Exception {
+        Path input = Files.createTempFile("sha1", ".txt");
+        try {
+            Files.write(input, "foobar".getBytes());
+            CryptoHash cryptoHash = DigestCryptoHash.createSHA1();
+            byte[] result = cryptoHash.getHash(input);
+            assertEquals("8843d7f92416211de9ebb963ff4ce28125932878", StringUtil.toHexString(result));
+        } finally {
+            Files.delete(input);
+        }
+    }
+
     public void testSHA1ChainedInputStreamHash() throws Exception {
         final InputStream input = new ByteArrayInputStream("hello world".getBytes());
 
@@ -122,4 +150,81 @@ public class TestDigestCryptoHash extends TestCase {
 
         context.assertIsSatisfied();
     }
+
+    public void testSession() throws Exception {
+        HashSession session = DigestCryptoHash.createSHA1().createSession();
+        assertEquals(20, session.getDigestLength());
+        byte[] output = new byte[20];
+        for (int ndx = 0; ndx < 2; ndx++) {
+            session.update("foo".getBytes(), 0, 3);
+            session.update(ByteBuffer.wrap("bar".getBytes()));
+            assertEquals(20, session.digestInto(output, 0));
+            assertEquals("8843d7f92416211de9ebb963ff4ce28125932878", StringUtil.toHexString(output));
+        }
+    }
+
+    public void testChainedSession() throws Exception {
+        HashSession session = DigestCryptoHash.createSHA1(DigestCryptoHash.createMD5()).createSession();
+        byte[] output = new byte[20];
+        session.update("foobar".getBytes(), 0, 6);
+        session.digestInto(output, 0);
+        assertEquals(StringUtil.toHexString(DigestCryptoHash.createSHA1(DigestCryptoHash.createMD5()).getHash("foobar")),
+                     StringUtil.toHexString(output));
+    }
+
+    public void testSHA2StringHash() throws Exception {
+        assertEquals("23097d223405d8228642a477bda255b32aadbce4bda0b3f7e36c9da7",
+                     StringUtil.toHexString(DigestCryptoHash.createSHA224(null).getHash("abc")));
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                     StringUtil.toHexString(DigestCryptoHash.createSHA256(null).getHash("abc")));
+        assertEquals("cb00753f45a35e8bb5a03d699ac65007272c32ab0eded1631a8b605a43ff5bed8086072ba1e7cc2358baeca134c825a7",
+                     StringUtil.toHexString(DigestCryptoHash.createSHA384(null).getHash("abc")));
+        assertEquals("ddaf35a193617abacc417349ae20413112e6fa4e89a97ea20a9eeee64b55d39a2192992a274fc1a836ba3c23a3feebbd454d4423643ce80e2a9ac94fa54ca49f",
+                     StringUtil.toHexString(DigestCryptoHash.createSHA512(null).getHash("abc")));
+        assertEquals("53048e2681941ef99b2e29b76b4c7dabe4c2d0c634fc6d46e0e2f13107e7af23",
+                     StringUtil.toHexString(DigestCryptoHash.createSHA512_256(null).getHash("abc")));
+    }
+
+    public void testSHA3StringHash() throws Exception {
+        assertEquals("3a985da74fe225b2045c172d6bd390bd855f086e3e9d525b46bfe24511431532",
+                     StringUtil.toHexString(DigestCryptoHash.createSHA3_256(null).getHash("abc")));
+        assertEquals("b751850b1a57168a5693cd924b6b096e08f621827444f70d884f5d0240d2712e10e116e9192af3c91a7ec57647e3934057340b4cf408d5a56592f8274eec53f0",
+                     StringUtil.toHexString(DigestCryptoHash.createSHA3_512(null).getHash("abc")));
+    }
+
+    public void testResume() throws Exception {
+        byte[] data = new byte[10000];
+        new Random(0).nextBytes(data);
+        for (DigestCryptoHash cryptoHash : new DigestCryptoHash[]{DigestCryptoHash.createMD5(),
+                                                                  DigestCryptoHash.createSHA1(),
+                                                                  DigestCryptoHash.createSHA256(null),
+                                                                  DigestCryptoHash.createSHA512(null),
+                                                                  DigestCryptoHash.createSHA512_256(null)}) {
+            String expected = StringUtil.toHexString(cryptoHash.getHash(new ByteArrayInputStream(data)));
+            ResumableHashSession first = cryptoHash.createResumableSession();
+            first.update(data, 0, 1001);
+            byte[] state = first.saveState();
+            assertNotNull(cryptoHash.getAlgorithmName(), state);
+            first.update(data, 1001, data.length - 1001);
+            assertEquals(expected, StringUtil.toHexString(AbstractCryptoHash.digest(first)));
+
+            ResumableHashSession second = cryptoHash.createResumableSession();
+            second.update("junk".getBytes(), 0, 4);
+            second.restoreState(state);
+            second.update(ByteBuffer.wrap(data, 1001, data.length - 1001));
+            assertEquals(cryptoHash.getAlgorithmName(), expected, StringUtil.toHexString(AbstractCryptoHash.digest(second)));
+        }
+
+        assertNull(DigestCryptoHash.createSHA3_256(null).createResumableSession());
+        assertNull(DigestCryptoHash.createMD5(DigestCryptoHash.createSHA1()).createResumableSession());
+
+        ResumableHashSession session = DigestCryptoHash.createSHA1().createResumableSession();
+        byte[] state = DigestCryptoHash.createMD5().createResumableSession().saveState();
+        try {
+            session.restoreState(state);
+            assertTrue("restoreState() did not throw exception", false);
+        } catch (IllegalArgumentException e) {
+            assertEquals("digest state is for MD5 rather than SHA-1", e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import junit.framework.TestCase;
+import org.widgetrefinery.util.StringUtil;
+
+import java.security.MessageDigest;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @since 10/17/26 2:05 PM
+ */
+public class TestDigestPool extends TestCase {
+    public void testAcquireRelease() throws Exception {
+        DigestPool pool = new DigestPool("MD5", 1);
+        assertEquals("MD5", pool.getAlgorithm());
+        assertNotNull(pool.getProvider());
+
+        MessageDigest md1 = pool.acquire();
+        MessageDigest md2 = pool.acquire();
+        assertNotSame(md1, md2);
+        assertEquals(0, pool.getHits());
+        assertEquals(2, pool.getMisses());
+
+        md1.update("garbage".getBytes());
+        pool.release(md1);
+        pool.release(md2);
+        assertEquals(1, pool.getIdle());
+
+        MessageDigest md3 = pool.acquire();
+        assertSame(md1, md3);
+        assertEquals(1, pool.getHits());
+        assertEquals(0, pool.getIdle());
+        assertEquals("3858f62230ac3c915f300c664312c63f", StringUtil.toHexString(md3.digest("foobar".getBytes())));
+    }
+
+    public void testSharedPool() throws Exception {
+        assertSame(DigestPool.get("SHA-1"), DigestPool.get("SHA-1"));
+        try {
+            DigestPool.get("NO-SUCH-DIGEST");
+            assertTrue("get() did not throw exception", false);
+        } catch (RuntimeException e) {
+            assertEquals("no NO-SUCH-DIGEST provider found", e.getMessage());
+        }
+    }
+
+    public void testCryptoHashRecycles() throws Exception {
+        DigestPool pool = new DigestPool("SHA-1", 4);
+        CryptoHash cryptoHash = new DigestCryptoHash(null, pool);
+        for (int ndx = 0; ndx < 10; ndx++) {
+            assertEquals("8843d7f92416211de9ebb963ff4ce28125932878", StringUtil.toHexString(cryptoHash.getHash("foobar")));
+        }
+        assertEquals(1, pool.getMisses());
+        assertEquals(9, pool.getHits());
+        assertEquals(1, pool.getIdle());
+    }
+
+    public void testReleasedSessions() throws Exception {
+        DigestPool upstreamPool = new DigestPool("MD5", 4);
+        DigestPool pool = new DigestPool("SHA-1", 4);
+        AbstractCryptoHash cryptoHash = new DigestCryptoHash(new DigestCryptoHash(null, upstreamPool), pool);
+        String expected = StringUtil.toHexString(cryptoHash.getHash("foobar"));
+        for (int ndx = 0; ndx < 10; ndx++) {
+            HashSession session = cryptoHash.createSession();
+            session.update("foobar".getBytes(), 0, 6);
+            assertEquals(expected, StringUtil.toHexString(AbstractCryptoHash.digest(session)));
+            cryptoHash.releaseSession(session);
+        }
+        assertEquals(1, upstreamPool.getMisses());
+        assertEquals(10, upstreamPool.getHits());
+        assertEquals(1, pool.getMisses());
+        assertEquals(10, pool.getHits());
+    }
+
+    public void testConcurrentUse() throws Exception {
+        final DigestPool pool = new DigestPool("MD5", 2);
+        final CryptoHash cryptoHash = new DigestCryptoHash(null, pool);
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        Thread[] threads = new Thread[4];
+        for (int ndx = 0; ndx < threads.length; ndx++) {
+            threads[ndx] = new Thread() {
+                @Override
+                public void run() {
+                    for (int count = 0; count < 500; count++) {
+                        String result = StringUtil.toHexString(cryptoHash.getHash("foobar"));
+                        if (!"3858f62230ac3c915f300c664312c63f".equals(result)) {
+                            failure.set(result);
+                        }
+                    }
+                }
+            };
+            threads[ndx].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+        assertEquals(2000, pool.getHits() + pool.getMisses());
+        assertTrue(2 >= pool.getIdle());
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import junit.framework.TestCase;
+import org.widgetrefinery.util.StringUtil;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @since 10/17/26 10:48 AM
+ */
+public class TestDirectoryHasher extends TestCase {
+    private Path root;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        this.root = Files.createTempDirectory("hasher");
+        for (String name : new String[]{"b.txt", "a.txt", "sub/c.txt", "sub/d.log", "sub/deep/e.txt", "skip/f.txt"}) {
+            Path path = this.root.resolve(name);
+            Files.createDirectories(path.getParent());
+            Files.write(path, "foobar".getBytes());
+        }
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        Files.walkFileTree(this.root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        super.tearDown();
+    }
+
+    public void testSortedWalk() {
+        DirectoryHasher directoryHasher = new DirectoryHasher(new MultiCryptoHash(new CRC32CryptoHash()), 4);
+        directoryHasher.setSorted(true);
+        Collector collector = new Collector();
+        directoryHasher.hash(Collections.singletonList(this.root), collector);
+
+        assertEquals(Arrays.asList("a.txt", "b.txt", "skip/f.txt", "sub/c.txt", "sub/d.log", "sub/deep/e.txt"), collector.paths);
+        for (String hash : collector.hashes) {
+            assertEquals("9ef61f95", hash);
+        }
+        assertTrue(collector.errors.isEmpty());
+    }
+
+    public void testFilters() {
+        DirectoryHasher directoryHasher = new DirectoryHasher(new MultiCryptoHash(new CRC32CryptoHash()), 2);
+        directoryHasher.setSorted(true);
+        directoryHasher.addInclude("*.txt");
+        directoryHasher.addExclude("skip");
+        directoryHasher.setMaxDepth(2);
+        Collector collector = new Collector();
+        directoryHasher.hash(Collections.singletonList(this.root), collector);
+
+        assertEquals(Arrays.asList("a.txt", "b.txt", "sub/c.txt"), collector.paths);
+    }
+
+    public void testUnsortedWalk() {
+        DirectoryHasher directoryHasher = new DirectoryHasher(new MultiCryptoHash(new CRC32CryptoHash()), 4);
+        directoryHasher.addExclude("sub/deep");
+        Collector collector = new Collector();
+        directoryHasher.hash(Arrays.asList(this.root, this.root.resolve("missing")), collector);
+
+        Collections.sort(collector.paths);
+        assertEquals(Arrays.asList("a.txt", "b.txt", "skip/f.txt", "sub/c.txt", "sub/d.log"), collector.paths);
+        assertEquals(1, collector.errors.size());
+    }
+
+    public void testWalkOnly() {
+        DirectoryHasher directoryHasher = new DirectoryHasher(new MultiCryptoHash(new CRC32CryptoHash()) {
+            @Override
+            public byte[][] getHashes(final Path input) {
+                throw new IllegalStateException("walk() hashed " + input);
+            }
+        }, 2);
+        directoryHasher.setSorted(true);
+        directoryHasher.addExclude("sub/deep");
+        final List<String> found = new ArrayList<String>();
+        final List<Path> errors = new ArrayList<Path>();
+        directoryHasher.walk(Arrays.asList(this.root, this.root.resolve("a.txt"), this.root.resolve("missing")), new DirectoryHasher.FileHandler() {
+            @Override
+            public void onFile(final Path path, final BasicFileAttributes attributes) {
+                found.add(TestDirectoryHasher.this.root.relativize(path) + ":" + attributes.size());
+            }
+
+            @Override
+            public void onError(final Path path, final Exception error) {
+                errors.add(path);
+            }
+        });
+
+        assertEquals(Arrays.asList("a.txt:6", "b.txt:6", "skip/f.txt:6", "sub/c.txt:6", "sub/d.log:6", "a.txt:6"), found);
+        assertEquals(Collections.singletonList(this.root.resolve("missing")), errors);
+    }
+
+    private class Collector implements DirectoryHasher.ResultHandler {
+        private final List<String> paths  = new ArrayList<String>();
+        private final List<String> hashes = new ArrayList<String>();
+        private final List<Path>   errors = new ArrayList<Path>();
+
+        @Override
+        public void onResult(final Path path, final byte[][] results) {
+            this.paths.add(TestDirectoryHasher.this.root.relativize(path).toString());
+            this.hashes.add(StringUtil.toHexString(results[0]));
+        }
+
+        @Override
+        public void onError(final Path path, final Exception error) {
+            this.errors.add(path);
+        }
+    }
+}
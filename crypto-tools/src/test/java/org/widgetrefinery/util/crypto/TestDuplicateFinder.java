@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import junit.framework.TestCase;
+import org.widgetrefinery.util.StringUtil;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @since 10/17/26 6:52 PM
+ */
+public class TestDuplicateFinder extends TestCase {
+    private static final int BIG_SIZE = 20000;
+
+    private Path root;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        this.root = Files.createTempDirectory("duplicates");
+        write("a1.txt", "foobar".getBytes());
+        write("sub/a2.txt", "foobar".getBytes());
+        write("a3.txt", "foobaz".getBytes());
+        write("unique.txt", "hello world".getBytes());
+
+        byte[] big = new byte[BIG_SIZE];
+        for (int ndx = 0; ndx < big.length; ndx++) {
+            big[ndx] = (byte) (ndx * 31);
+        }
+        write("big1.bin", big);
+        write("sub/deep/big2.bin", big);
+        big[BIG_SIZE / 2]++;
+        write("big3.bin", big);
+        big[BIG_SIZE / 2]--;
+        big[0]++;
+        write("big4.bin", big);
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        Files.walkFileTree(this.root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        super.tearDown();
+    }
+
+    public void testFind() {
+        DuplicateFinder duplicateFinder = new DuplicateFinder(new MultiCryptoHash(new CRC32CryptoHash()), 2);
+        Collector collector = new Collector();
+        duplicateFinder.find(Collections.singletonList(this.root), collector);
+
+        assertEquals(2, collector.groups.size());
+        assertEquals(Arrays.asList("big1.bin", "sub/deep/big2.bin"), collector.groups.get(0));
+        assertEquals(Arrays.asList("a1.txt", "sub/a2.txt"), collector.groups.get(1));
+        assertEquals("9ef61f95", collector.hashes.get(1));
+        assertTrue(collector.errors.isEmpty());
+
+        int sample = DuplicateFinder.DEFAULT_SAMPLE_SIZE;
+        long total = 3 * 6 + 11 + 4 * BIG_SIZE;
+        assertEquals(8, duplicateFinder.getFileCount());
+        assertEquals(2, duplicateFinder.getGroupCount());
+        assertEquals(4, duplicateFinder.getDuplicateCount());
+        assertEquals(total, duplicateFinder.getTotalBytes());
+        assertEquals(3 * 6 + 4 * 2 * sample + 3 * BIG_SIZE, duplicateFinder.getBytesRead());
+        assertEquals(total - 3 * 6 - 3 * BIG_SIZE - 2 * sample, duplicateFinder.getBytesSkipped());
+    }
+
+    public void testSampleSize() {
+        DuplicateFinder duplicateFinder = new DuplicateFinder(new MultiCryptoHash(new CRC32CryptoHash()), 1);
+        duplicateFinder.setSampleSize(BIG_SIZE);
+        duplicateFinder.getWalker().addInclude("*.bin");
+        Collector collector = new Collector();
+        duplicateFinder.find(Collections.singletonList(this.root), collector);
+
+        assertEquals(1, collector.groups.size());
+        assertEquals(Arrays.asList("big1.bin", "sub/deep/big2.bin"), collector.groups.get(0));
+        assertEquals(4L * BIG_SIZE, duplicateFinder.getBytesRead());
+        assertEquals(0, duplicateFinder.getBytesSkipped());
+
+        try {
+            duplicateFinder.setSampleSize(0);
+            assertTrue("setSampleSize() did not throw an exception", false);
+        } catch (IllegalArgumentException e) {
+            assertEquals("invalid sample size (0)", e.getMessage());
+        }
+    }
+
+    private void write(final String name, final byte[] data) throws IOException {
+        Path path = this.root.resolve(name);
+        Files.createDirectories(path.getParent());
+        Files.write(path, data);
+    }
+
+    private class Collector implements DuplicateFinder.DuplicateHandler {
+        private final List<List<String>> groups = new ArrayList<List<String>>();
+        private final List<String>       hashes = new ArrayList<String>();
+        private final List<Path>         errors = new ArrayList<Path>();
+
+        @Override
+        public void onGroup(final List<Path> paths, final byte[][] results) {
+            List<String> group = new ArrayList<String>();
+            for (Path path : paths) {
+                group.add(TestDuplicateFinder.this.root.relativize(path).toString());
+            }
+            this.groups.add(group);
+            this.hashes.add(StringUtil.toHexString(results[0]));
+        }
+
+        @Override
+        public void onError(final Path path, final Exception error) {
+            this.errors.add(path);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import junit.framework.TestCase;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * @since 10/17/26 11:40 AM
+ */
+public class TestHashCache extends TestCase {
+    private Path cacheFile;
+    private Path input;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        this.cacheFile = Files.createTempFile("cache", ".bin");
+        Files.delete(this.cacheFile);
+        this.input = Files.createTempFile("input", ".txt");
+        Files.write(this.input, "foobar".getBytes());
+        Files.setLastModifiedTime(this.input, FileTime.fromMillis(System.currentTimeMillis() - 60000));
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(this.cacheFile);
+        Files.deleteIfExists(this.cacheFile.resolveSibling(this.cacheFile.getFileName() + ".lock"));
+        Files.deleteIfExists(this.input);
+        super.tearDown();
+    }
+
+    public void testPersistence() throws Exception {
+        HashCache cache = new HashCache(this.cacheFile, 1024 * 1024);
+        BasicFileAttributes attributes = Files.readAttributes(this.input, BasicFileAttributes.class);
+        assertNull(cache.get(this.input, attributes, "m"));
+        cache.put(this.input, attributes, "m", "first".getBytes());
+        cache.put(this.input, attributes, "ms", "second".getBytes());
+        cache.put(this.input, attributes, "m", "third".getBytes());
+        assertEquals("third", new String(cache.get(this.input, attributes, "m")));
+        cache.close();
+
+        cache = new HashCache(this.cacheFile, 1024 * 1024);
+        assertEquals(2, cache.size());
+        assertEquals("third", new String(cache.get(this.input, attributes, "m")));
+        assertEquals("second", new String(cache.get(this.input, attributes, "ms")));
+        assertNull(cache.get(this.input, attributes, "s"));
+
+        Files.setLastModifiedTime(this.input, FileTime.fromMillis(System.currentTimeMillis() - 30000));
+        attributes = Files.readAttributes(this.input, BasicFileAttributes.class);
+        assertNull(cache.get(this.input, attributes, "m"));
+        cache.close();
+    }
+
+    public void testSharedFile() throws Exception {
+        HashCache writer = new HashCache(this.cacheFile, 1024 * 1024);
+        BasicFileAttributes attributes = Files.readAttributes(this.input, BasicFileAttributes.class);
+        writer.put(this.input, attributes, "m", "first".getBytes());
+        writer.close();
+
+        writer = new HashCache(this.cacheFile, 1024 * 1024);
+        HashCache reader = new HashCache(this.cacheFile, 1024 * 1024);
+        assertEquals("first", new String(reader.get(this.input, attributes, "m")));
+        reader.put(this.input, attributes, "s", "second".getBytes());
+        assertNull(reader.get(this.input, attributes, "s"));
+        writer.put(this.input, attributes, "c", "third".getBytes());
+        reader.close();
+        writer.close();
+
+        HashCache cache = new HashCache(this.cacheFile, 1024 * 1024);
+        assertEquals(2, cache.size());
+        assertEquals("third", new String(cache.get(this.input, attributes, "c")));
+        cache.close();
+    }
+
+    public void testRealPath() throws Exception {
+        Path link = this.input.resolveSibling(this.input.getFileName() + ".link");
+        Files.createSymbolicLink(link, this.input);
+        try {
+            HashCache cache = new HashCache(this.cacheFile, 1024 * 1024);
+            BasicFileAttributes attributes = Files.readAttributes(this.input, BasicFileAttributes.class);
+            cache.put(link, attributes, "m", "first".getBytes());
+            assertEquals("first", new String(cache.get(this.input, attributes, "m")));
+            cache.close();
+        } finally {
+            Files.delete(link);
+        }
+    }
+
+    public void testRecentFilesAreNotCached() throws Exception {
+        Files.setLastModifiedTime(this.input, FileTime.fromMillis(System.currentTimeMillis()));
+        HashCache cache = new HashCache(this.cacheFile, 1024 * 1024);
+        BasicFileAttributes attributes = Files.readAttributes(this.input, BasicFileAttributes.class);
+        cache.put(this.input, attributes, "m", "first".getBytes());
+        assertNull(cache.get(this.input, attributes, "m"));
+        cache.close();
+    }
+
+    public void testEviction() throws Exception {
+        HashCache cache = new HashCache(this.cacheFile, 300);
+        BasicFileAttributes attributes = Files.readAttributes(this.input, BasicFileAttributes.class);
+        for (int ndx = 0; ndx < 20; ndx++) {
+            cache.put(this.input, attributes, "e" + ndx, new byte[16]);
+            cache.get(this.input, attributes, "e0");
+        }
+        assertTrue(cache.size() < 20);
+        assertNotNull(cache.get(this.input, attributes, "e0"));
+        assertNotNull(cache.get(this.input, attributes, "e19"));
+        assertNull(cache.get(this.input, attributes, "e1"));
+        cache.close();
+        assertTrue(Files.size(this.cacheFile) <= 300 + 8);
+
+        cache = new HashCache(this.cacheFile, 300);
+        assertNotNull(cache.get(this.input, attributes, "e0"));
+        cache.close();
+    }
+
+    public void testTruncatedLog() throws Exception {
+        HashCache cache = new HashCache(this.cacheFile, 1024 * 1024);
+        BasicFileAttributes attributes = Files.readAttributes(this.input, BasicFileAttributes.class);
+        cache.put(this.input, attributes, "m", "first".getBytes());
+        cache.put(this.input, attributes, "s", "second".getBytes());
+        cache.close();
+        byte[] data = Files.readAllBytes(this.cacheFile);
+        Files.write(this.cacheFile, Arrays.copyOf(data, data.length - 3));
+
+        cache = new HashCache(this.cacheFile, 1024 * 1024);
+        assertEquals(1, cache.size());
+        cache.put(this.input, attributes, "s", "second".getBytes());
+        cache.close();
+        cache = new HashCache(this.cacheFile, 1024 * 1024);
+        assertEquals("second", new String(cache.get(this.input, attributes, "s")));
+        cache.close();
+    }
+
+    public void testMultiCryptoHashCache() throws Exception {
+        Mockery context = new Mockery();
+        final CryptoHash mockedCryptoHash = context.mock(CryptoHash.class);
+        context.checking(new Expectations() {{
+            oneOf(mockedCryptoHash).getHash(TestHashCache.this.input);
+            will(returnValue("first".getBytes()));
+        }});
+
+        HashCache cache = new HashCache(this.cacheFile, 1024 * 1024);
+        MultiCryptoHash multiCryptoHash = new MultiCryptoHash(mockedCryptoHash);
+        multiCryptoHash.setCache(cache, "m");
+        assertEquals("first", new String(multiCryptoHash.getHashes(this.input)[0]));
+        assertEquals("first", new String(multiCryptoHash.getHashes(this.input)[0]));
+        assertEquals(1, cache.getHits());
+        cache.close();
+
+        context.assertIsSatisfied();
+    }
+
+    public void testState() throws Exception {
+        HashCache cache = new HashCache(this.cacheFile, 1024 * 1024);
+        BasicFileAttributes attributes = Files.readAttributes(this.input, BasicFileAttributes.class);
+        assertNull(cache.getState(this.input, attributes, "MD5"));
+        cache.putState(this.input, attributes, "MD5", new HashCache.State(6, 0x0123456789ABCDEFL, "state".getBytes()));
+        assertNull(cache.get(this.input, attributes, "MD5"));
+        cache.close();
+
+        cache = new HashCache(this.cacheFile, 1024 * 1024);
+        Files.write(this.input, "foobarbaz".getBytes());
+        attributes = Files.readAttributes(this.input, BasicFileAttributes.class);
+        HashCache.State state = cache.getState(this.input, attributes, "MD5");
+        assertEquals(6, state.getOffset());
+        assertEquals(0x0123456789ABCDEFL, state.getChecksum());
+        assertEquals("state", new String(state.getState()));
+
+        Files.write(this.input, "foo".getBytes());
+        attributes = Files.readAttributes(this.input, BasicFileAttributes.class);
+        assertNull(cache.getState(this.input, attributes, "MD5"));
+        cache.close();
+    }
+
+    public void testMultiCryptoHashResume() throws Exception {
+        byte[] data = new byte[3 * 1024 * 1024];
+        new Random(0).nextBytes(data);
+        Files.write(this.input, Arrays.copyOf(data, 1024 * 1024));
+        HashCache cache = new HashCache(this.cacheFile, 1024 * 1024);
+        MultiCryptoHash multiCryptoHash = new MultiCryptoHash(new CRC32CryptoHash(), DigestCryptoHash.createSHA256(null));
+        multiCryptoHash.setCache(cache, "c", "S");
+        multiCryptoHash.setResumable(true);
+        multiCryptoHash.getHashes(this.input);
+        cache.close();
+
+        Files.write(this.input, Arrays.copyOfRange(data, 1024 * 1024, 2 * 1024 * 1024), StandardOpenOption.APPEND);
+        cache = new HashCache(this.cacheFile, 1024 * 1024);
+        multiCryptoHash.setCache(cache, "c", "S");
+        long before = IOStrategy.getDefault().getBytesRead();
+        byte[][] results = multiCryptoHash.getHashes(this.input);
+        assertTrue(IOStrategy.getDefault().getBytesRead() - before < 2 * 1024 * 1024);
+        assertResults(results, Arrays.copyOf(data, 2 * 1024 * 1024));
+        assertEquals(2 * 1024 * 1024, cache.getState(this.input, Files.readAttributes(this.input, BasicFileAttributes.class), "CRC32").getOffset());
+
+        Files.write(this.input, Arrays.copyOfRange(data, 2 * 1024 * 1024, data.length), StandardOpenOption.APPEND);
+        FileChannel channel = FileChannel.open(this.input, StandardOpenOption.WRITE);
+        try {
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) ~data[2 * 1024 * 1024 - 1]}), 2 * 1024 * 1024 - 1);
+        } finally {
+            channel.close();
+        }
+        data[2 * 1024 * 1024 - 1] = (byte) ~data[2 * 1024 * 1024 - 1];
+        assertResults(multiCryptoHash.getHashes(this.input), data);
+        cache.close();
+    }
+
+    public void testMultiCryptoHashColdResume() throws Exception {
+        byte[] data = new byte[2 * 1024 * 1024];
+        new Random(0).nextBytes(data);
+        Files.write(this.input, data);
+        HashCache cache = new HashCache(this.cacheFile, 1024 * 1024);
+        MultiCryptoHash multiCryptoHash = new MultiCryptoHash(new CRC32CryptoHash(), DigestCryptoHash.createSHA256(null));
+        multiCryptoHash.setCache(cache, "c", "S");
+        multiCryptoHash.setResumable(true);
+        assertResults(multiCryptoHash.getHashes(this.input), data);
+        BasicFileAttributes attributes = Files.readAttributes(this.input, BasicFileAttributes.class);
+        assertNull(cache.getState(this.input, attributes, "CRC32"));
+
+        multiCryptoHash = new MultiCryptoHash(new CRC32CryptoHash());
+        multiCryptoHash.setCache(cache, "c");
+        multiCryptoHash.setResumable(true);
+        assertTrue(Arrays.equals(new CRC32CryptoHash().getHash(new ByteArrayInputStream(data)), multiCryptoHash.getHashes(this.input)[0]));
+        assertEquals(data.length, cache.getState(this.input, attributes, "CRC32").getOffset());
+        cache.close();
+    }
+
+    private static void assertResults(final byte[][] results, final byte[] data) throws Exception {
+        assertTrue(Arrays.equals(new CRC32CryptoHash().getHash(new ByteArrayInputStream(data)), results[0]));
+        assertTrue(Arrays.equals(DigestCryptoHash.createSHA256(null).getHash(new ByteArrayInputStream(data)), results[1]));
+    }
+}
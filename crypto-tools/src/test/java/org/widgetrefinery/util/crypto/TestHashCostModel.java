@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * @since 10/17/26 10:55 AM
+ */
+public class TestHashCostModel extends TestCase {
+    public void testChoose() {
+        CryptoHash[] cryptoHashes = new CryptoHash[]{new CRC32CryptoHash(), DigestCryptoHash.createMD5(), DigestCryptoHash.createSHA1()};
+        HashCostModel model = new HashCostModel(cryptoHashes, 4, 100000);
+        assertEquals(HashCostModel.Strategy.THREADED, model.choose(-1));
+        assertEquals(HashCostModel.Strategy.FUSED, model.choose(0));
+        assertEquals(HashCostModel.Strategy.FUSED, model.choose(64 * 1024));
+        assertEquals(HashCostModel.Strategy.THREADED, model.choose(16 * 1024 * 1024));
+        assertEquals(-1, model.estimate(HashCostModel.Strategy.TREE, 1024));
+        assertEquals(3 * 1024 * 1024, model.estimate(HashCostModel.Strategy.FUSED, 1024 * 1024));
+        assertEquals(1024 * 1024 + 200000, model.estimate(HashCostModel.Strategy.THREADED, 1024 * 1024));
+
+        model = new HashCostModel(cryptoHashes, 1, 100000);
+        assertEquals(HashCostModel.Strategy.FUSED, model.choose(16 * 1024 * 1024));
+
+        model = new HashCostModel(new CryptoHash[]{new CRC32CryptoHash()}, 4, 100000);
+        assertEquals(HashCostModel.Strategy.FUSED, model.choose(-1));
+        assertEquals(HashCostModel.Strategy.FUSED, model.choose(16 * 1024 * 1024));
+        assertEquals("fused 16777us", model.describe(16 * 1024 * 1024));
+
+        try {
+            new HashCostModel(cryptoHashes, 0, 0);
+            assertTrue("constructor did not throw an exception", false);
+        } catch (IllegalArgumentException e) {
+            assertEquals("invalid core count (0)", e.getMessage());
+        }
+    }
+
+    public void testTree() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            CryptoHash tree = TreeCryptoHash.create(null, "SHA-256", 1024 * 1024, pool);
+            HashCostModel model = new HashCostModel(new CryptoHash[]{tree}, 4, 100000);
+            assertEquals(HashCostModel.Strategy.FUSED, model.choose(512 * 1024));
+            assertEquals(HashCostModel.Strategy.TREE, model.choose(64 * 1024 * 1024));
+            assertEquals(64 * 1024 * 1024 / 4 + 3 * 100000, model.estimate(HashCostModel.Strategy.TREE, 64 * 1024 * 1024));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public void testRecord() {
+        HashCostModel model = new HashCostModel(new CRC32CryptoHash(), DigestCryptoHash.createMD5());
+        model.record(0, 1024, 1);
+        assertEquals(HashCostModel.DEFAULT_BYTE_PICOS, model.getBytePicos(0));
+        model.record(0, 1000 * 1000, 100 * 1000);
+        assertEquals(100, model.getBytePicos(0));
+        model.record(0, 1000 * 1000, 500 * 1000);
+        assertEquals(200, model.getBytePicos(0));
+        assertEquals(HashCostModel.DEFAULT_BYTE_PICOS, model.getBytePicos(1));
+        model.record(1, 1000 * 1000, 1000 * 1000);
+        model.record(1, 1000 * 1000, 2000 * 1000);
+        assertEquals(1250, model.getBytePicos(1));
+    }
+
+    public void testRecordStrategy() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            CryptoHash tree = TreeCryptoHash.create(null, "SHA-256", 1024 * 1024, pool);
+            CryptoHash[] cryptoHashes = new CryptoHash[]{new CRC32CryptoHash(), DigestCryptoHash.createMD5(), tree};
+            HashCostModel model = new HashCostModel(cryptoHashes, 2, 100000);
+            model.record(HashCostModel.Strategy.FUSED, 0, 1000 * 1000, 300 * 1000);
+            assertEquals(300, model.getBytePicos(0));
+            model.record(HashCostModel.Strategy.THREADED, 1, 1000 * 1000, 3000 * 1000);
+            assertEquals(2000, model.getBytePicos(1));
+            model.record(HashCostModel.Strategy.TREE, 2, 8 * 1024 * 1024, 1100 * 1000);
+            assertEquals(2000 * 1000 * 1000L / (8 * 1024 * 1024), model.getBytePicos(2));
+            model.record(HashCostModel.Strategy.TREE, 0, 1000 * 1000, 500 * 1000);
+            assertEquals((3 * 300 + 500) / 4, model.getBytePicos(0));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
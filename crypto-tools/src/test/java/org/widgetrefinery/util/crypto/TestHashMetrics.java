@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import junit.framework.TestCase;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @since 10/17/26 12:20 PM
+ */
+public class TestHashMetrics extends TestCase {
+    public void testCounters() {
+        HashMetrics metrics = new HashMetrics();
+        LongAdder md5 = metrics.getAlgorithmCounter("MD5");
+        assertSame(md5, metrics.getAlgorithmCounter("MD5"));
+        metrics.recordBlock(md5, 1000, 2000000, 3000000);
+        metrics.recordBlock(metrics.getAlgorithmCounter("CRC32"), 500, 0, 1000000);
+        metrics.recordFile();
+        assertEquals(1500, metrics.getBytesHashed());
+        assertEquals(Long.valueOf(1000), metrics.getBytesHashedByAlgorithm().get("MD5"));
+        assertEquals(Long.valueOf(500), metrics.getBytesHashedByAlgorithm().get("CRC32"));
+        assertEquals(1, metrics.getFilesHashed());
+        assertEquals(2, metrics.getIoWaitMillis());
+        assertEquals(4, metrics.getHashMillis());
+        assertEquals(0.0, metrics.getFilesPerSecond());
+
+        metrics.taskQueued();
+        metrics.taskQueued();
+        assertEquals(2, metrics.getQueuedWorkers());
+        metrics.taskStarted(true);
+        metrics.taskStarted(false);
+        assertEquals(1, metrics.getQueuedWorkers());
+        assertEquals(2, metrics.getActiveWorkers());
+        metrics.taskFinished();
+        assertEquals(1, metrics.getActiveWorkers());
+    }
+
+    public void testAlgorithmNames() throws Exception {
+        assertFalse(new HashMetrics().isRegistered());
+        HashMetrics metrics = HashMetrics.getDefault();
+        metrics.register();
+        assertTrue(metrics.isRegistered());
+        long md5 = metrics.getAlgorithmCounter("MD5").sum();
+        long crc32 = metrics.getAlgorithmCounter("CRC32").sum();
+        long files = metrics.getFilesHashed();
+        MultiCryptoHash multiCryptoHash = new MultiCryptoHash(DigestCryptoHash.createMD5(), new CRC32CryptoHash());
+        multiCryptoHash.getHashes("hello world");
+        assertEquals(md5 + 11, metrics.getAlgorithmCounter("MD5").sum());
+        assertEquals(crc32 + 11, metrics.getAlgorithmCounter("CRC32").sum());
+        assertEquals(files, metrics.getFilesHashed());
+
+        Path file = Files.createTempFile("metrics", ".txt");
+        try {
+            Files.write(file, "hello world".getBytes("UTF-8"));
+            multiCryptoHash.getHashes(file);
+        } finally {
+            Files.delete(file);
+        }
+        assertEquals(md5 + 22, metrics.getAlgorithmCounter("MD5").sum());
+        assertEquals(crc32 + 22, metrics.getAlgorithmCounter("CRC32").sum());
+        assertEquals(files + 1, metrics.getFilesHashed());
+    }
+
+    public void testRegister() throws Exception {
+        HashMetrics metrics = HashMetrics.getDefault();
+        metrics.register();
+        metrics.register();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(HashMetrics.OBJECT_NAME);
+        assertTrue(server.isRegistered(name));
+        assertEquals(metrics.getFilesHashed(), ((Long) server.getAttribute(name, "FilesHashed")).longValue());
+        assertNotNull(server.getAttribute(name, "BytesHashedByAlgorithm"));
+        assertEquals(IOStrategy.getDefault().getMaxPooled(), ((Integer) server.getAttribute(name, "BufferPoolLimit")).intValue());
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import junit.framework.TestCase;
+import org.widgetrefinery.util.StringUtil;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * @since 10/17/26 1:45 PM
+ */
+public class TestIOStrategy extends TestCase {
+    private IOStrategy original;
+    private Path       file;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.original = IOStrategy.getDefault();
+        this.file = Files.createTempFile("iostrategy", ".dat");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        IOStrategy.setDefault(this.original);
+        Files.deleteIfExists(this.file);
+        super.tearDown();
+    }
+
+    public void testInvalidBlockSize() {
+        try {
+            new IOStrategy(1024, IOStrategy.DEFAULT_STREAM_BLOCK_SIZE);
+            assertTrue("constructor did not throw exception", false);
+        } catch (IllegalArgumentException e) {
+            assertEquals("invalid block size (1024)", e.getMessage());
+        }
+    }
+
+    public void testReadCounts() throws Exception {
+        byte[] data = createData(10000);
+        Files.write(this.file, data);
+        IOStrategy strategy = new IOStrategy(4096, 4096);
+        IOStrategy.setDefault(strategy);
+        String expected = StringUtil.toHexString(MessageDigest.getInstance("MD5").digest(data));
+
+        CryptoHash cryptoHash = DigestCryptoHash.createMD5(null);
+        assertEquals(expected, StringUtil.toHexString(cryptoHash.getHash(this.file)));
+        assertEquals(3, strategy.getReads());
+        assertEquals(10000, strategy.getBytesRead());
+
+        assertEquals(expected, StringUtil.toHexString(cryptoHash.getHash(new ByteArrayInputStream(data))));
+        assertEquals(7, strategy.getReads());
+        assertEquals(20000, strategy.getBytesRead());
+
+        MultiCryptoHash multiCryptoHash = new MultiCryptoHash(cryptoHash, DigestCryptoHash.createSHA1(null));
+        byte[][] results = multiCryptoHash.getHashes(new ByteArrayInputStream(data));
+        assertEquals(expected, StringUtil.toHexString(results[0]));
+        assertEquals(30000, strategy.getBytesRead());
+    }
+
+    public void testFindKnee() {
+        SortedMap<Integer, Double> results = new TreeMap<Integer, Double>();
+        results.put(4096, 500.0);
+        results.put(8192, 900.0);
+        results.put(16384, 970.0);
+        results.put(32768, 1000.0);
+        results.put(65536, 980.0);
+        assertEquals(16384, IOStrategy.findKnee(results, 0.95));
+        assertEquals(32768, IOStrategy.findKnee(results, 1.0));
+        assertEquals(4096, IOStrategy.findKnee(results, 0.5));
+    }
+
+    public void testProbe() throws Exception {
+        Files.write(this.file, createData(64 * 1024));
+        SortedMap<Integer, Double> results = IOStrategy.probe(this.file, 4096, 64 * 1024, 1000L * 1000);
+        assertEquals(5, results.size());
+        assertEquals(Integer.valueOf(4096), results.firstKey());
+        assertEquals(Integer.valueOf(64 * 1024), results.lastKey());
+        for (double throughput : results.values()) {
+            assertTrue(0 < throughput);
+        }
+    }
+
+    private static byte[] createData(final int length) {
+        byte[] data = new byte[length];
+        for (int ndx = 0; ndx < data.length; ndx++) {
+            data[ndx] = (byte) (ndx * 31 + 7);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import junit.framework.TestCase;
+
+/**
+ * @since 10/17/26 6:48 PM
+ */
+public class TestLongIntMap extends TestCase {
+    public void testPutAndGet() {
+        LongIntMap map = new LongIntMap(4);
+        assertEquals(-1, map.get(42, -1));
+
+        map.put(42, 1);
+        map.put(-42, 2);
+        map.put(0, 3);
+        map.put(Long.MIN_VALUE, 4);
+        map.put(Long.MAX_VALUE, 5);
+        assertEquals(5, map.size());
+        assertEquals(1, map.get(42, -1));
+        assertEquals(2, map.get(-42, -1));
+        assertEquals(3, map.get(0, -1));
+        assertEquals(4, map.get(Long.MIN_VALUE, -1));
+        assertEquals(5, map.get(Long.MAX_VALUE, -1));
+
+        map.put(42, 6);
+        map.put(Long.MIN_VALUE, 7);
+        assertEquals(5, map.size());
+        assertEquals(6, map.get(42, -1));
+        assertEquals(7, map.get(Long.MIN_VALUE, -1));
+    }
+
+    public void testGrow() {
+        LongIntMap map = new LongIntMap(0);
+        for (int ndx = 0; ndx < 10000; ndx++) {
+            map.put(ndx * 4096L, ndx);
+        }
+        assertEquals(10000, map.size());
+        for (int ndx = 0; ndx < 10000; ndx++) {
+            assertEquals(ndx, map.get(ndx * 4096L, -1));
+        }
+        assertEquals(-1, map.get(1, -1));
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import junit.framework.TestCase;
+import org.widgetrefinery.util.crypto.output.ByteEncoder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * @since 10/17/26 7:40 PM
+ */
+public class TestManifestVerifier extends TestCase {
+    private static final String CRC32_FOOBAR = "9ef61f95";
+    private static final String MD5_FOOBAR   = "3858f62230ac3c915f300c664312c63f";
+
+    private Path         root;
+    private Logger       logger;
+    private LogCollector logCollector;
+    private boolean      useParentHandlers;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        this.logger = Logger.getLogger(ManifestVerifier.class.getName());
+        this.logCollector = new LogCollector();
+        this.useParentHandlers = this.logger.getUseParentHandlers();
+        this.logger.addHandler(this.logCollector);
+        this.logger.setUseParentHandlers(false);
+        this.root = Files.createTempDirectory("manifest");
+        Files.write(this.root.resolve("good"), "foobar".getBytes());
+        Files.write(this.root.resolve("bad"), "foobaz".getBytes());
+        Files.write(this.root.resolve("with space"), "foobar".getBytes());
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        for (String name : new String[]{"good", "bad", "with space"}) {
+            Files.deleteIfExists(this.root.resolve(name));
+        }
+        Files.delete(this.root);
+        this.logger.removeHandler(this.logCollector);
+        this.logger.setUseParentHandlers(this.useParentHandlers);
+        super.tearDown();
+    }
+
+    public void testPrefixManifest() throws IOException {
+        String manifest = "file|" + this.root.resolve("good") + ": " + CRC32_FOOBAR + ' ' + MD5_FOOBAR + '\n' +
+                          "file|" + this.root.resolve("bad") + ": " + CRC32_FOOBAR + ' ' + MD5_FOOBAR + '\n' +
+                          "file|" + this.root.resolve("missing") + ": " + CRC32_FOOBAR + ' ' + MD5_FOOBAR + '\n' +
+                          "file|" + this.root.resolve("with space") + ": " + CRC32_FOOBAR + ' ' + MD5_FOOBAR + '\n' +
+                          "\n" +
+                          "input|foobar: " + CRC32_FOOBAR + ' ' + MD5_FOOBAR + '\n' +
+                          "file|" + this.root.resolve("good") + ": " + CRC32_FOOBAR + '\n';
+        ManifestVerifier manifestVerifier = new ManifestVerifier(new MultiCryptoHash(new CRC32CryptoHash(), DigestCryptoHash.createMD5()),
+                                                                 ByteEncoder.HEX, 2, ManifestVerifier.DEFAULT_BUDGET);
+        Collector collector = new Collector();
+        manifestVerifier.verify(new BufferedReader(new StringReader(manifest)), collector);
+
+        Collections.sort(collector.results);
+        assertEquals("[bad: FAILED, good: OK, missing: MISSING, with space: OK]", collector.results.toString());
+        assertEquals(2, manifestVerifier.getOkCount());
+        assertEquals(1, manifestVerifier.getFailedCount());
+        assertEquals(1, manifestVerifier.getMissingCount());
+        assertEquals(2, manifestVerifier.getMalformedCount());
+        assertFalse(manifestVerifier.isStopped());
+    }
+
+    public void testSumManifest() throws IOException {
+        String manifest = CRC32_FOOBAR + "  " + this.root.resolve("good") + '\n' +
+                          MD5_FOOBAR + "  " + this.root.resolve("good") + '\n' +
+                          MD5_FOOBAR + " *" + this.root.resolve("with space") + '\n' +
+                          CRC32_FOOBAR + "  " + this.root.resolve("bad") + '\n';
+        ManifestVerifier manifestVerifier = new ManifestVerifier(new MultiCryptoHash(new CRC32CryptoHash(), DigestCryptoHash.createMD5()),
+                                                                 ByteEncoder.HEX, 1, 4096);
+        Collector collector = new Collector();
+        manifestVerifier.verify(new BufferedReader(new StringReader(manifest)), collector);
+
+        Collections.sort(collector.results);
+        assertEquals("[bad: FAILED, good: OK, with space: OK]", collector.results.toString());
+        assertEquals(0, manifestVerifier.getMalformedCount());
+    }
+
+    public void testBase64Manifest() throws IOException {
+        String manifest = "file|" + this.root.resolve("good") + ": nvYflQ==\n" +
+                          "nvYflQ==  " + this.root.resolve("with space") + '\n' +
+                          CRC32_FOOBAR + "  " + this.root.resolve("bad") + '\n';
+        ManifestVerifier manifestVerifier = new ManifestVerifier(new MultiCryptoHash(new CRC32CryptoHash()), ByteEncoder.BASE64, 2, 1024);
+        Collector collector = new Collector();
+        manifestVerifier.verify(new BufferedReader(new StringReader(manifest)), collector);
+
+        Collections.sort(collector.results);
+        assertEquals("[good: OK, with space: OK]", collector.results.toString());
+        assertEquals(1, manifestVerifier.getMalformedCount());
+    }
+
+    public void testBinaryManifest() throws IOException {
+        MultiCryptoHash multiCryptoHash = new MultiCryptoHash(new CRC32CryptoHash());
+        BinaryManifest.Writer writer = new BinaryManifest.Writer(new String[]{"c"}, multiCryptoHash.getResultLengths());
+        for (String name : new String[]{"good", "bad", "missing"}) {
+            writer.add(this.root.resolve(name).toString(), new byte[][]{ByteEncoder.HEX.decode(CRC32_FOOBAR)});
+        }
+        Path file = this.root.resolve("manifest.bin");
+        try {
+            writer.write(file);
+            ManifestVerifier manifestVerifier = new ManifestVerifier(multiCryptoHash, ByteEncoder.HEX, 2, 1024);
+            Collector collector = new Collector();
+            manifestVerifier.verify(BinaryManifest.open(file), collector);
+
+            Collections.sort(collector.results);
+            assertEquals("[bad: FAILED, good: OK, missing: MISSING]", collector.results.toString());
+
+            manifestVerifier = new ManifestVerifier(new MultiCryptoHash(DigestCryptoHash.createMD5()), ByteEncoder.HEX, 2, 1024);
+            try {
+                manifestVerifier.verify(BinaryManifest.open(file), collector);
+                assertTrue("verify() did not throw an exception", false);
+            } catch (IOException e) {
+                assertEquals("manifest encodings [c] do not match the requested encodings", e.getMessage());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    public void testFailFast() throws IOException {
+        StringBuilder manifest = new StringBuilder();
+        manifest.append("file|").append(this.root.resolve("bad")).append(": ").append(CRC32_FOOBAR).append('\n');
+        for (int ndx = 0; ndx < 100; ndx++) {
+            manifest.append("file|").append(this.root.resolve("good")).append(": ").append(CRC32_FOOBAR).append('\n');
+        }
+        ManifestVerifier manifestVerifier = new ManifestVerifier(new MultiCryptoHash(new CRC32CryptoHash()), ByteEncoder.HEX, 1, 1024);
+        manifestVerifier.setFailFast(true);
+        Collector collector = new Collector();
+        manifestVerifier.verify(new BufferedReader(new StringReader(manifest.toString())), collector);
+
+        assertTrue(manifestVerifier.isStopped());
+        assertEquals("bad: FAILED", collector.results.get(0));
+        assertTrue(100 > manifestVerifier.getOkCount());
+        assertTrue(this.logCollector.records.isEmpty());
+    }
+
+    public void testHashError() throws IOException {
+        MultiCryptoHash broken = new MultiCryptoHash(new CRC32CryptoHash()) {
+            @Override
+            public byte[][] getHashes(final Path input) {
+                throw new CryptoHashException();
+            }
+        };
+        String manifest = "file|" + this.root.resolve("good") + ": " + CRC32_FOOBAR + '\n';
+        ManifestVerifier manifestVerifier = new ManifestVerifier(broken, ByteEncoder.HEX, 1, 1024);
+        Collector collector = new Collector();
+        manifestVerifier.verify(new BufferedReader(new StringReader(manifest)), collector);
+
+        assertEquals(1, collector.results.size());
+        assertEquals(this.root.resolve("good") + ": " + MultiCryptoHash.CryptoHashException.class.getName() + ": unexpected error processing data", collector.results.get(0));
+        assertEquals(1, manifestVerifier.getErrorCount());
+        assertEquals(0, manifestVerifier.getOkCount());
+    }
+
+    public void testHandlerError() throws IOException {
+        StringBuilder manifest = new StringBuilder();
+        for (int ndx = 0; ndx < 100; ndx++) {
+            manifest.append("file|").append(this.root.resolve("good")).append(": ").append(CRC32_FOOBAR).append('\n');
+        }
+        ManifestVerifier manifestVerifier = new ManifestVerifier(new MultiCryptoHash(new CRC32CryptoHash()), ByteEncoder.HEX, 1, 1024);
+        manifestVerifier.verify(new BufferedReader(new StringReader(manifest.toString())), new ManifestVerifier.Handler() {
+            @Override
+            public void onResult(final String name, final ManifestVerifier.Status status) {
+                throw new IllegalStateException("broken handler");
+            }
+
+            @Override
+            public void onError(final String name, final Exception error) {
+            }
+        });
+
+        assertEquals(100, manifestVerifier.getOkCount());
+        assertEquals(100, manifestVerifier.getErrorCount());
+        assertEquals(100, this.logCollector.records.size());
+        for (LogRecord record : this.logCollector.records) {
+            assertEquals(Level.WARNING, record.getLevel());
+            assertEquals("failed to report " + this.root.resolve("good"), record.getMessage());
+            assertEquals("broken handler", record.getThrown().getMessage());
+        }
+    }
+
+    private static class LogCollector extends Handler {
+        private final List<LogRecord> records = Collections.synchronizedList(new ArrayList<LogRecord>());
+
+        @Override
+        public void publish(final LogRecord record) {
+            this.records.add(record);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private class Collector implements ManifestVerifier.Handler {
+        private final List<String> results = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public void onResult(final String name, final ManifestVerifier.Status status) {
+            this.results.add(TestManifestVerifier.this.root.relativize(TestManifestVerifier.this.root.resolve(name)) + ": " + status);
+        }
+
+        @Override
+        public void onError(final String name, final Exception error) {
+            this.results.add(name + ": " + error);
+        }
+    }
+}
@@ -20,11 +20,24 @@ package org.widgetrefinery.util.crypto;
 import junit.framework.TestCase;
 import org.jmock.Expectations;
 import org.jmock.Mockery;
+import org.widgetrefinery.util.StringUtil;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.PipedInputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @since 3/4/12 11:55 PM
@@ -38,11 +51,11 @@ public class TestMultiCryptoHash extends TestCase {
         final CryptoHash mockedCryptoHash1 = context1.mock(CryptoHash.class);
         final CryptoHash mockedCryptoHash2 = context2.mock(CryptoHash.class);
         context1.checking(new Expectations() {{
-            oneOf(mockedCryptoHash1).getHash(with(any(PipedInputStream.class)));
+            oneOf(mockedCryptoHash1).getHash(with(any(InputStream.class)));
             will(returnValue("first".getBytes()));
         }});
         context2.checking(new Expectations() {{
-            oneOf(mockedCryptoHash2).getHash(with(any(PipedInputStream.class)));
+            oneOf(mockedCryptoHash2).getHash(with(any(InputStream.class)));
             will(returnValue("second".getBytes()));
         }});
 
@@ -90,11 +103,11 @@ public class TestMultiCryptoHash extends TestCase {
         final CryptoHash mockedCryptoHash1 = context1.mock(CryptoHash.class);
         final CryptoHash mockedCryptoHash2 = context2.mock(CryptoHash.class);
         context1.checking(new Expectations() {{
-            oneOf(mockedCryptoHash1).getHash(with(any(PipedInputStream.class)));
+            oneOf(mockedCryptoHash1).getHash(with(any(InputStream.class)));
             will(throwException(new IOException("dummy io error")));
         }});
         context2.checking(new Expectations() {{
-            oneOf(mockedCryptoHash2).getHash(with(any(PipedInputStream.class)));
+            oneOf(mockedCryptoHash2).getHash(with(any(InputStream.class)));
             will(throwException(new RuntimeException("dummy generic error")));
         }});
 
@@ -113,4 +126,296 @@ public class TestMultiCryptoHash extends TestCase {
         context1.assertIsSatisfied();
         context2.assertIsSatisfied();
     }
+
+    public void testLargeInputHash() throws Exception {
+        byte[] data = new byte[IOStrategy.DEFAULT_STREAM_BLOCK_SIZE * MultiCryptoHash.SLOT_COUNT * 3 + 12345];
+        new Random(42).nextBytes(data);
+
+        CryptoHash crc32 = new CRC32CryptoHash();
+        CryptoHash md5 = DigestCryptoHash.createMD5();
+        CryptoHash sha1 = DigestCryptoHash.createSHA1();
+        MultiCryptoHash multiCryptoHash = new MultiCryptoHash(crc32, md5, sha1);
+        byte[][] results = multiCryptoHash.getHashes(new ByteArrayInputStream(data));
+        assertEquals(3, results.length);
+        assertTrue(Arrays.equals(crc32.getHash(new ByteArrayInputStream(data)), results[0]));
+        assertTrue(Arrays.equals(md5.getHash(new ByteArrayInputStream(data)), results[1]));
+        assertTrue(Arrays.equals(sha1.getHash(new ByteArrayInputStream(data)), results[2]));
+    }
+
+    public void testPathHash() throws Exception {
+        byte[] data = new byte[IOStrategy.DEFAULT_STREAM_BLOCK_SIZE * 3 + 17];
+        new Random(7).nextBytes(data);
+        Path input = Files.createTempFile("multi", ".bin");
+        try {
+            Files.write(input, data);
+            CryptoHash crc32 = new CRC32CryptoHash();
+            CryptoHash sha1 = DigestCryptoHash.createSHA1();
+            byte[][] results = new MultiCryptoHash(crc32, sha1).getHashes(input);
+            assertEquals(2, results.length);
+            assertTrue(Arrays.equals(crc32.getHash(new ByteArrayInputStream(data)), results[0]));
+            assertTrue(Arrays.equals(sha1.getHash(new ByteArrayInputStream(data)), results[1]));
+
+            results = new MultiCryptoHash(sha1).getHashes(input);
+            assertEquals(1, results.length);
+            assertTrue(Arrays.equals(sha1.getHash(new ByteArrayInputStream(data)), results[0]));
+        } finally {
+            Files.delete(input);
+        }
+    }
+
+    public void testSlowHash() throws Exception {
+        CryptoHash slowHash = new CRC32CryptoHash() {
+            @Override
+            public byte[] getHash(final InputStream input) throws IOException {
+                byte[] result = super.getHash(input);
+                try {
+                    Thread.sleep(1500);
+                } catch (InterruptedException e) {
+                    throw new IOException(e.getMessage());
+                }
+                return result;
+            }
+        };
+
+        MultiCryptoHash multiCryptoHash = new MultiCryptoHash(slowHash, DigestCryptoHash.createMD5());
+        byte[][] results = multiCryptoHash.getHashes(new ByteArrayInputStream("foobar".getBytes()));
+        assertEquals("9ef61f95", StringUtil.toHexString(results[0]));
+        assertEquals("3858f62230ac3c915f300c664312c63f", StringUtil.toHexString(results[1]));
+    }
+
+    public void testEarlyFinish() throws Exception {
+        byte[] data = new byte[IOStrategy.DEFAULT_STREAM_BLOCK_SIZE * MultiCryptoHash.SLOT_COUNT * 2];
+        CryptoHash lazyHash = new CRC32CryptoHash() {
+            @Override
+            public byte[] getHash(final InputStream input) throws IOException {
+                input.read();
+                return "lazy".getBytes();
+            }
+        };
+
+        MultiCryptoHash multiCryptoHash = new MultiCryptoHash(lazyHash, new CRC32CryptoHash());
+        byte[][] results = multiCryptoHash.getHashes(new ByteArrayInputStream(data));
+        assertEquals("lazy", new String(results[0]));
+        assertTrue(Arrays.equals(new CRC32CryptoHash().getHash(new ByteArrayInputStream(data)), results[1]));
+    }
+
+    public void testInputError() throws Exception {
+        InputStream input = new InputStream() {
+            private int count;
+
+            @Override
+            public int read() throws IOException {
+                if (++this.count > IOStrategy.DEFAULT_STREAM_BLOCK_SIZE * 2) {
+                    throw new IOException("dummy read error");
+                }
+                return 0;
+            }
+        };
+
+        try {
+            new MultiCryptoHash(new CRC32CryptoHash(), DigestCryptoHash.createMD5()).getHashes(input);
+            assertTrue("getHashes() did not throw exception", false);
+        } catch (IOException e) {
+            assertEquals("dummy read error", e.getMessage());
+        }
+    }
+
+    public void testStringBatch() throws Exception {
+        final MultiCryptoHash multiCryptoHash = new MultiCryptoHash(DigestCryptoHash.createMD5(null), new CRC32CryptoHash()) {
+            @Override
+            protected int getShardCount(final int inputCount) {
+                return Math.min(4, inputCount);
+            }
+        };
+        assertEquals(16 + 4, multiCryptoHash.getStride());
+        assertTrue(Arrays.equals(new int[]{16, 4}, multiCryptoHash.getResultLengths()));
+
+        Charset charset = Charset.forName("UTF-8");
+        CharSequence[] inputs = new CharSequence[1000];
+        Random random = new Random(0);
+        for (int ndx = 0; ndx < inputs.length; ndx++) {
+            StringBuilder sb = new StringBuilder();
+            for (int length = random.nextInt(600); 0 < length; length--) {
+                sb.append((char) (0 == ndx % 3 ? 0x20 + random.nextInt(0x5F) : random.nextInt(0xD000)));
+            }
+            inputs[ndx] = sb;
+        }
+        byte[] hashes = new byte[3 + inputs.length * 20];
+        multiCryptoHash.getHashes(inputs, charset, hashes, 3);
+        for (int ndx = 0; ndx < inputs.length; ndx++) {
+            byte[] data = inputs[ndx].toString().getBytes(charset);
+            assertEquals(StringUtil.toHexString(DigestCryptoHash.createMD5(null).getHash(new ByteArrayInputStream(data))),
+                         StringUtil.toHexString(Arrays.copyOfRange(hashes, 3 + ndx * 20, 3 + ndx * 20 + 16)));
+            assertEquals(StringUtil.toHexString(new CRC32CryptoHash().getHash(new ByteArrayInputStream(data))),
+                         StringUtil.toHexString(Arrays.copyOfRange(hashes, 3 + ndx * 20 + 16, 3 + ndx * 20 + 20)));
+        }
+
+        assertEquals(0, multiCryptoHash.getHashes(new CharSequence[0], charset).length);
+        try {
+            multiCryptoHash.getHashes(inputs, charset, new byte[inputs.length * 20], 1);
+            assertTrue("getHashes() did not throw exception", false);
+        } catch (IllegalArgumentException e) {
+            assertEquals("output does not have room for 1000 hashes of 20 bytes", e.getMessage());
+        }
+    }
+
+    public void testExecutor() throws Exception {
+        final AtomicInteger submitted = new AtomicInteger();
+        Executor executor = new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                submitted.incrementAndGet();
+                new Thread(command).start();
+            }
+        };
+        byte[] data = new byte[100000];
+        new Random(3).nextBytes(data);
+        Path input = Files.createTempFile("multi", ".bin");
+        try {
+            Files.write(input, data);
+            CryptoHash crc32 = new CRC32CryptoHash();
+            CryptoHash md5 = DigestCryptoHash.createMD5();
+            CryptoHash sha1 = DigestCryptoHash.createSHA1();
+            MultiCryptoHash multiCryptoHash = new MultiCryptoHash(crc32, md5, sha1);
+            multiCryptoHash.setCostModel(new HashCostModel(new CryptoHash[]{crc32, md5, sha1}, 8, 0));
+            assertSame(MultiCryptoHash.getDefaultExecutor(), multiCryptoHash.getExecutor());
+            multiCryptoHash.setExecutor(executor);
+            assertSame(executor, multiCryptoHash.getExecutor());
+
+            byte[][] results = multiCryptoHash.getHashes(input);
+            assertEquals(2, submitted.get());
+            assertTrue(Arrays.equals(crc32.getHash(new ByteArrayInputStream(data)), results[0]));
+            assertTrue(Arrays.equals(md5.getHash(new ByteArrayInputStream(data)), results[1]));
+            assertTrue(Arrays.equals(sha1.getHash(new ByteArrayInputStream(data)), results[2]));
+
+            results = multiCryptoHash.getHashes(new ByteArrayInputStream(data));
+            assertEquals(5, submitted.get());
+            assertTrue(Arrays.equals(sha1.getHash(new ByteArrayInputStream(data)), results[2]));
+
+            multiCryptoHash.setCostModel(new HashCostModel(new CryptoHash[]{crc32, md5, sha1}, 1, HashCostModel.DEFAULT_TASK_NANOS));
+            results = multiCryptoHash.getHashes(input);
+            assertEquals(5, submitted.get());
+            assertTrue(Arrays.equals(md5.getHash(new ByteArrayInputStream(data)), results[1]));
+        } finally {
+            Files.delete(input);
+        }
+
+        try {
+            MultiCryptoHash.createWorkerPool(0);
+            assertTrue("createWorkerPool() did not throw exception", false);
+        } catch (IllegalArgumentException e) {
+            assertEquals("invalid thread count (0)", e.getMessage());
+        }
+    }
+
+    public void testWorkerReuse() throws Exception {
+        final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+        CryptoHash recordingHash = new CRC32CryptoHash() {
+            @Override
+            public byte[] getHash(final InputStream input) throws IOException {
+                threads.add(Thread.currentThread());
+                return super.getHash(input);
+            }
+        };
+        MultiCryptoHash multiCryptoHash = new MultiCryptoHash(recordingHash, recordingHash, recordingHash);
+        multiCryptoHash.setExecutor(MultiCryptoHash.createWorkerPool(3));
+        for (int ndx = 0; ndx < 100; ndx++) {
+            multiCryptoHash.getHashes(new ByteArrayInputStream("foobar".getBytes()));
+        }
+        assertTrue(threads.size() < 100);
+        ((ExecutorService) multiCryptoHash.getExecutor()).shutdown();
+    }
+
+    public void testCancel() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        CryptoHash stuckHash = new CRC32CryptoHash() {
+            @Override
+            public byte[] getHash(final InputStream input) throws IOException {
+                started.countDown();
+                try {
+                    Thread.sleep(60000);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException("dummy cancel");
+                }
+                return super.getHash(input);
+            }
+        };
+        final Thread caller = Thread.currentThread();
+        Thread interrupter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    started.await();
+                    caller.interrupt();
+                } catch (InterruptedException e) {
+                    // let the test time out
+                }
+            }
+        };
+        interrupter.start();
+
+        long start = System.currentTimeMillis();
+        boolean interrupted;
+        try {
+            new MultiCryptoHash(stuckHash, new CRC32CryptoHash()).getHashes(new ByteArrayInputStream("foobar".getBytes()));
+            assertTrue("getHashes() did not throw exception", false);
+        } catch (MultiCryptoHash.CryptoHashException e) {
+            assertEquals("dummy cancel", e.getErrors().get(0).getMessage());
+        } finally {
+            interrupted = Thread.interrupted();
+        }
+        assertTrue(interrupted);
+        assertTrue(30000 > System.currentTimeMillis() - start);
+        interrupter.join();
+    }
+
+    public void testVirtualThreads() throws Exception {
+        ExecutorService executor;
+        try {
+            executor = MultiCryptoHash.createVirtualThreadExecutor();
+        } catch (UnsupportedOperationException e) {
+            assertEquals("virtual threads require Java 21 or later", e.getMessage());
+            return;
+        }
+        try {
+            MultiCryptoHash multiCryptoHash = new MultiCryptoHash(new CRC32CryptoHash(), DigestCryptoHash.createMD5());
+            multiCryptoHash.setExecutor(executor);
+            byte[][] results = multiCryptoHash.getHashes(new ByteArrayInputStream("foobar".getBytes()));
+            assertEquals("9ef61f95", StringUtil.toHexString(results[0]));
+            assertEquals("3858f62230ac3c915f300c664312c63f", StringUtil.toHexString(results[1]));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testFused() throws Exception {
+        byte[] data = new byte[3 * 1024 * 1024 + 12345];
+        new Random(11).nextBytes(data);
+        Path input = Files.createTempFile("multi", ".bin");
+        try {
+            Files.write(input, data);
+            CryptoHash crc32 = new CRC32CryptoHash();
+            CryptoHash md5 = DigestCryptoHash.createMD5();
+            CryptoHash xxh3 = new XXH3CryptoHash(null);
+            MultiCryptoHash multiCryptoHash = new MultiCryptoHash(crc32, md5, xxh3) {
+                @Override
+                protected byte[][] computeHashes(final Path input) throws IOException {
+                    return hashFused(input);
+                }
+            };
+            byte[][] results = multiCryptoHash.getHashes(input);
+            assertTrue(Arrays.equals(crc32.getHash(new ByteArrayInputStream(data)), results[0]));
+            assertTrue(Arrays.equals(md5.getHash(new ByteArrayInputStream(data)), results[1]));
+            assertTrue(Arrays.equals(xxh3.getHash(new ByteArrayInputStream(data)), results[2]));
+            for (int ndx = 0; ndx < 3; ndx++) {
+                assertTrue(HashCostModel.DEFAULT_BYTE_PICOS != multiCryptoHash.getCostModel().getBytePicos(ndx));
+            }
+
+            Files.write(input, new byte[0]);
+            results = multiCryptoHash.getHashes(input);
+            assertTrue(Arrays.equals(md5.getHash(new ByteArrayInputStream(new byte[0])), results[1]));
+        } finally {
+            Files.delete(input);
+        }
+    }
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import junit.framework.TestCase;
+import org.widgetrefinery.util.StringUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * @since 10/17/26 6:50 PM
+ */
+public class TestMurmur3CryptoHash extends TestCase {
+    public void testStringHash() throws Exception {
+        CryptoHash cryptoHash = new Murmur3CryptoHash(null);
+        assertEquals("00000000000000000000000000000000", StringUtil.toHexString(cryptoHash.getHash("")));
+        assertEquals("897859f6655555855a890e51483ab5e6", StringUtil.toHexString(cryptoHash.getHash("a")));
+        assertEquals("0e617feb46603f53b163eb607d4697ab", StringUtil.toHexString(cryptoHash.getHash("hello world")));
+        assertEquals("a4cc66db5e64843c05a11e3ac7faf899", StringUtil.toHexString(cryptoHash.getHash("123456789")));
+    }
+
+    public void testLongInputs() throws Exception {
+        AbstractCryptoHash cryptoHash = new Murmur3CryptoHash(null);
+        assertEquals("24e59d30842f32eb1b4828271fa02a08", StringUtil.toHexString(cryptoHash.computeHash(createInput(17))));
+        assertEquals("98c5120a490b4e028303f04b14c2bb6d", StringUtil.toHexString(cryptoHash.computeHash(createInput(100))));
+        assertEquals("e6014420a4a5a98185f1e157b1f2df81", StringUtil.toHexString(cryptoHash.computeHash(createInput(1024))));
+        assertEquals("e6279f8bee45600eb3feea09afd366ea", StringUtil.toHexString(cryptoHash.computeHash(createInput(1025))));
+    }
+
+    public void testPathHash() throws Exception {
+        Path input = Files.createTempFile("fingerprint", ".bin");
+        try {
+            Files.write(input, createInput(5000));
+            assertEquals("30b7d27497917b82a60895167ca3104c", StringUtil.toHexString(new Murmur3CryptoHash(null).getHash(input)));
+        } finally {
+            Files.delete(input);
+        }
+    }
+
+    public void testChunkedSession() throws Exception {
+        byte[] input = createInput(5000);
+        HashSession session = new Murmur3CryptoHash(null).createSession();
+        int position = 0;
+        for (int chunk = 1; position < input.length; chunk = chunk * 3 + 1) {
+            int length = Math.min(chunk % 1500, input.length - position);
+            if (0 == chunk % 2) {
+                session.update(input, position, length);
+            } else {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+                buffer.put(input, position, length).flip();
+                session.update(buffer);
+            }
+            position += length;
+        }
+        byte[] output = new byte[session.getDigestLength()];
+        session.digestInto(output, 0);
+        assertEquals("30b7d27497917b82a60895167ca3104c", StringUtil.toHexString(output));
+    }
+
+    private static byte[] createInput(final int length) {
+        byte[] input = new byte[length];
+        for (int ndx = 0; ndx < length; ndx++) {
+            input[ndx] = (byte) (ndx * 31 + 7);
+        }
+        return input;
+    }
+}
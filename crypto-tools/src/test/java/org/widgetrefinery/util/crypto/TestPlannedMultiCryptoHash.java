@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import junit.framework.TestCase;
+import org.widgetrefinery.util.StringUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @since 10/17/26 3:05 PM
+ */
+public class TestPlannedMultiCryptoHash extends TestCase {
+    private static final String[] ENCODINGS = {"ms", "mc", "m", "c", "ms", "csm"};
+
+    public void testSharedPrefixes() throws Exception {
+        final AtomicInteger passes = new AtomicInteger();
+        final AtomicInteger stages = new AtomicInteger();
+        PlannedMultiCryptoHash.StageFactory factory = new PlannedMultiCryptoHash.StageFactory() {
+            @Override
+            public CryptoHash create(final char key) {
+                stages.incrementAndGet();
+                final CryptoHash cryptoHash = createStage(key);
+                return new CRC32CryptoHash() {
+                    @Override
+                    public byte[] getHash(final InputStream input) throws IOException {
+                        passes.incrementAndGet();
+                        return cryptoHash.getHash(input);
+                    }
+
+                    @Override
+                    public HashSession createSession() {
+                        return cryptoHash.createSession();
+                    }
+                };
+            }
+        };
+
+        MultiCryptoHash multiCryptoHash = new PlannedMultiCryptoHash(factory, ENCODINGS);
+        assertEquals(ENCODINGS.length, multiCryptoHash.getResultCount());
+        assertEquals(6, stages.get());
+
+        byte[][] results = multiCryptoHash.getHashes(new ByteArrayInputStream("foobar".getBytes()));
+        assertEquals(2, passes.get());
+        assertResults(results);
+    }
+
+    public void testPathAndString() throws Exception {
+        MultiCryptoHash multiCryptoHash = new PlannedMultiCryptoHash(new PlannedMultiCryptoHash.StageFactory() {
+            @Override
+            public CryptoHash create(final char key) {
+                return createStage(key);
+            }
+        }, ENCODINGS);
+
+        assertResults(multiCryptoHash.getHashes("foobar"));
+
+        Path input = Files.createTempFile("planned", ".txt");
+        try {
+            Files.write(input, "foobar".getBytes());
+            assertResults(multiCryptoHash.getHashes(input));
+        } finally {
+            Files.delete(input);
+        }
+    }
+
+    public void testStringBatch() throws Exception {
+        MultiCryptoHash multiCryptoHash = new PlannedMultiCryptoHash(new PlannedMultiCryptoHash.StageFactory() {
+            @Override
+            public CryptoHash create(final char key) {
+                return createStage(key);
+            }
+        }, ENCODINGS) {
+            @Override
+            protected int getShardCount(final int inputCount) {
+                return 3;
+            }
+        };
+        assertEquals(20 + 4 + 16 + 4 + 20 + 16, multiCryptoHash.getStride());
+
+        String[] inputs = new String[10];
+        Arrays.fill(inputs, "foobar");
+        byte[] hashes = multiCryptoHash.getHashes(inputs, Charset.forName("UTF-8"));
+        assertEquals(inputs.length * multiCryptoHash.getStride(), hashes.length);
+        int[] lengths = multiCryptoHash.getResultLengths();
+        for (int ndx = 0; ndx < inputs.length; ndx++) {
+            byte[][] results = new byte[lengths.length][];
+            int position = ndx * multiCryptoHash.getStride();
+            for (int result = 0; result < results.length; result++) {
+                results[result] = Arrays.copyOfRange(hashes, position, position + lengths[result]);
+                position += lengths[result];
+            }
+            assertResults(results);
+        }
+    }
+
+    public void testSessionReuse() throws Exception {
+        final AtomicInteger sessions = new AtomicInteger();
+        MultiCryptoHash multiCryptoHash = new PlannedMultiCryptoHash(new PlannedMultiCryptoHash.StageFactory() {
+            @Override
+            public CryptoHash create(final char key) {
+                final CryptoHash cryptoHash = createStage(key);
+                return new CRC32CryptoHash() {
+                    @Override
+                    public byte[] getHash(final InputStream input) throws IOException {
+                        return cryptoHash.getHash(input);
+                    }
+
+                    @Override
+                    public HashSession createSession() {
+                        sessions.incrementAndGet();
+                        return cryptoHash.createSession();
+                    }
+                };
+            }
+        }, ENCODINGS);
+
+        for (int ndx = 0; ndx < 5; ndx++) {
+            assertResults(multiCryptoHash.getHashes(new ByteArrayInputStream("foobar".getBytes())));
+        }
+        assertEquals(4, sessions.get());
+    }
+
+    public void testBlankEncoding() throws Exception {
+        try {
+            new PlannedMultiCryptoHash(null, "m", "");
+            assertTrue("constructor did not throw exception", false);
+        } catch (IllegalArgumentException e) {
+            assertEquals("blank encoding at position 1", e.getMessage());
+        }
+    }
+
+    private static CryptoHash createStage(final char key) {
+        return 'm' == key ? DigestCryptoHash.createMD5() : 's' == key ? DigestCryptoHash.createSHA1() : new CRC32CryptoHash();
+    }
+
+    private static void assertResults(final byte[][] results) {
+        assertEquals(ENCODINGS.length, results.length);
+        for (int ndx = 0; ndx < ENCODINGS.length; ndx++) {
+            CryptoHash expected = null;
+            for (char key : ENCODINGS[ndx].toCharArray()) {
+                expected = 'm' == key ? DigestCryptoHash.createMD5(expected) : 's' == key ? DigestCryptoHash.createSHA1(expected) : new CRC32CryptoHash(expected);
+            }
+            assertEquals(ENCODINGS[ndx], StringUtil.toHexString(expected.getHash("foobar")), StringUtil.toHexString(results[ndx]));
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import junit.framework.TestCase;
+import org.widgetrefinery.util.StringUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @since 10/17/26 3:40 PM
+ */
+public class TestReadAhead extends TestCase {
+    private IOStrategy original;
+    private Path       file;
+    private byte[]     data;
+    private String     expected;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.original = IOStrategy.getDefault();
+        this.file = Files.createTempFile("readahead", ".dat");
+        this.data = new byte[100000];
+        for (int ndx = 0; ndx < this.data.length; ndx++) {
+            this.data[ndx] = (byte) (ndx * 31 + 7);
+        }
+        Files.write(this.file, this.data);
+        this.expected = StringUtil.toHexString(MessageDigest.getInstance("SHA-1").digest(this.data));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        IOStrategy.setDefault(this.original);
+        Files.deleteIfExists(this.file);
+        super.tearDown();
+    }
+
+    public void testDepths() throws Exception {
+        CryptoHash cryptoHash = DigestCryptoHash.createSHA1(null);
+        for (int depth = 0; depth <= 3; depth++) {
+            IOStrategy.setDefault(new IOStrategy(4096, 8192, depth));
+            assertEquals("depth " + depth, this.expected, StringUtil.toHexString(cryptoHash.getHash(this.file)));
+            assertEquals("depth " + depth, this.expected, StringUtil.toHexString(cryptoHash.getHash(new ByteArrayInputStream(this.data))));
+            InputStream input = Files.newInputStream(this.file);
+            try {
+                assertEquals("depth " + depth, 0 < depth, ReadAhead.isWorthReadingAhead(IOStrategy.getDefault(), input));
+                assertEquals("depth " + depth, this.expected, StringUtil.toHexString(cryptoHash.getHash(input)));
+            } finally {
+                input.close();
+            }
+            assertFalse(ReadAhead.isWorthReadingAhead(IOStrategy.getDefault(), new ByteArrayInputStream(this.data)));
+            MultiCryptoHash multiCryptoHash = new MultiCryptoHash(cryptoHash, new CRC32CryptoHash());
+            assertEquals("depth " + depth, this.expected, StringUtil.toHexString(multiCryptoHash.getHashes(new ByteArrayInputStream(this.data))[0]));
+        }
+    }
+
+    public void testPartialFile() throws Exception {
+        IOStrategy strategy = new IOStrategy(4096, 4096, 2);
+        FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ);
+        try {
+            ReadAhead readAhead = new ReadAhead(strategy, channel, 10000, 2);
+            int total = 0;
+            for (ByteBuffer block = readAhead.next(); null != block; block = readAhead.next()) {
+                assertTrue(block.isDirect());
+                total += block.remaining();
+            }
+            assertNull(readAhead.next());
+            readAhead.close();
+            assertEquals(10000, total);
+            assertEquals(3, strategy.getReads());
+        } finally {
+            channel.close();
+        }
+    }
+
+    public void testEarlyClose() throws Exception {
+        IOStrategy strategy = new IOStrategy(4096, 4096, 2);
+        FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ);
+        try {
+            ReadAhead readAhead = new ReadAhead(strategy, channel, this.data.length, 2);
+            assertEquals(4096, readAhead.next().remaining());
+            readAhead.close();
+            assertTrue(channel.isOpen());
+            assertEquals(3, strategy.getPooledFileBuffers());
+        } finally {
+            channel.close();
+        }
+    }
+
+    public void testBusyReaders() throws Exception {
+        IOStrategy strategy = new IOStrategy(4096, 4096, 1);
+        FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ);
+        List<ReadAhead> readAheads = new ArrayList<ReadAhead>();
+        try {
+            ReadAhead readAhead;
+            do {
+                readAhead = new ReadAhead(strategy, channel, this.data.length, 1);
+                readAheads.add(readAhead);
+            } while (!readAhead.isInline() && readAheads.size() <= 2 * Runtime.getRuntime().availableProcessors());
+            assertTrue(readAhead.isInline());
+
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            FileChannel inline = FileChannel.open(this.file, StandardOpenOption.READ);
+            try {
+                readAhead = new ReadAhead(strategy, inline, this.data.length, 1);
+                readAheads.add(readAhead);
+                assertTrue(readAhead.isInline());
+                for (ByteBuffer block = readAhead.next(); null != block; block = readAhead.next()) {
+                    md.update(block);
+                }
+            } finally {
+                inline.close();
+            }
+            assertEquals(this.expected, StringUtil.toHexString(md.digest()));
+        } finally {
+            for (ReadAhead readAhead : readAheads) {
+                readAhead.close();
+            }
+            channel.close();
+        }
+    }
+
+    public void testError() throws Exception {
+        IOStrategy strategy = new IOStrategy(4096, 4096, 2);
+        InputStream input = new InputStream() {
+            private int count;
+
+            @Override
+            public int read() throws IOException {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+                if (++this.count > 3) {
+                    throw new IOException("disk on fire");
+                }
+                return length;
+            }
+        };
+        ReadAhead readAhead = new ReadAhead(strategy, input, 2);
+        try {
+            for (int ndx = 0; ndx < 3; ndx++) {
+                assertEquals(4096, readAhead.next().remaining());
+            }
+            readAhead.next();
+            assertTrue("next() did not throw exception", false);
+        } catch (IOException e) {
+            assertEquals("disk on fire", e.getMessage());
+        } finally {
+            readAhead.close();
+        }
+        assertEquals(3, strategy.getStreamBuffers().getPooled());
+    }
+}
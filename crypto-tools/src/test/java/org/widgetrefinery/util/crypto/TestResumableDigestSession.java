@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import junit.framework.TestCase;
+import org.widgetrefinery.util.StringUtil;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * @since 10/17/26 3:55 PM
+ */
+public class TestResumableDigestSession extends TestCase {
+    private static final String[] ALGORITHMS = {"MD5", "SHA-1", "SHA-224", "SHA-256", "SHA-384", "SHA-512", "SHA-512/224", "SHA-512/256"};
+
+    public void testDigests() throws Exception {
+        byte[] data = new byte[1000];
+        new Random(0).nextBytes(data);
+        for (String algorithm : ALGORITHMS) {
+            MessageDigest md = MessageDigest.getInstance(algorithm);
+            ResumableDigestSession session = ResumableDigestSession.create(algorithm);
+            assertEquals(algorithm, md.getDigestLength(), session.getDigestLength());
+            for (int length = 0; length <= 300; length++) {
+                md.update(data, 0, length);
+                session.update(data, 0, length);
+                assertEquals(algorithm + " of " + length + " byte(s)", StringUtil.toHexString(md.digest()), StringUtil.toHexString(AbstractCryptoHash.digest(session)));
+            }
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+            direct.put(data).flip();
+            for (int ndx = 0; ndx < data.length; ndx += 77) {
+                direct.limit(Math.min(ndx + 77, data.length)).position(ndx);
+                session.update(direct);
+            }
+            assertEquals(algorithm, StringUtil.toHexString(md.digest(data)), StringUtil.toHexString(AbstractCryptoHash.digest(session)));
+        }
+        assertNull(ResumableDigestSession.create("SHA3-256"));
+    }
+
+    public void testState() throws Exception {
+        byte[] data = new byte[1000];
+        new Random(1).nextBytes(data);
+        for (String algorithm : ALGORITHMS) {
+            String expected = StringUtil.toHexString(MessageDigest.getInstance(algorithm).digest(data));
+            for (int split : new int[]{0, 1, 63, 64, 65, 128, 129, 999, 1000}) {
+                ResumableDigestSession first = ResumableDigestSession.create(algorithm);
+                first.update(data, 0, split);
+                byte[] state = first.saveState();
+
+                ResumableDigestSession second = ResumableDigestSession.create(algorithm);
+                second.update(data, 0, 10);
+                second.restoreState(state);
+                second.update(data, split, data.length - split);
+                assertEquals(algorithm + " split at " + split, expected, StringUtil.toHexString(AbstractCryptoHash.digest(second)));
+            }
+        }
+    }
+
+    public void testInvalidState() throws Exception {
+        ResumableDigestSession session = ResumableDigestSession.create("SHA-256");
+        session.update(new byte[100], 0, 100);
+        byte[] state = session.saveState();
+        String expected = StringUtil.toHexString(MessageDigest.getInstance("SHA-256").digest());
+
+        try {
+            session.restoreState(Arrays.copyOf(state, state.length - 1));
+            assertTrue("restoreState() did not throw exception", false);
+        } catch (IllegalArgumentException e) {
+            assertEquals("truncated digest state", e.getMessage());
+        }
+        assertEquals(expected, StringUtil.toHexString(AbstractCryptoHash.digest(session)));
+
+        byte[] version = state.clone();
+        version[9] = 99;
+        try {
+            session.restoreState(version);
+            assertTrue("restoreState() did not throw exception", false);
+        } catch (IllegalArgumentException e) {
+            assertEquals("unsupported digest state version (99)", e.getMessage());
+        }
+
+        try {
+            session.restoreState(Arrays.copyOf(state, state.length + 1));
+            assertTrue("restoreState() did not throw exception", false);
+        } catch (IllegalArgumentException e) {
+            assertEquals("digest state has trailing data", e.getMessage());
+        }
+    }
+}
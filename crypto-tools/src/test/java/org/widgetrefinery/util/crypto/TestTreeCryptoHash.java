@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import junit.framework.TestCase;
+import org.widgetrefinery.util.StringUtil;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * @since 10/17/26 12:40 PM
+ */
+public class TestTreeCryptoHash extends TestCase {
+    public void testSingleLeaf() throws Exception {
+        String expected = StringUtil.toHexString(digest("SHA-1", new byte[]{0}, "foobar".getBytes()));
+        CryptoHash cryptoHash = TreeCryptoHash.createSHA1(null);
+        assertEquals(expected, StringUtil.toHexString(cryptoHash.getHash("foobar")));
+        assertEquals(expected, StringUtil.toHexString(cryptoHash.getHash(new ByteArrayInputStream("foobar".getBytes()))));
+        assertEquals(StringUtil.toHexString(digest("SHA-1", new byte[]{0})), StringUtil.toHexString(cryptoHash.getHash(new ByteArrayInputStream(new byte[0]))));
+        assertFalse(expected.equals(StringUtil.toHexString(digest("SHA-1", "foobar".getBytes()))));
+    }
+
+    public void testTreeShape() throws Exception {
+        byte[] leaf1 = digest("MD5", new byte[]{0}, "foob".getBytes());
+        byte[] leaf2 = digest("MD5", new byte[]{0}, "arba".getBytes());
+        byte[] leaf3 = digest("MD5", new byte[]{0}, "z".getBytes());
+        byte[] node = digest("MD5", new byte[]{1}, leaf1, leaf2);
+        byte[] expected = digest("MD5", new byte[]{1}, node, leaf3);
+
+        CryptoHash cryptoHash = TreeCryptoHash.create(null, "MD5", 4, new ForkJoinPool(2));
+        assertTrue(Arrays.equals(expected, cryptoHash.getHash("foobarbaz")));
+        assertTrue(Arrays.equals(expected, cryptoHash.getHash(new ByteArrayInputStream("foobarbaz".getBytes()))));
+        assertTrue(Arrays.equals(expected, AbstractCryptoHash.digest(session(cryptoHash, "foobarbaz".getBytes()))));
+    }
+
+    public void testDeterministic() throws Exception {
+        byte[] data = new byte[1000 * 1000 + 7];
+        new Random(3).nextBytes(data);
+        Path input = Files.createTempFile("tree", ".bin");
+        try {
+            Files.write(input, data);
+            CryptoHash single = TreeCryptoHash.create(null, "SHA-1", 1000, new ForkJoinPool(1));
+            CryptoHash multi = TreeCryptoHash.create(null, "SHA-1", 1000, new ForkJoinPool(8));
+            byte[] expected = single.getHash(input);
+            assertTrue(Arrays.equals(expected, multi.getHash(input)));
+            assertTrue(Arrays.equals(expected, multi.getHash(new ByteArrayInputStream(data))));
+            assertTrue(Arrays.equals(expected, single.getHash(new ByteArrayInputStream(data))));
+        } finally {
+            Files.delete(input);
+        }
+    }
+
+    public void testChainedHash() throws Exception {
+        CryptoHash cryptoHash = TreeCryptoHash.createSHA1(DigestCryptoHash.createMD5());
+        assertEquals(StringUtil.toHexString(digest("SHA-1", new byte[]{0}, DigestCryptoHash.createMD5().getHash("foobar"))),
+                     StringUtil.toHexString(cryptoHash.getHash("foobar")));
+    }
+
+    public void testSession() throws Exception {
+        byte[] data = new byte[10007];
+        new Random(5).nextBytes(data);
+        CryptoHash cryptoHash = TreeCryptoHash.create(null, "SHA-1", 100, new ForkJoinPool(2));
+        HashSession session = cryptoHash.createSession();
+        byte[] output = new byte[20];
+        for (int length : new int[]{0, 1, 99, 100, 101, 700, 799, 800, 801, 10007}) {
+            session.update(data, 0, length / 2);
+            session.update(ByteBuffer.wrap(data, length / 2, length - length / 2));
+            session.digestInto(output, 0);
+            assertTrue("length " + length, Arrays.equals(cryptoHash.getHash(new ByteArrayInputStream(data, 0, length)), output));
+        }
+
+        DigestPool pool = DigestPool.get("SHA-1");
+        long misses = pool.getMisses();
+        for (int ndx = 0; ndx < 10; ndx++) {
+            session = cryptoHash.createSession();
+            session.update(data, 0, 700);
+            session.digestInto(output, 0);
+            cryptoHash.createSession().reset();
+        }
+        assertTrue(1 >= pool.getMisses() - misses);
+    }
+
+    private static byte[] digest(final String algorithm, final byte[]... parts) throws Exception {
+        MessageDigest md = MessageDigest.getInstance(algorithm);
+        for (byte[] part : parts) {
+            md.update(part);
+        }
+        return md.digest();
+    }
+
+    private static HashSession session(final CryptoHash cryptoHash, final byte[] data) {
+        HashSession session = cryptoHash.createSession();
+        for (byte value : data) {
+            session.update(new byte[]{value}, 0, 1);
+        }
+        return session;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import junit.framework.TestCase;
+import org.widgetrefinery.util.StringUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * @since 10/17/26 6:45 PM
+ */
+public class TestXXH3CryptoHash extends TestCase {
+    public void testStringHash() throws Exception {
+        CryptoHash cryptoHash = new XXH3CryptoHash(null);
+        assertEquals("2d06800538d394c2", StringUtil.toHexString(cryptoHash.getHash("")));
+        assertEquals("e6c632b61e964e1f", StringUtil.toHexString(cryptoHash.getHash("a")));
+        assertEquals("78af5f94892f3950", StringUtil.toHexString(cryptoHash.getHash("abc")));
+        assertEquals("d447b1ea40e6988b", StringUtil.toHexString(cryptoHash.getHash("hello world")));
+        assertEquals("72dcb18b67a17dff", StringUtil.toHexString(cryptoHash.getHash("123456789")));
+    }
+
+    public void testLongInputs() throws Exception {
+        AbstractCryptoHash cryptoHash = new XXH3CryptoHash(null);
+        assertEquals("208bde5ee2bed407", StringUtil.toHexString(cryptoHash.computeHash(createInput(17))));
+        assertEquals("8c97158042fbf926", StringUtil.toHexString(cryptoHash.computeHash(createInput(100))));
+        assertEquals("12fdb864685f344d", StringUtil.toHexString(cryptoHash.computeHash(createInput(200))));
+        assertEquals("0b3b630948ce4a00", StringUtil.toHexString(cryptoHash.computeHash(createInput(241))));
+        assertEquals("23bc880ebf0d29c6", StringUtil.toHexString(cryptoHash.computeHash(createInput(1024))));
+        assertEquals("c09fdfbc398c7d82", StringUtil.toHexString(cryptoHash.computeHash(createInput(1025))));
+    }
+
+    public void testPathHash() throws Exception {
+        Path input = Files.createTempFile("fingerprint", ".bin");
+        try {
+            Files.write(input, createInput(5000));
+            assertEquals("559fff92c2b7f8ee", StringUtil.toHexString(new XXH3CryptoHash(null).getHash(input)));
+        } finally {
+            Files.delete(input);
+        }
+    }
+
+    public void testChunkedSession() throws Exception {
+        byte[] input = createInput(5000);
+        HashSession session = new XXH3CryptoHash(null).createSession();
+        int position = 0;
+        for (int chunk = 1; position < input.length; chunk = chunk * 3 + 1) {
+            int length = Math.min(chunk % 1500, input.length - position);
+            if (0 == chunk % 2) {
+                session.update(input, position, length);
+            } else {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+                buffer.put(input, position, length).flip();
+                session.update(buffer);
+            }
+            position += length;
+        }
+        byte[] output = new byte[session.getDigestLength()];
+        session.digestInto(output, 0);
+        assertEquals("559fff92c2b7f8ee", StringUtil.toHexString(output));
+    }
+
+    private static byte[] createInput(final int length) {
+        byte[] input = new byte[length];
+        for (int ndx = 0; ndx < length; ndx++) {
+            input[ndx] = (byte) (ndx * 31 + 7);
+        }
+        return input;
+    }
+}
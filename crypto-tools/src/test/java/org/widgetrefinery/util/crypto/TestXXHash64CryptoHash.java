@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto;
+
+import junit.framework.TestCase;
+import org.widgetrefinery.util.StringUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * @since 10/17/26 6:40 PM
+ */
+public class TestXXHash64CryptoHash extends TestCase {
+    public void testStringHash() throws Exception {
+        CryptoHash cryptoHash = new XXHash64CryptoHash(null);
+        assertEquals("ef46db3751d8e999", StringUtil.toHexString(cryptoHash.getHash("")));
+        assertEquals("44bc2cf5ad770999", StringUtil.toHexString(cryptoHash.getHash("abc")));
+        assertEquals("45ab6734b21e6968", StringUtil.toHexString(cryptoHash.getHash("hello world")));
+        assertEquals("8cb841db40e6ae83", StringUtil.toHexString(cryptoHash.getHash("123456789")));
+    }
+
+    public void testLongInputs() throws Exception {
+        AbstractCryptoHash cryptoHash = new XXHash64CryptoHash(null);
+        assertEquals("fe9f0feb7eeedc09", StringUtil.toHexString(cryptoHash.computeHash(createInput(17))));
+        assertEquals("efa0ad2d3e70c151", StringUtil.toHexString(cryptoHash.computeHash(createInput(100))));
+        assertEquals("d3f50496d5bf27e0", StringUtil.toHexString(cryptoHash.computeHash(createInput(241))));
+        assertEquals("149aa44972cdae00", StringUtil.toHexString(cryptoHash.computeHash(createInput(1024))));
+        assertEquals("2c9d0b038b4a4b35", StringUtil.toHexString(cryptoHash.computeHash(createInput(1025))));
+    }
+
+    public void testPathHash() throws Exception {
+        Path input = Files.createTempFile("fingerprint", ".bin");
+        try {
+            Files.write(input, createInput(5000));
+            assertEquals("aa5b264f05aca4d4", StringUtil.toHexString(new XXHash64CryptoHash(null).getHash(input)));
+        } finally {
+            Files.delete(input);
+        }
+    }
+
+    public void testChunkedSession() throws Exception {
+        byte[] input = createInput(5000);
+        HashSession session = new XXHash64CryptoHash(null).createSession();
+        int position = 0;
+        for (int chunk = 1; position < input.length; chunk = chunk * 3 + 1) {
+            int length = Math.min(chunk % 1500, input.length - position);
+            if (0 == chunk % 2) {
+                session.update(input, position, length);
+            } else {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+                buffer.put(input, position, length).flip();
+                session.update(buffer);
+            }
+            position += length;
+        }
+        byte[] output = new byte[session.getDigestLength()];
+        session.digestInto(output, 0);
+        assertEquals("aa5b264f05aca4d4", StringUtil.toHexString(output));
+    }
+
+    private static byte[] createInput(final int length) {
+        byte[] input = new byte[length];
+        for (int ndx = 0; ndx < length; ndx++) {
+            input[ndx] = (byte) (ndx * 31 + 7);
+        }
+        return input;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto.output;
+
+import junit.framework.TestCase;
+import org.widgetrefinery.util.StringUtil;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * @since 10/17/26 5:35 PM
+ */
+public class TestByteEncoder extends TestCase {
+    public void testHex() {
+        Random random = new Random(0);
+        for (int length = 0; length < 70; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            assertEquals(StringUtil.toHexString(data), ByteEncoder.HEX.encodeToString(data));
+        }
+    }
+
+    public void testBase64() {
+        assertEquals("", ByteEncoder.BASE64.encodeToString("".getBytes()));
+        assertEquals("Zg==", ByteEncoder.BASE64.encodeToString("f".getBytes()));
+        assertEquals("Zm8=", ByteEncoder.BASE64.encodeToString("fo".getBytes()));
+        assertEquals("Zm9v", ByteEncoder.BASE64.encodeToString("foo".getBytes()));
+        assertEquals("Zm9vYg==", ByteEncoder.BASE64.encodeToString("foob".getBytes()));
+        assertEquals("Zm9vYmE=", ByteEncoder.BASE64.encodeToString("fooba".getBytes()));
+        assertEquals("Zm9vYmFy", ByteEncoder.BASE64.encodeToString("foobar".getBytes()));
+        assertEquals("+/8=", ByteEncoder.BASE64.encodeToString(new byte[]{-5, -1}));
+    }
+
+    public void testOffsets() {
+        byte[] data = "xxfoobarxx".getBytes();
+        ByteBuffer output = ByteBuffer.allocate(32);
+        output.put((byte) '>');
+        ByteEncoder.BASE64.encode(data, 2, 6, output);
+        ByteEncoder.HEX.encode(data, 2, 1, output);
+        ByteEncoder.RAW.encode(data, 0, 2, output);
+        assertEquals(">Zm9vYmFy66xx", new String(output.array(), 0, output.position()));
+        assertEquals(12, ByteEncoder.BASE64.getEncodedLength(7));
+        assertEquals(14, ByteEncoder.HEX.getEncodedLength(7));
+        assertEquals(7, ByteEncoder.RAW.getEncodedLength(7));
+    }
+
+    public void testDecode() {
+        Random random = new Random(0);
+        for (int length = 0; length < 70; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            assertTrue(Arrays.equals(data, ByteEncoder.HEX.decode(ByteEncoder.HEX.encodeToString(data))));
+            assertTrue(Arrays.equals(data, ByteEncoder.BASE64.decode(ByteEncoder.BASE64.encodeToString(data))));
+        }
+        assertTrue(Arrays.equals(new byte[]{-85, -51}, ByteEncoder.HEX.decode("ABcd")));
+
+        assertDecodeError(ByteEncoder.HEX, "abc", "invalid hex length (3)");
+        assertDecodeError(ByteEncoder.HEX, "ax", "invalid digit (x) at offset 1");
+        assertDecodeError(ByteEncoder.HEX, "\u00e9f", "invalid digit (\u00e9) at offset 0");
+        assertDecodeError(ByteEncoder.BASE64, "Zm9", "invalid base64 length (3)");
+        assertDecodeError(ByteEncoder.BASE64, "Zm9v!A==", "invalid digit (!) at offset 4");
+    }
+
+    private void assertDecodeError(final ByteEncoder byteEncoder, final String input, final String message) {
+        try {
+            byteEncoder.decode(input);
+            assertTrue("decode() did not throw an exception", false);
+        } catch (IllegalArgumentException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+}
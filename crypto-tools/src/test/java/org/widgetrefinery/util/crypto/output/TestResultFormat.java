@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.crypto.output;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+
+/**
+ * @since 10/17/26 5:40 PM
+ */
+public class TestResultFormat extends TestCase {
+    private static final byte[][] RESULTS = {{0x12, 0x34, (byte) 0xAB}, {(byte) 0xFF}};
+
+    private ByteArrayOutputStream bytes;
+    private OutputWriter          output;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.bytes = new ByteArrayOutputStream();
+        this.output = new OutputWriter(Channels.newChannel(this.bytes), 16, Charset.forName("UTF-8"));
+    }
+
+    public void testPrefix() throws Exception {
+        ResultFormat format = new PrefixFormat(ByteEncoder.HEX);
+        format.write(this.output, ResultFormat.SOURCE_FILE, "some/long/file name.txt", RESULTS);
+        format.write(this.output, ResultFormat.SOURCE_STDIN, null, RESULTS);
+        new PrefixFormat(ByteEncoder.BASE64).write(this.output, ResultFormat.SOURCE_INPUT, "café", RESULTS);
+        int written = this.bytes.size();
+        this.output.flush();
+        assertTrue("output was flushed early", written < this.bytes.size());
+        assertEquals("file|some/long/file name.txt: 1234ab ff\nstdin: 1234ab ff\ninput|café: EjSr /w==\n", this.bytes.toString("UTF-8"));
+    }
+
+    public void testSum() throws Exception {
+        ResultFormat format = new SumFormat(ByteEncoder.HEX);
+        format.write(this.output, ResultFormat.SOURCE_FILE, "a.txt", RESULTS);
+        format.write(this.output, ResultFormat.SOURCE_FILE, "b\\c\nd", new byte[][]{RESULTS[1]});
+        format.write(this.output, ResultFormat.SOURCE_STDIN, null, new byte[][]{RESULTS[1]});
+        this.output.flush();
+        assertEquals("1234ab  a.txt\nff  a.txt\n\\ff  b\\\\c\\nd\nff  -\n", this.bytes.toString("UTF-8"));
+    }
+
+    public void testJsonLines() throws Exception {
+        ResultFormat format = new JsonLinesFormat(ByteEncoder.HEX, "m", "ms");
+        format.write(this.output, ResultFormat.SOURCE_FILE, "say \"hi\"\t\u0001", RESULTS);
+        format.write(this.output, ResultFormat.SOURCE_STDIN, null, RESULTS);
+        this.output.flush();
+        assertEquals("{\"source\":\"file\",\"name\":\"say \\\"hi\\\"\\t\\u0001\",\"hashes\":[{\"encoding\":\"m\",\"value\":\"1234ab\"},{\"encoding\":\"ms\",\"value\":\"ff\"}]}\n"
+                     + "{\"source\":\"stdin\",\"hashes\":[{\"encoding\":\"m\",\"value\":\"1234ab\"},{\"encoding\":\"ms\",\"value\":\"ff\"}]}\n",
+                     this.bytes.toString("UTF-8"));
+    }
+
+    public void testBinary() throws Exception {
+        ResultFormat format = new BinaryFormat();
+        format.write(this.output, ResultFormat.SOURCE_FILE, "é", RESULTS);
+        format.write(this.output, ResultFormat.SOURCE_STDIN, null, new byte[0][]);
+        this.output.close();
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(this.bytes.toByteArray()));
+        assertEquals('f', input.readByte());
+        assertEquals(2, input.readInt());
+        assertEquals((byte) 0xC3, input.readByte());
+        assertEquals((byte) 0xA9, input.readByte());
+        assertEquals(2, input.readInt());
+        assertEquals(3, input.readInt());
+        assertEquals(0x12, input.readByte());
+        assertEquals(0x34, input.readByte());
+        assertEquals((byte) 0xAB, input.readByte());
+        assertEquals(1, input.readInt());
+        assertEquals((byte) 0xFF, input.readByte());
+        assertEquals('s', input.readByte());
+        assertEquals(-1, input.readInt());
+        assertEquals(0, input.readInt());
+        assertEquals(-1, input.read());
+    }
+
+    public void testLargeWrites() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int ndx = 0; ndx < 50; ndx++) {
+            sb.append((char) ('a' + ndx % 26)).append(0 == ndx % 7 ? "é" : "");
+        }
+        byte[] data = new byte[100];
+        for (int ndx = 0; ndx < data.length; ndx++) {
+            data[ndx] = (byte) ndx;
+        }
+        this.output.write(sb).write(ByteEncoder.BASE64, data).write(ByteEncoder.HEX, data);
+        this.output.flush();
+        assertEquals(sb + ByteEncoder.BASE64.encodeToString(data) + ByteEncoder.HEX.encodeToString(data), this.bytes.toString("UTF-8"));
+    }
+}
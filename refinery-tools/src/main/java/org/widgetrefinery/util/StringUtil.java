@@ -32,6 +32,8 @@ import java.util.regex.Pattern;
  * @since 3/4/12 10:17 PM
  */
 public class StringUtil {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
     /**
      * Checks if the given string is blank. Blank is defined as either null,
      * empty string, or a string with only whitespace.
@@ -75,15 +77,13 @@ public class StringUtil {
      * @return hexadecimal string
      */
     public static String toHexString(final byte[] input) {
-        StringBuilder sb = new StringBuilder();
-        for (byte value : input) {
-            String hex = Integer.toHexString(0xFF & (int) value);
-            if (1 == hex.length()) {
-                sb.append('0');
-            }
-            sb.append(hex);
+        char[] hex = new char[2 * input.length];
+        for (int ndx = 0; ndx < input.length; ndx++) {
+            int value = 0xFF & input[ndx];
+            hex[2 * ndx] = HEX_DIGITS[value >>> 4];
+            hex[2 * ndx + 1] = HEX_DIGITS[value & 0x0F];
         }
-        return sb.toString();
+        return new String(hex);
     }
 
     /**
@@ -233,7 +233,7 @@ public class StringUtil {
         boolean success = null != input;
         if (success) {
             try {
-                byte[] buffer = new byte[1024];
+                byte[] buffer = new byte[64 * 1024];
                 for (int bytesRead = input.read(buffer); 0 < bytesRead; bytesRead = input.read(buffer)) {
                     outputStream.write(buffer, 0, bytesRead);
                 }
@@ -20,6 +20,7 @@ package org.widgetrefinery.util.cl;
 import org.widgetrefinery.util.BadUserInputException;
 import org.widgetrefinery.util.lang.Translator;
 
+import java.io.PrintStream;
 import java.text.MessageFormat;
 import java.util.Date;
 import java.util.logging.*;
@@ -39,7 +40,7 @@ public abstract class AbstractCli {
      * @param args command line arguments
      */
     protected void start(final String[] args) {
-        boolean debugMode = null != System.getProperty("debug");
+        boolean debugMode = isDebugMode();
 
         if (debugMode) {
             Logger globalLogger = Logger.getLogger("");
@@ -56,18 +57,46 @@ public abstract class AbstractCli {
 
         try {
             Translator.configure();
-            processCommandLine(args);
-        } catch (BadUserInputException e) {
-            System.err.println(e.getMessage());
-            System.exit(-1);
         } catch (Exception e) {
-            if (debugMode) {
-                e.printStackTrace(System.err);
-            } else {
-                System.err.println(e.getMessage());
-            }
+            report(e, System.err);
             System.exit(-1);
         }
+        int status = run(args, System.err);
+        if (0 != status) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Calls {@link #processCommandLine(String[])} and turns any exception
+     * into an error message and a non-zero exit status. Unlike
+     * {@link #start(String[])}, this never exits the JVM, so it can be used
+     * by long-running processes that serve many command lines.
+     *
+     * @param args command line arguments
+     * @param err  where to report errors
+     * @return exit status, 0 on success
+     */
+    protected int run(final String[] args, final PrintStream err) {
+        try {
+            processCommandLine(args);
+            return 0;
+        } catch (Exception e) {
+            report(e, err);
+            return -1;
+        }
+    }
+
+    private static void report(final Exception e, final PrintStream err) {
+        if (isDebugMode() && !(e instanceof BadUserInputException)) {
+            e.printStackTrace(err);
+        } else {
+            err.println(e.getMessage());
+        }
+    }
+
+    private static boolean isDebugMode() {
+        return null != System.getProperty("debug");
     }
 
     /**
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2012  Widget Refinery
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.widgetrefinery.util.cl;
+
+import org.widgetrefinery.util.BadUserInputException;
+import org.widgetrefinery.util.StringUtil;
+import org.widgetrefinery.util.lang.UtilTranslationKey;
+
+/**
+ * Deals with arguments that are whole numbers. It can optionally enforce that
+ * the value falls within a certain range.
+ *
+ * @see org.widgetrefinery.util.cl.CLParser
+ * @since 10/17/26 10:02 AM
+ */
+public class IntegerArgumentType extends AbstractArgumentType {
+    private final int min;
+    private final int max;
+
+    /**
+     * Creates a new instance that will allow any integer.
+     */
+    public IntegerArgumentType() {
+        this(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a new instance that will enforce the value to fall within the
+     * given range.
+     *
+     * @param min smallest allowed value, inclusive
+     * @param max largest allowed value, inclusive
+     */
+    public IntegerArgumentType(final int min, final int max) {
+        super(true);
+        this.min = min;
+        this.max = max;
+    }
+
+    @Override
+    public String getGenericDescription() {
+        return "an integer value";
+    }
+
+    /**
+     * Parses the value as an integer and validates it against the allowed
+     * range.
+     *
+     * @param value string value from the command line
+     * @return parsed integer
+     * @throws BadUserInputException if the value is not an integer or is out of range
+     */
+    @Override
+    public Integer parse(final String value) throws BadUserInputException {
+        String trimmed = StringUtil.trimToEmpty(value);
+        int result;
+        try {
+            result = Integer.parseInt(trimmed);
+        } catch (NumberFormatException e) {
+            throw new BadUserInputException(UtilTranslationKey.CL_ERROR_BAD_SWITCH_VALUE, trimmed);
+        }
+        if (result < this.min || result > this.max) {
+            throw new BadUserInputException(UtilTranslationKey.CL_ERROR_BAD_SWITCH_VALUE, trimmed);
+        }
+        return result;
+    }
+}
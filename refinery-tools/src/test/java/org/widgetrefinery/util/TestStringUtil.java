@@ -73,4 +73,9 @@ public class TestStringUtil extends TestCase {
         //tab followed by newline
         assertEquals(" 123\n 67 90", StringUtil.wordWrap("123\t\n67 90", 8, " ", "  "));
     }
+
+    public void testToHexString() {
+        assertEquals("", StringUtil.toHexString(new byte[0]));
+        assertEquals("00017f80ff", StringUtil.toHexString(new byte[]{0, 1, 127, -128, -1}));
+    }
 }
@@ -132,6 +132,29 @@ public class TestCLParser extends TestCase {
         }
     }
 
+    public void testIntegerArgument() {
+        String[] inputs = "-n 12 --size=-3".split(" ");
+        CLParser clParser = new CLParser(inputs,
+                                         new Argument("n|count", new IntegerArgumentType(1, 16), null),
+                                         new Argument("size", new IntegerArgumentType(), null));
+        assertEquals(Integer.valueOf(12), clParser.getValue("count"));
+        assertEquals(Integer.valueOf(-3), clParser.getValue("size"));
+
+        try {
+            new CLParser(new String[]{"-n", "17"}, new Argument("n", new IntegerArgumentType(1, 16), null));
+            assertTrue("constructor did not throw exception", false);
+        } catch (Exception e) {
+            assertEquals("invalid value for -n (17)", e.getMessage());
+        }
+
+        try {
+            new CLParser(new String[]{"--count=many"}, new Argument("count", new IntegerArgumentType(), null));
+            assertTrue("constructor did not throw exception", false);
+        } catch (Exception e) {
+            assertEquals("invalid value for --count (many)", e.getMessage());
+        }
+    }
+
     public void testUsageMessage() {
         CLParser clParser = new CLParser(new String[0],
                                          new Argument("h|help", new BooleanArgumentType(), "Custom\nArgument\n\tDescription"),